@@ -0,0 +1,117 @@
+/**
+ *
+ */
+package com.indago.tr2d.batch;
+
+import java.io.PrintStream;
+
+import indago.ui.progress.ProgressListener;
+
+/**
+ * Reports progress of a batch run as machine-readable, tab separated lines:
+ *
+ * <pre>
+ * TR2D	PHASE	&lt;phase&gt;
+ * TR2D	PROGRESS	&lt;phase&gt;	&lt;step&gt;	&lt;total&gt;	&lt;message&gt;
+ * TR2D	ERROR	&lt;exit code&gt;	&lt;message&gt;
+ * TR2D	DONE	&lt;exit code&gt;	&lt;seconds&gt;
+ * </pre>
+ *
+ * Messages are stripped of tabs and line breaks, so each event is exactly
+ * one line.
+ *
+ * @author jug
+ */
+public class Tr2dBatchProgress implements ProgressListener {
+
+	private static final String PREFIX = "TR2D\t";
+
+	private final PrintStream out;
+	private final long startMillis = System.currentTimeMillis();
+
+	private String phase = "init";
+	private String message = "";
+	private int step = 0;
+	private int total = 0;
+
+	public Tr2dBatchProgress( final PrintStream out ) {
+		this.out = out;
+	}
+
+	public synchronized void phase( final String phase ) {
+		this.phase = phase;
+		step = 0;
+		total = 0;
+		message = "";
+		print( "PHASE\t" + phase );
+	}
+
+	public synchronized void error( final int exitCode, final String message ) {
+		print( "ERROR\t" + exitCode + "\t" + clean( message ) );
+	}
+
+	public synchronized void done( final int exitCode ) {
+		print( String.format( "DONE\t%d\t%.3f", exitCode, ( System.currentTimeMillis() - startMillis ) / 1000. ) );
+	}
+
+	/**
+	 * @see indago.ui.progress.ProgressListener#resetProgress(java.lang.String,
+	 *      int)
+	 */
+	@Override
+	public synchronized void resetProgress( final String message, final int maxProgress ) {
+		this.message = clean( message );
+		step = 0;
+		total = maxProgress;
+		printProgress();
+	}
+
+	/**
+	 * @see indago.ui.progress.ProgressListener#setTotalProgressSteps(int)
+	 */
+	@Override
+	public synchronized void setTotalProgressSteps( final int maxProgress ) {
+		total = maxProgress;
+	}
+
+	/**
+	 * @see indago.ui.progress.ProgressListener#hasProgressed()
+	 */
+	@Override
+	public synchronized void hasProgressed() {
+		step++;
+		printProgress();
+	}
+
+	/**
+	 * @see indago.ui.progress.ProgressListener#hasProgressed(java.lang.String)
+	 */
+	@Override
+	public synchronized void hasProgressed( final String message ) {
+		this.message = clean( message );
+		hasProgressed();
+	}
+
+	/**
+	 * @see indago.ui.progress.ProgressListener#hasCompleted()
+	 */
+	@Override
+	public synchronized void hasCompleted() {
+		step = total;
+		printProgress();
+	}
+
+	private void printProgress() {
+		print( String.format( "PROGRESS\t%s\t%d\t%d\t%s", phase, step, total, message ) );
+	}
+
+	private void print( final String line ) {
+		out.println( PREFIX + line );
+		out.flush();
+	}
+
+	private static String clean( final String message ) {
+		if ( message == null ) return "";
+		return message.replaceAll( "[\\t\\r\\n]+", " " ).trim();
+	}
+}
@@ -0,0 +1,539 @@
+/**
+ *
+ */
+package com.indago.tr2d.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.scijava.Context;
+
+import com.indago.plugins.seg.IndagoSegmentationPlugin;
+import com.indago.plugins.seg.IndagoSegmentationPluginService;
+import com.indago.tr2d.Tr2dContext;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.ilp.TrackingSolvers;
+import com.indago.tr2d.io.projectfolder.Tr2dProjectFolder;
+import com.indago.tr2d.ui.model.Tr2dLiveTracker;
+import com.indago.tr2d.ui.model.Tr2dModel;
+import com.indago.tr2d.ui.model.Tr2dRollingWindowTracker;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+import com.indago.tr2d.ui.util.SchnitzcellSolutionExporter;
+import com.indago.tr2d.ui.util.TraSolutionExporter;
+
+import io.scif.services.DatasetIOService;
+import net.imagej.ImgPlus;
+import net.imagej.ops.OpService;
+
+/**
+ * Runs the tr2d pipeline (fetch &rarr; problem graph &rarr; solve &rarr;
+ * export) on an existing project folder without any user interface.
+ * Segmentation plugins are instantiated but never asked for their UI, and
+ * <code>java.awt.headless</code> is set before anything else is touched, so
+ * the runner is safe to use on compute nodes without a display.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * Tr2dBatchRunner &lt;project folder&gt; [--refetch] [--threads &lt;n&gt;] [--export &lt;folder&gt;] [--no-tra] [--no-schnitzcell] [--window &lt;w&gt; [--commit &lt;c&gt;]] [--live &lt;folder&gt;] [--blocks &lt;b&gt; [--overlap &lt;o&gt;]] [--components] [--solver &lt;name&gt;] [--time-limit &lt;s&gt;] [--gap &lt;g&gt;] [--node-limit &lt;n&gt;]
+ * </pre>
+ *
+ * With <code>--window</code> the time-lapse is tracked in rolling windows of
+ * <code>w</code> frames (see <code>Tr2dRollingWindowTracker</code>), keeping
+ * memory bounded for arbitrarily long movies. TRA results are then written
+ * window by window, Schnitzcell export is not available in this mode.
+ * With <code>--live</code> the given folder is watched for new segmentation
+ * frames, which are tracked as they arrive (see <code>Tr2dLiveTracker</code>,
+ * <code>w</code> then being the number of re-optimized trailing frames). The
+ * runner keeps watching until the process is terminated.
+ * With <code>--blocks</code> the full time-lapse is solved in overlapping
+ * blocks of <code>b</code> frames, which are solved concurrently and
+ * stitched afterwards (see <code>SolveGurobiTemporalBlocks</code>,
+ * <code>o</code> defaults to a quarter of the block size).
+ * With <code>--components</code> the independent components of the problem
+ * graph are solved concurrently (see <code>SolveGurobiComponents</code>).
+ * <code>--solver</code> overrides the project's solver (see
+ * <code>TrackingSolvers</code>), e.g. <code>java</code> on machines without
+ * a Gurobi license, or <code>dual</code>, which solves frames concurrently
+ * and logs the remaining duality gap.
+ * <code>--time-limit</code>, <code>--gap</code> and <code>--node-limit</code>
+ * set the solve budget (see <code>Tr2dTrackingModel.setSolveBudget</code>):
+ * with Gurobi, the best solution found within the budget is taken, and every
+ * improving incumbent is saved to the project folder while solving; with
+ * <code>dual</code>, they bound the time, the duality gap and the number of
+ * subgradient iterations.
+ *
+ * Progress is written to <code>stdout</code> (see
+ * <code>Tr2dBatchProgress</code>), the process exits with one of the
+ * <code>EXIT_*</code> codes.
+ *
+ * @author jug
+ */
+public class Tr2dBatchRunner {
+
+	public static final int EXIT_OK = 0;
+	public static final int EXIT_USAGE = 1;
+	public static final int EXIT_INVALID_PROJECT = 2;
+	public static final int EXIT_NO_SEGMENTATION = 3;
+	public static final int EXIT_NO_SOLUTION = 4;
+	public static final int EXIT_EXPORT_FAILED = 5;
+	public static final int EXIT_UNEXPECTED = 10;
+
+	private static final String EXPORT_FOLDER = "export";
+	private static final int LIVE_WINDOW_SIZE = 10;
+
+	private final File projectFolderBasePath;
+	private boolean refetch = false;
+	private int numThreads = -1;
+	private File exportFolder = null;
+	private boolean exportTra = true;
+	private boolean exportSchnitzcell = true;
+	private int windowSize = -1;
+	private int commitSize = -1;
+	private File liveFolder = null;
+	private int blockSize = -1;
+	private int blockOverlap = -1;
+	private boolean solveComponents = false;
+	private String solverName = null;
+	private double timeLimit = 0;
+	private double mipGap = 0;
+	private long nodeLimit = 0;
+
+	private final Tr2dBatchProgress progress;
+
+	public Tr2dBatchRunner( final File projectFolderBasePath, final Tr2dBatchProgress progress ) {
+		this.projectFolderBasePath = projectFolderBasePath;
+		this.progress = progress;
+	}
+
+	public static void main( final String[] args ) {
+		System.setProperty( "java.awt.headless", "true" );
+
+		final Tr2dBatchProgress progress = new Tr2dBatchProgress( System.out );
+		int exitCode;
+		try {
+			final Tr2dBatchRunner runner = parseArguments( args, progress );
+			if ( runner == null ) {
+				exitCode = EXIT_USAGE;
+				progress.error( exitCode, "Usage: Tr2dBatchRunner <project folder> [--refetch] [--threads <n>] [--export <folder>] [--no-tra] [--no-schnitzcell] [--window <w> [--commit <c>]] [--live <folder>] [--blocks <b> [--overlap <o>]] [--components] [--solver <name>] [--time-limit <s>] [--gap <g>] [--node-limit <n>]" );
+			} else {
+				exitCode = runner.run();
+			}
+		} catch ( final Exception e ) {
+			e.printStackTrace();
+			exitCode = EXIT_UNEXPECTED;
+			progress.error( exitCode, e.toString() );
+		}
+		progress.done( exitCode );
+		System.exit( exitCode );
+	}
+
+	private static Tr2dBatchRunner parseArguments( final String[] args, final Tr2dBatchProgress progress ) {
+		if ( args.length < 1 ) return null;
+
+		final Tr2dBatchRunner runner = new Tr2dBatchRunner( new File( args[ 0 ] ), progress );
+		for ( int i = 1; i < args.length; i++ ) {
+			switch ( args[ i ] ) {
+			case "--refetch":
+				runner.setRefetch( true );
+				break;
+			case "--threads":
+				if ( ++i >= args.length ) return null;
+				try {
+					runner.setNumThreads( Integer.parseInt( args[ i ] ) );
+				} catch ( final NumberFormatException e ) {
+					return null;
+				}
+				break;
+			case "--export":
+				if ( ++i >= args.length ) return null;
+				runner.setExportFolder( new File( args[ i ] ) );
+				break;
+			case "--no-tra":
+				runner.setExportTra( false );
+				break;
+			case "--no-schnitzcell":
+				runner.setExportSchnitzcell( false );
+				break;
+			case "--window":
+				if ( ++i >= args.length ) return null;
+				try {
+					runner.setWindowSize( Integer.parseInt( args[ i ] ) );
+				} catch ( final NumberFormatException e ) {
+					return null;
+				}
+				break;
+			case "--live":
+				if ( ++i >= args.length ) return null;
+				runner.setLiveFolder( new File( args[ i ] ) );
+				break;
+			case "--blocks":
+				if ( ++i >= args.length ) return null;
+				try {
+					runner.setBlockSize( Integer.parseInt( args[ i ] ) );
+				} catch ( final NumberFormatException e ) {
+					return null;
+				}
+				break;
+			case "--overlap":
+				if ( ++i >= args.length ) return null;
+				try {
+					runner.setBlockOverlap( Integer.parseInt( args[ i ] ) );
+				} catch ( final NumberFormatException e ) {
+					return null;
+				}
+				break;
+			case "--components":
+				runner.setSolveComponents( true );
+				break;
+			case "--solver":
+				if ( ++i >= args.length ) return null;
+				runner.setSolverName( args[ i ] );
+				break;
+			case "--time-limit":
+				if ( ++i >= args.length ) return null;
+				try {
+					runner.setTimeLimit( Double.parseDouble( args[ i ] ) );
+				} catch ( final NumberFormatException e ) {
+					return null;
+				}
+				break;
+			case "--gap":
+				if ( ++i >= args.length ) return null;
+				try {
+					runner.setMipGap( Double.parseDouble( args[ i ] ) );
+				} catch ( final NumberFormatException e ) {
+					return null;
+				}
+				break;
+			case "--node-limit":
+				if ( ++i >= args.length ) return null;
+				try {
+					runner.setNodeLimit( Long.parseLong( args[ i ] ) );
+				} catch ( final NumberFormatException e ) {
+					return null;
+				}
+				break;
+			case "--commit":
+				if ( ++i >= args.length ) return null;
+				try {
+					runner.setCommitSize( Integer.parseInt( args[ i ] ) );
+				} catch ( final NumberFormatException e ) {
+					return null;
+				}
+				break;
+			default:
+				return null;
+			}
+		}
+		if ( runner.windowSize != -1 && runner.windowSize < 2 ) return null;
+		if ( runner.commitSize != -1 && ( runner.windowSize == -1 || runner.commitSize < 1 || runner.commitSize >= runner.windowSize ) ) return null;
+		if ( runner.blockSize != -1 && runner.blockSize < 4 ) return null;
+		if ( runner.solverName != null && !TrackingSolvers.getNames().contains( runner.solverName ) ) return null;
+		if ( runner.timeLimit < 0 || runner.mipGap < 0 || runner.nodeLimit < 0 ) return null;
+		if ( runner.blockOverlap != -1 && ( runner.blockSize == -1 || runner.blockOverlap < 2 || 2 * runner.blockOverlap > runner.blockSize ) ) return null;
+		return runner;
+	}
+
+	/**
+	 * Runs the full pipeline.
+	 *
+	 * @return one of the <code>EXIT_*</code> codes.
+	 */
+	public int run() {
+		progress.phase( "open" );
+		if ( !Tr2dProjectFolder.isValidProjectFolder( projectFolderBasePath ) ) {
+			progress.error( EXIT_INVALID_PROJECT, "Not a valid tr2d project folder: " + projectFolderBasePath );
+			return EXIT_INVALID_PROJECT;
+		}
+
+		final Context context = new Context( OpService.class, DatasetIOService.class, IndagoSegmentationPluginService.class );
+		Tr2dContext.ops = context.getService( OpService.class );
+		Tr2dContext.segPlugins = context.getService( IndagoSegmentationPluginService.class );
+		Tr2dContext.guiFrame = null;
+
+		ForkJoinPool pool = null;
+		Tr2dModel model = null;
+		try {
+			final Tr2dProjectFolder projectFolder = new Tr2dProjectFolder( projectFolderBasePath );
+			projectFolder.initialize();
+
+			final File rawFile = projectFolder.getFile( Tr2dProjectFolder.RAW_DATA ).getFile();
+			final ImgPlus< ? > raw = context.getService( DatasetIOService.class ).open( rawFile.getAbsolutePath() ).getImgPlus();
+
+			model = new Tr2dModel( projectFolder, raw );
+			addSegmentationPlugins( model );
+
+			final Tr2dTrackingModel trackingModel = model.getTrackingModel();
+			trackingModel.addProgressListener( progress );
+			if ( numThreads > 0 ) {
+				pool = new ForkJoinPool( numThreads );
+				trackingModel.setWorkerPool( pool );
+			}
+
+			if ( refetch ) {
+				progress.phase( "fetch" );
+				if ( !trackingModel.fetch() ) {
+					progress.error( EXIT_NO_SEGMENTATION, "Segmentation hypotheses could not be fetched." );
+					return EXIT_NO_SEGMENTATION;
+				}
+			}
+
+			if ( solverName != null ) trackingModel.setSolverName( solverName );
+			// nobody looks at it, and a failed solve must not leave it behind
+			trackingModel.setShowPreview( false );
+			trackingModel.setSolveBudget( timeLimit, mipGap, nodeLimit );
+			if ( liveFolder != null ) { return trackLive( trackingModel ); }
+			if ( windowSize > 0 ) { return trackInWindows( trackingModel ); }
+
+			if ( blockSize > 0 ) {
+				trackingModel.setTemporalBlocks( blockSize, ( blockOverlap > 0 ) ? blockOverlap : Math.max( 2, blockSize / 4 ) );
+			}
+			trackingModel.setSolveComponentsIndependently( solveComponents );
+
+			progress.phase( "track" );
+			trackingModel.run( true, refetch );
+			if ( trackingModel.getTrackingProblem() == null ) {
+				progress.error( EXIT_NO_SEGMENTATION, "No segmentation found, tracking problem could not be built." );
+				return EXIT_NO_SEGMENTATION;
+			}
+			if ( !trackingModel.isLatestSolveSuccessful() || trackingModel.getSolution() == null ) {
+				progress.error( EXIT_NO_SOLUTION, "No tracking solution could be found." );
+				return EXIT_NO_SOLUTION;
+			}
+
+			return export( trackingModel );
+		} catch ( final IOException e ) {
+			Tr2dLog.log.error( "Project folder could not be opened.", e );
+			progress.error( EXIT_INVALID_PROJECT, e.getMessage() );
+			return EXIT_INVALID_PROJECT;
+		} finally {
+			if ( model != null ) model.close();
+			if ( pool != null ) pool.shutdown();
+			context.dispose();
+		}
+	}
+
+	private void addSegmentationPlugins( final Tr2dModel model ) {
+		for ( final String name : Tr2dContext.segPlugins.getPluginNames() ) {
+			final IndagoSegmentationPlugin segPlugin =
+					Tr2dContext.segPlugins.createPlugin(
+							name,
+							model.getSegmentationModel().getProjectFolder(),
+							model.getRawData(),
+							Tr2dLog.segmenterLog );
+			if ( segPlugin.isUsable() ) {
+				model.getSegmentationModel().addPlugin( segPlugin );
+			}
+		}
+	}
+
+	/**
+	 * Tracks in rolling windows, writing TRA results while going (unless
+	 * disabled by <code>--no-tra</code>; Schnitzcell export is not available
+	 * in this mode).
+	 */
+	private int trackInWindows( final Tr2dTrackingModel trackingModel ) {
+		progress.phase( "track" );
+		if ( !trackingModel.processSegmentationInputs( false ) ) {
+			progress.error( EXIT_NO_SEGMENTATION, "No segmentation found, tracking problem could not be built." );
+			return EXIT_NO_SEGMENTATION;
+		}
+		File folder = null;
+		if ( exportTra ) {
+			folder = createExportFolder();
+			if ( folder == null ) return EXIT_EXPORT_FAILED;
+		}
+
+		final int commit = ( commitSize > 0 ) ? commitSize : Math.max( 1, windowSize / 2 );
+		try {
+			if ( !new Tr2dRollingWindowTracker( trackingModel, windowSize, commit ).run( folder ) ) {
+				progress.error( EXIT_NO_SOLUTION, "No tracking solution could be found." );
+				return EXIT_NO_SOLUTION;
+			}
+		} catch ( final IOException e ) {
+			e.printStackTrace();
+			progress.error( EXIT_EXPORT_FAILED, e.getMessage() );
+			return EXIT_EXPORT_FAILED;
+		}
+		return EXIT_OK;
+	}
+
+	/**
+	 * Tracks frames appearing in the live folder until the process is
+	 * terminated.
+	 */
+	private int trackLive( final Tr2dTrackingModel trackingModel ) {
+		progress.phase( "live" );
+		if ( !liveFolder.isDirectory() ) {
+			progress.error( EXIT_USAGE, "Live folder does not exist: " + liveFolder );
+			return EXIT_USAGE;
+		}
+		final File folder = createExportFolder();
+		if ( folder == null ) return EXIT_EXPORT_FAILED;
+
+		final Tr2dLiveTracker liveTracker = new Tr2dLiveTracker( trackingModel, ( windowSize > 0 ) ? windowSize : LIVE_WINDOW_SIZE, folder );
+		liveTracker.setWatchedFolder( liveFolder, ".*\\.tiff?", 1000 );
+		Runtime.getRuntime().addShutdownHook( new Thread( liveTracker::stop ) );
+		liveTracker.start();
+		try {
+			liveTracker.join();
+		} catch ( final InterruptedException e ) {
+			liveTracker.stop();
+		}
+		return EXIT_OK;
+	}
+
+	private File createExportFolder() {
+		final File folder = ( exportFolder != null ) ? exportFolder : new File( projectFolderBasePath, EXPORT_FOLDER );
+		if ( !folder.isDirectory() && !folder.mkdirs() ) {
+			progress.error( EXIT_EXPORT_FAILED, "Export folder cannot be created: " + folder );
+			return null;
+		}
+		return folder;
+	}
+
+	private int export( final Tr2dTrackingModel trackingModel ) {
+		progress.phase( "export" );
+		final File folder = createExportFolder();
+		if ( folder == null ) return EXIT_EXPORT_FAILED;
+
+		try {
+			if ( exportTra ) {
+				progress.resetProgress( "Exporting TRA files...", 1 );
+				TraSolutionExporter.exportTraData( trackingModel, trackingModel.getSolution(), folder );
+				progress.hasCompleted();
+			}
+			if ( exportSchnitzcell ) {
+				progress.resetProgress( "Exporting Schnitzcell files...", 1 );
+				SchnitzcellSolutionExporter.exportSchnitzcellData( trackingModel, trackingModel.getSolution(), folder );
+				progress.hasCompleted();
+			}
+		} catch ( final IOException e ) {
+			e.printStackTrace();
+			progress.error( EXIT_EXPORT_FAILED, e.getMessage() );
+			return EXIT_EXPORT_FAILED;
+		}
+		return EXIT_OK;
+	}
+
+	public void setRefetch( final boolean refetch ) {
+		this.refetch = refetch;
+	}
+
+	/**
+	 * @param numThreads
+	 *            number of worker threads used for building hypotheses and the
+	 *            problem graph (&le; 0 uses the common pool).
+	 */
+	public void setNumThreads( final int numThreads ) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * @param exportFolder
+	 *            the folder to export to (default: <code>export</code> inside
+	 *            the project folder).
+	 */
+	public void setExportFolder( final File exportFolder ) {
+		this.exportFolder = exportFolder;
+	}
+
+	public void setExportTra( final boolean exportTra ) {
+		this.exportTra = exportTra;
+	}
+
+	public void setExportSchnitzcell( final boolean exportSchnitzcell ) {
+		this.exportSchnitzcell = exportSchnitzcell;
+	}
+
+	/**
+	 * @param windowSize
+	 *            number of frames per rolling window (&le; 0 tracks all
+	 *            frames at once).
+	 */
+	public void setWindowSize( final int windowSize ) {
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * @param liveFolder
+	 *            folder to watch for new segmentation frames (<code>null</code>
+	 *            tracks the project's frames as usual).
+	 */
+	public void setLiveFolder( final File liveFolder ) {
+		this.liveFolder = liveFolder;
+	}
+
+	/**
+	 * @param commitSize
+	 *            number of frames finalized per rolling window (&le; 0 uses
+	 *            half the window size).
+	 */
+	public void setCommitSize( final int commitSize ) {
+		this.commitSize = commitSize;
+	}
+
+	/**
+	 * @param blockSize
+	 *            number of frames per temporal block the problem is solved in
+	 *            (&le; 0 solves all frames at once).
+	 */
+	public void setBlockSize( final int blockSize ) {
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * @param blockOverlap
+	 *            number of frames shared by neighboring temporal blocks (&le; 0
+	 *            uses a quarter of the block size).
+	 */
+	public void setBlockOverlap( final int blockOverlap ) {
+		this.blockOverlap = blockOverlap;
+	}
+
+	/**
+	 * @param solveComponents
+	 *            <code>true</code> solves the independent components of the
+	 *            problem graph concurrently.
+	 */
+	public void setSolveComponents( final boolean solveComponents ) {
+		this.solveComponents = solveComponents;
+	}
+
+	/**
+	 * @param solverName
+	 *            name of the solver to be used instead of the project's one
+	 *            (<code>null</code> keeps the project's solver).
+	 */
+	public void setSolverName( final String solverName ) {
+		this.solverName = solverName;
+	}
+
+	/**
+	 * @param timeLimit
+	 *            wall time in seconds a Gurobi solve may take (0 for none).
+	 */
+	public void setTimeLimit( final double timeLimit ) {
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * @param mipGap
+	 *            relative MIP gap at which a Gurobi solve stops (0 for
+	 *            Gurobi's default).
+	 */
+	public void setMipGap( final double mipGap ) {
+		this.mipGap = mipGap;
+	}
+
+	/**
+	 * @param nodeLimit
+	 *            number of branch and bound nodes a Gurobi solve may explore
+	 *            (0 for none).
+	 */
+	public void setNodeLimit( final long nodeLimit ) {
+		this.nodeLimit = nodeLimit;
+	}
+}
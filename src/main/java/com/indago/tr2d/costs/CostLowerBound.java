@@ -0,0 +1,23 @@
+/**
+ *
+ */
+package com.indago.tr2d.costs;
+
+/**
+ * Implemented by cost factories that can cheaply bound their cost from below.
+ * Hypotheses generation uses the bound to skip full cost evaluations of
+ * candidates that cannot be among the best ones anyway.
+ *
+ * @author jug
+ */
+public interface CostLowerBound< T > {
+
+	/**
+	 * @param t
+	 *            the object a cost would be computed for
+	 * @return a value that is guaranteed to be &le; <code>getCost( t )</code>
+	 *         (<code>Double.NEGATIVE_INFINITY</code> if no useful bound
+	 *         exists).
+	 */
+	double getCostLowerBound( T t );
+}
@@ -0,0 +1,28 @@
+/**
+ *
+ */
+package com.indago.tr2d.costs;
+
+/**
+ * Implemented by cost factories of movements whose cost can be bounded from
+ * below by the (flow corrected) distance between source and target segment
+ * alone. Since the bound does not decrease with the distance, candidates can
+ * be visited nearest first and the search can stop as soon as the bound
+ * exceeds the worst cost still of interest.
+ *
+ * @author jug
+ */
+public interface DistanceCostLowerBound {
+
+	/**
+	 * @param squaredDistance
+	 *            squared distance between the flow corrected center of mass of
+	 *            the source and the center of mass of the target segment
+	 * @return a value that is guaranteed to be &le; the cost of any movement
+	 *         over this distance, and that does not decrease with growing
+	 *         <code>squaredDistance</code>
+	 *         (<code>Double.NEGATIVE_INFINITY</code> if no useful bound
+	 *         exists).
+	 */
+	double getCostLowerBound( double squaredDistance );
+}
@@ -17,12 +17,26 @@ import net.imglib2.type.numeric.real.DoubleType;
 public class HernanAppearanceCostFactory implements CostFactory< LabelingSegment > {
 
 	private final RandomAccessibleInterval< DoubleType > imgOrig;
+	private final SegmentFeatureStore features;
 
 	private CostParams params;
 
 	public HernanAppearanceCostFactory(
 			final RandomAccessibleInterval< DoubleType > imgOrig ) {
+		this( imgOrig, new SegmentFeatureStore( imgOrig ) );
+	}
+
+	/**
+	 * @param imgOrig
+	 *            the original image
+	 * @param features
+	 *            the (shared) store segment features are read from
+	 */
+	public HernanAppearanceCostFactory(
+			final RandomAccessibleInterval< DoubleType > imgOrig,
+			final SegmentFeatureStore features ) {
 		this.imgOrig = imgOrig;
+		this.features = features;
 
 		params = new CostParams();
 		params.add( "area", 0.5 );
@@ -47,19 +61,10 @@ public class HernanAppearanceCostFactory implements CostFactory< LabelingSegment
 		final double a_2 = params.get( 1 );
 		final double a_3 = params.get( 2 );
 
-		return  a_1 * segment.getArea() +
-				a_2 * Math.sqrt( getDistToImageBorder( segment ) ) +
-				a_3 * getDistToImageBorder( segment );
-	}
-
-	private double getDistToImageBorder( final LabelingSegment segment ) {
-		final double posX = segment.getCenterOfMass().getDoublePosition( 0 );
-		final double posY = segment.getCenterOfMass().getDoublePosition( 1 );
-		double distBorder = Math.min( posX - imgOrig.min( 0 ), posY - imgOrig.min( 1 ) );
-		distBorder = Math.min(
-				distBorder,
-				Math.min( imgOrig.max( 0 ) - posX, imgOrig.max( 1 ) - posY ) );
-		return distBorder;
+		final SegmentFeatures f = features.get( segment );
+		return  a_1 * f.getArea() +
+				a_2 * Math.sqrt( f.getDistToImageBorder() ) +
+				a_3 * f.getDistToImageBorder();
 	}
 
 	/**
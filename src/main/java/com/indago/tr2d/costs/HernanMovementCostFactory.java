@@ -6,10 +6,8 @@ package com.indago.tr2d.costs;
 import com.indago.costs.CostFactory;
 import com.indago.costs.CostParams;
 import com.indago.data.segmentation.LabelingSegment;
-import com.indago.util.math.VectorUtil;
 
 import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.RealLocalizable;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.util.Pair;
 
@@ -19,15 +17,30 @@ import net.imglib2.util.Pair;
  */
 public class HernanMovementCostFactory
 		implements
-		CostFactory< Pair< Pair< LabelingSegment, LabelingSegment >, Pair< Double, Double > > > {
+		CostFactory< Pair< Pair< LabelingSegment, LabelingSegment >, Pair< Double, Double > > >,
+		DistanceCostLowerBound {
 
 	private final RandomAccessibleInterval< DoubleType > sourceImage;
+	private final SegmentFeatureStore features;
 
 	private CostParams params;
 
 	public HernanMovementCostFactory(
 			final RandomAccessibleInterval< DoubleType > sourceImage ) {
+		this( sourceImage, new SegmentFeatureStore( sourceImage ) );
+	}
+
+	/**
+	 * @param sourceImage
+	 *            the original image
+	 * @param features
+	 *            the (shared) store segment features are read from
+	 */
+	public HernanMovementCostFactory(
+			final RandomAccessibleInterval< DoubleType > sourceImage,
+			final SegmentFeatureStore features ) {
 		this.sourceImage = sourceImage;
+		this.features = features;
 
 		params = new CostParams();
 		params.add( "Δsize(A,B)", 1.0 );
@@ -57,32 +70,43 @@ public class HernanMovementCostFactory
 
 		final Pair< LabelingSegment, LabelingSegment > segments = segmentsAndFlowVector.getA();
 		final Pair< Double, Double > flow = segmentsAndFlowVector.getB();
-		final double deltaSize = deltaSize( segments.getA(), segments.getB() );
-		double deltaPos = deltaPosSquared( segments.getA(), segments.getB(), flow );
+		final SegmentFeatures f1 = features.get( segments.getA() );
+		final SegmentFeatures f2 = features.get( segments.getB() );
+		final double deltaSize = deltaSize( f1, f2 );
+		double deltaPos = deltaPosSquared( f1, f2, flow.getA(), flow.getB() );
 
 		if ( deltaPos > HernanCostConstants.MAX_SQUARED_MOVEMENT_DISTANCE ) { deltaPos*=2; }
 
 		return a_1 * deltaSize + a_2 * deltaPos;
 	}
 
-	private double deltaSize( final LabelingSegment s1, final LabelingSegment s2 ) {
-		return Math.abs( s1.getArea() - s2.getArea() );
+	/**
+	 * The size term is never negative, so (for non-negative weights) the
+	 * position term alone bounds the cost from below.
+	 *
+	 * @see com.indago.tr2d.costs.DistanceCostLowerBound#getCostLowerBound(double)
+	 */
+	@Override
+	public double getCostLowerBound( final double squaredDistance ) {
+		final double a_1 = params.get( 0 );
+		final double a_2 = params.get( 1 );
+		if ( a_1 < 0 || a_2 < 0 ) { return Double.NEGATIVE_INFINITY; }
+
+		double deltaPos = squaredDistance;
+		if ( deltaPos > HernanCostConstants.MAX_SQUARED_MOVEMENT_DISTANCE ) { deltaPos*=2; }
+
+		return a_2 * deltaPos;
 	}
 
-	private double deltaPosSquared( final LabelingSegment s1, final LabelingSegment s2, final Pair< Double, Double > flow ) {
-		final RealLocalizable pos1 = s1.getCenterOfMass();
-		final RealLocalizable pos2 = s2.getCenterOfMass();
-		final double[] vecA = new double[ pos1.numDimensions() ];
-		final double[] vecB = new double[ pos2.numDimensions() ];
-		pos1.localize( vecA );
-		pos2.localize( vecB );
+	private double deltaSize( final SegmentFeatures s1, final SegmentFeatures s2 ) {
+		return Math.abs( s1.getArea() - s2.getArea() );
+	}
 
+	private double deltaPosSquared( final SegmentFeatures s1, final SegmentFeatures s2, final double flowX, final double flowY ) {
 		// add flow vector to 'from segment'
-		vecA[ 0 ] += flow.getA();
-		vecA[ 1 ] += flow.getB();
-
-		final double centroidDistance = VectorUtil.getSquaredDistance( vecA, vecB );
-		return centroidDistance;
+		final double dx = s1.getCenterOfMassX() + flowX - s2.getCenterOfMassX();
+		final double dy = s1.getCenterOfMassY() + flowY - s2.getCenterOfMassY();
+		return dx * dx + dy * dy;
 	}
 
 	/**
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package com.indago.tr2d.costs;
+
+/**
+ * Sufficient statistics (n, Σx, Σy, Σxy, Σx², Σy²) of a simple linear
+ * regression through a set of pixel positions.
+ * Since all sums are exact integers, the statistics of a union of disjoint
+ * pixel sets can be obtained in O(1) by adding up the sums of its parts (see
+ * <code>merge</code>).
+ * Slope and R² are computed as
+ * <code>org.apache.commons.math3.stat.regression.SimpleRegression</code>
+ * would compute them for the same pixels (with x being the independent
+ * variable).
+ *
+ * @author jug
+ */
+public class RegressionSums {
+
+	private long n = 0;
+	private long sumX = 0;
+	private long sumY = 0;
+	private long sumXY = 0;
+	private long sumXX = 0;
+	private long sumYY = 0;
+
+	public RegressionSums() {}
+
+	/**
+	 * Adds one pixel position.
+	 *
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 */
+	public void add( final long x, final long y ) {
+		n++;
+		sumX += x;
+		sumY += y;
+		sumXY += x * y;
+		sumXX += x * x;
+		sumYY += y * y;
+	}
+
+	/**
+	 * @param a
+	 *            statistics of one set of pixels
+	 * @param b
+	 *            statistics of another (disjoint) set of pixels
+	 * @return statistics of the union of both pixel sets
+	 */
+	public static RegressionSums merge( final RegressionSums a, final RegressionSums b ) {
+		final RegressionSums ret = new RegressionSums();
+		ret.n = a.n + b.n;
+		ret.sumX = a.sumX + b.sumX;
+		ret.sumY = a.sumY + b.sumY;
+		ret.sumXY = a.sumXY + b.sumXY;
+		ret.sumXX = a.sumXX + b.sumXX;
+		ret.sumYY = a.sumYY + b.sumYY;
+		return ret;
+	}
+
+	public long getN() {
+		return n;
+	}
+
+	/**
+	 * @return Σ(x-mean(x))²
+	 */
+	private double getCenteredXX() {
+		return sumXX - ( double ) sumX * sumX / n;
+	}
+
+	/**
+	 * @return Σ(y-mean(y))²
+	 */
+	private double getCenteredYY() {
+		return sumYY - ( double ) sumY * sumY / n;
+	}
+
+	/**
+	 * @return Σ(x-mean(x))(y-mean(y))
+	 */
+	private double getCenteredXY() {
+		return sumXY - ( double ) sumX * sumY / n;
+	}
+
+	/**
+	 * @return the slope of the regression line, or <code>Double.NaN</code> if
+	 *         it is not defined (less than two pixels or no variance in x).
+	 */
+	public double getSlope() {
+		if ( n < 2 ) { return Double.NaN; }
+		final double cxx = getCenteredXX();
+		if ( Math.abs( cxx ) < 10 * Double.MIN_VALUE ) { return Double.NaN; }
+		return getCenteredXY() / cxx;
+	}
+
+	/**
+	 * @return the coefficient of determination (R²), or
+	 *         <code>Double.NaN</code> if it is not defined.
+	 */
+	public double getRSquare() {
+		if ( n < 2 ) { return Double.NaN; }
+		final double cxx = getCenteredXX();
+		final double cyy = getCenteredYY();
+		final double cxy = getCenteredXY();
+		final double sse = Math.max( 0d, cyy - cxy * cxy / cxx );
+		return ( cyy - sse ) / cyy;
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ *
+ */
+package com.indago.tr2d.costs;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.indago.data.segmentation.LabelingSegment;
+
+import net.imglib2.Interval;
+
+/**
+ * Caches the <code>SegmentFeatures</code> of all <code>LabelingSegment</code>s
+ * asked for.
+ * One instance is meant to be shared by all cost factories of a project, so
+ * that each segment region is scanned only once, no matter how many cost
+ * functions (and how many cost updates) need its features.
+ * This class is thread safe.
+ *
+ * @author jug
+ */
+public class SegmentFeatureStore {
+
+	private final Interval image;
+
+	private final ConcurrentHashMap< LabelingSegment, SegmentFeatures > features = new ConcurrentHashMap<>();
+
+	/**
+	 * @param image
+	 *            the image all segments live in
+	 */
+	public SegmentFeatureStore( final Interval image ) {
+		this.image = image;
+	}
+
+	/**
+	 * @param segment
+	 *            the segment features are requested for
+	 * @return the (cached or freshly computed) features of the given segment
+	 */
+	public SegmentFeatures get( final LabelingSegment segment ) {
+		SegmentFeatures ret = features.get( segment );
+		if ( ret == null ) {
+			// computed outside of the map, so concurrent requests for other segments do not block
+			final SegmentFeatures computed = new SegmentFeatures( segment, image );
+			ret = features.putIfAbsent( segment, computed );
+			if ( ret == null ) {
+				ret = computed;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Drops all cached features. Needs to be called whenever segment
+	 * hypotheses are re-fetched.
+	 */
+	public void clear() {
+		features.clear();
+	}
+
+	public int size() {
+		return features.size();
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ *
+ */
+package com.indago.tr2d.costs;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.indago.data.segmentation.LabelingSegment;
+import com.indago.geometry.GrahamScan;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+
+/**
+ * Immutable set of features of one <code>LabelingSegment</code> that are
+ * needed by the Hernan cost factories.
+ * All pixel based features are computed in a single pass over the segment
+ * region.
+ *
+ * @author jug
+ */
+public class SegmentFeatures {
+
+	private final double area;
+	private final double comX;
+	private final double comY;
+	private final double distToImageBorder;
+	private final double convexHullArea;
+	private final RegressionSums regressionSums;
+
+	/**
+	 * @param segment
+	 *            the segment to compute the features of
+	 * @param image
+	 *            the image the segment lives in (used for the distance to
+	 *            the image border)
+	 */
+	public SegmentFeatures( final LabelingSegment segment, final Interval image ) {
+		area = segment.getArea();
+		comX = segment.getCenterOfMass().getDoublePosition( 0 );
+		comY = segment.getCenterOfMass().getDoublePosition( 1 );
+
+		double distBorder = Math.min( comX - image.min( 0 ), comY - image.min( 1 ) );
+		distBorder = Math.min(
+				distBorder,
+				Math.min( image.max( 0 ) - comX, image.max( 1 ) - comY ) );
+		distToImageBorder = distBorder;
+
+		// the one pass over all pixels
+		regressionSums = new RegressionSums();
+		final Map< Integer, int[] > minmaxPerLine = new HashMap<>();
+		final Cursor< ? > cSegment = segment.getRegion().cursor();
+		while ( cSegment.hasNext() ) {
+			cSegment.fwd();
+
+			final int xCoordinate = cSegment.getIntPosition( 0 );
+			final int yCoordinate = cSegment.getIntPosition( 1 );
+
+			regressionSums.add( xCoordinate, yCoordinate );
+
+			final int[] minmax = minmaxPerLine.get( yCoordinate );
+			if ( minmax == null ) {
+				minmaxPerLine.put( yCoordinate, new int[] { xCoordinate, xCoordinate } );
+			} else {
+				minmax[ 0 ] = Math.min( minmax[ 0 ], xCoordinate );
+				minmax[ 1 ] = Math.max( minmax[ 1 ], xCoordinate );
+			}
+		}
+
+		convexHullArea = computeConvexHullArea( minmaxPerLine );
+	}
+
+	/**
+	 * @return the area of the convex hull through the outermost pixels of each
+	 *         line, or <code>Double.NaN</code> if no hull exists.
+	 */
+	private static double computeConvexHullArea( final Map< Integer, int[] > minmaxPerLine ) {
+		final List< Point > points = new ArrayList<>();
+		for ( final Map.Entry< Integer, int[] > entry : minmaxPerLine.entrySet() ) {
+			points.add( new Point( entry.getValue()[ 0 ], entry.getKey() ) );
+			points.add( new Point( entry.getValue()[ 1 ], entry.getKey() ) );
+		}
+		try {
+			final List< Point > convexHull = GrahamScan.getConvexHull( points );
+			return GrahamScan.getHullArea( convexHull );
+		} catch ( final IllegalArgumentException iae ) {
+			return Double.NaN;
+		}
+	}
+
+	public double getArea() {
+		return area;
+	}
+
+	public double getCenterOfMassX() {
+		return comX;
+	}
+
+	public double getCenterOfMassY() {
+		return comY;
+	}
+
+	public double getDistToImageBorder() {
+		return distToImageBorder;
+	}
+
+	/**
+	 * @return the area of the convex hull of this segment, or
+	 *         <code>Double.NaN</code> if no hull could be computed.
+	 */
+	public double getConvexHullArea() {
+		return convexHullArea;
+	}
+
+	/**
+	 * @return the area difference of the convex hull and the segment itself
+	 *         (in pixels, 0 if negative or if no hull exists).
+	 */
+	public double getNonConvexityPenalty() {
+		if ( Double.isNaN( convexHullArea ) ) { return 0; }
+		return Math.max( 0, convexHullArea - area );
+	}
+
+	public RegressionSums getRegressionSums() {
+		return regressionSums;
+	}
+
+	/**
+	 * @param other
+	 *            features of another segment
+	 * @return the squared distance between the centers of mass of both
+	 *         segments
+	 */
+	public double getSquaredDistanceTo( final SegmentFeatures other ) {
+		final double dx = comX - other.comX;
+		final double dy = comY - other.comY;
+		return dx * dx + dy * dy;
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ *
+ */
+package com.indago.tr2d.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.indago.data.segmentation.LabelingPlus;
+import com.indago.data.segmentation.XmlIoLabelingPlus;
+
+/**
+ * Stores the labelings of all frames in one binary file.
+ * The file starts with an index header (magic, version, number of frames, and
+ * offset and length of each frame), so that a single frame can be memory
+ * mapped and restored on demand without touching any other frame.
+ * Each frame entry holds the deflated files <code>XmlIoLabelingPlus</code>
+ * writes for this frame (labeling structure and fragment index image), since
+ * that is the only way indago offers to restore a <code>LabelingPlus</code>:
+ *
+ * <pre>
+ * int MAGIC, int VERSION, int F, long[F] offsets, int[F] lengths
+ * per frame: int numFiles, per file: int nameLength, byte[] name (UTF-8), int rawLength, int deflatedLength, byte[] deflated
+ * </pre>
+ *
+ * @author jug
+ */
+public class LabelingFrameStore {
+
+	public static final String FILENAME = "labeling_frames.bin";
+
+	private static final int MAGIC = 0x54324c46; // "T2LF"
+	private static final int VERSION = 1;
+
+	private final File file;
+	private final long[] offsets;
+	private final int[] lengths;
+
+	/**
+	 * Opens an existing store by reading its index header only.
+	 *
+	 * @param file
+	 *            the binary labeling frame store
+	 * @throws IOException
+	 *             if the file cannot be read or is no valid store.
+	 */
+	public LabelingFrameStore( final File file ) throws IOException {
+		this.file = file;
+		try ( final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+			final ByteBuffer head = ByteBuffer.allocate( 12 );
+			readFully( channel, head, 0 );
+			if ( head.getInt() != MAGIC ) { throw new IOException( "Not a labeling frame store: " + file ); }
+			final int version = head.getInt();
+			if ( version != VERSION ) { throw new IOException( "Unsupported labeling frame store version " + version ); }
+			final int numFrames = head.getInt();
+
+			final ByteBuffer index = ByteBuffer.allocate( 12 * numFrames );
+			readFully( channel, index, 12 );
+			offsets = new long[ numFrames ];
+			lengths = new int[ numFrames ];
+			index.asLongBuffer().get( offsets );
+			index.position( 8 * numFrames );
+			index.asIntBuffer().get( lengths );
+		}
+	}
+
+	private static void readFully( final FileChannel channel, final ByteBuffer buffer, long position ) throws IOException {
+		while ( buffer.hasRemaining() ) {
+			final int n = channel.read( buffer, position );
+			if ( n < 0 ) { throw new IOException( "Unexpected end of labeling frame store." ); }
+			position += n;
+		}
+		buffer.flip();
+	}
+
+	public int getNumFrames() {
+		return offsets.length;
+	}
+
+	/**
+	 * Maps the requested frame and restores its <code>LabelingPlus</code>.
+	 *
+	 * @param frameId
+	 *            the frame to load
+	 * @return the labeling of the given frame
+	 * @throws IOException
+	 */
+	public LabelingPlus load( final int frameId ) throws IOException {
+		final MappedByteBuffer buffer;
+		try ( final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+			buffer = channel.map( FileChannel.MapMode.READ_ONLY, offsets[ frameId ], lengths[ frameId ] );
+		}
+
+		final File tmpFolder = Files.createTempDirectory( "tr2d_labeling" ).toFile();
+		try {
+			File xml = null;
+			final int numFiles = buffer.getInt();
+			for ( int i = 0; i < numFiles; i++ ) {
+				final byte[] name = new byte[ buffer.getInt() ];
+				buffer.get( name );
+				final byte[] raw = new byte[ buffer.getInt() ];
+				final byte[] deflated = new byte[ buffer.getInt() ];
+				buffer.get( deflated );
+
+				final Inflater inflater = new Inflater();
+				inflater.setInput( deflated );
+				int inflated = 0;
+				while ( inflated < raw.length ) {
+					final int n = inflater.inflate( raw, inflated, raw.length - inflated );
+					if ( n == 0 && ( inflater.finished() || inflater.needsInput() ) ) { throw new DataFormatException( "truncated" ); }
+					inflated += n;
+				}
+				inflater.end();
+
+				final File f = new File( tmpFolder, new String( name, StandardCharsets.UTF_8 ) );
+				Files.write( f.toPath(), raw );
+				if ( f.getName().toLowerCase().endsWith( ".xml" ) ) xml = f;
+			}
+			if ( xml == null ) { throw new IOException( String.format( "Frame %d in labeling frame store has no labeling.", frameId ) ); }
+			return new XmlIoLabelingPlus().load( xml );
+		} catch ( final BufferUnderflowException | DataFormatException e ) {
+			throw new IOException( String.format( "Frame %d in labeling frame store is corrupted.", frameId ), e );
+		} finally {
+			for ( final File f : tmpFolder.listFiles() ) {
+				f.delete();
+			}
+			tmpFolder.delete();
+		}
+	}
+
+	/**
+	 * Writes the given labelings into a new store.
+	 *
+	 * @param labelings
+	 *            the labelings of all frames (in frame order)
+	 * @param file
+	 *            the file to write to
+	 * @param frameWritten
+	 *            called after each frame (can be <code>null</code>)
+	 * @throws IOException
+	 */
+	public static void save(
+			final List< ? extends LabelingPlus > labelings,
+			final File file,
+			final Runnable frameWritten ) throws IOException {
+		final int numFrames = labelings.size();
+		final long headerSize = 12 + 12L * numFrames;
+		final long[] offsets = new long[ numFrames ];
+		final int[] lengths = new int[ numFrames ];
+
+		try ( final FileChannel channel = FileChannel.open(
+				file.toPath(),
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE ) ) {
+			long position = headerSize;
+			for ( int frameId = 0; frameId < numFrames; frameId++ ) {
+				final ByteBuffer entry = ByteBuffer.wrap( encodeFrame( labelings.get( frameId ), frameId ) );
+				offsets[ frameId ] = position;
+				lengths[ frameId ] = entry.remaining();
+				while ( entry.hasRemaining() ) {
+					position += channel.write( entry, position );
+				}
+				if ( frameWritten != null ) frameWritten.run();
+			}
+
+			final ByteBuffer header = ByteBuffer.allocate( ( int ) headerSize );
+			header.putInt( MAGIC );
+			header.putInt( VERSION );
+			header.putInt( numFrames );
+			header.asLongBuffer().put( offsets );
+			header.position( 12 + 8 * numFrames );
+			header.asIntBuffer().put( lengths );
+			header.position( 0 );
+			long headerPosition = 0;
+			while ( header.hasRemaining() ) {
+				headerPosition += channel.write( header, headerPosition );
+			}
+		}
+	}
+
+	private static byte[] encodeFrame( final LabelingPlus labeling, final int frameId ) throws IOException {
+		final File tmpFolder = Files.createTempDirectory( "tr2d_labeling" ).toFile();
+		try {
+			final String fn = String.format( "labeling_frame%04d.xml", frameId );
+			new XmlIoLabelingPlus().save( labeling, new File( tmpFolder, fn ).getAbsolutePath() );
+
+			final File[] files = tmpFolder.listFiles();
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final ByteBuffer intBuffer = ByteBuffer.allocate( 4 );
+			writeInt( out, intBuffer, files.length );
+			for ( final File f : files ) {
+				final byte[] name = f.getName().getBytes( StandardCharsets.UTF_8 );
+				final byte[] raw = Files.readAllBytes( f.toPath() );
+				final byte[] deflated = deflate( raw );
+				writeInt( out, intBuffer, name.length );
+				out.write( name );
+				writeInt( out, intBuffer, raw.length );
+				writeInt( out, intBuffer, deflated.length );
+				out.write( deflated );
+			}
+			return out.toByteArray();
+		} finally {
+			for ( final File f : tmpFolder.listFiles() ) {
+				f.delete();
+			}
+			tmpFolder.delete();
+		}
+	}
+
+	private static void writeInt( final ByteArrayOutputStream out, final ByteBuffer intBuffer, final int value ) {
+		intBuffer.clear();
+		intBuffer.putInt( value );
+		out.write( intBuffer.array(), 0, 4 );
+	}
+
+	private static byte[] deflate( final byte[] raw ) {
+		final Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+		deflater.setInput( raw );
+		deflater.finish();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream( raw.length / 4 + 64 );
+		final byte[] chunk = new byte[ 64 * 1024 ];
+		while ( !deflater.finished() ) {
+			out.write( chunk, 0, deflater.deflate( chunk ) );
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+}
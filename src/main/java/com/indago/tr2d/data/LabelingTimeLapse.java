@@ -6,9 +6,12 @@ package com.indago.tr2d.data;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import com.indago.data.segmentation.ConflictGraph;
 import com.indago.data.segmentation.LabelingBuilder;
@@ -29,7 +32,6 @@ import net.imglib2.Dimensions;
 import net.imglib2.FinalDimensions;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.numeric.integer.IntType;
-import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
 import weka.gui.ExtensionFileFilter;
 
@@ -51,6 +53,12 @@ public class LabelingTimeLapse {
 
 	private boolean processedOrLoaded;
 
+	/**
+	 * If set, frames that are <code>null</code> in
+	 * <code>frameLabelingBuilders</code> are loaded from here on demand.
+	 */
+	private LabelingFrameStore frameStore = null;
+
 	/**
 	 *
 	 * @param model
@@ -72,6 +80,23 @@ public class LabelingTimeLapse {
 	 *         <code>false</code> otherwise
 	 */
 	public boolean processFrames( final List< ProgressListener > progressListeners ) {
+		return processFrames( progressListeners, ForkJoinPool.commonPool() );
+	}
+
+	/**
+	 * Builds the segment hypotheses labelings of all frames.
+	 * Frames are independent, each one is processed (component trees of all
+	 * sum images into a LabelingBuilder of its own) by a task on the given
+	 * pool. The resulting labelings are collected in frame order.
+	 *
+	 * @param progressListeners
+	 *            Progress listener
+	 * @param pool
+	 *            the pool the frames are processed on
+	 * @return <code>true</code>, if any sum images for processing where found,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean processFrames( final List< ProgressListener > progressListeners, final ForkJoinPool pool ) {
 		try {
 			final List< RandomAccessibleInterval< IntType > >
 					segmentHypothesesImages = getSegmentHypothesesImages();
@@ -83,38 +108,26 @@ public class LabelingTimeLapse {
 				progressListener.resetProgress( "Computing segment hypotheses labelings...", ( int ) firstSumImg.dimension( 2 ) );
 			}
 
-			frameLabelingBuilders = new ArrayList<>();
-
+			final List< ForkJoinTask< LabelingBuilder > > tasks = new ArrayList<>();
 			for ( int frameId = 0; frameId < firstSumImg.dimension( 2 ); frameId++ ) {
+				final int frame = frameId;
+				tasks.add( pool.submit( () -> {
+					final LabelingBuilder labelingBuilder = processFrame( segmentHypothesesImages, frame );
+					synchronized ( progressListeners ) {
+						for ( final ProgressListener progressListener : progressListeners ) {
+							progressListener.hasProgressed();
+						}
+					}
+					return labelingBuilder;
+				} ) );
+			}
 
-				final Dimensions d = new FinalDimensions( firstSumImg.dimension( 0 ), firstSumImg.dimension( 1 ) );
-				final LabelingBuilder labelingBuilder = new LabelingBuilder( d );
-				frameLabelingBuilders.add( labelingBuilder );
-
-				for ( final RandomAccessibleInterval< IntType > sumimg : segmentHypothesesImages) {
-					// hyperslize desired frame
-					IntervalView< IntType > frame = null;
-					final long[] offset = new long[ sumimg.numDimensions() ];
-					offset[ offset.length - 1 ] = frameId;
-					frame = Views.offset(
-							Views.hyperSlice( sumimg, 2, frameId ),
-							offset );
-					// build component tree on frame
-					final FilteredComponentTree< IntType > tree =
-							FilteredComponentTree.buildComponentTree(
-									frame,
-									new IntType(),
-									minHypothesisSize,
-									maxHypothesisSize,
-									maxGrowthPerStep,
-									darkToBright );
-					labelingBuilder.buildLabelingForest( tree );
-
-				}
-				for ( final ProgressListener progressListener : progressListeners ) {
-					progressListener.hasProgressed();
-				}
+			frameLabelingBuilders = new ArrayList<>();
+			frameStore = null;
+			for ( final ForkJoinTask< LabelingBuilder > task : tasks ) {
+				frameLabelingBuilders.add( task.join() );
 			}
+			mapToConflictGraphs.clear();
 
 			for ( final ProgressListener progressListener : progressListeners ) {
 				progressListener.hasCompleted();
@@ -128,6 +141,66 @@ public class LabelingTimeLapse {
 		return processedOrLoaded;
 	}
 
+	/**
+	 * Builds the labeling of a single frame from the component trees of all
+	 * given sum images.
+	 */
+	private LabelingBuilder processFrame(
+			final List< RandomAccessibleInterval< IntType > > segmentHypothesesImages,
+			final int frameId ) {
+		final List< RandomAccessibleInterval< IntType > > frames = new ArrayList<>();
+		for ( final RandomAccessibleInterval< IntType > sumimg : segmentHypothesesImages ) {
+			// hyperslize desired frame
+			final long[] offset = new long[ sumimg.numDimensions() ];
+			offset[ offset.length - 1 ] = frameId;
+			frames.add( Views.offset(
+					Views.hyperSlice( sumimg, 2, frameId ),
+					offset ) );
+		}
+		return buildLabeling( frames );
+	}
+
+	/**
+	 * Builds a labeling from the component trees of the given 2D sum image
+	 * frames (all of the same size).
+	 */
+	private LabelingBuilder buildLabeling( final List< RandomAccessibleInterval< IntType > > frames ) {
+		final RandomAccessibleInterval< IntType > firstFrame = frames.get( 0 );
+		final Dimensions d = new FinalDimensions( firstFrame.dimension( 0 ), firstFrame.dimension( 1 ) );
+		final LabelingBuilder labelingBuilder = new LabelingBuilder( d );
+
+		for ( final RandomAccessibleInterval< IntType > frame : frames ) {
+			// build component tree on frame
+			final FilteredComponentTree< IntType > tree =
+					FilteredComponentTree.buildComponentTree(
+							frame,
+							new IntType(),
+							minHypothesisSize,
+							maxHypothesisSize,
+							maxGrowthPerStep,
+							darkToBright );
+			labelingBuilder.buildLabelingForest( tree );
+		}
+		return labelingBuilder;
+	}
+
+	/**
+	 * Builds the segment hypotheses of one more frame and appends it to this
+	 * time-lapse, e.g. while frames are still being acquired.
+	 *
+	 * @param frames
+	 *            the 2D sum image(s) of the new frame
+	 * @return the id of the appended frame.
+	 */
+	public int appendFrame( final List< RandomAccessibleInterval< IntType > > frames ) {
+		final LabelingBuilder labelingBuilder = buildLabeling( frames );
+		synchronized ( this ) {
+			frameLabelingBuilders.add( labelingBuilder );
+			processedOrLoaded = true;
+			return frameLabelingBuilders.size() - 1;
+		}
+	}
+
 	public List< RandomAccessibleInterval< IntType > > getSegmentHypothesesImages()
 			throws IllegalAccessException {
 		return model.getSumImages();
@@ -138,7 +211,7 @@ public class LabelingTimeLapse {
 	}
 
 	public List< LabelingSegment > getLabelingSegmentsForFrame( final int frameId ) {
-		return frameLabelingBuilders.get( frameId ).getSegments();
+		return getFrame( frameId ).getSegments();
 	}
 
 	/**
@@ -151,21 +224,111 @@ public class LabelingTimeLapse {
 	 */
 	public LabelingPlus getLabelingPlusForFrame( final int frameId ) {
 		if ( frameId < frameLabelingBuilders.size() )
-			return frameLabelingBuilders.get( frameId );
+			return getFrame( frameId );
 		else
 			return null;
 	}
 
 	public ConflictGraph< LabelingSegment > getConflictGraph( final int frameId ) {
-		final LabelingBuilder key = frameLabelingBuilders.get( frameId );
+		final LabelingBuilder key = getFrame( frameId );
 		if ( !mapToConflictGraphs.containsKey( key ) ) {
-			mapToConflictGraphs.put( key, new MinimalOverlapConflictGraph( frameLabelingBuilders.get( frameId ) ) );
+			mapToConflictGraphs.put( key, new MinimalOverlapConflictGraph( key ) );
 		}
 		return mapToConflictGraphs.get( key );
 	}
 
+	/**
+	 * Returns the labeling of the given frame, loading it from the binary
+	 * labeling frame store if it was not requested before.
+	 */
+	private synchronized LabelingBuilder getFrame( final int frameId ) {
+		LabelingBuilder labelingBuilder = frameLabelingBuilders.get( frameId );
+		if ( labelingBuilder == null && frameStore != null ) {
+			try {
+				labelingBuilder = new LabelingBuilder( frameStore.load( frameId ) );
+				frameLabelingBuilders.set( frameId, labelingBuilder );
+			} catch ( final IOException e ) {
+				Tr2dLog.log.error( String.format( "Labeling of frame %d could not be loaded!", frameId ) );
+				e.printStackTrace();
+			}
+		}
+		return labelingBuilder;
+	}
+
+	/**
+	 * Drops the labeling (and conflict graph) of the given frame from memory.
+	 * The frame is reloaded from the binary labeling frame store on its next
+	 * access, its <code>LabelingSegment</code>s will then be new instances.
+	 *
+	 * @param frameId
+	 *            integer pointing out the frame id
+	 * @return <code>true</code> if the frame can be reloaded later on (and was
+	 *         evicted), <code>false</code> if no labeling frame store exists
+	 *         (the frame is kept in memory in this case).
+	 */
+	public synchronized boolean evictFrame( final int frameId ) {
+		if ( frameStore == null || frameId >= frameStore.getNumFrames() ) return false;
+		final LabelingBuilder labelingBuilder = frameLabelingBuilders.get( frameId );
+		if ( labelingBuilder != null ) {
+			mapToConflictGraphs.remove( labelingBuilder );
+			frameLabelingBuilders.set( frameId, null );
+		}
+		return true;
+	}
+
+	/**
+	 * Drops the labeling (and conflict graph) of the given frame from memory,
+	 * like <code>evictFrame</code>, but also if it cannot be reloaded (e.g.
+	 * frames added via <code>appendFrame</code>). Such frames must not be
+	 * accessed anymore afterwards.
+	 *
+	 * @param frameId
+	 *            integer pointing out the frame id
+	 */
+	public synchronized void discardFrame( final int frameId ) {
+		final LabelingBuilder labelingBuilder = frameLabelingBuilders.get( frameId );
+		if ( labelingBuilder != null ) {
+			mapToConflictGraphs.remove( labelingBuilder );
+			frameLabelingBuilders.set( frameId, null );
+		}
+	}
+
+	/**
+	 * Loads the labeling frames stored in the given folder. If a binary
+	 * labeling frame store exists, only its index is read and frames are
+	 * loaded on first access. Otherwise all XML labeling frames in the folder
+	 * are imported.
+	 *
+	 * @param folder
+	 *            ProjectFolder instance
+	 */
 	public void loadFromProjectFolder( final ProjectFolder folder ) {
+		final File fStore = new File( folder.getFolder(), LabelingFrameStore.FILENAME );
+		if ( fStore.canRead() ) {
+			try {
+				frameStore = new LabelingFrameStore( fStore );
+				frameLabelingBuilders = new ArrayList<>( Collections.nCopies( frameStore.getNumFrames(), ( LabelingBuilder ) null ) );
+				mapToConflictGraphs.clear();
+				processedOrLoaded = true;
+				return;
+			} catch ( final IOException e ) {
+				Tr2dLog.log.error( String.format( "Labeling frame store could not be opened! (%s)", fStore.toString() ) );
+				frameStore = null;
+			}
+		}
+		importXml( folder );
+	}
+
+	/**
+	 * Imports all XML labeling frames (one <code>XmlIoLabelingPlus</code> file
+	 * per frame) found in the given folder.
+	 *
+	 * @param folder
+	 *            ProjectFolder instance
+	 */
+	public void importXml( final ProjectFolder folder ) {
 		frameLabelingBuilders.clear();
+		frameStore = null;
 		processedOrLoaded = false;
 		for ( final ProjectFile labelingFrameFile : folder.getFiles( new ExtensionFileFilter( "xml", "XML files" ) ) ) {
 			final File fLabeling = labelingFrameFile.getFile();
@@ -187,6 +350,9 @@ public class LabelingTimeLapse {
 	}
 
 	/**
+	 * Saves all labeling frames into a binary labeling frame store in the
+	 * given folder.
+	 *
 	 * @param folder
 	 *            ProjectFolder instance
 	 * @param progressListeners
@@ -198,9 +364,45 @@ public class LabelingTimeLapse {
 			progressListener.resetProgress( "Saving segment hypotheses labelings...", frameLabelingBuilders.size() );
 		}
 
+		// frames not yet loaded might come from the very file we overwrite
+		for ( int i = 0; i < frameLabelingBuilders.size(); i++ ) {
+			getFrame( i );
+		}
+		frameStore = null;
+
+		final File fStore = new File( folder.getFolder(), LabelingFrameStore.FILENAME );
+		try {
+			LabelingFrameStore.save( frameLabelingBuilders, fStore, () -> {
+				for ( final ProgressListener progressListener : progressListeners ) {
+					progressListener.hasProgressed();
+				}
+			} );
+			// from now on evicted frames can be reloaded from the store
+			frameStore = new LabelingFrameStore( fStore );
+		} catch ( final IOException e ) {
+			Tr2dLog.log.error( "Could not store labeling frames to project folder!" );
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Exports all labeling frames as one XML file per frame (as read by
+	 * <code>importXml</code>).
+	 *
+	 * @param folder
+	 *            ProjectFolder instance
+	 * @param progressListeners
+	 *            please do not hand <code>null</code>. Empty lists are fine
+	 *            though.
+	 */
+	public void exportXml( final ProjectFolder folder, final List< ProgressListener > progressListeners ) {
+		for ( final ProgressListener progressListener : progressListeners ) {
+			progressListener.resetProgress( "Exporting segment hypotheses labelings...", frameLabelingBuilders.size() );
+		}
+
 		final String fnPrefix = "labeling_frame";
-		int i = 0;
-		for ( final LabelingBuilder lb : frameLabelingBuilders ) {
+		for ( int i = 0; i < frameLabelingBuilders.size(); i++ ) {
+			final LabelingBuilder lb = getFrame( i );
 			final String fn = String.format( "%s%04d.xml", fnPrefix, i );
 			final String abspath = new File( folder.getFolder(), fn ).getAbsolutePath();
 			try {
@@ -210,7 +412,6 @@ public class LabelingTimeLapse {
 //				e.printStackTrace();
 			}
 
-			i++;
 			for ( final ProgressListener progressListener : progressListeners ) {
 				progressListener.hasProgressed();
 			}
@@ -0,0 +1,127 @@
+package com.indago.tr2d.ilp;
+
+import org.scijava.log.Logger;
+
+import com.indago.fg.Assignment;
+import com.indago.ilp.DefaultLoggingGurobiCallback;
+import com.indago.pg.IndicatorNode;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.IndicatorNodeIndex;
+
+import gurobi.GRB;
+import gurobi.GRBException;
+import gurobi.GRBVar;
+
+/**
+ * Logging Gurobi callback that hands every improving incumbent found during
+ * optimization to an <code>IncumbentListener</code>, and that lets another
+ * thread stop the optimization at the current incumbent.
+ * <p>
+ * Incumbents found in quick succession are not all published: the latest one
+ * is held back until <code>minPublishInterval</code> milliseconds have passed
+ * since the previous publication, so that drawing and saving solutions does
+ * not slow down the solver. The final solution is returned by the solver as
+ * usual and is not published here.
+ *
+ * @author jug
+ */
+public class IncumbentCallback extends DefaultLoggingGurobiCallback {
+
+	/**
+	 * Gets notified (on the solving thread, which is blocked meanwhile) about
+	 * improving incumbents. Each incumbent is a new assignment owned by the
+	 * listener.
+	 */
+	public interface IncumbentListener {
+
+		void incumbentFound( Assignment< IndicatorNode > incumbent, double energy );
+	}
+
+	private final IndicatorNode[] nodes;
+	private final GRBVar[] vars;
+	private final IndicatorNodeIndex index;
+	private final IncumbentListener listener;
+	private final long minPublishInterval;
+
+	private double bestEnergy = Double.POSITIVE_INFINITY;
+	private Assignment< IndicatorNode > pending = null;
+	private long lastPublished = 0;
+	private volatile boolean stopRequested = false;
+
+	/**
+	 * @param log
+	 *            the logger Gurobi output is written to.
+	 * @param nodes
+	 *            the problem graph nodes, in the order of <code>vars</code>.
+	 * @param vars
+	 *            the Gurobi variables of the given nodes.
+	 * @param index
+	 *            the node index incumbents are created for.
+	 * @param listener
+	 *            gets all published incumbents.
+	 * @param minPublishInterval
+	 *            minimum time (in milliseconds) between two publications.
+	 */
+	public IncumbentCallback(
+			final Logger log,
+			final IndicatorNode[] nodes,
+			final GRBVar[] vars,
+			final IndicatorNodeIndex index,
+			final IncumbentListener listener,
+			final long minPublishInterval ) {
+		super( log );
+		this.nodes = nodes;
+		this.vars = vars;
+		this.index = index;
+		this.listener = listener;
+		this.minPublishInterval = minPublishInterval;
+	}
+
+	/**
+	 * Lets the running optimization stop at its current incumbent (at the
+	 * next callback). Can be called from any thread.
+	 */
+	public void requestStop() {
+		stopRequested = true;
+	}
+
+	/**
+	 * @return <code>true</code> if <code>requestStop</code> was called.
+	 */
+	public boolean isStopRequested() {
+		return stopRequested;
+	}
+
+	/**
+	 * @see com.indago.ilp.DefaultLoggingGurobiCallback#callback()
+	 */
+	@Override
+	protected void callback() {
+		super.callback();
+		try {
+			if ( where == GRB.CB_MIPSOL ) {
+				final double energy = getDoubleInfo( GRB.CB_MIPSOL_OBJ );
+				if ( energy < bestEnergy ) {
+					bestEnergy = energy;
+					final double[] values = getSolution( vars );
+					final BitSetAssignment incumbent = new BitSetAssignment( index );
+					for ( int i = 0; i < nodes.length; i++ ) {
+						incumbent.set( nodes[ i ], values[ i ] > 0.5 );
+					}
+					pending = incumbent;
+				}
+			}
+			if ( pending != null && System.currentTimeMillis() - lastPublished >= minPublishInterval ) {
+				final Assignment< IndicatorNode > incumbent = pending;
+				pending = null;
+				listener.incumbentFound( incumbent, bestEnergy );
+				lastPublished = System.currentTimeMillis();
+			}
+			if ( stopRequested ) {
+				abort();
+			}
+		} catch ( final GRBException e ) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package com.indago.tr2d.ilp;
+
+import java.util.Arrays;
+
+/**
+ * Minimum cost flow of arbitrary amount from a source to a sink on a graph
+ * whose arcs all have capacity 1 and (possibly negative) costs. Nodes are
+ * numbered <code>0 .. numNodes-1</code>, node <code>0</code> being the source
+ * and node <code>numNodes-1</code> being the sink.
+ * <p>
+ * Every arc must lead from a lower to a higher node id, i.e. the node ids
+ * are a topological order of the (acyclic) graph. Initial node potentials
+ * are then shortest path distances along this order, after which flow is
+ * augmented along successive shortest paths (Dijkstra on reduced costs) as
+ * long as they are of negative cost.
+ *
+ * @author jug
+ */
+public class MinCostFlow {
+
+	private static final double INF = Double.POSITIVE_INFINITY;
+	private static final double EPSILON = 1e-9;
+
+	private final int numNodes;
+
+	// half-arcs: 2e is arc e, 2e+1 its residual reverse
+	private int numArcs = 0;
+	private int[] head = new int[ 16 ];
+	private int[] next = new int[ 16 ];
+	private double[] cost = new double[ 16 ];
+	private int[] capacity = new int[ 16 ];
+	private final int[] first;
+
+	private final double[] potential;
+	private final double[] dist;
+	private final int[] parentArc;
+
+	private int[] heapNodes = new int[ 16 ];
+	private double[] heapKeys = new double[ 16 ];
+	private int heapSize;
+
+	/**
+	 * @param numNodes
+	 *            number of nodes including source (<code>0</code>) and sink
+	 *            (<code>numNodes-1</code>)
+	 */
+	public MinCostFlow( final int numNodes ) {
+		this.numNodes = numNodes;
+		first = new int[ numNodes ];
+		Arrays.fill( first, -1 );
+		potential = new double[ numNodes ];
+		dist = new double[ numNodes ];
+		parentArc = new int[ numNodes ];
+	}
+
+	/**
+	 * Adds an arc of capacity 1.
+	 *
+	 * @return the id of the new arc.
+	 */
+	public int addArc( final int from, final int to, final double arcCost ) {
+		if ( from >= to ) { throw new IllegalArgumentException( "Arcs must lead from lower to higher node ids." ); }
+		if ( 2 * numArcs + 2 > head.length ) {
+			final int size = 2 * head.length;
+			head = Arrays.copyOf( head, size );
+			next = Arrays.copyOf( next, size );
+			cost = Arrays.copyOf( cost, size );
+			capacity = Arrays.copyOf( capacity, size );
+		}
+		final int e = 2 * numArcs;
+		head[ e ] = to;
+		next[ e ] = first[ from ];
+		first[ from ] = e;
+		head[ e + 1 ] = from;
+		next[ e + 1 ] = first[ to ];
+		first[ to ] = e + 1;
+		setCost( numArcs, arcCost );
+		return numArcs++;
+	}
+
+	public int getNumArcs() {
+		return numArcs;
+	}
+
+	/**
+	 * Changes the cost of an arc, effective with the next call to
+	 * <code>solve</code>.
+	 */
+	public void setCost( final int arc, final double arcCost ) {
+		cost[ 2 * arc ] = arcCost;
+		cost[ 2 * arc + 1 ] = -arcCost;
+	}
+
+	/**
+	 * @return <code>true</code> if the given arc carries flow in the latest
+	 *         solution.
+	 */
+	public boolean hasFlow( final int arc ) {
+		return capacity[ 2 * arc ] == 0;
+	}
+
+	/**
+	 * Computes a minimum cost flow (starting from zero flow).
+	 *
+	 * @return the number of units sent from source to sink.
+	 */
+	public int solve() {
+		for ( int e = 0; e < 2 * numArcs; e += 2 ) {
+			capacity[ e ] = 1;
+			capacity[ e + 1 ] = 0;
+		}
+		final int sink = numNodes - 1;
+
+		// shortest distances along the topological order
+		Arrays.fill( potential, INF );
+		potential[ 0 ] = 0;
+		for ( int u = 0; u < numNodes; u++ ) {
+			if ( potential[ u ] == INF ) continue;
+			for ( int e = first[ u ]; e >= 0; e = next[ e ] ) {
+				if ( ( e & 1 ) == 0 && potential[ u ] + cost[ e ] < potential[ head[ e ] ] ) {
+					potential[ head[ e ] ] = potential[ u ] + cost[ e ];
+				}
+			}
+		}
+
+		int units = 0;
+		while ( potential[ sink ] < INF && shortestPath( sink ) ) {
+			if ( dist[ sink ] + potential[ sink ] >= -EPSILON ) break;
+			for ( int v = sink; v != 0; v = head[ parentArc[ v ] ^ 1 ] ) {
+				capacity[ parentArc[ v ] ]--;
+				capacity[ parentArc[ v ] ^ 1 ]++;
+			}
+			units++;
+			for ( int v = 0; v < numNodes; v++ ) {
+				if ( potential[ v ] < INF ) potential[ v ] += Math.min( dist[ v ], dist[ sink ] );
+			}
+		}
+		return units;
+	}
+
+	/**
+	 * Dijkstra on reduced costs from the source, stopping as soon as the sink
+	 * is settled.
+	 *
+	 * @return <code>true</code> if the sink is reachable.
+	 */
+	private boolean shortestPath( final int sink ) {
+		Arrays.fill( dist, INF );
+		dist[ 0 ] = 0;
+		heapSize = 0;
+		push( 0, 0 );
+		while ( heapSize > 0 ) {
+			final double d = heapKeys[ 0 ];
+			final int u = pop();
+			if ( d > dist[ u ] ) continue;
+			if ( u == sink ) return true;
+			for ( int e = first[ u ]; e >= 0; e = next[ e ] ) {
+				final int v = head[ e ];
+				if ( capacity[ e ] == 0 || potential[ v ] == INF ) continue;
+				final double reduced = Math.max( 0, cost[ e ] + potential[ u ] - potential[ v ] );
+				if ( d + reduced < dist[ v ] ) {
+					dist[ v ] = d + reduced;
+					parentArc[ v ] = e;
+					push( v, dist[ v ] );
+				}
+			}
+		}
+		return false;
+	}
+
+	private void push( final int node, final double key ) {
+		if ( heapSize == heapNodes.length ) {
+			heapNodes = Arrays.copyOf( heapNodes, 2 * heapSize );
+			heapKeys = Arrays.copyOf( heapKeys, 2 * heapSize );
+		}
+		int i = heapSize++;
+		while ( i > 0 && heapKeys[ ( i - 1 ) / 2 ] > key ) {
+			heapNodes[ i ] = heapNodes[ ( i - 1 ) / 2 ];
+			heapKeys[ i ] = heapKeys[ ( i - 1 ) / 2 ];
+			i = ( i - 1 ) / 2;
+		}
+		heapNodes[ i ] = node;
+		heapKeys[ i ] = key;
+	}
+
+	private int pop() {
+		final int ret = heapNodes[ 0 ];
+		final int lastNode = heapNodes[ --heapSize ];
+		final double lastKey = heapKeys[ heapSize ];
+		int i = 0;
+		while ( 2 * i + 1 < heapSize ) {
+			int child = 2 * i + 1;
+			if ( child + 1 < heapSize && heapKeys[ child + 1 ] < heapKeys[ child ] ) child++;
+			if ( heapKeys[ child ] >= lastKey ) break;
+			heapNodes[ i ] = heapNodes[ child ];
+			heapKeys[ i ] = heapKeys[ child ];
+			i = child;
+		}
+		heapNodes[ i ] = lastNode;
+		heapKeys[ i ] = lastKey;
+		return ret;
+	}
+}
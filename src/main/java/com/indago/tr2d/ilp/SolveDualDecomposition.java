@@ -0,0 +1,534 @@
+package com.indago.tr2d.ilp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.CompactTrackingProblem;
+import com.indago.tr2d.pg.IndicatorNodeIndex;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.util.TicToc;
+
+/**
+ * <code>TrackingSolver</code> decomposing the tracking problem into one
+ * subproblem per frame, which are solved concurrently.
+ * <p>
+ * Every move is duplicated into a copy leaving its source frame and a copy
+ * entering its target frame, every division into a copy leaving the mother's
+ * frame and one copy per daughter. The costs of an assignment are split
+ * evenly among its copies, and the coupling constraints (all copies of an
+ * assignment agree) are relaxed by Lagrangian multipliers. A frame subproblem
+ * then picks a conflict free set of segments, each with its cheapest in- and
+ * out-copy, which is solved exactly per group of conflicting segments (branch
+ * and bound). The sum of the frame optima is a lower bound on the optimal
+ * energy, which is raised by subgradient steps (Polyak step size) on the
+ * multipliers.
+ * <p>
+ * Upper bounds are obtained by repairing the frame solutions: a
+ * <code>SolveMinCostFlow</code> restricted to the segments picked by some
+ * frame. Solving stops when the relative duality gap drops below the target
+ * gap, after the maximum number of iterations, or when the time limit is
+ * reached. The best repaired solution is returned.
+ * <p>
+ * Bounds and gap include the bonus of forced nodes (see
+ * <code>TrackingEdits</code>), i.e. they equal energies only without
+ * leveraged edits.
+ *
+ * @author jug
+ */
+public class SolveDualDecomposition implements TrackingSolver {
+
+	private static final int DEFAULT_MAX_ITERATIONS = 200;
+	private static final double DEFAULT_TARGET_GAP = 1e-3;
+	private static final int REPAIR_INTERVAL = 10;
+	private static final int STALL_ITERATIONS = 5;
+	private static final long MAX_SEARCH_NODES = 100000;
+	private static final double EPSILON = 1e-9;
+
+	private int maxIterations = DEFAULT_MAX_ITERATIONS;
+	private double targetGap = DEFAULT_TARGET_GAP;
+	private double timeLimit = 0;
+
+	private CompactTrackingProblem ctp;
+	private TrackingEdits edits;
+	private int numSegments;
+
+	// multipliers, indexed by (assignment id - numSegments); lambda2 couples
+	// the second daughter of divisions
+	private double[] lambda;
+	private double[] lambda2;
+
+	// frame solutions: chosen in- and out-copy per segment, -1 if inactive
+	private int[] inCopy;
+	private int[] outCopy;
+	private double[] frameBound;
+
+	private double latestEnergy = Double.NaN;
+	private double latestLowerBound = Double.NaN;
+	private double latestGap = Double.NaN;
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#getName()
+	 */
+	@Override
+	public String getName() {
+		return TrackingSolvers.DUAL;
+	}
+
+	/**
+	 * @param maxIterations
+	 *            maximum number of subgradient iterations
+	 */
+	public void setMaxIterations( final int maxIterations ) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * @param targetGap
+	 *            relative duality gap at which solving stops
+	 */
+	public void setTargetGap( final double targetGap ) {
+		this.targetGap = targetGap;
+	}
+
+	/**
+	 * @param timeLimit
+	 *            time limit in seconds (&le; 0 for none)
+	 */
+	public void setTimeLimit( final double timeLimit ) {
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#setBudget(double, double, long)
+	 */
+	@Override
+	public void setBudget( final double timeLimit, final double gap, final long iterationLimit ) {
+		setTimeLimit( timeLimit );
+		setTargetGap( ( gap > 0 ) ? gap : DEFAULT_TARGET_GAP );
+		setMaxIterations( ( iterationLimit > 0 ) ? ( int ) Math.min( iterationLimit, Integer.MAX_VALUE ) : DEFAULT_MAX_ITERATIONS );
+	}
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#solve(com.indago.tr2d.pg.Tr2dTrackingProblem,
+	 *      java.util.concurrent.ForkJoinPool)
+	 */
+	@Override
+	public Assignment< IndicatorNode > solve( final Tr2dTrackingProblem traProblem, final ForkJoinPool pool ) {
+		final TicToc tictoc = new TicToc();
+		tictoc.tic( "Solving tracking problem by dual decomposition..." );
+		final BitSetAssignment assignment = solve( new CompactTrackingProblem( traProblem ), traProblem.getNodeIndex(), pool );
+		tictoc.toc( "done!" );
+		return assignment;
+	}
+
+	/**
+	 * Solves the given compact problem.
+	 *
+	 * @return the best solution found.
+	 */
+	BitSetAssignment solve( final CompactTrackingProblem problem, final IndicatorNodeIndex index, final ForkJoinPool pool ) {
+		final long start = System.currentTimeMillis();
+		ctp = problem;
+		edits = new TrackingEdits( ctp );
+		numSegments = ctp.getNumSegments();
+		lambda = new double[ ctp.getNumNodes() - numSegments ];
+		lambda2 = new double[ ctp.getNumNodes() - numSegments ];
+		inCopy = new int[ numSegments ];
+		outCopy = new int[ numSegments ];
+		frameBound = new double[ ctp.getNumFrames() ];
+
+		final SolveMinCostFlow repair = new SolveMinCostFlow();
+		BitSetAssignment best = repair.solve( ctp, edits, null, index );
+		double upperBound = getEffectiveEnergy( best );
+		double lowerBound = Double.NEGATIVE_INFINITY;
+
+		double theta = 1;
+		int stalled = 0;
+		int iteration = 0;
+		while ( iteration < maxIterations ) {
+			solveFrames( pool );
+			iteration++;
+			double bound = 0;
+			for ( final double b : frameBound ) {
+				bound += b;
+			}
+			if ( bound > lowerBound + EPSILON ) {
+				lowerBound = bound;
+				stalled = 0;
+			} else if ( ++stalled >= STALL_ITERATIONS ) {
+				theta /= 2;
+				stalled = 0;
+			}
+
+			double norm = 0;
+			for ( int a = numSegments; a < ctp.getNumNodes(); a++ ) {
+				final int g = subgradient( a, false );
+				final int g2 = subgradient( a, true );
+				norm += g * g + g2 * g2;
+			}
+
+			if ( norm == 0 || iteration % REPAIR_INTERVAL == 0 ) {
+				// all frames agree on every assignment: their solutions form a feasible one
+				final BitSetAssignment candidate = ( norm == 0 ) ? collectFrameSolutions( index ) : repair.solve( ctp, edits, unselectedSegments(), index );
+				final double energy = getEffectiveEnergy( candidate );
+				if ( energy < upperBound ) {
+					upperBound = energy;
+					best = candidate;
+				}
+				Tr2dLog.solverlog.info( String.format(
+						"Iteration %d: lower bound %.2f, upper bound %.2f, gap %.3f%%",
+						iteration,
+						lowerBound,
+						upperBound,
+						100 * getGap( lowerBound, upperBound ) ) );
+			}
+			if ( norm == 0 || getGap( lowerBound, upperBound ) <= targetGap ) break;
+			if ( timeLimit > 0 && System.currentTimeMillis() - start > 1000 * timeLimit ) break;
+
+			final double step = theta * ( upperBound - bound ) / norm;
+			for ( int a = numSegments; a < ctp.getNumNodes(); a++ ) {
+				lambda[ a - numSegments ] += step * subgradient( a, false );
+				lambda2[ a - numSegments ] += step * subgradient( a, true );
+			}
+		}
+		if ( iteration % REPAIR_INTERVAL != 0 ) {
+			final BitSetAssignment candidate = repair.solve( ctp, edits, unselectedSegments(), index );
+			final double energy = getEffectiveEnergy( candidate );
+			if ( energy < upperBound ) {
+				upperBound = energy;
+				best = candidate;
+			}
+		}
+
+		latestLowerBound = lowerBound;
+		latestGap = getGap( lowerBound, upperBound );
+		latestEnergy = ctp.getCost( best );
+		Tr2dLog.solverlog.info( String.format(
+				"Dual decomposition after %d iterations: energy %.2f, lower bound %.2f, upper bound %.2f, gap %.3f%%",
+				iteration,
+				latestEnergy,
+				lowerBound,
+				upperBound,
+				100 * latestGap ) );
+		return best;
+	}
+
+	private static double getGap( final double lowerBound, final double upperBound ) {
+		return Math.max( 0, upperBound - lowerBound ) / Math.max( 1, Math.abs( upperBound ) );
+	}
+
+	private double getEffectiveEnergy( final BitSetAssignment assignment ) {
+		double ret = 0;
+		for ( int i = 0; i < ctp.getNumNodes(); i++ ) {
+			if ( assignment.get( i ) ) ret += edits.getEffectiveCost( i );
+		}
+		return ret;
+	}
+
+	/**
+	 * @param second
+	 *            <code>true</code> for the coupling of the second daughter of a
+	 *            division
+	 * @return the subgradient of the given coupling: 1 if the source frame
+	 *         uses the assignment but the target frame does not, -1 if vice
+	 *         versa, 0 otherwise.
+	 */
+	private int subgradient( final int assignment, final boolean second ) {
+		final byte type = ctp.getType( assignment );
+		if ( type != CompactTrackingProblem.MOVE && type != CompactTrackingProblem.DIVISION ) return 0;
+		if ( second && type != CompactTrackingProblem.DIVISION ) return 0;
+		final int dest = second ? ctp.getDest2( assignment ) : ctp.getDest( assignment );
+		return ( outCopy[ ctp.getSrc( assignment ) ] == assignment ? 1 : 0 ) - ( inCopy[ dest ] == assignment ? 1 : 0 );
+	}
+
+	private double getOutCopyCost( final int assignment ) {
+		final int i = assignment - numSegments;
+		switch ( ctp.getType( assignment ) ) {
+		case CompactTrackingProblem.MOVE:
+			return edits.getEffectiveCost( assignment ) / 2 + lambda[ i ];
+		case CompactTrackingProblem.DIVISION:
+			return edits.getEffectiveCost( assignment ) / 3 + lambda[ i ] + lambda2[ i ];
+		default:
+			return edits.getEffectiveCost( assignment );
+		}
+	}
+
+	private double getInCopyCost( final int assignment, final int segment ) {
+		final int i = assignment - numSegments;
+		switch ( ctp.getType( assignment ) ) {
+		case CompactTrackingProblem.MOVE:
+			return edits.getEffectiveCost( assignment ) / 2 - lambda[ i ];
+		case CompactTrackingProblem.DIVISION:
+			return edits.getEffectiveCost( assignment ) / 3 - ( ( segment == ctp.getDest( assignment ) ) ? lambda[ i ] : lambda2[ i ] );
+		default:
+			return edits.getEffectiveCost( assignment );
+		}
+	}
+
+	private void solveFrames( final ForkJoinPool pool ) {
+		final List< ForkJoinTask< ? > > tasks = new ArrayList<>();
+		for ( int f = 0; f < ctp.getNumFrames(); f++ ) {
+			final int frame = f;
+			tasks.add( pool.submit( () -> solveFrame( frame ) ) );
+		}
+		for ( final ForkJoinTask< ? > task : tasks ) {
+			task.join();
+		}
+	}
+
+	/**
+	 * Solves the subproblem of the given frame for the current multipliers.
+	 * Segments are worth their cost plus the cheapest allowed in- and
+	 * out-copy; among those of negative worth, a conflict free subset of
+	 * minimal worth is searched per group of conflicting segments. Stores the
+	 * chosen copies and the optimal value (a lower bound on it if the search
+	 * was cut short).
+	 */
+	private void solveFrame( final int frame ) {
+		final int first = ctp.getFrameStart( frame );
+		final int end = ctp.getFrameStart( frame + 1 );
+		final int firstConflictSet = ctp.getConflictSetStart( frame );
+		final int numConflictSets = ctp.getConflictSetStart( frame + 1 ) - firstConflictSet;
+
+		final double[] worth = new double[ end - first ];
+		final int[] parent = new int[ end - first ];
+		for ( int s = first; s < end; s++ ) {
+			inCopy[ s ] = -1;
+			outCopy[ s ] = -1;
+			parent[ s - first ] = s - first;
+			worth[ s - first ] = Double.POSITIVE_INFINITY;
+			if ( edits.isAvoided( s ) ) continue;
+
+			int in = -1;
+			for ( int k = 0; k < ctp.getNumInAssignments( s ); k++ ) {
+				final int a = ctp.getInAssignment( s, k );
+				if ( edits.isAllowed( a, true ) && ( in < 0 || getInCopyCost( a, s ) < getInCopyCost( in, s ) ) ) in = a;
+			}
+			int out = -1;
+			for ( int k = 0; k < ctp.getNumOutAssignments( s ); k++ ) {
+				final int a = ctp.getOutAssignment( s, k );
+				if ( edits.isAllowed( a, true ) && ( out < 0 || getOutCopyCost( a ) < getOutCopyCost( out ) ) ) out = a;
+			}
+			if ( in < 0 || out < 0 ) continue;
+			inCopy[ s ] = in;
+			outCopy[ s ] = out;
+			worth[ s - first ] = edits.getEffectiveCost( s ) + getInCopyCost( in, s ) + getOutCopyCost( out );
+		}
+
+		// group segments of negative worth that share a conflict set
+		for ( int c = firstConflictSet; c < firstConflictSet + numConflictSets; c++ ) {
+			int root = -1;
+			for ( int k = 0; k < ctp.getConflictSetSize( c ); k++ ) {
+				final int s = ctp.getConflictSetMember( c, k ) - first;
+				if ( !( worth[ s ] < 0 ) ) continue;
+				if ( root < 0 ) {
+					root = find( parent, s );
+				} else {
+					final int r = find( parent, s );
+					if ( r != root ) {
+						parent[ Math.max( r, root ) ] = Math.min( r, root );
+						root = Math.min( r, root );
+					}
+				}
+			}
+		}
+		final int[] groupStart = new int[ end - first + 1 ];
+		for ( int s = 0; s < end - first; s++ ) {
+			if ( worth[ s ] < 0 ) groupStart[ find( parent, s ) + 1 ]++;
+		}
+		for ( int s = 0; s < end - first; s++ ) {
+			groupStart[ s + 1 ] += groupStart[ s ];
+		}
+		final int[] groupMembers = new int[ groupStart[ end - first ] ];
+		final int[] fill = Arrays.copyOf( groupStart, end - first );
+		for ( int s = 0; s < end - first; s++ ) {
+			if ( worth[ s ] < 0 ) groupMembers[ fill[ find( parent, s ) ]++ ] = s + first;
+		}
+
+		final boolean[] chosen = new boolean[ end - first ];
+		final int[] usage = new int[ numConflictSets ];
+		double ret = 0;
+		for ( int g = 0; g < end - first; g++ ) {
+			final int size = groupStart[ g + 1 ] - groupStart[ g ];
+			if ( size == 0 ) continue;
+			final int[] members = Arrays.copyOfRange( groupMembers, groupStart[ g ], groupStart[ g + 1 ] );
+			if ( size == 1 ) {
+				chosen[ members[ 0 ] - first ] = true;
+				ret += worth[ members[ 0 ] - first ];
+				continue;
+			}
+			ret += new GroupSearch( members, worth, first, firstConflictSet, usage ).solve( chosen );
+		}
+		for ( int s = first; s < end; s++ ) {
+			if ( !chosen[ s - first ] ) {
+				inCopy[ s ] = -1;
+				outCopy[ s ] = -1;
+			}
+		}
+		frameBound[ frame ] = ret;
+	}
+
+	private static int find( final int[] parent, int i ) {
+		while ( parent[ i ] != i ) {
+			parent[ i ] = parent[ parent[ i ] ];
+			i = parent[ i ];
+		}
+		return i;
+	}
+
+	/**
+	 * Branch and bound for a conflict free subset of minimal worth of a group
+	 * of segments, all of negative worth.
+	 */
+	private class GroupSearch {
+
+		private final int[] members;
+		private final double[] worth;
+		private final int first;
+		private final int firstConflictSet;
+		private final int[] usage;
+		private final double[] suffixWorth;
+
+		private final boolean[] current;
+		private final boolean[] best;
+		private double bestWorth = 0;
+		private long searchNodes = 0;
+
+		GroupSearch( final int[] members, final double[] worth, final int first, final int firstConflictSet, final int[] usage ) {
+			// most valuable segments first
+			final Integer[] order = new Integer[ members.length ];
+			for ( int i = 0; i < members.length; i++ ) {
+				order[ i ] = members[ i ];
+			}
+			Arrays.sort( order, ( s1, s2 ) -> Double.compare( worth[ s1 - first ], worth[ s2 - first ] ) );
+			this.members = new int[ members.length ];
+			for ( int i = 0; i < members.length; i++ ) {
+				this.members[ i ] = order[ i ];
+			}
+			this.worth = worth;
+			this.first = first;
+			this.firstConflictSet = firstConflictSet;
+			this.usage = usage;
+			suffixWorth = new double[ members.length + 1 ];
+			for ( int i = members.length - 1; i >= 0; i-- ) {
+				suffixWorth[ i ] = suffixWorth[ i + 1 ] + worth[ this.members[ i ] - first ];
+			}
+			current = new boolean[ members.length ];
+			best = new boolean[ members.length ];
+		}
+
+		/**
+		 * Marks the best subset found in <code>chosen</code>.
+		 *
+		 * @return the worth of the best subset, or a lower bound on it if the
+		 *         search was cut short.
+		 */
+		double solve( final boolean[] chosen ) {
+			search( 0, 0 );
+			for ( int i = 0; i < members.length; i++ ) {
+				if ( best[ i ] ) chosen[ members[ i ] - first ] = true;
+			}
+			return ( searchNodes > MAX_SEARCH_NODES ) ? getPartitionBound() : bestWorth;
+		}
+
+		private void search( final int i, final double currentWorth ) {
+			if ( currentWorth < bestWorth ) {
+				bestWorth = currentWorth;
+				System.arraycopy( current, 0, best, 0, current.length );
+			}
+			if ( i == members.length || currentWorth + suffixWorth[ i ] >= bestWorth || ++searchNodes > MAX_SEARCH_NODES ) return;
+			final int s = members[ i ];
+			if ( isFree( s ) ) {
+				use( s, 1 );
+				current[ i ] = true;
+				search( i + 1, currentWorth + worth[ s - first ] );
+				current[ i ] = false;
+				use( s, -1 );
+			}
+			search( i + 1, currentWorth );
+		}
+
+		private boolean isFree( final int segment ) {
+			for ( int k = 0; k < ctp.getNumConflictSetsOf( segment ); k++ ) {
+				if ( usage[ ctp.getConflictSetOf( segment, k ) - firstConflictSet ] > 0 ) return false;
+			}
+			return true;
+		}
+
+		private void use( final int segment, final int delta ) {
+			for ( int k = 0; k < ctp.getNumConflictSetsOf( segment ); k++ ) {
+				usage[ ctp.getConflictSetOf( segment, k ) - firstConflictSet ] += delta;
+			}
+		}
+
+		/**
+		 * Attributes every segment to one of its conflict sets, of which at
+		 * most one segment can be chosen.
+		 *
+		 * @return the sum of the most valuable segment per conflict set, a
+		 *         lower bound on the worth of any conflict free subset.
+		 */
+		private double getPartitionBound() {
+			double ret = 0;
+			final boolean[] counted = new boolean[ usage.length ];
+			for ( final int s : members ) {
+				// members are sorted by worth, so the first one of a set is its most valuable
+				final int c = ctp.getConflictSetOf( s, 0 ) - firstConflictSet;
+				if ( !counted[ c ] ) {
+					counted[ c ] = true;
+					ret += worth[ s - first ];
+				}
+			}
+			return ret;
+		}
+	}
+
+	private boolean[] unselectedSegments() {
+		final boolean[] ret = new boolean[ numSegments ];
+		for ( int s = 0; s < numSegments; s++ ) {
+			ret[ s ] = outCopy[ s ] < 0;
+		}
+		return ret;
+	}
+
+	private BitSetAssignment collectFrameSolutions( final IndicatorNodeIndex index ) {
+		final BitSetAssignment ret = new BitSetAssignment( index );
+		for ( int s = 0; s < numSegments; s++ ) {
+			if ( outCopy[ s ] < 0 ) continue;
+			ret.set( s, true );
+			ret.set( inCopy[ s ], true );
+			ret.set( outCopy[ s ], true );
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the best lower bound of the latest solve (including the bonus of
+	 *         forced nodes).
+	 */
+	public double getLatestLowerBound() {
+		return latestLowerBound;
+	}
+
+	/**
+	 * @return the relative duality gap of the latest solve.
+	 */
+	public double getLatestGap() {
+		return latestGap;
+	}
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#getLatestEnergy()
+	 */
+	@Override
+	public double getLatestEnergy() {
+		return latestEnergy;
+	}
+}
@@ -0,0 +1,235 @@
+package com.indago.tr2d.ilp;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.CompactTrackingProblem;
+import com.indago.tr2d.pg.IndicatorNodeIndex;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.util.TicToc;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Greedy <code>TrackingSolver</code>, fast enough to show a preview while an
+ * exact solver runs (and to serve as its MIP start).
+ * <p>
+ * Frames are processed in temporal order. A segment enters by an appearance
+ * or by continuing a track that is still open, i.e. whose last segment leaves
+ * by its disappearance so far (by a move, or by a division continuing it into
+ * two segments). Every segment taken leaves by its cheapest disappearance
+ * until a later segment continues its track. Per frame, all options are
+ * ranked by how much they lower the energy and taken greedily as long as they
+ * do so and their segments do not conflict with segments taken before.
+ * <p>
+ * The result is feasible, but can be far from optimal. Leveraged edits are
+ * respected as far as possible (see <code>TrackingEdits</code>); segments
+ * that are not allowed to disappear are never taken.
+ *
+ * @author jug
+ */
+public class SolveGreedy implements TrackingSolver {
+
+	private CompactTrackingProblem ctp;
+	private TrackingEdits edits;
+
+	private boolean[] active;
+	private int[] inOf;
+	private int[] outOf;
+	private int[] close;
+	private boolean[] conflictSetUsed;
+
+	private double latestEnergy = Double.NaN;
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#getName()
+	 */
+	@Override
+	public String getName() {
+		return TrackingSolvers.GREEDY;
+	}
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#solve(com.indago.tr2d.pg.Tr2dTrackingProblem,
+	 *      java.util.concurrent.ForkJoinPool)
+	 */
+	@Override
+	public Assignment< IndicatorNode > solve( final Tr2dTrackingProblem traProblem, final ForkJoinPool pool ) {
+		final TicToc tictoc = new TicToc();
+		tictoc.tic( "Solving tracking problem greedily..." );
+		final CompactTrackingProblem problem = new CompactTrackingProblem( traProblem );
+		final BitSetAssignment assignment = solve( problem, new TrackingEdits( problem ), traProblem.getNodeIndex() );
+		tictoc.toc( "done!" );
+		Tr2dLog.solverlog.info( String.format( "Greedy solution has energy %.2f.", latestEnergy ) );
+		return assignment;
+	}
+
+	/**
+	 * Solves the given compact problem.
+	 *
+	 * @return the greedy solution.
+	 */
+	BitSetAssignment solve( final CompactTrackingProblem problem, final TrackingEdits trackingEdits, final IndicatorNodeIndex index ) {
+		ctp = problem;
+		edits = trackingEdits;
+		final int numSegments = ctp.getNumSegments();
+		active = new boolean[ numSegments ];
+		inOf = new int[ numSegments ];
+		outOf = new int[ numSegments ];
+		close = new int[ numSegments ];
+		conflictSetUsed = new boolean[ ctp.getNumConflictSets() ];
+		Arrays.fill( inOf, -1 );
+		Arrays.fill( outOf, -1 );
+		for ( int s = 0; s < numSegments; s++ ) {
+			close[ s ] = edits.isAvoided( s ) ? -1 : cheapestDisappearance( s );
+		}
+
+		for ( int f = 0; f < ctp.getNumFrames(); f++ ) {
+			solveFrame( f );
+		}
+
+		final BitSetAssignment assignment = new BitSetAssignment( index );
+		for ( int s = 0; s < numSegments; s++ ) {
+			if ( !active[ s ] ) continue;
+			assignment.set( s, true );
+			assignment.set( inOf[ s ], true );
+			assignment.set( outOf[ s ], true );
+		}
+		latestEnergy = ctp.getCost( assignment );
+		return assignment;
+	}
+
+	private int cheapestDisappearance( final int segment ) {
+		int ret = -1;
+		for ( int k = 0; k < ctp.getNumOutAssignments( segment ); k++ ) {
+			final int a = ctp.getOutAssignment( segment, k );
+			if ( ctp.getType( a ) == CompactTrackingProblem.DISAPPEARANCE &&
+					edits.isAllowed( a, true ) &&
+					( ret < 0 || edits.getEffectiveCost( a ) < edits.getEffectiveCost( ret ) ) ) {
+				ret = a;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Collects the in-assignments of all segments of the given frame that
+	 * would lower the energy (divisions are collected via their first
+	 * daughter), and takes them in order of decreasing gain.
+	 */
+	private void solveFrame( final int frame ) {
+		final TIntArrayList options = new TIntArrayList();
+		final double[] gains = new double[ countInAssignments( frame ) ];
+		for ( int s = ctp.getFrameStart( frame ); s < ctp.getFrameStart( frame + 1 ); s++ ) {
+			if ( close[ s ] < 0 ) continue;
+			for ( int k = 0; k < ctp.getNumInAssignments( s ); k++ ) {
+				final int a = ctp.getInAssignment( s, k );
+				if ( !edits.isAllowed( a, true ) || ( ctp.getType( a ) == CompactTrackingProblem.DIVISION && ctp.getDest( a ) != s ) ) continue;
+				final double gain = getGain( a );
+				if ( gain < 0 ) {
+					gains[ options.size() ] = gain;
+					options.add( a );
+				}
+			}
+		}
+
+		final Integer[] order = new Integer[ options.size() ];
+		for ( int i = 0; i < order.length; i++ ) {
+			order[ i ] = i;
+		}
+		Arrays.sort( order, ( i1, i2 ) -> Double.compare( gains[ i1 ], gains[ i2 ] ) );
+		for ( final int i : order ) {
+			take( options.get( i ) );
+		}
+	}
+
+	private int countInAssignments( final int frame ) {
+		int ret = 0;
+		for ( int s = ctp.getFrameStart( frame ); s < ctp.getFrameStart( frame + 1 ); s++ ) {
+			ret += ctp.getNumInAssignments( s );
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the change of energy if the given assignment and its target
+	 *         segment(s) (leaving by their cheapest disappearance) were taken,
+	 *         <code>Double.POSITIVE_INFINITY</code> if it cannot be taken.
+	 */
+	private double getGain( final int assignment ) {
+		final int src = ctp.getSrc( assignment );
+		double ret = edits.getEffectiveCost( assignment );
+		if ( src >= 0 ) {
+			if ( !isOpen( src ) ) return Double.POSITIVE_INFINITY;
+			ret -= edits.getEffectiveCost( outOf[ src ] );
+		}
+		for ( final int d : new int[] { ctp.getDest( assignment ), ctp.getDest2( assignment ) } ) {
+			if ( d < 0 ) continue;
+			if ( close[ d ] < 0 ) return Double.POSITIVE_INFINITY;
+			ret += edits.getEffectiveCost( d ) + edits.getEffectiveCost( close[ d ] );
+		}
+		return ret;
+	}
+
+	/**
+	 * @return <code>true</code> if the given segment is active and leaves by a
+	 *         disappearance so far.
+	 */
+	private boolean isOpen( final int segment ) {
+		return active[ segment ] && ctp.getType( outOf[ segment ] ) == CompactTrackingProblem.DISAPPEARANCE;
+	}
+
+	/**
+	 * Takes the given assignment and activates its target segment(s), unless
+	 * this is no longer possible because of assignments taken before.
+	 */
+	private void take( final int assignment ) {
+		final int src = ctp.getSrc( assignment );
+		final int dest = ctp.getDest( assignment );
+		final int dest2 = ctp.getDest2( assignment );
+		if ( src >= 0 && !isOpen( src ) ) return;
+		if ( active[ dest ] || !isFree( dest ) ) return;
+		if ( dest2 >= 0 ) {
+			if ( active[ dest2 ] || !isFree( dest2 ) || inConflict( dest, dest2 ) ) return;
+		}
+
+		if ( src >= 0 ) outOf[ src ] = assignment;
+		for ( final int d : new int[] { dest, dest2 } ) {
+			if ( d < 0 ) continue;
+			active[ d ] = true;
+			inOf[ d ] = assignment;
+			outOf[ d ] = close[ d ];
+			for ( int k = 0; k < ctp.getNumConflictSetsOf( d ); k++ ) {
+				conflictSetUsed[ ctp.getConflictSetOf( d, k ) ] = true;
+			}
+		}
+	}
+
+	private boolean isFree( final int segment ) {
+		for ( int k = 0; k < ctp.getNumConflictSetsOf( segment ); k++ ) {
+			if ( conflictSetUsed[ ctp.getConflictSetOf( segment, k ) ] ) return false;
+		}
+		return true;
+	}
+
+	private boolean inConflict( final int s1, final int s2 ) {
+		for ( int k = 0; k < ctp.getNumConflictSetsOf( s1 ); k++ ) {
+			for ( int l = 0; l < ctp.getNumConflictSetsOf( s2 ); l++ ) {
+				if ( ctp.getConflictSetOf( s1, k ) == ctp.getConflictSetOf( s2, l ) ) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#getLatestEnergy()
+	 */
+	@Override
+	public double getLatestEnergy() {
+		return latestEnergy;
+	}
+}
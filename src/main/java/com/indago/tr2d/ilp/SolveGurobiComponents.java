@@ -0,0 +1,144 @@
+package com.indago.tr2d.ilp;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.indago.fg.Assignment;
+import com.indago.ilp.DefaultLoggingGurobiCallback;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.CompactTrackingProblem;
+import com.indago.tr2d.pg.IndicatorNodeIndex;
+import com.indago.tr2d.pg.ProblemGraphComponents;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.util.TicToc;
+
+import gurobi.GRBException;
+
+/**
+ * Solves a <code>Tr2dTrackingProblem</code> by solving the connected
+ * components of its problem graph (see <code>ProblemGraphComponents</code>)
+ * independently and concurrently, and merging their solutions. Since no
+ * constraint spans two components, the merged solution is optimal.
+ * <p>
+ * Creating a Gurobi model per component does not pay off for the many tiny
+ * components (e.g. isolated segments) of typical data, so components are
+ * distributed over as many models as the pool has workers, largest first,
+ * always to the model with the fewest nodes so far. Each model then consists
+ * of one or several independent components.
+ *
+ * @author jug
+ */
+public class SolveGurobiComponents {
+
+	private final Tr2dTrackingProblem traProblem;
+
+	private ProblemGraphComponents components;
+	private Set< IndicatorNode > warmStart;
+	private double latestEnergy = Double.NaN;
+
+	/**
+	 * @param traProblem
+	 *            the tracking problem to be solved
+	 */
+	public SolveGurobiComponents( final Tr2dTrackingProblem traProblem ) {
+		this.traProblem = traProblem;
+	}
+
+	/**
+	 * @param warmStart
+	 *            a solution of the full problem (e.g. a greedy preview), used
+	 *            as MIP start of the components (can be <code>null</code>)
+	 */
+	public void setWarmStart( final Assignment< IndicatorNode > warmStart ) {
+		this.warmStart = SolveGurobiWindow.activeNodes( traProblem, warmStart );
+	}
+
+	/**
+	 * Finds the components, solves them and merges their solutions.
+	 *
+	 * @param pool
+	 *            the pool the components are solved on
+	 * @return the merged solution, assigning all nodes of the tracking problem.
+	 * @throws GRBException
+	 * @throws IllegalStateException
+	 *             if a component is infeasible.
+	 */
+	public Assignment< IndicatorNode > solve( final ForkJoinPool pool ) throws GRBException {
+		final IndicatorNodeIndex index = traProblem.getNodeIndex();
+		final TicToc tictoc = new TicToc();
+		tictoc.tic( "Finding independent components of the problem graph..." );
+		components = new ProblemGraphComponents( new CompactTrackingProblem( traProblem ) );
+		tictoc.toc( "done!" );
+		Tr2dLog.solverlog.info( "Problem graph decomposition: " + components.getStatistics() );
+
+		final int numComponents = components.getNumComponents();
+		final int numModels = Math.max( 1, Math.min( numComponents, pool.getParallelism() ) );
+		final List< Set< SegmentNode > > modelSegments = new ArrayList<>();
+		final int[] modelNumNodes = new int[ numModels ];
+		for ( int m = 0; m < numModels; m++ ) {
+			modelSegments.add( new HashSet<>() );
+		}
+		for ( int c = 0; c < numComponents; c++ ) {
+			int smallest = 0;
+			for ( int m = 1; m < numModels; m++ ) {
+				if ( modelNumNodes[ m ] < modelNumNodes[ smallest ] ) smallest = m;
+			}
+			modelNumNodes[ smallest ] += components.getNumNodes( c );
+			for ( int k = 0; k < components.getNumSegments( c ); k++ ) {
+				modelSegments.get( smallest ).add( ( SegmentNode ) index.get( components.getSegment( c, k ) ) );
+			}
+		}
+
+		// Gurobi threads are shared among the models solved at the same time
+		final int threadsPerSolve = Math.max( 1, Runtime.getRuntime().availableProcessors() / numModels );
+
+		tictoc.tic( String.format( "Solving %d components in %d models...", numComponents, numModels ) );
+		final int lastFrame = traProblem.getTimepoints().size() - 1;
+		final List< ForkJoinTask< Set< IndicatorNode > > > tasks = new ArrayList<>();
+		for ( final Set< SegmentNode > segments : modelSegments ) {
+			if ( segments.isEmpty() ) continue;
+			final SolveGurobiWindow solver = new SolveGurobiWindow( traProblem, 0, lastFrame );
+			solver.setSegments( segments );
+			solver.setThreads( threadsPerSolve );
+			tasks.add( pool.submit( () -> solver.solve( null, warmStart, new DefaultLoggingGurobiCallback( Tr2dLog.solverlog ) ) ) );
+		}
+		final BitSetAssignment assignment = new BitSetAssignment( index );
+		for ( final ForkJoinTask< Set< IndicatorNode > > task : tasks ) {
+			for ( final IndicatorNode node : SolveGurobiTemporalBlocks.join( task ) ) {
+				assignment.set( node, true );
+			}
+		}
+		tictoc.toc( "done!" );
+
+		latestEnergy = 0;
+		for ( int i = 0; i < index.size(); i++ ) {
+			if ( assignment.get( i ) ) latestEnergy += index.get( i ).getCost();
+		}
+		return assignment;
+	}
+
+	/**
+	 * @return the components found by the latest solve (<code>null</code> if
+	 *         not solved yet).
+	 */
+	public ProblemGraphComponents getComponents() {
+		return components;
+	}
+
+	/**
+	 * Retrieves the energy of the latest merged solution.
+	 *
+	 * @return returns latest computed energy, or <code>Double.NaN</code> if not
+	 *         applicable.
+	 */
+	public double getLatestEnergy() {
+		return latestEnergy;
+	}
+}
@@ -0,0 +1,398 @@
+package com.indago.tr2d.ilp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AssignmentNode;
+import com.indago.pg.segments.ConflictSet;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.tr2d.pg.levedit.EditState;
+
+import gurobi.GRB;
+import gurobi.GRBCallback;
+import gurobi.GRBConstr;
+import gurobi.GRBEnv;
+import gurobi.GRBException;
+import gurobi.GRBLinExpr;
+import gurobi.GRBModel;
+import gurobi.GRBVar;
+
+/**
+ * Keeps one Gurobi model of a <code>Tr2dTrackingProblem</code> alive between
+ * consecutive solves.
+ * The model is built once, directly from the problem graph (one binary
+ * variable per segment and assignment, conflict and continuity constraints).
+ * Before each solve the <code>EditState</code>s of all time points are
+ * diffed against what the model currently contains: forced and avoided
+ * segments fix variable bounds, all other leveraged edits become equality
+ * constraints that are added or removed as needed.
+ * The previous solution is handed to Gurobi as MIP start.
+ * With a budget (see <code>setBudget</code>) and an
+ * <code>IncumbentCallback</code> it serves as anytime solver.
+ *
+ * @author jug
+ */
+public class SolveGurobiIncrementally {
+
+	// Gurobi's default of the MIPGap parameter
+	private static final double DEFAULT_MIP_GAP = 1e-4;
+
+	private enum EditType {
+		APPEARANCE, DISAPPEARANCE, MOVE_TO, MOVE_FROM, DIVISION_TO, DIVISION_FROM
+	}
+
+	/**
+	 * Identifies one leveraged edit constraint. The subject is either a
+	 * <code>SegmentNode</code> or a <code>ConflictSet</code>.
+	 */
+	private static class EditKey {
+
+		private final EditType type;
+		private final Object subject;
+
+		public EditKey( final EditType type, final Object subject ) {
+			this.type = type;
+			this.subject = subject;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + subject.hashCode();
+		}
+
+		@Override
+		public boolean equals( final Object obj ) {
+			if ( !( obj instanceof EditKey ) ) return false;
+			final EditKey other = ( EditKey ) obj;
+			return type == other.type && subject.equals( other.subject );
+		}
+	}
+
+	private final Tr2dTrackingProblem traProblem;
+
+	private final GRBEnv env;
+	private final GRBModel model;
+
+	private final Map< IndicatorNode, GRBVar > varmap = new HashMap<>();
+	private final IndicatorNode[] nodes;
+	private final GRBVar[] vars;
+
+	private final Map< EditKey, GRBConstr > editConstraints = new HashMap<>();
+	private final Set< SegmentNode > fixedSegments = new HashSet<>();
+
+	private double latestEnergy = Double.NaN;
+
+	/**
+	 * Builds the Gurobi model for the given tracking problem. Leveraged edits
+	 * are not yet part of the model, they are applied by <code>solve</code>.
+	 *
+	 * @param traProblem
+	 *            the tracking problem to be solved (repeatedly).
+	 * @throws GRBException
+	 */
+	public SolveGurobiIncrementally( final Tr2dTrackingProblem traProblem ) throws GRBException {
+		this.traProblem = traProblem;
+
+		env = new GRBEnv();
+		model = new GRBModel( env );
+
+		final List< IndicatorNode > nodeList = new ArrayList<>();
+		for ( final Tr2dSegmentationProblem segProblem : traProblem.getTimepoints() ) {
+			for ( final SegmentNode segment : segProblem.getSegments() ) {
+				addVar( segment, segment.getCost(), nodeList );
+				for ( final AssignmentNode assignment : segment.getInAssignments().getAllAssignments() ) {
+					addVar( assignment, assignment.getCost(), nodeList );
+				}
+				for ( final AssignmentNode assignment : segment.getOutAssignments().getAllAssignments() ) {
+					addVar( assignment, assignment.getCost(), nodeList );
+				}
+			}
+		}
+		model.update();
+
+		nodes = nodeList.toArray( new IndicatorNode[ nodeList.size() ] );
+		vars = new GRBVar[ nodes.length ];
+		for ( int i = 0; i < nodes.length; i++ ) {
+			vars[ i ] = varmap.get( nodes[ i ] );
+		}
+
+		for ( final Tr2dSegmentationProblem segProblem : traProblem.getTimepoints() ) {
+			// at most one segment per conflict set
+			for ( final ConflictSet conflictSet : segProblem.getConflictSets() ) {
+				final GRBLinExpr expr = new GRBLinExpr();
+				for ( final SegmentNode segment : conflictSet ) {
+					expr.addTerm( 1.0, varmap.get( segment ) );
+				}
+				model.addConstr( expr, GRB.LESS_EQUAL, 1.0, null );
+			}
+			// active segments have exactly one in- and one out-assignment
+			for ( final SegmentNode segment : segProblem.getSegments() ) {
+				final GRBLinExpr in = sumOf( segment.getInAssignments().getAllAssignments() );
+				in.addTerm( -1.0, varmap.get( segment ) );
+				model.addConstr( in, GRB.EQUAL, 0.0, null );
+
+				final GRBLinExpr out = sumOf( segment.getOutAssignments().getAllAssignments() );
+				out.addTerm( -1.0, varmap.get( segment ) );
+				model.addConstr( out, GRB.EQUAL, 0.0, null );
+			}
+		}
+		model.update();
+
+		Tr2dLog.solverlog.info( String.format( "Incremental Gurobi model built with %d variables.", nodes.length ) );
+	}
+
+	private void addVar( final IndicatorNode node, final double cost, final List< IndicatorNode > nodeList ) throws GRBException {
+		if ( !varmap.containsKey( node ) ) {
+			varmap.put( node, model.addVar( 0.0, 1.0, cost, GRB.BINARY, null ) );
+			nodeList.add( node );
+		}
+	}
+
+	private GRBLinExpr sumOf( final Collection< ? extends IndicatorNode > indicatorNodes ) {
+		final GRBLinExpr expr = new GRBLinExpr();
+		for ( final IndicatorNode node : indicatorNodes ) {
+			expr.addTerm( 1.0, varmap.get( node ) );
+		}
+		return expr;
+	}
+
+	/**
+	 * Limits all subsequent solves. Once a limit is reached, Gurobi stops and
+	 * <code>solve</code> returns the best solution found so far.
+	 *
+	 * @param timeLimit
+	 *            wall time in seconds (&le; 0 for none)
+	 * @param mipGap
+	 *            relative gap between incumbent and bound at which a solution
+	 *            is considered good enough (&le; 0 for Gurobi's default)
+	 * @param nodeLimit
+	 *            maximum number of branch and bound nodes (&le; 0 for none)
+	 * @throws GRBException
+	 */
+	public synchronized void setBudget( final double timeLimit, final double mipGap, final long nodeLimit ) throws GRBException {
+		model.set( GRB.DoubleParam.TimeLimit, ( timeLimit > 0 ) ? timeLimit : GRB.INFINITY );
+		model.set( GRB.DoubleParam.MIPGap, ( mipGap > 0 ) ? mipGap : DEFAULT_MIP_GAP );
+		model.set( GRB.DoubleParam.NodeLimit, ( nodeLimit > 0 ) ? nodeLimit : GRB.INFINITY );
+	}
+
+	/**
+	 * Creates a callback for <code>solve</code> that publishes the improving
+	 * incumbents of this model (see <code>IncumbentCallback</code>).
+	 *
+	 * @param listener
+	 *            gets all published incumbents.
+	 * @param minPublishInterval
+	 *            minimum time (in milliseconds) between two publications.
+	 */
+	public IncumbentCallback createIncumbentCallback( final IncumbentCallback.IncumbentListener listener, final long minPublishInterval ) {
+		return new IncumbentCallback( Tr2dLog.solverlog, nodes, vars, traProblem.getNodeIndex(), listener, minPublishInterval );
+	}
+
+	/**
+	 * Brings the model in sync with the current <code>EditState</code>s and
+	 * re-optimizes it.
+	 *
+	 * @param warmStart
+	 *            the previous solution, used as MIP start (can be
+	 *            <code>null</code>).
+	 * @param callback
+	 *            Gurobi callback to be used during optimization.
+	 * @return an <code>Assignment</code> containing the solution (the best one
+	 *         found if the budget was exhausted or the callback aborted), or
+	 *         <code>null</code> if optimization stopped before any solution
+	 *         was found.
+	 * @throws GRBException
+	 * @throws IllegalStateException
+	 *             if the model became infeasible.
+	 */
+	public synchronized Assignment< IndicatorNode > solve(
+			final Assignment< IndicatorNode > warmStart,
+			final GRBCallback callback ) throws GRBException {
+		applyEditStates();
+		setMipStart( warmStart );
+
+		model.setCallback( callback );
+		model.optimize();
+
+		final int status = model.get( GRB.IntAttr.Status );
+		final boolean stoppedEarly = status == GRB.Status.TIME_LIMIT || status == GRB.Status.NODE_LIMIT || status == GRB.Status.INTERRUPTED;
+		if ( model.get( GRB.IntAttr.SolCount ) == 0 ) {
+			latestEnergy = Double.NaN;
+			if ( stoppedEarly ) {
+				Tr2dLog.solverlog.warn( "Gurobi stopped (status " + status + ") before finding any solution." );
+				return null;
+			}
+			throw new IllegalStateException( "Incremental Gurobi model is infeasible (status " + status + ")." );
+		}
+		latestEnergy = model.get( GRB.DoubleAttr.ObjVal );
+		if ( stoppedEarly ) {
+			Tr2dLog.solverlog.info( String.format(
+					"Gurobi stopped (status %d) at energy %.2f, %.2f%% above the bound.",
+					status,
+					latestEnergy,
+					100 * model.get( GRB.DoubleAttr.MIPGap ) ) );
+		}
+
+		final double[] values = model.get( GRB.DoubleAttr.X, vars );
+		final BitSetAssignment assignment = new BitSetAssignment( traProblem.getNodeIndex() );
+		for ( int i = 0; i < nodes.length; i++ ) {
+			assignment.set( nodes[ i ], values[ i ] > 0.5 );
+		}
+		return assignment;
+	}
+
+	/**
+	 * Diffs the leveraged edits of all time points against the constraints
+	 * currently in the model. Only constraints of edits that were added or
+	 * removed since the last solve are touched.
+	 */
+	private void applyEditStates() throws GRBException {
+		// forced and avoided segments are fixed via bounds
+		for ( final SegmentNode segment : fixedSegments ) {
+			varmap.get( segment ).set( GRB.DoubleAttr.LB, 0.0 );
+			varmap.get( segment ).set( GRB.DoubleAttr.UB, 1.0 );
+		}
+		fixedSegments.clear();
+
+		final Set< EditKey > wanted = new HashSet<>();
+		for ( final Tr2dSegmentationProblem segProblem : traProblem.getTimepoints() ) {
+			final EditState edits = segProblem.getEditState();
+			for ( final SegmentNode segment : edits.getForcedSegmentNodes() ) {
+				varmap.get( segment ).set( GRB.DoubleAttr.LB, 1.0 );
+				fixedSegments.add( segment );
+			}
+			for ( final SegmentNode segment : edits.getAvoidedSegmentNodes() ) {
+				varmap.get( segment ).set( GRB.DoubleAttr.UB, 0.0 );
+				fixedSegments.add( segment );
+			}
+			addKeys( wanted, EditType.APPEARANCE, edits.getForcedSegmentNodeAppearances() );
+			addKeys( wanted, EditType.DISAPPEARANCE, edits.getForcedSegmentNodeDisappearances() );
+			addKeys( wanted, EditType.MOVE_TO, edits.getForcedSegmentNodeMovesTo() );
+			addKeys( wanted, EditType.MOVE_FROM, edits.getForcedSegmentNodeMovesFrom() );
+			addKeys( wanted, EditType.DIVISION_TO, edits.getForcedSegmentNodeDivisionsTo() );
+			addKeys( wanted, EditType.DIVISION_FROM, edits.getForcedSegmentNodeDivisionsFrom() );
+			addKeys( wanted, EditType.MOVE_TO, edits.getForcedConflictSetMovesTo() );
+			addKeys( wanted, EditType.MOVE_FROM, edits.getForcedConflictSetMovesFrom() );
+			addKeys( wanted, EditType.DIVISION_TO, edits.getForcedConflictSetDivisionsTo() );
+			addKeys( wanted, EditType.DIVISION_FROM, edits.getForcedConflictSetDivisionsFrom() );
+		}
+
+		int removed = 0;
+		final Iterator< Map.Entry< EditKey, GRBConstr > > it = editConstraints.entrySet().iterator();
+		while ( it.hasNext() ) {
+			final Map.Entry< EditKey, GRBConstr > entry = it.next();
+			if ( !wanted.contains( entry.getKey() ) ) {
+				model.remove( entry.getValue() );
+				it.remove();
+				removed++;
+			}
+		}
+
+		int added = 0;
+		for ( final EditKey key : wanted ) {
+			if ( !editConstraints.containsKey( key ) ) {
+				editConstraints.put( key, model.addConstr( createEditExpression( key ), GRB.EQUAL, 1.0, null ) );
+				added++;
+			}
+		}
+		model.update();
+
+		Tr2dLog.solverlog.info(
+				String.format(
+						"Leveraged edits applied: %d segments fixed, %d constraints added, %d removed.",
+						fixedSegments.size(),
+						added,
+						removed ) );
+	}
+
+	private void addKeys( final Set< EditKey > keys, final EditType type, final Collection< ? > subjects ) {
+		for ( final Object subject : subjects ) {
+			keys.add( new EditKey( type, subject ) );
+		}
+	}
+
+	private GRBLinExpr createEditExpression( final EditKey key ) {
+		final Iterable< SegmentNode > segments;
+		if ( key.subject instanceof ConflictSet ) {
+			segments = ( ConflictSet ) key.subject;
+		} else {
+			segments = Collections.singleton( ( SegmentNode ) key.subject );
+		}
+
+		final GRBLinExpr expr = new GRBLinExpr();
+		for ( final SegmentNode segment : segments ) {
+			final Collection< ? extends AssignmentNode > assignments;
+			switch ( key.type ) {
+			case APPEARANCE:
+				assignments = segment.getInAssignments().getAppearances();
+				break;
+			case DISAPPEARANCE:
+				assignments = segment.getOutAssignments().getDisappearances();
+				break;
+			case MOVE_TO:
+				assignments = segment.getInAssignments().getMoves();
+				break;
+			case MOVE_FROM:
+				assignments = segment.getOutAssignments().getMoves();
+				break;
+			case DIVISION_TO:
+				assignments = segment.getInAssignments().getDivisions();
+				break;
+			default:
+				assignments = segment.getOutAssignments().getDivisions();
+			}
+			for ( final AssignmentNode assignment : assignments ) {
+				expr.addTerm( 1.0, varmap.get( assignment ) );
+			}
+		}
+		return expr;
+	}
+
+	private void setMipStart( final Assignment< IndicatorNode > warmStart ) throws GRBException {
+		final double[] start = new double[ nodes.length ];
+		for ( int i = 0; i < nodes.length; i++ ) {
+			if ( warmStart != null && warmStart.isAssigned( nodes[ i ] ) ) {
+				start[ i ] = warmStart.getAssignment( nodes[ i ] );
+			} else {
+				start[ i ] = GRB.UNDEFINED;
+			}
+		}
+		model.set( GRB.DoubleAttr.Start, vars, start );
+	}
+
+	/**
+	 * Retrieves the energy corresponding to the latest computed solution.
+	 *
+	 * @return returns latest computed energy, or <code>Double.NaN</code> if not
+	 *         applicable.
+	 */
+	public double getLatestEnergy() {
+		return latestEnergy;
+	}
+
+	/**
+	 * Frees the Gurobi model and environment. This instance cannot be used
+	 * afterwards.
+	 */
+	public synchronized void dispose() {
+		model.dispose();
+		try {
+			env.dispose();
+		} catch ( final GRBException e ) {
+			e.printStackTrace();
+		}
+	}
+}
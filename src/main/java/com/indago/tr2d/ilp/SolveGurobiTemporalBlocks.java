@@ -0,0 +1,300 @@
+package com.indago.tr2d.ilp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.indago.fg.Assignment;
+import com.indago.ilp.DefaultLoggingGurobiCallback;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AssignmentNode;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.IndicatorNodeIndex;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.util.TicToc;
+
+import gurobi.GRBException;
+
+/**
+ * Solves a <code>Tr2dTrackingProblem</code> by splitting its time axis into
+ * overlapping blocks that are solved concurrently (one Gurobi environment per
+ * block, see <code>SolveGurobiWindow</code>).
+ * Blocks are left open towards their neighbors, so their solutions disagree
+ * in the overlap regions. Each overlap is reconciled by re-solving it as a
+ * seam: its first frame is fixed to the left, its last frame to the right
+ * block's selection, and all nodes both blocks agree on are fixed to the
+ * consensus. If fixing the consensus renders a seam infeasible, it is
+ * re-solved with only the boundary frames fixed.
+ * Seams do not overlap and are solved concurrently as well. The stitched
+ * result is a feasible solution of the full problem, but not necessarily an
+ * optimal one.
+ *
+ * @author jug
+ */
+public class SolveGurobiTemporalBlocks {
+
+	private final Tr2dTrackingProblem traProblem;
+	private final int blockSize;
+	private final int overlap;
+
+	private Set< IndicatorNode > warmStart;
+	private double latestEnergy = Double.NaN;
+
+	/**
+	 * @param traProblem
+	 *            the tracking problem to be solved
+	 * @param blockSize
+	 *            number of frames per block
+	 * @param overlap
+	 *            number of frames shared by two neighboring blocks (at least
+	 *            2, at most half the block size)
+	 */
+	public SolveGurobiTemporalBlocks( final Tr2dTrackingProblem traProblem, final int blockSize, final int overlap ) {
+		if ( overlap < 2 || 2 * overlap > blockSize ) {
+			throw new IllegalArgumentException( "Overlap must be at least 2 and at most half the block size." );
+		}
+		this.traProblem = traProblem;
+		this.blockSize = blockSize;
+		this.overlap = overlap;
+	}
+
+	/**
+	 * @param warmStart
+	 *            a solution of the full problem (e.g. a greedy preview), used
+	 *            as MIP start of the blocks (can be <code>null</code>)
+	 */
+	public void setWarmStart( final Assignment< IndicatorNode > warmStart ) {
+		this.warmStart = SolveGurobiWindow.activeNodes( traProblem, warmStart );
+	}
+
+	/**
+	 * Solves all blocks, then all seams, and stitches them together.
+	 *
+	 * @param pool
+	 *            the pool blocks and seams are solved on
+	 * @return the stitched solution, assigning all nodes of the tracking
+	 *         problem.
+	 * @throws GRBException
+	 * @throws IllegalStateException
+	 *             if a block or seam is infeasible.
+	 */
+	public Assignment< IndicatorNode > solve( final ForkJoinPool pool ) throws GRBException {
+		final int numFrames = traProblem.getTimepoints().size();
+		final List< int[] > layout = getBlocks( numFrames, blockSize, overlap );
+		final List< Integer > starts = new ArrayList<>();
+		final List< Integer > ends = new ArrayList<>();
+		for ( final int[] block : layout ) {
+			starts.add( block[ 0 ] );
+			ends.add( block[ 1 ] );
+		}
+		final int numBlocks = starts.size();
+
+		// Gurobi threads are shared among the blocks solved at the same time
+		final int threadsPerSolve = Math.max( 1, Runtime.getRuntime().availableProcessors() / Math.min( numBlocks, pool.getParallelism() ) );
+
+		final TicToc tictoc = new TicToc();
+		tictoc.tic( String.format( "Solving %d frames in %d blocks of %d frames...", numFrames, numBlocks, blockSize ) );
+		final List< ForkJoinTask< Set< IndicatorNode > > > blockTasks = new ArrayList<>();
+		for ( int k = 0; k < numBlocks; k++ ) {
+			final SolveGurobiWindow solver = new SolveGurobiWindow( traProblem, starts.get( k ), ends.get( k ) );
+			solver.setThreads( threadsPerSolve );
+			blockTasks.add( pool.submit( () -> solver.solve( null, warmStart, new DefaultLoggingGurobiCallback( Tr2dLog.solverlog ) ) ) );
+		}
+		final List< Set< IndicatorNode > > blocks = new ArrayList<>();
+		for ( final ForkJoinTask< Set< IndicatorNode > > task : blockTasks ) {
+			blocks.add( join( task ) );
+		}
+		tictoc.toc( "done!" );
+
+		tictoc.tic( String.format( "Stitching %d seams...", numBlocks - 1 ) );
+		final List< ForkJoinTask< Set< IndicatorNode > > > seamTasks = new ArrayList<>();
+		for ( int k = 0; k < numBlocks - 1; k++ ) {
+			final int first = starts.get( k + 1 );
+			final int last = ends.get( k );
+			final Set< IndicatorNode > left = blocks.get( k );
+			final Set< IndicatorNode > right = blocks.get( k + 1 );
+			seamTasks.add( pool.submit( () -> solveSeam( first, last, left, right, threadsPerSolve ) ) );
+		}
+		final List< Set< IndicatorNode > > seams = new ArrayList<>();
+		for ( final ForkJoinTask< Set< IndicatorNode > > task : seamTasks ) {
+			seams.add( join( task ) );
+		}
+		tictoc.toc( "done!" );
+
+		final BitSetAssignment assignment = stitch( traProblem, layout, blocks, seams );
+		final IndicatorNodeIndex index = traProblem.getNodeIndex();
+		latestEnergy = 0;
+		for ( int i = 0; i < index.size(); i++ ) {
+			if ( assignment.get( i ) ) latestEnergy += index.get( i ).getCost();
+		}
+		return assignment;
+	}
+
+	/**
+	 * @return the first and last frame of each block. Blocks start every
+	 *         <code>blockSize - overlap</code> frames, the last one ends at
+	 *         the last frame.
+	 */
+	static List< int[] > getBlocks( final int numFrames, final int blockSize, final int overlap ) {
+		final List< int[] > ret = new ArrayList<>();
+		int start = 0;
+		int end;
+		do {
+			end = Math.min( start + blockSize - 1, numFrames - 1 );
+			ret.add( new int[] { start, end } );
+			start += blockSize - overlap;
+		}
+		while ( end < numFrames - 1 );
+		return ret;
+	}
+
+	/**
+	 * Stitches block and seam solutions: frames up to a seam are taken from
+	 * the block left of it, frames from its end onwards from the block right
+	 * of it, and the seam (which agrees with both blocks on its first and last
+	 * frame) fills the frames in between.
+	 *
+	 * @param layout
+	 *            first and last frame of each block (see
+	 *            <code>getBlocks</code>)
+	 * @param blocks
+	 *            the active nodes of each block
+	 * @param seams
+	 *            the active nodes of each overlap (seam <code>k</code> spans
+	 *            the first frame of block <code>k+1</code> to the last frame
+	 *            of block <code>k</code>)
+	 */
+	static BitSetAssignment stitch(
+			final Tr2dTrackingProblem traProblem,
+			final List< int[] > layout,
+			final List< Set< IndicatorNode > > blocks,
+			final List< Set< IndicatorNode > > seams ) {
+		final int numBlocks = layout.size();
+		final BitSetAssignment assignment = new BitSetAssignment( traProblem.getNodeIndex() );
+		for ( int k = 0; k < numBlocks; k++ ) {
+			final int from = ( k == 0 ) ? 0 : layout.get( k - 1 )[ 1 ];
+			final int to = ( k == numBlocks - 1 ) ? traProblem.getTimepoints().size() - 1 : layout.get( k + 1 )[ 0 ];
+			collect( traProblem, blocks.get( k ), from, to, assignment );
+		}
+		for ( final Set< IndicatorNode > seam : seams ) {
+			for ( final IndicatorNode node : seam ) {
+				assignment.set( node, true );
+			}
+		}
+		return assignment;
+	}
+
+	private Set< IndicatorNode > solveSeam(
+			final int first,
+			final int last,
+			final Set< IndicatorNode > left,
+			final Set< IndicatorNode > right,
+			final int threads ) throws GRBException {
+		final Set< SegmentNode > fixedFirst = activeSegments( first, left );
+		final Set< SegmentNode > fixedLast = activeSegments( last, right );
+
+		// consensus of both blocks on all nodes strictly inside the seam
+		final Set< IndicatorNode > inner = new HashSet<>();
+		for ( int t = first; t <= last; t++ ) {
+			for ( final SegmentNode segment : traProblem.getTimepoints().get( t ).getSegments() ) {
+				if ( t > first && t < last ) inner.add( segment );
+				if ( t < last ) inner.addAll( segment.getOutAssignments().getAllAssignments() );
+			}
+		}
+		final Map< IndicatorNode, Boolean > consensus = new HashMap<>();
+		for ( final IndicatorNode node : inner ) {
+			final boolean value = left.contains( node );
+			if ( value == right.contains( node ) ) consensus.put( node, value );
+		}
+		Tr2dLog.solverlog.info(
+				String.format(
+						"Seam of frames %d to %d: blocks disagree on %d of %d nodes.",
+						first,
+						last,
+						inner.size() - consensus.size(),
+						inner.size() ) );
+
+		final SolveGurobiWindow solver = new SolveGurobiWindow( traProblem, first, last );
+		solver.setThreads( threads );
+		solver.setLastFrameFixed( fixedLast );
+		solver.setFixedNodes( consensus );
+		try {
+			return solver.solve( fixedFirst, left, new DefaultLoggingGurobiCallback( Tr2dLog.solverlog ) );
+		} catch ( final IllegalStateException ise ) {
+			Tr2dLog.solverlog.warn( String.format( "Consensus of seam %d to %d is infeasible, re-solving without.", first, last ) );
+			solver.setFixedNodes( Collections.emptyMap() );
+			return solver.solve( fixedFirst, left, new DefaultLoggingGurobiCallback( Tr2dLog.solverlog ) );
+		}
+	}
+
+	private Set< SegmentNode > activeSegments( final int frame, final Set< IndicatorNode > active ) {
+		final Set< SegmentNode > ret = new HashSet<>();
+		for ( final SegmentNode segment : traProblem.getTimepoints().get( frame ).getSegments() ) {
+			if ( active.contains( segment ) ) ret.add( segment );
+		}
+		return ret;
+	}
+
+	/**
+	 * Copies the active segments of frames <code>from</code> to
+	 * <code>to</code>, and the active assignments in between, into the given
+	 * assignment. Appearances into the first and disappearances out of the
+	 * last frame of the problem are copied as well.
+	 */
+	private static void collect(
+			final Tr2dTrackingProblem traProblem,
+			final Set< IndicatorNode > active,
+			final int from,
+			final int to,
+			final BitSetAssignment assignment ) {
+		final int lastFrame = traProblem.getTimepoints().size() - 1;
+		for ( int t = from; t <= to; t++ ) {
+			for ( final SegmentNode segment : traProblem.getTimepoints().get( t ).getSegments() ) {
+				if ( active.contains( segment ) ) assignment.set( segment, true );
+				if ( t > from || t == 0 ) {
+					for ( final AssignmentNode node : segment.getInAssignments().getAllAssignments() ) {
+						if ( active.contains( node ) ) assignment.set( node, true );
+					}
+				}
+				if ( t < to || t == lastFrame ) {
+					for ( final AssignmentNode node : segment.getOutAssignments().getAllAssignments() ) {
+						if ( active.contains( node ) ) assignment.set( node, true );
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Joins the given task, unwrapping <code>GRBException</code>s thrown by
+	 * it (<code>IllegalStateException</code>s pass as they are).
+	 */
+	static < T > T join( final ForkJoinTask< T > task ) throws GRBException {
+		try {
+			return task.join();
+		} catch ( final RuntimeException e ) {
+			for ( Throwable cause = e.getCause(); cause != null; cause = cause.getCause() ) {
+				if ( cause instanceof GRBException ) throw ( GRBException ) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Retrieves the energy of the latest stitched solution.
+	 *
+	 * @return returns latest computed energy, or <code>Double.NaN</code> if not
+	 *         applicable.
+	 */
+	public double getLatestEnergy() {
+		return latestEnergy;
+	}
+}
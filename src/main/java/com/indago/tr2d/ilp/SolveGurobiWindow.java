@@ -0,0 +1,387 @@
+package com.indago.tr2d.ilp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AssignmentNode;
+import com.indago.pg.segments.ConflictSet;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.pg.IndicatorNodeIndex;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.tr2d.pg.levedit.EditState;
+
+import gurobi.GRB;
+import gurobi.GRBCallback;
+import gurobi.GRBEnv;
+import gurobi.GRBException;
+import gurobi.GRBLinExpr;
+import gurobi.GRBModel;
+import gurobi.GRBVar;
+
+/**
+ * Solves a window of consecutive frames of a <code>Tr2dTrackingProblem</code>
+ * (by default all frames from <code>firstFrame</code> to the last one), while
+ * everything outside stays as it is.
+ * The in-assignments of the first frame of a window starting after frame 0,
+ * as well as the out-assignments of the last frame of a window ending before
+ * the last frame, connect to frames outside and are not part of the model.
+ * The segments of those boundary frames can either be fixed to a given
+ * selection or left open (i.e. without continuity constraint towards the
+ * outside). Segments of the last frame only need an out-assignment if they
+ * have any, so problems that are still growing (without dummy
+ * disappearances) can be solved as well.
+ * Leveraged edits of the frames in the window are respected as far as the
+ * assignments they refer to are part of the model.
+ * The model can further be restricted to a subset of segments that shares no
+ * assignment or conflict set with the remaining ones (see
+ * <code>ProblemGraphComponents</code>).
+ *
+ * @author jug
+ */
+public class SolveGurobiWindow {
+
+	private final Tr2dTrackingProblem traProblem;
+	private final int firstFrame;
+	private final int lastFrame;
+
+	private Set< SegmentNode > fixedLast = null;
+	private Set< SegmentNode > segments = null;
+	private Map< IndicatorNode, Boolean > fixedNodes = Collections.emptyMap();
+	private Map< IndicatorNode, Boolean > bounds;
+	private int threads = 0;
+
+	private GRBEnv env;
+	private GRBModel model;
+	private final Map< IndicatorNode, GRBVar > varmap = new HashMap<>();
+	private final List< IndicatorNode > nodes = new ArrayList<>();
+
+	private double latestEnergy = Double.NaN;
+
+	/**
+	 * @param traProblem
+	 *            the tracking problem
+	 * @param firstFrame
+	 *            the first frame of the window (if <code>0</code>, the whole
+	 *            problem is solved and no segment is fixed)
+	 */
+	public SolveGurobiWindow( final Tr2dTrackingProblem traProblem, final int firstFrame ) {
+		this( traProblem, firstFrame, traProblem.getTimepoints().size() - 1 );
+	}
+
+	/**
+	 * @param traProblem
+	 *            the tracking problem
+	 * @param firstFrame
+	 *            the first frame of the window
+	 * @param lastFrame
+	 *            the last frame of the window (inclusive)
+	 */
+	public SolveGurobiWindow( final Tr2dTrackingProblem traProblem, final int firstFrame, final int lastFrame ) {
+		this.traProblem = traProblem;
+		this.firstFrame = firstFrame;
+		this.lastFrame = lastFrame;
+	}
+
+	/**
+	 * @param fixedLast
+	 *            the segments of the last frame that must be active, all
+	 *            others of that frame are inactive (ignored if the window ends
+	 *            with the last frame of the problem, <code>null</code> leaves
+	 *            the last frame open)
+	 */
+	public void setLastFrameFixed( final Set< SegmentNode > fixedLast ) {
+		this.fixedLast = fixedLast;
+	}
+
+	/**
+	 * @param fixedNodes
+	 *            nodes inside the window to be fixed to the given value
+	 */
+	public void setFixedNodes( final Map< IndicatorNode, Boolean > fixedNodes ) {
+		this.fixedNodes = fixedNodes;
+	}
+
+	/**
+	 * @param segments
+	 *            the only segments to be modeled (together with their
+	 *            assignments and conflict sets), <code>null</code> models all
+	 *            segments of the window. The set must be closed under
+	 *            assignments and conflict sets.
+	 */
+	public void setSegments( final Set< SegmentNode > segments ) {
+		this.segments = segments;
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads Gurobi may use (&le; 0 lets Gurobi decide)
+	 */
+	public void setThreads( final int threads ) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Builds and solves the window model.
+	 *
+	 * @param fixedFirst
+	 *            the segments of <code>firstFrame</code> that must be active,
+	 *            all others of that frame are inactive (ignored if
+	 *            <code>firstFrame</code> is <code>0</code>,
+	 *            <code>null</code> leaves the first frame open)
+	 * @param warmStart
+	 *            nodes active in a previous solution, used as MIP start (can
+	 *            be <code>null</code>)
+	 * @param callback
+	 *            Gurobi callback to be used during optimization.
+	 * @return all active segment and assignment nodes of the window, i.e. the
+	 *         segments of all its frames, the out-assignments of all its
+	 *         frames but a last boundary frame, and the in-assignments of all
+	 *         its frames but a first boundary frame.
+	 * @throws GRBException
+	 * @throws IllegalStateException
+	 *             if the window is infeasible.
+	 */
+	public Set< IndicatorNode > solve(
+			final Set< SegmentNode > fixedFirst,
+			final Set< IndicatorNode > warmStart,
+			final GRBCallback callback ) throws GRBException {
+		env = new GRBEnv();
+		if ( threads > 0 ) env.set( GRB.IntParam.Threads, threads );
+		model = new GRBModel( env );
+		try {
+			buildModel( fixedFirst );
+
+			if ( warmStart != null ) {
+				for ( final IndicatorNode node : nodes ) {
+					varmap.get( node ).set( GRB.DoubleAttr.Start, warmStart.contains( node ) ? 1.0 : 0.0 );
+				}
+			}
+
+			model.setCallback( callback );
+			model.optimize();
+
+			final int status = model.get( GRB.IntAttr.Status );
+			if ( status == GRB.Status.INFEASIBLE || status == GRB.Status.INF_OR_UNBD || model.get( GRB.IntAttr.SolCount ) == 0 ) {
+				latestEnergy = Double.NaN;
+				throw new IllegalStateException( "Window of frames " + firstFrame + " to " + lastFrame + " is infeasible (status " + status + ")." );
+			}
+			latestEnergy = model.get( GRB.DoubleAttr.ObjVal );
+
+			final GRBVar[] vars = new GRBVar[ nodes.size() ];
+			for ( int i = 0; i < vars.length; i++ ) {
+				vars[ i ] = varmap.get( nodes.get( i ) );
+			}
+			final double[] values = model.get( GRB.DoubleAttr.X, vars );
+			final Set< IndicatorNode > active = new HashSet<>();
+			for ( int i = 0; i < values.length; i++ ) {
+				if ( values[ i ] > 0.5 ) active.add( nodes.get( i ) );
+			}
+			return active;
+		} finally {
+			model.dispose();
+			env.dispose();
+			varmap.clear();
+			nodes.clear();
+			bounds = null;
+		}
+	}
+
+	private void buildModel( final Set< SegmentNode > fixedFirst ) throws GRBException {
+		final List< Tr2dSegmentationProblem > timepoints = traProblem.getTimepoints();
+
+		// forced and avoided segments are fixed via bounds
+		bounds = new HashMap<>( fixedNodes );
+		for ( int t = firstFrame; t <= lastFrame; t++ ) {
+			final EditState edits = timepoints.get( t ).getEditState();
+			for ( final SegmentNode segment : edits.getForcedSegmentNodes() ) {
+				bounds.putIfAbsent( segment, true );
+			}
+			for ( final SegmentNode segment : edits.getAvoidedSegmentNodes() ) {
+				bounds.putIfAbsent( segment, false );
+			}
+		}
+
+		for ( int t = firstFrame; t <= lastFrame; t++ ) {
+			final boolean isFirstBoundary = isFirstBoundary( t );
+			final boolean isLastBoundary = isLastBoundary( t );
+			final Set< SegmentNode > fixed = isFirstBoundary ? fixedFirst : ( isLastBoundary ? fixedLast : null );
+			for ( final SegmentNode segment : timepoints.get( t ).getSegments() ) {
+				if ( !isModeled( segment ) ) continue;
+				if ( fixed != null ) {
+					final double value = fixed.contains( segment ) ? 1.0 : 0.0;
+					addVar( segment, value, value );
+				} else {
+					addVar( segment );
+				}
+				if ( !isFirstBoundary ) {
+					for ( final AssignmentNode assignment : segment.getInAssignments().getAllAssignments() ) {
+						addVar( assignment );
+					}
+				}
+				if ( !isLastBoundary ) {
+					for ( final AssignmentNode assignment : segment.getOutAssignments().getAllAssignments() ) {
+						addVar( assignment );
+					}
+				}
+			}
+		}
+		model.update();
+
+		for ( int t = firstFrame; t <= lastFrame; t++ ) {
+			final Tr2dSegmentationProblem segProblem = timepoints.get( t );
+			final boolean isFirstBoundary = isFirstBoundary( t );
+			final boolean isLastBoundary = isLastBoundary( t );
+			if ( !( isFirstBoundary && fixedFirst != null ) && !( isLastBoundary && fixedLast != null ) ) {
+				// at most one segment per conflict set
+				for ( final ConflictSet conflictSet : segProblem.getConflictSets() ) {
+					if ( !isModeled( conflictSet ) ) continue;
+					final GRBLinExpr expr = new GRBLinExpr();
+					for ( final SegmentNode segment : conflictSet ) {
+						expr.addTerm( 1.0, varmap.get( segment ) );
+					}
+					model.addConstr( expr, GRB.LESS_EQUAL, 1.0, null );
+				}
+			}
+			// active segments have exactly one in- and one out-assignment
+			for ( final SegmentNode segment : segProblem.getSegments() ) {
+				if ( !isModeled( segment ) ) continue;
+				if ( !isFirstBoundary ) {
+					final GRBLinExpr in = sumOf( segment.getInAssignments().getAllAssignments() );
+					in.addTerm( -1.0, varmap.get( segment ) );
+					model.addConstr( in, GRB.EQUAL, 0.0, null );
+				}
+				if ( !isLastBoundary && !segment.getOutAssignments().getAllAssignments().isEmpty() ) {
+					final GRBLinExpr out = sumOf( segment.getOutAssignments().getAllAssignments() );
+					out.addTerm( -1.0, varmap.get( segment ) );
+					model.addConstr( out, GRB.EQUAL, 0.0, null );
+				}
+			}
+			// leveraged edits, as far as their assignments are part of the window
+			final EditState edits = segProblem.getEditState();
+			if ( !isFirstBoundary ) {
+				addEditConstraints( edits.getForcedSegmentNodeAppearances(), s -> s.getInAssignments().getAppearances() );
+				addEditConstraints( edits.getForcedSegmentNodeMovesTo(), s -> s.getInAssignments().getMoves() );
+				addEditConstraints( edits.getForcedSegmentNodeDivisionsTo(), s -> s.getInAssignments().getDivisions() );
+				addEditConstraintsForConflictSets( edits.getForcedConflictSetMovesTo(), s -> s.getInAssignments().getMoves() );
+				addEditConstraintsForConflictSets( edits.getForcedConflictSetDivisionsTo(), s -> s.getInAssignments().getDivisions() );
+			}
+			if ( !isLastBoundary ) {
+				addEditConstraints( edits.getForcedSegmentNodeDisappearances(), s -> s.getOutAssignments().getDisappearances() );
+				addEditConstraints( edits.getForcedSegmentNodeMovesFrom(), s -> s.getOutAssignments().getMoves() );
+				addEditConstraints( edits.getForcedSegmentNodeDivisionsFrom(), s -> s.getOutAssignments().getDivisions() );
+				addEditConstraintsForConflictSets( edits.getForcedConflictSetMovesFrom(), s -> s.getOutAssignments().getMoves() );
+				addEditConstraintsForConflictSets( edits.getForcedConflictSetDivisionsFrom(), s -> s.getOutAssignments().getDivisions() );
+			}
+		}
+		model.update();
+
+		Tr2dLog.solverlog.info(
+				String.format( "Window model built for frames %d to %d with %d variables.", firstFrame, lastFrame, nodes.size() ) );
+	}
+
+	private boolean isModeled( final SegmentNode segment ) {
+		return segments == null || segments.contains( segment );
+	}
+
+	private boolean isModeled( final ConflictSet conflictSet ) {
+		final Iterator< SegmentNode > it = conflictSet.iterator();
+		return it.hasNext() && isModeled( it.next() );
+	}
+
+	private boolean isFirstBoundary( final int t ) {
+		return t == firstFrame && firstFrame > 0;
+	}
+
+	private boolean isLastBoundary( final int t ) {
+		return t == lastFrame && lastFrame < traProblem.getTimepoints().size() - 1;
+	}
+
+	private void addEditConstraints(
+			final Collection< SegmentNode > segments,
+			final Function< SegmentNode, Collection< ? extends AssignmentNode > > assignments ) throws GRBException {
+		for ( final SegmentNode segment : segments ) {
+			if ( isModeled( segment ) ) addEditConstraint( Collections.singleton( segment ), assignments );
+		}
+	}
+
+	private void addEditConstraintsForConflictSets(
+			final Collection< ConflictSet > conflictSets,
+			final Function< SegmentNode, Collection< ? extends AssignmentNode > > assignments ) throws GRBException {
+		for ( final ConflictSet conflictSet : conflictSets ) {
+			if ( isModeled( conflictSet ) ) addEditConstraint( conflictSet, assignments );
+		}
+	}
+
+	private void addEditConstraint(
+			final Iterable< SegmentNode > segments,
+			final Function< SegmentNode, Collection< ? extends AssignmentNode > > assignments ) throws GRBException {
+		final GRBLinExpr expr = new GRBLinExpr();
+		for ( final SegmentNode segment : segments ) {
+			expr.add( sumOf( assignments.apply( segment ) ) );
+		}
+		model.addConstr( expr, GRB.EQUAL, 1.0, null );
+	}
+
+	private void addVar( final IndicatorNode node ) throws GRBException {
+		final Boolean value = bounds.get( node );
+		if ( value == null ) {
+			addVar( node, 0.0, 1.0 );
+		} else {
+			addVar( node, value ? 1.0 : 0.0, value ? 1.0 : 0.0 );
+		}
+	}
+
+	private void addVar( final IndicatorNode node, final double lb, final double ub ) throws GRBException {
+		if ( !varmap.containsKey( node ) ) {
+			varmap.put( node, model.addVar( lb, ub, node.getCost(), GRB.BINARY, null ) );
+			nodes.add( node );
+		}
+	}
+
+	private GRBLinExpr sumOf( final Collection< ? extends IndicatorNode > indicatorNodes ) {
+		final GRBLinExpr expr = new GRBLinExpr();
+		for ( final IndicatorNode node : indicatorNodes ) {
+			expr.addTerm( 1.0, varmap.get( node ) );
+		}
+		return expr;
+	}
+
+	/**
+	 * @return the nodes of the given tracking problem that are active in the
+	 *         given assignment, e.g. to be used as MIP start
+	 *         (<code>null</code> if the assignment is <code>null</code>).
+	 */
+	static Set< IndicatorNode > activeNodes( final Tr2dTrackingProblem traProblem, final Assignment< IndicatorNode > assignment ) {
+		if ( assignment == null ) return null;
+		final IndicatorNodeIndex index = traProblem.getNodeIndex();
+		final Set< IndicatorNode > ret = new HashSet<>();
+		for ( int i = 0; i < index.size(); i++ ) {
+			final IndicatorNode node = index.get( i );
+			if ( assignment.isAssigned( node ) && assignment.getAssignment( node ) == 1 ) ret.add( node );
+		}
+		return ret;
+	}
+
+	/**
+	 * Retrieves the energy of the latest solved window (excluding the fixed
+	 * past).
+	 *
+	 * @return returns latest computed energy, or <code>Double.NaN</code> if not
+	 *         applicable.
+	 */
+	public double getLatestEnergy() {
+		return latestEnergy;
+	}
+}
@@ -0,0 +1,446 @@
+package com.indago.tr2d.ilp;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.CompactTrackingProblem;
+import com.indago.tr2d.pg.IndicatorNodeIndex;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.util.TicToc;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Pure Java <code>TrackingSolver</code>, working on the
+ * <code>CompactTrackingProblem</code> of the given tracking problem. It
+ * proceeds in three steps:
+ * <ol>
+ * <li>Without divisions, tracks form a flow through the segments: every
+ * segment is an arc of capacity 1, entered by an appearance or move and left
+ * by a disappearance or move. Conflict sets are relaxed by Lagrangian
+ * penalties on their segments, which are raised by subgradient steps and
+ * the flow re-solved (<code>MinCostFlow</code>) until no conflict set holds
+ * more than one segment, or the rounds are used up.</li>
+ * <li>Remaining conflicts are repaired by keeping the cheapest segment of a
+ * conflict set and closing the tracks of the others with appearances and
+ * disappearances. Segments whose removal would (directly or through their
+ * neighbors lacking an allowed appearance or disappearance) deactivate a
+ * forced segment are always kept.</li>
+ * <li>Divisions are added greedily as long as replacing the current
+ * out-assignment of the mother and in-assignments of the daughters lowers
+ * the energy.</li>
+ * </ol>
+ * The result is feasible, but not necessarily optimal. Leveraged edits on
+ * segments are respected (forced segments and assignments get an overwhelming
+ * bonus and are never deactivated); edits on conflict sets are ignored.
+ *
+ * @author jug
+ */
+public class SolveMinCostFlow implements TrackingSolver {
+
+	private static final int MAX_LAGRANGIAN_ROUNDS = 30;
+	private static final int MAX_DIVISION_PASSES = 10;
+	private static final double EPSILON = 1e-9;
+
+	private CompactTrackingProblem ctp;
+	private TrackingEdits edits;
+	private boolean[] excluded;
+	private int numSegments;
+
+	private boolean[] active;
+	private int[] inOf;
+	private int[] outOf;
+
+	private double latestEnergy = Double.NaN;
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#getName()
+	 */
+	@Override
+	public String getName() {
+		return TrackingSolvers.JAVA;
+	}
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#solve(com.indago.tr2d.pg.Tr2dTrackingProblem,
+	 *      java.util.concurrent.ForkJoinPool)
+	 */
+	@Override
+	public Assignment< IndicatorNode > solve( final Tr2dTrackingProblem traProblem, final ForkJoinPool pool ) {
+		final TicToc tictoc = new TicToc();
+		tictoc.tic( "Solving tracking problem with min-cost flow..." );
+		final CompactTrackingProblem problem = new CompactTrackingProblem( traProblem );
+		final BitSetAssignment assignment = solve( problem, new TrackingEdits( problem ), null, traProblem.getNodeIndex() );
+		tictoc.toc( "done!" );
+		return assignment;
+	}
+
+	/**
+	 * Solves the given compact problem, optionally restricted to a subset of
+	 * its segments.
+	 *
+	 * @param excludedSegments
+	 *            segments that must not be active (in addition to avoided
+	 *            ones), or <code>null</code>
+	 * @return the solution, the energy of which is then available via
+	 *         <code>getLatestEnergy()</code>.
+	 */
+	BitSetAssignment solve(
+			final CompactTrackingProblem problem,
+			final TrackingEdits trackingEdits,
+			final boolean[] excludedSegments,
+			final IndicatorNodeIndex index ) {
+		ctp = problem;
+		edits = trackingEdits;
+		numSegments = ctp.getNumSegments();
+		excluded = new boolean[ numSegments ];
+		for ( int s = 0; s < numSegments; s++ ) {
+			excluded[ s ] = edits.isAvoided( s ) || ( excludedSegments != null && excludedSegments[ s ] );
+		}
+
+		solveFlow();
+		repairConflicts();
+		final int divisions = addDivisions();
+
+		final BitSetAssignment assignment = new BitSetAssignment( index );
+		for ( int s = 0; s < numSegments; s++ ) {
+			if ( !active[ s ] ) continue;
+			assignment.set( s, true );
+			assignment.set( inOf[ s ], true );
+			assignment.set( outOf[ s ], true );
+		}
+		latestEnergy = ctp.getCost( assignment );
+		Tr2dLog.solverlog.info( String.format( "Min-cost flow solution with %d divisions has energy %.2f.", divisions, latestEnergy ) );
+		return assignment;
+	}
+
+	/**
+	 * Step 1: division free flow with Lagrangian penalties on conflict sets.
+	 */
+	private void solveFlow() {
+		// source 0, segment s from 1+2s to 2+2s, sink last
+		final MinCostFlow flow = new MinCostFlow( 2 * numSegments + 2 );
+		final int sink = 2 * numSegments + 1;
+		final int[] segmentArc = new int[ numSegments ];
+		final TIntArrayList nodeOfArc = new TIntArrayList();
+		for ( int s = 0; s < numSegments; s++ ) {
+			if ( excluded[ s ] ) {
+				segmentArc[ s ] = -1;
+				continue;
+			}
+			segmentArc[ s ] = flow.addArc( 1 + 2 * s, 2 + 2 * s, edits.getEffectiveCost( s ) );
+			nodeOfArc.add( s );
+		}
+		for ( int a = numSegments; a < ctp.getNumNodes(); a++ ) {
+			if ( !isUsable( a, false ) ) continue;
+			switch ( ctp.getType( a ) ) {
+			case CompactTrackingProblem.APPEARANCE:
+				flow.addArc( 0, 1 + 2 * ctp.getDest( a ), ctp.getCost( a ) );
+				break;
+			case CompactTrackingProblem.DISAPPEARANCE:
+				flow.addArc( 2 + 2 * ctp.getSrc( a ), sink, ctp.getCost( a ) );
+				break;
+			case CompactTrackingProblem.MOVE:
+				flow.addArc( 2 + 2 * ctp.getSrc( a ), 1 + 2 * ctp.getDest( a ), ctp.getCost( a ) );
+				break;
+			default:
+				continue;
+			}
+			nodeOfArc.add( a );
+		}
+
+		final double step = averageAbsoluteSegmentCost();
+		final double[] multiplier = new double[ ctp.getNumConflictSets() ];
+		active = new boolean[ numSegments ];
+		int round = 0;
+		int violated;
+		do {
+			for ( int s = 0; s < numSegments; s++ ) {
+				if ( segmentArc[ s ] < 0 ) continue;
+				double penalty = 0;
+				for ( int k = 0; k < ctp.getNumConflictSetsOf( s ); k++ ) {
+					penalty += multiplier[ ctp.getConflictSetOf( s, k ) ];
+				}
+				flow.setCost( segmentArc[ s ], edits.getEffectiveCost( s ) + penalty );
+			}
+			flow.solve();
+			for ( int s = 0; s < numSegments; s++ ) {
+				active[ s ] = segmentArc[ s ] >= 0 && flow.hasFlow( segmentArc[ s ] );
+			}
+
+			violated = 0;
+			for ( int c = 0; c < ctp.getNumConflictSets(); c++ ) {
+				final int excess = numActive( c ) - 1;
+				if ( excess > 0 ) {
+					multiplier[ c ] += step * excess;
+					violated++;
+				}
+			}
+			round++;
+		}
+		while ( violated > 0 && round < MAX_LAGRANGIAN_ROUNDS );
+		Tr2dLog.solverlog.info( String.format( "Flow solved in %d rounds, %d conflict sets still violated.", round, violated ) );
+
+		inOf = new int[ numSegments ];
+		outOf = new int[ numSegments ];
+		Arrays.fill( inOf, -1 );
+		Arrays.fill( outOf, -1 );
+		for ( int arc = 0; arc < nodeOfArc.size(); arc++ ) {
+			final int a = nodeOfArc.get( arc );
+			if ( a < numSegments || !flow.hasFlow( arc ) ) continue;
+			if ( ctp.getSrc( a ) >= 0 ) outOf[ ctp.getSrc( a ) ] = a;
+			if ( ctp.getDest( a ) >= 0 ) inOf[ ctp.getDest( a ) ] = a;
+		}
+	}
+
+	private double averageAbsoluteSegmentCost() {
+		double sum = 0;
+		for ( int s = 0; s < numSegments; s++ ) {
+			sum += Math.abs( ctp.getCost( s ) );
+		}
+		return ( numSegments > 0 && sum > 0 ) ? sum / numSegments : 1;
+	}
+
+	private int numActive( final int conflictSet ) {
+		int ret = 0;
+		for ( int k = 0; k < ctp.getConflictSetSize( conflictSet ); k++ ) {
+			if ( active[ ctp.getConflictSetMember( conflictSet, k ) ] ) ret++;
+		}
+		return ret;
+	}
+
+	/**
+	 * Step 2: keeps the cheapest active segment of each violated conflict set,
+	 * or the one that cannot be removed without deactivating a forced segment.
+	 *
+	 * @throws IllegalStateException
+	 *             if a conflict set holds two such segments (i.e. the edits
+	 *             contradict each other).
+	 */
+	private void repairConflicts() {
+		int removed = 0;
+		for ( int c = 0; c < ctp.getNumConflictSets(); c++ ) {
+			if ( numActive( c ) <= 1 ) continue;
+			int best = -1;
+			double bestCost = Double.POSITIVE_INFINITY;
+			boolean bestRemovable = true;
+			for ( int k = 0; k < ctp.getConflictSetSize( c ); k++ ) {
+				final int s = ctp.getConflictSetMember( c, k );
+				if ( !active[ s ] ) continue;
+				final boolean removable = isRemovable( s );
+				if ( !removable && !bestRemovable ) {
+					throw new IllegalStateException( "Leveraged edits force conflicting segments to be active." );
+				}
+				final double cost = edits.getEffectiveCost( s ) + ctp.getCost( inOf[ s ] ) + ctp.getCost( outOf[ s ] );
+				if ( ( bestRemovable && !removable ) || ( removable == bestRemovable && cost < bestCost ) ) {
+					bestCost = cost;
+					best = s;
+					bestRemovable = removable;
+				}
+			}
+			for ( int k = 0; k < ctp.getConflictSetSize( c ); k++ ) {
+				final int s = ctp.getConflictSetMember( c, k );
+				if ( s != best && active[ s ] ) removed += deactivate( s );
+			}
+		}
+		if ( removed > 0 ) Tr2dLog.solverlog.info( String.format( "Conflict repair removed %d segments.", removed ) );
+	}
+
+	/**
+	 * @return <code>true</code> if <code>deactivate( segment )</code> would
+	 *         deactivate no forced segment.
+	 */
+	private boolean isRemovable( final int segment ) {
+		final TIntHashSet visited = new TIntHashSet();
+		final TIntArrayList todo = new TIntArrayList();
+		todo.add( segment );
+		while ( !todo.isEmpty() ) {
+			final int s = todo.removeAt( todo.size() - 1 );
+			if ( !active[ s ] || !visited.add( s ) ) continue;
+			if ( edits.isForced( s ) ) return false;
+			final int p = ( inOf[ s ] >= 0 ) ? ctp.getSrc( inOf[ s ] ) : -1;
+			if ( p >= 0 && cheapest( p, CompactTrackingProblem.DISAPPEARANCE ) < 0 ) todo.add( p );
+			final int q = ( outOf[ s ] >= 0 ) ? ctp.getDest( outOf[ s ] ) : -1;
+			if ( q >= 0 && cheapest( q, CompactTrackingProblem.APPEARANCE ) < 0 ) todo.add( q );
+		}
+		return true;
+	}
+
+	/**
+	 * Deactivates the given segment. Its predecessor gets a disappearance and
+	 * its successor an appearance instead; if there is none, they get
+	 * deactivated as well.
+	 *
+	 * @return number of deactivated segments.
+	 */
+	private int deactivate( final int segment ) {
+		int ret = 0;
+		final TIntArrayList todo = new TIntArrayList();
+		todo.add( segment );
+		while ( !todo.isEmpty() ) {
+			final int s = todo.removeAt( todo.size() - 1 );
+			if ( !active[ s ] ) continue;
+			active[ s ] = false;
+			ret++;
+			final int in = inOf[ s ];
+			final int out = outOf[ s ];
+			inOf[ s ] = -1;
+			outOf[ s ] = -1;
+			final int p = ( in >= 0 ) ? ctp.getSrc( in ) : -1;
+			if ( p >= 0 ) {
+				outOf[ p ] = cheapest( p, CompactTrackingProblem.DISAPPEARANCE );
+				if ( outOf[ p ] < 0 ) todo.add( p );
+			}
+			final int q = ( out >= 0 ) ? ctp.getDest( out ) : -1;
+			if ( q >= 0 ) {
+				inOf[ q ] = cheapest( q, CompactTrackingProblem.APPEARANCE );
+				if ( inOf[ q ] < 0 ) todo.add( q );
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Step 3: greedily replaces the out-assignment of a mother and the
+	 * in-assignments of its daughters by a division, as long as this lowers
+	 * the energy.
+	 *
+	 * @return number of divisions in the solution.
+	 */
+	private int addDivisions() {
+		int pass = 0;
+		boolean improved;
+		do {
+			improved = false;
+			for ( int a = numSegments; a < ctp.getNumNodes(); a++ ) {
+				if ( ctp.getType( a ) == CompactTrackingProblem.DIVISION && isUsable( a, true ) ) {
+					improved |= tryDivision( a );
+				}
+			}
+			pass++;
+		}
+		while ( improved && pass < MAX_DIVISION_PASSES );
+
+		int ret = 0;
+		for ( int s = 0; s < numSegments; s++ ) {
+			if ( active[ s ] && ctp.getType( outOf[ s ] ) == CompactTrackingProblem.DIVISION ) ret++;
+		}
+		return ret;
+	}
+
+	private boolean tryDivision( final int division ) {
+		final int mother = ctp.getSrc( division );
+		final int[] daughters = { ctp.getDest( division ), ctp.getDest2( division ) };
+		final int old = outOf[ mother ];
+		if ( !active[ mother ] || old == division ) return false;
+
+		double delta = edits.getEffectiveCost( division ) - edits.getEffectiveCost( old );
+
+		// former targets of the mother need an appearance
+		final int[] oldTargets = { ctp.getDest( old ), ctp.getType( old ) == CompactTrackingProblem.DIVISION ? ctp.getDest2( old ) : -1 };
+		final int[] newIn = { -1, -1 };
+		for ( int i = 0; i < 2; i++ ) {
+			final int m = oldTargets[ i ];
+			if ( m < 0 || m == daughters[ 0 ] || m == daughters[ 1 ] ) continue;
+			newIn[ i ] = cheapest( m, CompactTrackingProblem.APPEARANCE );
+			if ( newIn[ i ] < 0 ) return false;
+			delta += edits.getEffectiveCost( newIn[ i ] );
+		}
+
+		// former sources of active daughters need a disappearance, inactive
+		// daughters need to be activated
+		final int[] newOut = { -1, -1 };
+		final boolean[] activate = { false, false };
+		for ( int i = 0; i < 2; i++ ) {
+			final int d = daughters[ i ];
+			if ( active[ d ] ) {
+				final int in = inOf[ d ];
+				if ( in == old ) continue;
+				if ( ctp.getType( in ) == CompactTrackingProblem.DIVISION ) return false;
+				delta -= edits.getEffectiveCost( in );
+				if ( ctp.getType( in ) == CompactTrackingProblem.MOVE ) {
+					newOut[ i ] = cheapest( ctp.getSrc( in ), CompactTrackingProblem.DISAPPEARANCE );
+					if ( newOut[ i ] < 0 ) return false;
+					delta += edits.getEffectiveCost( newOut[ i ] );
+				}
+			} else {
+				if ( conflictsWithActive( d ) || ( i == 1 && activate[ 0 ] && inConflict( daughters[ 0 ], d ) ) ) return false;
+				newOut[ i ] = cheapest( d, CompactTrackingProblem.DISAPPEARANCE );
+				if ( newOut[ i ] < 0 ) return false;
+				activate[ i ] = true;
+				delta += edits.getEffectiveCost( d ) + edits.getEffectiveCost( newOut[ i ] );
+			}
+		}
+		if ( delta >= -EPSILON ) return false;
+
+		for ( int i = 0; i < 2; i++ ) {
+			if ( newIn[ i ] >= 0 ) inOf[ oldTargets[ i ] ] = newIn[ i ];
+			final int d = daughters[ i ];
+			if ( activate[ i ] ) {
+				active[ d ] = true;
+				outOf[ d ] = newOut[ i ];
+			} else if ( newOut[ i ] >= 0 ) {
+				outOf[ ctp.getSrc( inOf[ d ] ) ] = newOut[ i ];
+			}
+			inOf[ d ] = division;
+		}
+		outOf[ mother ] = division;
+		return true;
+	}
+
+	private boolean conflictsWithActive( final int segment ) {
+		for ( int k = 0; k < ctp.getNumConflictSetsOf( segment ); k++ ) {
+			if ( numActive( ctp.getConflictSetOf( segment, k ) ) > 0 ) return true;
+		}
+		return false;
+	}
+
+	private boolean inConflict( final int s1, final int s2 ) {
+		for ( int k = 0; k < ctp.getNumConflictSetsOf( s1 ); k++ ) {
+			for ( int l = 0; l < ctp.getNumConflictSetsOf( s2 ); l++ ) {
+				if ( ctp.getConflictSetOf( s1, k ) == ctp.getConflictSetOf( s2, l ) ) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the cheapest allowed appearance into or disappearance out of
+	 *         the given segment, <code>-1</code> if there is none.
+	 */
+	private int cheapest( final int segment, final byte type ) {
+		final boolean in = type == CompactTrackingProblem.APPEARANCE;
+		final int num = in ? ctp.getNumInAssignments( segment ) : ctp.getNumOutAssignments( segment );
+		int ret = -1;
+		for ( int k = 0; k < num; k++ ) {
+			final int a = in ? ctp.getInAssignment( segment, k ) : ctp.getOutAssignment( segment, k );
+			if ( ctp.getType( a ) == type && isUsable( a, true ) && ( ret < 0 || edits.getEffectiveCost( a ) < edits.getEffectiveCost( ret ) ) ) ret = a;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return <code>true</code> if the given assignment is allowed by the
+	 *         edits (see <code>TrackingEdits.isAllowed</code>) and touches no
+	 *         excluded segment.
+	 */
+	private boolean isUsable( final int assignment, final boolean strict ) {
+		for ( final int s : new int[] { ctp.getSrc( assignment ), ctp.getDest( assignment ), ctp.getDest2( assignment ) } ) {
+			if ( s >= 0 && excluded[ s ] ) return false;
+		}
+		return edits.isAllowed( assignment, strict );
+	}
+
+	/**
+	 * @see com.indago.tr2d.ilp.TrackingSolver#getLatestEnergy()
+	 */
+	@Override
+	public double getLatestEnergy() {
+		return latestEnergy;
+	}
+}
@@ -0,0 +1,117 @@
+package com.indago.tr2d.ilp;
+
+import com.indago.tr2d.pg.CompactTrackingProblem;
+
+/**
+ * Leveraged edits of a <code>CompactTrackingProblem</code> as seen by the
+ * pure Java solvers: avoided segments and assignments contradicting the
+ * edits of their segments are excluded, forced segments (and divisions
+ * forced by their mother or a daughter) get a bonus exceeding the sum of all
+ * absolute costs, so that any solution containing them is preferred.
+ *
+ * @author jug
+ */
+class TrackingEdits {
+
+	private static final int IN_FLAGS = CompactTrackingProblem.EDIT_FORCED_APPEARANCE | CompactTrackingProblem.EDIT_FORCED_MOVE_TO | CompactTrackingProblem.EDIT_FORCED_DIVISION_TO;
+	private static final int OUT_FLAGS = CompactTrackingProblem.EDIT_FORCED_DISAPPEARANCE | CompactTrackingProblem.EDIT_FORCED_MOVE_FROM | CompactTrackingProblem.EDIT_FORCED_DIVISION_FROM;
+	private static final int DIVISION_FLAGS = CompactTrackingProblem.EDIT_FORCED_DIVISION_TO | CompactTrackingProblem.EDIT_FORCED_DIVISION_FROM;
+
+	private final CompactTrackingProblem ctp;
+	private final double bonus;
+	private final double[] effectiveCost;
+
+	TrackingEdits( final CompactTrackingProblem ctp ) {
+		this.ctp = ctp;
+
+		double sum = 1;
+		for ( int i = 0; i < ctp.getNumNodes(); i++ ) {
+			sum += Math.abs( ctp.getCost( i ) );
+		}
+		bonus = sum;
+
+		effectiveCost = new double[ ctp.getNumNodes() ];
+		for ( int i = 0; i < ctp.getNumNodes(); i++ ) {
+			effectiveCost[ i ] = ctp.getCost( i );
+			if ( ctp.isSegment( i ) ) {
+				if ( ( ctp.getEdits( i ) & ~CompactTrackingProblem.EDIT_AVOIDED ) != 0 ) effectiveCost[ i ] -= bonus;
+			} else if ( ctp.getType( i ) == CompactTrackingProblem.DIVISION ) {
+				if ( has( ctp.getSrc( i ), CompactTrackingProblem.EDIT_FORCED_DIVISION_FROM ) ||
+						has( ctp.getDest( i ), CompactTrackingProblem.EDIT_FORCED_DIVISION_TO ) ||
+						has( ctp.getDest2( i ), CompactTrackingProblem.EDIT_FORCED_DIVISION_TO ) ) {
+					effectiveCost[ i ] -= bonus;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the bonus given to forced nodes.
+	 */
+	double getBonus() {
+		return bonus;
+	}
+
+	/**
+	 * @return the cost of the given node including the bonus of forced
+	 *         nodes.
+	 */
+	double getEffectiveCost( final int node ) {
+		return effectiveCost[ node ];
+	}
+
+	/**
+	 * @return <code>true</code> if the given segment is forced to be active,
+	 *         either directly or by an edit on its assignments.
+	 */
+	boolean isForced( final int segment ) {
+		return has( segment, ~CompactTrackingProblem.EDIT_AVOIDED );
+	}
+
+	boolean isAvoided( final int segment ) {
+		return has( segment, CompactTrackingProblem.EDIT_AVOIDED );
+	}
+
+	/**
+	 * @param assignment
+	 *            id of an assignment
+	 * @param strict
+	 *            if <code>false</code>, forced divisions do not exclude
+	 *            other assignments (so that the segments involved can be
+	 *            active before divisions are added)
+	 * @return <code>true</code> if the given assignment does not contradict
+	 *         the edits of its segments.
+	 */
+	boolean isAllowed( final int assignment, final boolean strict ) {
+		final int ignored = strict ? 0 : DIVISION_FLAGS;
+		final int outFlag;
+		final int inFlag;
+		switch ( ctp.getType( assignment ) ) {
+		case CompactTrackingProblem.APPEARANCE:
+			outFlag = 0;
+			inFlag = CompactTrackingProblem.EDIT_FORCED_APPEARANCE;
+			break;
+		case CompactTrackingProblem.DISAPPEARANCE:
+			outFlag = CompactTrackingProblem.EDIT_FORCED_DISAPPEARANCE;
+			inFlag = 0;
+			break;
+		case CompactTrackingProblem.MOVE:
+			outFlag = CompactTrackingProblem.EDIT_FORCED_MOVE_FROM;
+			inFlag = CompactTrackingProblem.EDIT_FORCED_MOVE_TO;
+			break;
+		default:
+			outFlag = CompactTrackingProblem.EDIT_FORCED_DIVISION_FROM;
+			inFlag = CompactTrackingProblem.EDIT_FORCED_DIVISION_TO;
+		}
+		// a segment forced to be left (entered) in some way may not be left (entered) in another
+		final int outForbidden = CompactTrackingProblem.EDIT_AVOIDED | ( OUT_FLAGS & ~outFlag & ~ignored );
+		final int inForbidden = CompactTrackingProblem.EDIT_AVOIDED | ( IN_FLAGS & ~inFlag & ~ignored );
+		return !has( ctp.getSrc( assignment ), outForbidden ) &&
+				!has( ctp.getDest( assignment ), inForbidden ) &&
+				!has( ctp.getDest2( assignment ), inForbidden );
+	}
+
+	private boolean has( final int segment, final int flags ) {
+		return segment >= 0 && ( ctp.getEdits( segment ) & flags ) != 0;
+	}
+}
@@ -0,0 +1,59 @@
+package com.indago.tr2d.ilp;
+
+import java.util.concurrent.ForkJoinPool;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+
+/**
+ * A backend that solves a <code>Tr2dTrackingProblem</code> (including the
+ * leveraged edits of its time points) directly on the problem graph.
+ * Backends are looked up by name via <code>TrackingSolvers</code>; besides
+ * the built-in ones, additional backends can be registered as
+ * <code>java.util.ServiceLoader</code> providers of this interface (they need
+ * a public no-argument constructor).
+ *
+ * @author jug
+ */
+public interface TrackingSolver {
+
+	/**
+	 * @return the name the solver is selected by (e.g. in the project state or
+	 *         on the command line).
+	 */
+	String getName();
+
+	/**
+	 * @param traProblem
+	 *            the tracking problem to be solved
+	 * @param pool
+	 *            the pool solvers may run parallel work on
+	 * @return the solution, assigning all nodes of the tracking problem, or
+	 *         <code>null</code> if the solver failed (the reason is logged).
+	 * @throws IllegalStateException
+	 *             if the problem is infeasible.
+	 */
+	Assignment< IndicatorNode > solve( Tr2dTrackingProblem traProblem, ForkJoinPool pool );
+
+	/**
+	 * Limits the next <code>solve</code>. Solvers that do not iterate ignore
+	 * it.
+	 *
+	 * @param timeLimit
+	 *            wall time in seconds (&le; 0 for none)
+	 * @param gap
+	 *            relative gap between solution and bound that is good enough
+	 *            (&le; 0 for the solver's default)
+	 * @param iterationLimit
+	 *            maximum number of iterations (&le; 0 for the solver's
+	 *            default)
+	 */
+	default void setBudget( final double timeLimit, final double gap, final long iterationLimit ) {}
+
+	/**
+	 * @return the energy of the latest solution, or <code>Double.NaN</code> if
+	 *         not applicable.
+	 */
+	double getLatestEnergy();
+}
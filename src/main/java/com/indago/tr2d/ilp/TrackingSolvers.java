@@ -0,0 +1,91 @@
+package com.indago.tr2d.ilp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Lookup of <code>TrackingSolver</code>s by name.
+ *
+ * @author jug
+ */
+public final class TrackingSolvers {
+
+	/**
+	 * Gurobi, the default. Not a <code>TrackingSolver</code>: the tracking
+	 * model solves with Gurobi itself (factor graph, incremental re-solves,
+	 * temporal blocks, components, anytime).
+	 */
+	public static final String GUROBI = "gurobi";
+
+	/**
+	 * Pure Java backend, needs neither native libraries nor a license.
+	 */
+	public static final String JAVA = "java";
+
+	/**
+	 * Pure Java dual decomposition over frames, reports a lower bound and the
+	 * duality gap.
+	 */
+	public static final String DUAL = "dual";
+
+	/**
+	 * Greedy, fast but far from optimal (see <code>SolveGreedy</code>).
+	 */
+	public static final String GREEDY = "greedy";
+
+	private TrackingSolvers() {}
+
+	/**
+	 * @return the names of all available solvers, built-in ones first.
+	 */
+	public static List< String > getNames() {
+		final List< String > ret = new ArrayList<>();
+		ret.add( GUROBI );
+		ret.add( JAVA );
+		ret.add( DUAL );
+		ret.add( GREEDY );
+		for ( final TrackingSolver solver : ServiceLoader.load( TrackingSolver.class ) ) {
+			if ( !ret.contains( solver.getName() ) ) ret.add( solver.getName() );
+		}
+		return ret;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the solver
+	 * @return a new instance of the solver with the given name, or
+	 *         <code>null</code> if there is none (also for
+	 *         <code>GUROBI</code>).
+	 */
+	public static TrackingSolver create( final String name ) {
+		if ( JAVA.equals( name ) ) return new SolveMinCostFlow();
+		if ( DUAL.equals( name ) ) return new SolveDualDecomposition();
+		if ( GREEDY.equals( name ) ) return new SolveGreedy();
+		for ( final TrackingSolver solver : ServiceLoader.load( TrackingSolver.class ) ) {
+			if ( solver.getName().equals( name ) ) return solver;
+		}
+		return null;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the solver
+	 * @param timeLimit
+	 *            wall time in seconds (&le; 0 for none)
+	 * @param gap
+	 *            relative gap that is good enough (&le; 0 for the solver's
+	 *            default)
+	 * @param iterationLimit
+	 *            maximum number of iterations (&le; 0 for the solver's
+	 *            default)
+	 * @return a new instance of the solver with the given name and budget
+	 *         (see <code>TrackingSolver.setBudget</code>), or
+	 *         <code>null</code> if there is none.
+	 */
+	public static TrackingSolver create( final String name, final double timeLimit, final double gap, final long iterationLimit ) {
+		final TrackingSolver solver = create( name );
+		if ( solver != null ) solver.setBudget( timeLimit, gap, iterationLimit );
+		return solver;
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package com.indago.tr2d.pg;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+
+/**
+ * An <code>Assignment</code> of all nodes of a problem graph, stored as one
+ * bit per node in a <code>long[]</code>. Nodes are addressed via their dense
+ * index in the given <code>IndicatorNodeIndex</code>.
+ *
+ * @author jug
+ */
+public class BitSetAssignment implements Assignment< IndicatorNode > {
+
+	private final IndicatorNodeIndex index;
+	private final long[] bits;
+
+	/**
+	 * Creates an assignment in which all nodes are set to 0.
+	 *
+	 * @param index
+	 *            the dense numbering of the problem graph nodes
+	 */
+	public BitSetAssignment( final IndicatorNodeIndex index ) {
+		this.index = index;
+		this.bits = new long[ ( index.size() + 63 ) >>> 6 ];
+	}
+
+	/**
+	 * Copies any other <code>Assignment</code> (e.g. one mapped back from a
+	 * factor graph solution) into a new <code>BitSetAssignment</code>.
+	 *
+	 * @param index
+	 *            the dense numbering of the problem graph nodes
+	 * @param assignment
+	 *            the assignment to be copied
+	 * @return the copy, or <code>null</code> if <code>assignment</code> is
+	 *         <code>null</code>.
+	 */
+	public static BitSetAssignment copyOf( final IndicatorNodeIndex index, final Assignment< IndicatorNode > assignment ) {
+		if ( assignment == null ) return null;
+		final BitSetAssignment ret = new BitSetAssignment( index );
+		for ( int i = 0; i < index.size(); i++ ) {
+			final IndicatorNode node = index.get( i );
+			if ( assignment.isAssigned( node ) && assignment.getAssignment( node ) == 1 ) {
+				ret.set( i, true );
+			}
+		}
+		return ret;
+	}
+
+	public IndicatorNodeIndex getIndex() {
+		return index;
+	}
+
+	public boolean get( final int i ) {
+		return ( bits[ i >>> 6 ] & ( 1L << i ) ) != 0;
+	}
+
+	public void set( final int i, final boolean value ) {
+		if ( value ) {
+			bits[ i >>> 6 ] |= 1L << i;
+		} else {
+			bits[ i >>> 6 ] &= ~( 1L << i );
+		}
+	}
+
+	/**
+	 * @param node
+	 *            the node to be set
+	 * @param value
+	 *            the value to set
+	 * @return false, if the given node is not part of the indexed problem
+	 *         graph (nothing is set in this case).
+	 */
+	public boolean set( final IndicatorNode node, final boolean value ) {
+		final int i = index.indexOf( node );
+		if ( i < 0 ) return false;
+		set( i, value );
+		return true;
+	}
+
+	/**
+	 * @return the number of nodes set to 1.
+	 */
+	public int cardinality() {
+		int ret = 0;
+		for ( final long word : bits ) {
+			ret += Long.bitCount( word );
+		}
+		return ret;
+	}
+
+	/**
+	 * @see com.indago.fg.Assignment#isAssigned(java.lang.Object)
+	 */
+	@Override
+	public boolean isAssigned( final IndicatorNode node ) {
+		return index.indexOf( node ) >= 0;
+	}
+
+	/**
+	 * @see com.indago.fg.Assignment#getAssignment(java.lang.Object)
+	 */
+	@Override
+	public int getAssignment( final IndicatorNode node ) {
+		final int i = index.indexOf( node );
+		return ( i >= 0 && get( i ) ) ? 1 : 0;
+	}
+}
@@ -0,0 +1,394 @@
+/**
+ *
+ */
+package com.indago.tr2d.pg;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.indago.data.segmentation.LabelingSegment;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AppearanceHypothesis;
+import com.indago.pg.assignments.AssignmentNode;
+import com.indago.pg.assignments.DisappearanceHypothesis;
+import com.indago.pg.assignments.DivisionHypothesis;
+import com.indago.pg.assignments.MovementHypothesis;
+import com.indago.pg.segments.ConflictSet;
+import com.indago.pg.segments.SegmentNode;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Struct-of-arrays representation of a tracking problem graph. Nodes are
+ * numbered exactly like in the <code>IndicatorNodeIndex</code> of the
+ * problem it was built from (segments first, frame by frame, then all
+ * assignments), so a <code>BitSetAssignment</code> over that index is a
+ * solution of this problem and vice versa.
+ * <p>
+ * Costs, node types and the endpoints of assignments live in primitive
+ * arrays; in- and out-assignments of segments as well as the conflict sets of
+ * each frame are stored CSR-style (one offset array and one flat array of
+ * node ids each), so solvers can walk the problem by node id without
+ * allocating or chasing references. It is derived from the object graph (all
+ * arrays are allocated at their final size) and does not replace it.
+ * <p>
+ * Leveraged edits are represented on segment level only (see the
+ * <code>EDIT_*</code> flags); edits on conflict sets are not part of this
+ * representation.
+ *
+ * @author jug
+ */
+public class CompactTrackingProblem {
+
+	public static final byte SEGMENT = 0;
+	public static final byte APPEARANCE = 1;
+	public static final byte DISAPPEARANCE = 2;
+	public static final byte MOVE = 3;
+	public static final byte DIVISION = 4;
+
+	public static final int EDIT_FORCED = 1;
+	public static final int EDIT_AVOIDED = 1 << 1;
+	public static final int EDIT_FORCED_APPEARANCE = 1 << 2;
+	public static final int EDIT_FORCED_DISAPPEARANCE = 1 << 3;
+	public static final int EDIT_FORCED_MOVE_TO = 1 << 4;
+	public static final int EDIT_FORCED_MOVE_FROM = 1 << 5;
+	public static final int EDIT_FORCED_DIVISION_TO = 1 << 6;
+	public static final int EDIT_FORCED_DIVISION_FROM = 1 << 7;
+
+	private final int numFrames;
+	private final int numSegments;
+	private final int numNodes;
+
+	private final int[] frameTimes;
+	private final int[] frameStart;
+	private final LabelingSegment[] segments;
+	private final int[] segmentFrame;
+	private final int[] segmentEdits;
+
+	private final byte[] types;
+	private final double[] costs;
+
+	// endpoints, indexed by (node id - numSegments); dest2 is -1 for all but divisions
+	private final int[] src;
+	private final int[] dest;
+	private final int[] dest2;
+
+	private final int[] inStart;
+	private final int[] inNodes;
+	private final int[] outStart;
+	private final int[] outNodes;
+
+	// conflict sets: frame f owns sets confStart[f] .. confStart[f+1]-1
+	private final int[] confStart;
+	private final int[] setStart;
+	private final int[] setNodes;
+
+	// conflict sets of each segment
+	private final int[] segmentSetStart;
+	private final int[] segmentSets;
+
+	/**
+	 * Builds the compact representation of a fully built problem graph.
+	 *
+	 * @param ttp
+	 *            the tracking problem (must not be modified while building)
+	 */
+	public CompactTrackingProblem( final Tr2dTrackingProblem ttp ) {
+		final IndicatorNodeIndex index = ttp.getNodeIndex();
+		final List< Tr2dSegmentationProblem > timepoints = ttp.getTimepoints();
+
+		numFrames = timepoints.size();
+		numSegments = index.getNumSegments();
+		numNodes = index.size();
+
+		frameTimes = new int[ numFrames ];
+		frameStart = new int[ numFrames + 1 ];
+		segments = new LabelingSegment[ numSegments ];
+		segmentFrame = new int[ numSegments ];
+		segmentEdits = new int[ numSegments ];
+		types = new byte[ numNodes ];
+		costs = new double[ numNodes ];
+
+		final int numAssignments = numNodes - numSegments;
+		src = new int[ numAssignments ];
+		dest = new int[ numAssignments ];
+		dest2 = new int[ numAssignments ];
+
+		for ( int i = 0; i < numNodes; i++ ) {
+			final IndicatorNode node = index.get( i );
+			costs[ i ] = node.getCost();
+			if ( i < numSegments ) {
+				types[ i ] = SEGMENT;
+				segments[ i ] = ( ( SegmentNode ) node ).getSegment();
+				continue;
+			}
+			final int a = i - numSegments;
+			dest2[ a ] = -1;
+			if ( node instanceof AppearanceHypothesis ) {
+				types[ i ] = APPEARANCE;
+				src[ a ] = -1;
+				dest[ a ] = index.indexOf( ( ( AppearanceHypothesis ) node ).getDest() );
+			} else if ( node instanceof DisappearanceHypothesis ) {
+				types[ i ] = DISAPPEARANCE;
+				src[ a ] = index.indexOf( ( ( DisappearanceHypothesis ) node ).getSrc() );
+				dest[ a ] = -1;
+			} else if ( node instanceof MovementHypothesis ) {
+				final MovementHypothesis move = ( MovementHypothesis ) node;
+				types[ i ] = MOVE;
+				src[ a ] = index.indexOf( move.getSrc() );
+				dest[ a ] = index.indexOf( move.getDest() );
+			} else if ( node instanceof DivisionHypothesis ) {
+				final DivisionHypothesis div = ( DivisionHypothesis ) node;
+				types[ i ] = DIVISION;
+				src[ a ] = index.indexOf( div.getSrc() );
+				dest[ a ] = index.indexOf( div.getDest1() );
+				dest2[ a ] = index.indexOf( div.getDest2() );
+			} else {
+				throw new IllegalArgumentException( "Unknown assignment type: " + node.getClass().getName() );
+			}
+		}
+
+		// every assignment is an in-assignment of each target and an out-assignment of its source
+		int numIn = 0;
+		int numOut = 0;
+		for ( int a = 0; a < numAssignments; a++ ) {
+			if ( dest[ a ] >= 0 ) numIn++;
+			if ( dest2[ a ] >= 0 ) numIn++;
+			if ( src[ a ] >= 0 ) numOut++;
+		}
+		inStart = new int[ numSegments + 1 ];
+		outStart = new int[ numSegments + 1 ];
+		inNodes = new int[ numIn ];
+		outNodes = new int[ numOut ];
+		confStart = new int[ numFrames + 1 ];
+		final TIntArrayList sets = new TIntArrayList();
+		final TIntArrayList setMembers = new TIntArrayList();
+
+		int s = 0;
+		int nextIn = 0;
+		int nextOut = 0;
+		for ( int f = 0; f < numFrames; f++ ) {
+			final Tr2dSegmentationProblem tp = timepoints.get( f );
+			frameTimes[ f ] = tp.getTime();
+			frameStart[ f ] = s;
+			for ( final SegmentNode node : tp.getSegments() ) {
+				segmentFrame[ s ] = f;
+				segmentEdits[ s ] = edits( tp, node );
+				inStart[ s ] = nextIn;
+				for ( final AssignmentNode assignment : node.getInAssignments().getAllAssignments() ) {
+					inNodes[ nextIn++ ] = index.indexOf( assignment );
+				}
+				outStart[ s ] = nextOut;
+				for ( final AssignmentNode assignment : node.getOutAssignments().getAllAssignments() ) {
+					outNodes[ nextOut++ ] = index.indexOf( assignment );
+				}
+				s++;
+			}
+
+			confStart[ f ] = sets.size();
+			for ( final ConflictSet cs : tp.getConflictSets() ) {
+				sets.add( setMembers.size() );
+				for ( final SegmentNode node : cs ) {
+					setMembers.add( index.indexOf( node ) );
+				}
+			}
+		}
+		frameStart[ numFrames ] = s;
+		inStart[ numSegments ] = nextIn;
+		outStart[ numSegments ] = nextOut;
+		confStart[ numFrames ] = sets.size();
+		sets.add( setMembers.size() );
+
+		setStart = sets.toArray();
+		setNodes = setMembers.toArray();
+
+		segmentSetStart = new int[ numSegments + 1 ];
+		for ( final int member : setNodes ) {
+			segmentSetStart[ member + 1 ]++;
+		}
+		for ( int i = 0; i < numSegments; i++ ) {
+			segmentSetStart[ i + 1 ] += segmentSetStart[ i ];
+		}
+		segmentSets = new int[ setNodes.length ];
+		final int[] fill = Arrays.copyOf( segmentSetStart, numSegments );
+		for ( int c = 0; c < confStart[ numFrames ]; c++ ) {
+			for ( int k = setStart[ c ]; k < setStart[ c + 1 ]; k++ ) {
+				segmentSets[ fill[ setNodes[ k ] ]++ ] = c;
+			}
+		}
+	}
+
+	private static int edits( final Tr2dSegmentationProblem tp, final SegmentNode node ) {
+		int ret = 0;
+		ret |= flag( tp.getForcedNodes(), node, EDIT_FORCED );
+		ret |= flag( tp.getAvoidedNodes(), node, EDIT_AVOIDED );
+		ret |= flag( tp.getForcedByAppearanceNodes(), node, EDIT_FORCED_APPEARANCE );
+		ret |= flag( tp.getForcedByDisappearanceNodes(), node, EDIT_FORCED_DISAPPEARANCE );
+		ret |= flag( tp.getForcedSegmentNodeMovesTo(), node, EDIT_FORCED_MOVE_TO );
+		ret |= flag( tp.getForcedSegmentNodeMovesFrom(), node, EDIT_FORCED_MOVE_FROM );
+		ret |= flag( tp.getForcedSegmentNodeDivisionsTo(), node, EDIT_FORCED_DIVISION_TO );
+		ret |= flag( tp.getForcedSegmentNodeDivisionsFrom(), node, EDIT_FORCED_DIVISION_FROM );
+		return ret;
+	}
+
+	private static int flag( final Set< SegmentNode > set, final SegmentNode node, final int flag ) {
+		return set.contains( node ) ? flag : 0;
+	}
+
+	public int getNumFrames() {
+		return numFrames;
+	}
+
+	public int getNumSegments() {
+		return numSegments;
+	}
+
+	/**
+	 * @return number of all nodes (segments and assignments).
+	 */
+	public int getNumNodes() {
+		return numNodes;
+	}
+
+	/**
+	 * @return the time point of the given frame.
+	 */
+	public int getFrameTime( final int frame ) {
+		return frameTimes[ frame ];
+	}
+
+	/**
+	 * @return the id of the first segment of the given frame (segments of
+	 *         frame <code>f</code> are
+	 *         <code>getFrameStart(f) .. getFrameStart(f+1)-1</code>).
+	 */
+	public int getFrameStart( final int frame ) {
+		return frameStart[ frame ];
+	}
+
+	public byte getType( final int node ) {
+		return types[ node ];
+	}
+
+	public double getCost( final int node ) {
+		return costs[ node ];
+	}
+
+	public boolean isSegment( final int node ) {
+		return node < numSegments;
+	}
+
+	public LabelingSegment getSegment( final int segment ) {
+		return segments[ segment ];
+	}
+
+	public int getFrame( final int segment ) {
+		return segmentFrame[ segment ];
+	}
+
+	/**
+	 * @return the <code>EDIT_*</code> flags of the given segment.
+	 */
+	public int getEdits( final int segment ) {
+		return segmentEdits[ segment ];
+	}
+
+	/**
+	 * @return source segment of the given assignment (<code>-1</code> for
+	 *         appearances).
+	 */
+	public int getSrc( final int assignment ) {
+		return src[ assignment - numSegments ];
+	}
+
+	/**
+	 * @return (first) target segment of the given assignment (<code>-1</code>
+	 *         for disappearances).
+	 */
+	public int getDest( final int assignment ) {
+		return dest[ assignment - numSegments ];
+	}
+
+	/**
+	 * @return second target segment of the given division
+	 *         (<code>-1</code> for all other assignments).
+	 */
+	public int getDest2( final int assignment ) {
+		return dest2[ assignment - numSegments ];
+	}
+
+	public int getNumInAssignments( final int segment ) {
+		return inStart[ segment + 1 ] - inStart[ segment ];
+	}
+
+	/**
+	 * @return the <code>k</code>-th in-assignment of the given segment.
+	 */
+	public int getInAssignment( final int segment, final int k ) {
+		return inNodes[ inStart[ segment ] + k ];
+	}
+
+	public int getNumOutAssignments( final int segment ) {
+		return outStart[ segment + 1 ] - outStart[ segment ];
+	}
+
+	/**
+	 * @return the <code>k</code>-th out-assignment of the given segment.
+	 */
+	public int getOutAssignment( final int segment, final int k ) {
+		return outNodes[ outStart[ segment ] + k ];
+	}
+
+	/**
+	 * @return the id of the first conflict set of the given frame (conflict
+	 *         sets of frame <code>f</code> are
+	 *         <code>getConflictSetStart(f) .. getConflictSetStart(f+1)-1</code>).
+	 */
+	public int getConflictSetStart( final int frame ) {
+		return confStart[ frame ];
+	}
+
+	public int getNumConflictSets() {
+		return confStart[ numFrames ];
+	}
+
+	public int getConflictSetSize( final int conflictSet ) {
+		return setStart[ conflictSet + 1 ] - setStart[ conflictSet ];
+	}
+
+	/**
+	 * @return the <code>k</code>-th segment of the given conflict set.
+	 */
+	public int getConflictSetMember( final int conflictSet, final int k ) {
+		return setNodes[ setStart[ conflictSet ] + k ];
+	}
+
+	/**
+	 * @return number of conflict sets the given segment is a member of.
+	 */
+	public int getNumConflictSetsOf( final int segment ) {
+		return segmentSetStart[ segment + 1 ] - segmentSetStart[ segment ];
+	}
+
+	/**
+	 * @return the <code>k</code>-th conflict set the given segment is a member
+	 *         of.
+	 */
+	public int getConflictSetOf( final int segment, final int k ) {
+		return segmentSets[ segmentSetStart[ segment ] + k ];
+	}
+
+	/**
+	 * @param solution
+	 *            a solution over the same node ids
+	 * @return the cost of the given solution.
+	 */
+	public double getCost( final BitSetAssignment solution ) {
+		double ret = 0;
+		for ( int i = 0; i < numNodes; i++ ) {
+			if ( solution.get( i ) ) ret += costs[ i ];
+		}
+		return ret;
+	}
+}
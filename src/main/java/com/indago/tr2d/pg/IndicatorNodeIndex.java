@@ -0,0 +1,97 @@
+/**
+ *
+ */
+package com.indago.tr2d.pg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AssignmentNode;
+import com.indago.pg.segments.SegmentNode;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Dense numbering of all <code>SegmentNode</code>s and
+ * <code>AssignmentNode</code>s of a <code>Tr2dTrackingProblem</code>.
+ * Segments come first (frame by frame), followed by all assignments in the
+ * order they are found when walking the in- and out-assignments of all
+ * segments.
+ * An index is only valid as long as the problem graph it was built from is
+ * not modified.
+ *
+ * @author jug
+ */
+public class IndicatorNodeIndex {
+
+	private final TObjectIntMap< IndicatorNode > indices;
+	private final IndicatorNode[] nodes;
+	private final int numSegments;
+
+	public IndicatorNodeIndex( final Tr2dTrackingProblem ttp ) {
+		final List< IndicatorNode > nodeList = new ArrayList<>();
+		for ( final Tr2dSegmentationProblem t : ttp.getTimepoints() ) {
+			nodeList.addAll( t.getSegments() );
+		}
+		numSegments = nodeList.size();
+
+		indices = new TObjectIntHashMap<>( 4 * numSegments, 0.5f, -1 );
+		for ( int i = 0; i < numSegments; i++ ) {
+			indices.put( nodeList.get( i ), i );
+		}
+		for ( final Tr2dSegmentationProblem t : ttp.getTimepoints() ) {
+			for ( final SegmentNode segment : t.getSegments() ) {
+				for ( final AssignmentNode assignment : segment.getInAssignments().getAllAssignments() ) {
+					add( assignment, nodeList );
+				}
+				for ( final AssignmentNode assignment : segment.getOutAssignments().getAllAssignments() ) {
+					add( assignment, nodeList );
+				}
+			}
+		}
+		nodes = nodeList.toArray( new IndicatorNode[ nodeList.size() ] );
+	}
+
+	private void add( final IndicatorNode node, final List< IndicatorNode > nodeList ) {
+		if ( !indices.containsKey( node ) ) {
+			indices.put( node, nodeList.size() );
+			nodeList.add( node );
+		}
+	}
+
+	/**
+	 * @return the number of indexed nodes.
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * @return the number of indexed segment nodes. Those occupy the indices
+	 *         <code>0</code> to <code>getNumSegments()-1</code>.
+	 */
+	public int getNumSegments() {
+		return numSegments;
+	}
+
+	/**
+	 * @param node
+	 *            a segment or assignment node
+	 * @return the dense index of the given node, or <code>-1</code> if the
+	 *         node is not part of the indexed problem graph.
+	 */
+	public int indexOf( final IndicatorNode node ) {
+		return indices.get( node );
+	}
+
+	/**
+	 * @param index
+	 *            a dense index in <code>[0,size())</code>
+	 * @return the node with the given index.
+	 */
+	public IndicatorNode get( final int index ) {
+		return nodes[ index ];
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ *
+ */
+package com.indago.tr2d.pg;
+
+import java.util.Arrays;
+
+/**
+ * Connected components of the graph formed by segments, assignments and
+ * conflict sets of a tracking problem. Two segments are connected if an
+ * assignment or a conflict set contains both, assignments belong to the
+ * component of their segments. Since no constraint of the tracking ILP spans
+ * two components, each component can be solved on its own.
+ * <p>
+ * Components are numbered by decreasing size (number of nodes), segments of
+ * one component are stored contiguously.
+ *
+ * @author jug
+ */
+public class ProblemGraphComponents {
+
+	private final CompactTrackingProblem ctp;
+
+	private final int[] componentOfSegment;
+	private final int[] componentStart;
+	private final int[] componentSegments;
+	private final int[] componentNumNodes;
+
+	/**
+	 * Finds the components of the given problem by union-find over its
+	 * segments.
+	 *
+	 * @param ctp
+	 *            the compact representation of the tracking problem
+	 */
+	public ProblemGraphComponents( final CompactTrackingProblem ctp ) {
+		this.ctp = ctp;
+		final int numSegments = ctp.getNumSegments();
+
+		final int[] parent = new int[ numSegments ];
+		for ( int i = 0; i < numSegments; i++ ) {
+			parent[ i ] = i;
+		}
+		for ( int a = numSegments; a < ctp.getNumNodes(); a++ ) {
+			final int src = ctp.getSrc( a );
+			final int dest = ctp.getDest( a );
+			final int dest2 = ctp.getDest2( a );
+			if ( src >= 0 && dest >= 0 ) union( parent, src, dest );
+			if ( dest2 >= 0 ) union( parent, dest, dest2 );
+		}
+		for ( int c = 0; c < ctp.getNumConflictSets(); c++ ) {
+			if ( ctp.getConflictSetSize( c ) == 0 ) continue;
+			final int first = ctp.getConflictSetMember( c, 0 );
+			for ( int k = 1; k < ctp.getConflictSetSize( c ); k++ ) {
+				union( parent, first, ctp.getConflictSetMember( c, k ) );
+			}
+		}
+
+		// number the roots, count nodes per component
+		final int[] rootComponent = new int[ numSegments ];
+		Arrays.fill( rootComponent, -1 );
+		int numComponents = 0;
+		final int[] rawComponent = new int[ numSegments ];
+		for ( int s = 0; s < numSegments; s++ ) {
+			final int root = find( parent, s );
+			if ( rootComponent[ root ] < 0 ) rootComponent[ root ] = numComponents++;
+			rawComponent[ s ] = rootComponent[ root ];
+		}
+		final int[] rawNumNodes = new int[ numComponents ];
+		for ( int s = 0; s < numSegments; s++ ) {
+			// a segment and its out-assignments, plus its appearances
+			rawNumNodes[ rawComponent[ s ] ] += 1 + ctp.getNumOutAssignments( s );
+			for ( int k = 0; k < ctp.getNumInAssignments( s ); k++ ) {
+				if ( ctp.getSrc( ctp.getInAssignment( s, k ) ) < 0 ) rawNumNodes[ rawComponent[ s ] ]++;
+			}
+		}
+
+		// renumber by decreasing size
+		final Integer[] order = new Integer[ numComponents ];
+		for ( int i = 0; i < numComponents; i++ ) {
+			order[ i ] = i;
+		}
+		Arrays.sort( order, ( c1, c2 ) -> Integer.compare( rawNumNodes[ c2 ], rawNumNodes[ c1 ] ) );
+		final int[] rank = new int[ numComponents ];
+		componentNumNodes = new int[ numComponents ];
+		for ( int i = 0; i < numComponents; i++ ) {
+			rank[ order[ i ] ] = i;
+			componentNumNodes[ i ] = rawNumNodes[ order[ i ] ];
+		}
+
+		componentOfSegment = new int[ numSegments ];
+		componentStart = new int[ numComponents + 1 ];
+		for ( int s = 0; s < numSegments; s++ ) {
+			componentOfSegment[ s ] = rank[ rawComponent[ s ] ];
+			componentStart[ componentOfSegment[ s ] + 1 ]++;
+		}
+		for ( int c = 0; c < numComponents; c++ ) {
+			componentStart[ c + 1 ] += componentStart[ c ];
+		}
+		componentSegments = new int[ numSegments ];
+		final int[] fill = Arrays.copyOf( componentStart, numComponents );
+		for ( int s = 0; s < numSegments; s++ ) {
+			componentSegments[ fill[ componentOfSegment[ s ] ]++ ] = s;
+		}
+	}
+
+	private static int find( final int[] parent, int i ) {
+		while ( parent[ i ] != i ) {
+			parent[ i ] = parent[ parent[ i ] ];
+			i = parent[ i ];
+		}
+		return i;
+	}
+
+	private static void union( final int[] parent, final int i, final int j ) {
+		final int ri = find( parent, i );
+		final int rj = find( parent, j );
+		if ( ri != rj ) parent[ Math.max( ri, rj ) ] = Math.min( ri, rj );
+	}
+
+	public int getNumComponents() {
+		return componentNumNodes.length;
+	}
+
+	/**
+	 * @param node
+	 *            id of a segment or assignment
+	 * @return the component the given node belongs to.
+	 */
+	public int getComponent( final int node ) {
+		if ( ctp.isSegment( node ) ) return componentOfSegment[ node ];
+		final int src = ctp.getSrc( node );
+		return componentOfSegment[ ( src >= 0 ) ? src : ctp.getDest( node ) ];
+	}
+
+	/**
+	 * @return number of nodes (segments and assignments) of the given
+	 *         component.
+	 */
+	public int getNumNodes( final int component ) {
+		return componentNumNodes[ component ];
+	}
+
+	public int getNumSegments( final int component ) {
+		return componentStart[ component + 1 ] - componentStart[ component ];
+	}
+
+	/**
+	 * @return the <code>k</code>-th segment of the given component.
+	 */
+	public int getSegment( final int component, final int k ) {
+		return componentSegments[ componentStart[ component ] + k ];
+	}
+
+	/**
+	 * @return a one-line summary: number of components, size of the largest
+	 *         one, number of single-segment components, and the speedup
+	 *         solving components in parallel can offer at best (all nodes
+	 *         divided by the nodes of the largest component).
+	 */
+	public String getStatistics() {
+		final int numComponents = getNumComponents();
+		if ( numComponents == 0 ) return "0 components";
+		int singletons = 0;
+		for ( int c = 0; c < numComponents; c++ ) {
+			if ( getNumSegments( c ) == 1 ) singletons++;
+		}
+		return String.format(
+				"%d components (%d single segments), largest has %d of %d nodes (%.1f%%), max. parallel speedup %.1fx",
+				numComponents,
+				singletons,
+				componentNumNodes[ 0 ],
+				ctp.getNumNodes(),
+				100.0 * componentNumNodes[ 0 ] / ctp.getNumNodes(),
+				( double ) ctp.getNumNodes() / componentNumNodes[ 0 ] );
+	}
+}
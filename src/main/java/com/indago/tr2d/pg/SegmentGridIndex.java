@@ -0,0 +1,297 @@
+/**
+ *
+ */
+package com.indago.tr2d.pg;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.indago.pg.segments.SegmentNode;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.neighborsearch.RadiusNeighborSearch;
+
+/**
+ * Uniform grid (spatial hash) over the centers of mass of the segments of one
+ * frame. Segment indices are bucketed by grid cell into one flat
+ * <code>int</code> array (<code>cellItems</code>, with
+ * <code>cellStart[c]</code> &hellip; <code>cellStart[c+1]</code> being the
+ * entries of cell <code>c</code>), centers of mass are kept in flat
+ * <code>double</code> arrays.
+ * <p>
+ * If the cell size is at least the search radius, a radius query visits at
+ * most 3x3 cells. Searches are kept per thread and reuse their result
+ * buffers, so queries do not allocate (apart from growing the buffers the
+ * first few times).
+ *
+ * @author jug
+ */
+public class SegmentGridIndex {
+
+	/**
+	 * The grid is coarsened until it has at most this many cells per segment,
+	 * so tiny cell sizes on large images do not blow up memory.
+	 */
+	private static final int MAX_CELLS_PER_SEGMENT = 4;
+
+	private final List< SegmentNode > segments;
+	private final RealLocalizable[] positions;
+	private final NodeSampler[] samplers;
+	private final double[] xs;
+	private final double[] ys;
+
+	private final double requestedCellSize;
+	private final double cellSize;
+	private final double minX;
+	private final double minY;
+	private final int numCols;
+	private final int numRows;
+	private final int[] cellStart;
+	private final int[] cellItems;
+
+	private final ThreadLocal< GridSearch > searches = ThreadLocal.withInitial( GridSearch::new );
+
+	/**
+	 * @param segments
+	 *            the segments to index (must not be empty)
+	 * @param cellSize
+	 *            edge length of a grid cell, ideally the largest search radius
+	 *            that will be used.
+	 */
+	public SegmentGridIndex( final List< SegmentNode > segments, final double cellSize ) {
+		this.segments = segments;
+		this.requestedCellSize = cellSize;
+
+		final int n = segments.size();
+		positions = new RealLocalizable[ n ];
+		samplers = new NodeSampler[ n ];
+		xs = new double[ n ];
+		ys = new double[ n ];
+
+		double x0 = Double.POSITIVE_INFINITY;
+		double y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY;
+		double y1 = Double.NEGATIVE_INFINITY;
+		for ( int i = 0; i < n; i++ ) {
+			final SegmentNode node = segments.get( i );
+			positions[ i ] = node.getSegment().getCenterOfMass();
+			samplers[ i ] = new NodeSampler( node );
+			xs[ i ] = positions[ i ].getDoublePosition( 0 );
+			ys[ i ] = positions[ i ].getDoublePosition( 1 );
+			x0 = Math.min( x0, xs[ i ] );
+			y0 = Math.min( y0, ys[ i ] );
+			x1 = Math.max( x1, xs[ i ] );
+			y1 = Math.max( y1, ys[ i ] );
+		}
+		minX = x0;
+		minY = y0;
+
+		double size = Math.max( 1, cellSize );
+		final long maxCells = Math.max( 16, ( long ) MAX_CELLS_PER_SEGMENT * n );
+		while ( ( ( long ) ( ( x1 - x0 ) / size ) + 1 ) * ( ( long ) ( ( y1 - y0 ) / size ) + 1 ) > maxCells ) {
+			size *= 2;
+		}
+		this.cellSize = size;
+		numCols = ( int ) ( ( x1 - x0 ) / size ) + 1;
+		numRows = ( int ) ( ( y1 - y0 ) / size ) + 1;
+
+		// counting sort of segment indices by cell
+		final int[] cellOf = new int[ n ];
+		cellStart = new int[ numCols * numRows + 1 ];
+		for ( int i = 0; i < n; i++ ) {
+			cellOf[ i ] = col( xs[ i ] ) + numCols * row( ys[ i ] );
+			cellStart[ cellOf[ i ] + 1 ]++;
+		}
+		for ( int c = 0; c < numCols * numRows; c++ ) {
+			cellStart[ c + 1 ] += cellStart[ c ];
+		}
+		cellItems = new int[ n ];
+		final int[] fill = new int[ numCols * numRows ];
+		for ( int i = 0; i < n; i++ ) {
+			cellItems[ cellStart[ cellOf[ i ] ] + fill[ cellOf[ i ] ]++ ] = i;
+		}
+	}
+
+	private int col( final double x ) {
+		return Math.max( 0, Math.min( numCols - 1, ( int ) Math.floor( ( x - minX ) / cellSize ) ) );
+	}
+
+	private int row( final double y ) {
+		return Math.max( 0, Math.min( numRows - 1, ( int ) Math.floor( ( y - minY ) / cellSize ) ) );
+	}
+
+	public int size() {
+		return segments.size();
+	}
+
+	/**
+	 * @return the cell size this grid was requested with (the effective cell
+	 *         size can be larger, see <code>MAX_CELLS_PER_SEGMENT</code>).
+	 */
+	public double getRequestedCellSize() {
+		return requestedCellSize;
+	}
+
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Returns the radius search of the calling thread. The returned instance
+	 * must not be handed to other threads.
+	 *
+	 * @return a radius search over the centers of mass of all segments.
+	 */
+	public RadiusNeighborSearch< SegmentNode > getRadiusNeighborSearch() {
+		return searches.get();
+	}
+
+	/**
+	 * Radius search on the grid. Results are indices into the segment list of
+	 * the grid, stored in buffers that are reused by subsequent searches.
+	 */
+	private class GridSearch implements RadiusNeighborSearch< SegmentNode > {
+
+		private int[] hits = new int[ 64 ];
+		private double[] sqDists = new double[ 64 ];
+		private int numHits = 0;
+
+		/**
+		 * @see net.imglib2.neighborsearch.RadiusNeighborSearch#search(net.imglib2.RealLocalizable,
+		 *      double, boolean)
+		 */
+		@Override
+		public void search( final RealLocalizable reference, final double radius, final boolean sortResults ) {
+			numHits = 0;
+
+			final double x = reference.getDoublePosition( 0 );
+			final double y = reference.getDoublePosition( 1 );
+			final double sqRadius = radius * radius;
+
+			// outside the grid by more than the radius: nothing to find
+			if ( x + radius < minX || y + radius < minY ||
+				 x - radius > minX + numCols * cellSize || y - radius > minY + numRows * cellSize ) { return; }
+
+			final int c0 = col( x - radius );
+			final int c1 = col( x + radius );
+			final int r0 = row( y - radius );
+			final int r1 = row( y + radius );
+			for ( int r = r0; r <= r1; r++ ) {
+				for ( int c = c0; c <= c1; c++ ) {
+					final int cell = c + numCols * r;
+					for ( int k = cellStart[ cell ]; k < cellStart[ cell + 1 ]; k++ ) {
+						final int i = cellItems[ k ];
+						final double dx = xs[ i ] - x;
+						final double dy = ys[ i ] - y;
+						final double sqDist = dx * dx + dy * dy;
+						if ( sqDist <= sqRadius ) {
+							add( i, sqDist );
+						}
+					}
+				}
+			}
+
+			if ( sortResults ) {
+				sort();
+			}
+		}
+
+		private void add( final int i, final double sqDist ) {
+			if ( numHits == hits.length ) {
+				hits = Arrays.copyOf( hits, 2 * numHits );
+				sqDists = Arrays.copyOf( sqDists, 2 * numHits );
+			}
+			hits[ numHits ] = i;
+			sqDists[ numHits ] = sqDist;
+			numHits++;
+		}
+
+		/**
+		 * Insertion sort by distance -- result lists are short (bounded by the
+		 * segments within one search radius), and this does not allocate.
+		 */
+		private void sort() {
+			for ( int k = 1; k < numHits; k++ ) {
+				final int hit = hits[ k ];
+				final double sqDist = sqDists[ k ];
+				int j = k - 1;
+				while ( j >= 0 && sqDists[ j ] > sqDist ) {
+					hits[ j + 1 ] = hits[ j ];
+					sqDists[ j + 1 ] = sqDists[ j ];
+					j--;
+				}
+				hits[ j + 1 ] = hit;
+				sqDists[ j + 1 ] = sqDist;
+			}
+		}
+
+		/**
+		 * @see net.imglib2.neighborsearch.RadiusNeighborSearch#numNeighbors()
+		 */
+		@Override
+		public int numNeighbors() {
+			return numHits;
+		}
+
+		/**
+		 * @see net.imglib2.neighborsearch.RadiusNeighborSearch#getSampler(int)
+		 */
+		@Override
+		public Sampler< SegmentNode > getSampler( final int i ) {
+			return samplers[ hits[ i ] ];
+		}
+
+		/**
+		 * @see net.imglib2.neighborsearch.RadiusNeighborSearch#getPosition(int)
+		 */
+		@Override
+		public RealLocalizable getPosition( final int i ) {
+			return positions[ hits[ i ] ];
+		}
+
+		/**
+		 * @see net.imglib2.neighborsearch.RadiusNeighborSearch#getSquareDistance(int)
+		 */
+		@Override
+		public double getSquareDistance( final int i ) {
+			return sqDists[ i ];
+		}
+
+		/**
+		 * @see net.imglib2.neighborsearch.RadiusNeighborSearch#getDistance(int)
+		 */
+		@Override
+		public double getDistance( final int i ) {
+			return Math.sqrt( sqDists[ i ] );
+		}
+	}
+
+	/**
+	 * Immutable sampler, one per segment, created once with the grid.
+	 */
+	private static class NodeSampler implements Sampler< SegmentNode > {
+
+		private final SegmentNode node;
+
+		public NodeSampler( final SegmentNode node ) {
+			this.node = node;
+		}
+
+		/**
+		 * @see net.imglib2.Sampler#get()
+		 */
+		@Override
+		public SegmentNode get() {
+			return node;
+		}
+
+		/**
+		 * @see net.imglib2.Sampler#copy()
+		 */
+		@Override
+		public Sampler< SegmentNode > copy() {
+			return this;
+		}
+	}
+}
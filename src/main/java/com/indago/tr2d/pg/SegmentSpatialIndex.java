@@ -0,0 +1,98 @@
+/**
+ *
+ */
+package com.indago.tr2d.pg;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.indago.pg.segments.SegmentNode;
+
+import net.imglib2.KDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.neighborsearch.RadiusNeighborSearch;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
+
+/**
+ * Spatial index over the segments of one frame (keyed by their centers of
+ * mass). Built once per <code>Tr2dSegmentationProblem</code> and shared by
+ * the move and division hypotheses generation of both neighboring frame
+ * pairs.
+ * <p>
+ * All queries are thread safe. Searchers are kept per thread, so
+ * <code>getRadiusNeighborSearch()</code> can be used in loops without
+ * allocating a new search for every query.
+ * <p>
+ * Next to the KD-tree, a uniform grid over the same segments can be
+ * requested (see <code>getGridNeighborSearch</code>), which is usually the
+ * faster choice for the fixed-radius queries of the hypotheses generation.
+ *
+ * @author jug
+ */
+public class SegmentSpatialIndex {
+
+	private final List< SegmentNode > segments;
+	private final KDTree< SegmentNode > kdtree;
+	private final ThreadLocal< RadiusNeighborSearchOnKDTree< SegmentNode > > radiusSearch;
+	private SegmentGridIndex grid;
+
+	public SegmentSpatialIndex( final Collection< SegmentNode > segments ) {
+		this.segments = Collections.unmodifiableList( new ArrayList<>( segments ) );
+
+		if ( this.segments.isEmpty() ) {
+			kdtree = null;
+			radiusSearch = null;
+		} else {
+			final List< RealLocalizable > positions = new ArrayList<>( this.segments.size() );
+			for ( final SegmentNode node : this.segments ) {
+				positions.add( node.getSegment().getCenterOfMass() );
+			}
+			kdtree = new KDTree<>( this.segments, positions );
+			radiusSearch = ThreadLocal.withInitial( () -> new RadiusNeighborSearchOnKDTree<>( kdtree ) );
+		}
+	}
+
+	public int size() {
+		return segments.size();
+	}
+
+	public List< SegmentNode > getSegments() {
+		return segments;
+	}
+
+	/**
+	 * Returns the radius search of the calling thread. The returned instance
+	 * must not be handed to other threads.
+	 *
+	 * @return a radius search over the centers of mass of all segments, or
+	 *         <code>null</code> if this frame has no segments.
+	 */
+	public RadiusNeighborSearch< SegmentNode > getRadiusNeighborSearch() {
+		return ( radiusSearch == null ) ? null : radiusSearch.get();
+	}
+
+	/**
+	 * Returns the grid based radius search of the calling thread. The grid is
+	 * built on first request and rebuilt if a different cell size is asked
+	 * for. The returned instance must not be handed to other threads.
+	 *
+	 * @param cellSize
+	 *            grid cell size, should be the largest radius that will be
+	 *            searched for.
+	 * @return a radius search over the centers of mass of all segments, or
+	 *         <code>null</code> if this frame has no segments.
+	 */
+	public RadiusNeighborSearch< SegmentNode > getGridNeighborSearch( final double cellSize ) {
+		if ( segments.isEmpty() ) return null;
+		return getGrid( cellSize ).getRadiusNeighborSearch();
+	}
+
+	private synchronized SegmentGridIndex getGrid( final double cellSize ) {
+		if ( grid == null || grid.getRequestedCellSize() != cellSize ) {
+			grid = new SegmentGridIndex( segments, cellSize );
+		}
+		return grid;
+	}
+}
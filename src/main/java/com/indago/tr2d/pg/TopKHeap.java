@@ -0,0 +1,146 @@
+/**
+ *
+ */
+package com.indago.tr2d.pg;
+
+import java.util.List;
+
+/**
+ * Keeps the (at most) <code>k</code> cheapest of all offered items in a
+ * fixed-size max-heap, i.e. the most expensive item kept is always on top and
+ * is the one to be replaced by a cheaper newcomer.
+ * Items of equal cost are ranked by the order they were offered in (earlier
+ * wins), so results do not depend on heap internals.
+ * <p>
+ * Use <code>accepts( cost )</code> before creating an item (or before
+ * computing its exact cost from a lower bound) to avoid work for candidates
+ * that would be dropped anyway. Instances can be reused after
+ * <code>drainTo</code>.
+ *
+ * @author jug
+ */
+public class TopKHeap< T > {
+
+	private final int k;
+	private final double[] costs;
+	private final long[] ranks;
+	private final Object[] items;
+	private int size = 0;
+	private long offered = 0;
+
+	/**
+	 * @param k
+	 *            number of items to keep (&ge; 0)
+	 */
+	public TopKHeap( final int k ) {
+		this.k = Math.max( 0, k );
+		costs = new double[ this.k ];
+		ranks = new long[ this.k ];
+		items = new Object[ this.k ];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isFull() {
+		return size == k;
+	}
+
+	/**
+	 * @return the cost of the most expensive item kept if the heap is full,
+	 *         <code>Double.POSITIVE_INFINITY</code> otherwise.
+	 */
+	public double getThreshold() {
+		return isFull() ? ( k == 0 ? Double.NEGATIVE_INFINITY : costs[ 0 ] ) : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * @param cost
+	 *            a cost, or a lower bound of a cost
+	 * @return <code>true</code> if an item of the given cost would be kept.
+	 */
+	public boolean accepts( final double cost ) {
+		return cost < getThreshold();
+	}
+
+	/**
+	 * Offers an item. If the heap is full and the item is not cheaper than
+	 * the most expensive item kept, it is dropped.
+	 *
+	 * @return <code>true</code> if the item was kept.
+	 */
+	public boolean offer( final double cost, final T item ) {
+		final long rank = offered++;
+		if ( !accepts( cost ) ) return false;
+
+		if ( size < k ) {
+			int i = size++;
+			while ( i > 0 ) {
+				final int parent = ( i - 1 ) / 2;
+				if ( !above( cost, rank, costs[ parent ], ranks[ parent ] ) ) break;
+				set( i, costs[ parent ], ranks[ parent ], items[ parent ] );
+				i = parent;
+			}
+			set( i, cost, rank, item );
+		} else {
+			siftDown( cost, rank, item );
+		}
+		return true;
+	}
+
+	/**
+	 * Adds all kept items to <code>target</code>, cheapest first, and empties
+	 * this heap.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public void drainTo( final List< ? super T > target ) {
+		final int n = size;
+		final Object[] sorted = new Object[ n ];
+		for ( int i = n - 1; i >= 0; i-- ) {
+			sorted[ i ] = items[ 0 ];
+			final int last = --size;
+			if ( last > 0 ) {
+				siftDown( costs[ last ], ranks[ last ], items[ last ] );
+			}
+			items[ last ] = null;
+		}
+		for ( final Object item : sorted ) {
+			target.add( ( T ) item );
+		}
+		offered = 0;
+	}
+
+	/**
+	 * Places the given item at the root and sifts it down into
+	 * <code>items[0..size)</code>.
+	 */
+	private void siftDown( final double cost, final long rank, final Object item ) {
+		int i = 0;
+		while ( true ) {
+			int child = 2 * i + 1;
+			if ( child >= size ) break;
+			if ( child + 1 < size && above( costs[ child + 1 ], ranks[ child + 1 ], costs[ child ], ranks[ child ] ) ) {
+				child++;
+			}
+			if ( !above( costs[ child ], ranks[ child ], cost, rank ) ) break;
+			set( i, costs[ child ], ranks[ child ], items[ child ] );
+			i = child;
+		}
+		set( i, cost, rank, item );
+	}
+
+	/**
+	 * @return <code>true</code> if (c1,r1) ranks worse than (c2,r2), i.e.
+	 *         belongs closer to the top of the max-heap.
+	 */
+	private static boolean above( final double c1, final long r1, final double c2, final long r2 ) {
+		return c1 > c2 || ( c1 == c2 && r1 > r2 );
+	}
+
+	private void set( final int i, final double cost, final long rank, final Object item ) {
+		costs[ i ] = cost;
+		ranks[ i ] = rank;
+		items[ i ] = item;
+	}
+}
@@ -2,7 +2,10 @@ package com.indago.tr2d.pg;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.indago.costs.CostFactory;
@@ -27,6 +30,13 @@ public class Tr2dSegmentationProblem implements TrackingSegmentationProblem {
 
 	private final Bimap< SegmentNode, LabelingSegment > segmentBimap;
 
+	private SegmentSpatialIndex spatialIndex;
+
+	// CONFLICT CLIQUES (built on first request, immutable afterwards)
+	private List< ConflictSet > conflictSets;
+	private Map< SegmentNode, int[] > segmentToCliques;
+	private static final int[] NO_CLIQUES = new int[ 0 ];
+
 	public Tr2dSegmentationProblem(
 			final int time,
 			final List< LabelingSegment > labelingSegments,
@@ -41,6 +51,39 @@ public class Tr2dSegmentationProblem implements TrackingSegmentationProblem {
 		createSegmentVars( labelingSegments );
 	}
 
+	/**
+	 * Creates a segmentation problem from given (e.g. previously stored)
+	 * segment costs. No <code>CostFactory</code> is evaluated.
+	 *
+	 * @param time
+	 *            the time point
+	 * @param labelingSegments
+	 *            the segments of this time point
+	 * @param costs
+	 *            the cost of each segment (same order as
+	 *            <code>labelingSegments</code>)
+	 * @param conflictGraph
+	 *            the conflict graph of the given segments
+	 */
+	public Tr2dSegmentationProblem(
+			final int time,
+			final List< LabelingSegment > labelingSegments,
+			final double[] costs,
+			final ConflictGraph< LabelingSegment > conflictGraph ) {
+		segmentBimap = new Bimap<>();
+
+		this.time = time;
+		this.segmentCosts = null;
+		this.conflictGraph = conflictGraph;
+
+		for ( int i = 0; i < labelingSegments.size(); i++ ) {
+			final LabelingSegment labelingSegment = labelingSegments.get( i );
+			final SegmentNode segVar = new SegmentNode( labelingSegment, costs[ i ] );
+			segments.add( segVar );
+			segmentBimap.add( segVar, labelingSegment );
+		}
+	}
+
 	/**
 	 * @param labelingSegments
 	 */
@@ -70,32 +113,82 @@ public class Tr2dSegmentationProblem implements TrackingSegmentationProblem {
 	}
 
 	/**
+	 * The returned conflict sets are built once and are the same instances on
+	 * every call, so they can be used as keys (e.g. in the leveraged editing
+	 * state).
+	 *
 	 * @see com.indago.pg.SegmentationProblem#getConflictSets()
 	 */
 	@Override
 	public Collection< ConflictSet > getConflictSets() {
-		final ArrayList< ConflictSet > ret = new ArrayList< ConflictSet >();
+		buildConflictIndex();
+		return conflictSets;
+	}
+
+	/**
+	 * @param node
+	 *            a segment node of this frame
+	 * @return the first conflict set containing the given node, or an empty
+	 *         conflict set if the node does not conflict with anything.
+	 */
+	public ConflictSet getConflictSetFor( final SegmentNode node ) {
+		final int[] ids = getCliqueIds( node );
+		if ( ids.length > 0 ) { return conflictSets.get( ids[ 0 ] ); }
+		return new ConflictSet();
+	}
+
+	/**
+	 * @param node
+	 *            a segment node of this frame
+	 * @return the indices (into <code>getConflictSets()</code>) of all
+	 *         conflict sets containing the given node. Must not be modified.
+	 */
+	public int[] getCliqueIds( final SegmentNode node ) {
+		buildConflictIndex();
+		final int[] ids = segmentToCliques.get( node );
+		return ( ids == null ) ? NO_CLIQUES : ids;
+	}
+
+	/**
+	 * Builds the conflict sets of all cliques of the conflict graph and the
+	 * index from segment nodes to the cliques they are part of.
+	 */
+	private synchronized void buildConflictIndex() {
+		if ( conflictSets != null ) return;
+
+		final List< ConflictSet > sets = new ArrayList<>();
+		final Map< SegmentNode, List< Integer > > cliquesPerNode = new HashMap<>();
 		for ( final Collection< LabelingSegment > clique : conflictGraph.getConflictGraphCliques() ) {
+			final int id = sets.size();
 			final ConflictSet cs = new ConflictSet();
 			for ( final LabelingSegment ls : clique ) {
-				cs.add( segmentBimap.getA( ls ) );
+				final SegmentNode node = segmentBimap.getA( ls );
+				cs.add( node );
+				cliquesPerNode.computeIfAbsent( node, k -> new ArrayList<>() ).add( id );
 			}
-			ret.add( cs );
+			sets.add( cs );
+		}
+
+		final Map< SegmentNode, int[] > index = new HashMap<>();
+		for ( final Map.Entry< SegmentNode, List< Integer > > entry : cliquesPerNode.entrySet() ) {
+			index.put( entry.getKey(), entry.getValue().stream().mapToInt( Integer::intValue ).toArray() );
 		}
-		return ret;
+		segmentToCliques = index;
+		conflictSets = Collections.unmodifiableList( sets );
 	}
 
-	public ConflictSet getConflictSetFor( final SegmentNode node ) {
-		for ( final Collection< LabelingSegment > clique : conflictGraph.getConflictGraphCliques() ) {
-			if ( clique.contains( node.getSegment() ) ) {
-				final ConflictSet cs = new ConflictSet();
-				for ( final LabelingSegment ls : clique ) {
-					cs.add( segmentBimap.getA( ls ) );
-				}
-				return cs;
-			}
+	/**
+	 * Returns the spatial index over all segments of this frame. It is built
+	 * on first request and then shared by all callers for the lifetime of
+	 * this segmentation problem.
+	 *
+	 * @return the <code>SegmentSpatialIndex</code> of this frame
+	 */
+	public synchronized SegmentSpatialIndex getSpatialIndex() {
+		if ( spatialIndex == null ) {
+			spatialIndex = new SegmentSpatialIndex( segments );
 		}
-		return new ConflictSet();
+		return spatialIndex;
 	}
 
 	public SegmentNode getSegmentVar( final LabelingSegment segment ) {
@@ -148,12 +241,9 @@ public class Tr2dSegmentationProblem implements TrackingSegmentationProblem {
 		force( segNode );
 
 		// first: un-force disappearance of all conflicting segment nodes
-		final Collection< ? extends Collection< LabelingSegment > > cliques = conflictGraph.getConflictGraphCliques();
-		for ( final Collection< LabelingSegment > clique : cliques ) {
-			if ( clique.contains( segNode ) ) {
-				for ( final LabelingSegment labelingSegment : clique ) {
-					edits.getForcedSegmentNodeDisappearances().remove( labelingSegment );
-				}
+		for ( final int id : getCliqueIds( segNode ) ) {
+			for ( final SegmentNode cliqueSegNode : conflictSets.get( id ) ) {
+				edits.getForcedSegmentNodeDisappearances().remove( cliqueSegNode );
 			}
 		}
 
@@ -305,12 +395,10 @@ public class Tr2dSegmentationProblem implements TrackingSegmentationProblem {
 		edits.getAvoidedSegmentNodes().remove( segNode );
 
 		// un-force all conflicting segment nodes
-		Collection< ? extends Collection< LabelingSegment > > cliques = conflictGraph.getConflictGraphCliques();
-		for ( final Collection< LabelingSegment > clique : cliques ) {
-			if ( clique.contains( segmentBimap.getB( segNode ) ) ) {
-				for ( final LabelingSegment labelingSegment : clique ) {
-					edits.getForcedSegmentNodes().remove( segmentBimap.getA( labelingSegment ) );
-				}
+		final int[] cliqueIds = getCliqueIds( segNode );
+		for ( final int id : cliqueIds ) {
+			for ( final SegmentNode cliqueSegNode : conflictSets.get( id ) ) {
+				edits.getForcedSegmentNodes().remove( cliqueSegNode );
 			}
 		}
 
@@ -319,17 +407,13 @@ public class Tr2dSegmentationProblem implements TrackingSegmentationProblem {
 
 		// FORCES ON ASSIGNMENT LEVEL
 		// ==========================
-		cliques = conflictGraph.getConflictGraphCliques();
-		for ( final Collection< LabelingSegment > clique : cliques ) {
-			if ( clique.contains( segmentBimap.getB( segNode ) ) ) {
-				for ( final LabelingSegment labelingSegment : clique ) {
-					final SegmentNode cliqueSegNode = segmentBimap.getA( labelingSegment );
-					edits.getForcedSegmentNodeAppearances().remove( cliqueSegNode );
-					edits.getForcedSegmentNodeMovesTo().remove( cliqueSegNode );
-					edits.getForcedSegmentNodeDivisionsTo().remove( cliqueSegNode );
-					edits.getForcedSegmentNodeMovesFrom().remove( cliqueSegNode );
-					edits.getForcedSegmentNodeDivisionsFrom().remove( cliqueSegNode );
-				}
+		for ( final int id : cliqueIds ) {
+			for ( final SegmentNode cliqueSegNode : conflictSets.get( id ) ) {
+				edits.getForcedSegmentNodeAppearances().remove( cliqueSegNode );
+				edits.getForcedSegmentNodeMovesTo().remove( cliqueSegNode );
+				edits.getForcedSegmentNodeDivisionsTo().remove( cliqueSegNode );
+				edits.getForcedSegmentNodeMovesFrom().remove( cliqueSegNode );
+				edits.getForcedSegmentNodeDivisionsFrom().remove( cliqueSegNode );
 			}
 		}
 	}
@@ -6,9 +6,16 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -17,8 +24,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.PriorityQueue;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Consumer;
 
 import javax.swing.JOptionPane;
@@ -37,16 +45,23 @@ import com.indago.pg.assignments.MovementHypothesis;
 import com.indago.pg.segments.ConflictSet;
 import com.indago.pg.segments.SegmentNode;
 import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.costs.CostLowerBound;
+import com.indago.tr2d.costs.DistanceCostLowerBound;
 import com.indago.tr2d.data.LabelingTimeLapse;
+import com.indago.tr2d.ui.model.FlowSampler;
 import com.indago.tr2d.ui.model.Tr2dFlowModel;
 import com.indago.tr2d.ui.model.Tr2dTrackingModel;
 import com.indago.util.Bimap;
 import com.indago.util.TicToc;
 
-import net.imglib2.KDTree;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
 import net.imglib2.RealLocalizable;
 import net.imglib2.RealPoint;
-import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearch;
 import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
 
@@ -65,7 +80,15 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 	private final CostFactory< LabelingSegment > disappearanceCosts;
 
 	private final Tr2dTrackingProblemSerializer serializer = new Tr2dTrackingProblemSerializer();
+	private IndicatorNodeIndex nodeIndex;
 
+	/**
+	 * @param trackingModel
+	 *            provides the hypotheses generation parameters
+	 * @param flowModel
+	 *            the flow used to correct movements, or <code>null</code> to
+	 *            track without flow
+	 */
 	public Tr2dTrackingProblem(
 			final Tr2dTrackingModel trackingModel,
 			final Tr2dFlowModel flowModel,
@@ -87,24 +110,240 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 		return timepoints;
 	}
 
-	public void addSegmentationProblem( final Tr2dSegmentationProblem segmentationProblem ) {
+	/**
+	 * Appends one frame and connects it to the current last frame.
+	 * Can be called on a problem that is already in use (e.g. while tracking
+	 * live), a previously built <code>IndicatorNodeIndex</code> is dropped and
+	 * rebuilt on the next call to <code>getNodeIndex</code>.
+	 *
+	 * @param segmentationProblem
+	 *            the frame to be appended
+	 */
+	public synchronized void addSegmentationProblem( final Tr2dSegmentationProblem segmentationProblem ) {
+		nodeIndex = null;
 		if ( timepoints.size() == 0 ) {
 			timepoints.add( segmentationProblem );
-			addAppearanceToLatestFrame( true );
+			new FramePairHypotheses( null, segmentationProblem ).wire();
 		} else {
-			addDisappearanceToLatestFrame();
+			final Tr2dSegmentationProblem segProblemL = timepoints.get( timepoints.size() - 1 );
 			timepoints.add( segmentationProblem );
-			addAppearanceToLatestFrame( false );
+			new FramePairHypotheses( segProblemL, segmentationProblem ).wire();
+		}
+	}
+
+	/**
+	 * Adds all given segmentation problems at once.
+	 * The transition hypotheses (appearances, disappearances, moves, and
+	 * divisions) of all frame pairs are computed concurrently on the given
+	 * pool. Wiring them into the in- and out-assignments of the segment nodes
+	 * happens afterwards, frame by frame, in exactly the order
+	 * <code>addSegmentationProblem</code> would use. The resulting problem
+	 * graph (and therefore node ids and exported .pgraph files) is identical
+	 * to the one built by sequential calls. Like
+	 * <code>addSegmentationProblem</code>, a previously built
+	 * <code>IndicatorNodeIndex</code> is dropped.
+	 *
+	 * @param segmentationProblems
+	 *            the segmentation problems to be added (in temporal order)
+	 * @param pool
+	 *            the pool the hypotheses are computed on
+	 */
+	public synchronized void addSegmentationProblems(
+			final List< Tr2dSegmentationProblem > segmentationProblems,
+			final ForkJoinPool pool ) {
+		nodeIndex = null;
+		final List< ForkJoinTask< FramePairHypotheses > > tasks = new ArrayList<>();
+		Tr2dSegmentationProblem segProblemL = timepoints.isEmpty() ? null : timepoints.get( timepoints.size() - 1 );
+		for ( final Tr2dSegmentationProblem segProblemR : segmentationProblems ) {
+			final Tr2dSegmentationProblem left = segProblemL;
+			tasks.add( pool.submit( () -> new FramePairHypotheses( left, segProblemR ) ) );
+			segProblemL = segProblemR;
+		}
+
+		for ( int i = 0; i < tasks.size(); i++ ) {
+			timepoints.add( segmentationProblems.get( i ) );
+			tasks.get( i ).join().wire();
+		}
+	}
+
+	/**
+	 * Adds all given segmentation problems at once, like
+	 * <code>addSegmentationProblems( segmentationProblems, pool )</code>, but
+	 * takes the transition hypotheses of reusable frames over from a
+	 * previously built tracking problem instead of recomputing them.
+	 * Hypotheses are copied (including their current costs) frame by frame in
+	 * the order they were wired into <code>previous</code>, so the resulting
+	 * problem graph equals a full rebuild.
+	 *
+	 * @param segmentationProblems
+	 *            the segmentation problems to be added (in temporal order),
+	 *            starting at the first frame
+	 * @param pool
+	 *            the pool the non-reusable hypotheses are computed on
+	 * @param previous
+	 *            the previously built tracking problem
+	 * @param reusable
+	 *            <code>reusable[i]</code> tells if the hypotheses connecting
+	 *            frame <code>i</code> to its predecessor are still valid in
+	 *            <code>previous</code>, i.e. if the segments of both frames
+	 *            and all parameters the hypotheses depend on did not change.
+	 *            The segments of the new frames must be the same
+	 *            <code>LabelingSegment</code> instances as in
+	 *            <code>previous</code>.
+	 */
+	public synchronized void addSegmentationProblems(
+			final List< Tr2dSegmentationProblem > segmentationProblems,
+			final ForkJoinPool pool,
+			final Tr2dTrackingProblem previous,
+			final boolean[] reusable ) {
+		nodeIndex = null;
+		final List< ForkJoinTask< FramePairHypotheses > > tasks = new ArrayList<>();
+		Tr2dSegmentationProblem segProblemL = timepoints.isEmpty() ? null : timepoints.get( timepoints.size() - 1 );
+		for ( int i = 0; i < segmentationProblems.size(); i++ ) {
+			final Tr2dSegmentationProblem left = segProblemL;
+			final Tr2dSegmentationProblem segProblemR = segmentationProblems.get( i );
+			if ( reusable[ i ] ) {
+				final Tr2dSegmentationProblem previousL = ( i == 0 ) ? null : previous.getTimepoints().get( i - 1 );
+				final Tr2dSegmentationProblem previousR = previous.getTimepoints().get( i );
+				tasks.add( pool.submit( () -> new FramePairHypotheses( previousL, previousR, left, segProblemR ) ) );
+			} else {
+				tasks.add( pool.submit( () -> new FramePairHypotheses( left, segProblemR ) ) );
+			}
+			segProblemL = segProblemR;
 		}
 
-		if ( timepoints.size() >= 2 ) {
-			addMovesToLatestFramePair();
-			addDivisionsToLatestFramePair();
+		for ( int i = 0; i < tasks.size(); i++ ) {
+			timepoints.add( segmentationProblems.get( i ) );
+			tasks.get( i ).join().wire();
 		}
 	}
 
-	private void addAppearanceToLatestFrame( final boolean isFirstFrame ) {
+	/**
+	 * Last frame needs to get disappearances in order for continuity
+	 * constraints to work out.
+	 * This is usually the last method to be called when creating the model.
+	 */
+	public void addDummyDisappearance() {
 		final Tr2dSegmentationProblem segProblem = timepoints.get( timepoints.size() - 1 );
+		for ( final SegmentNode segVar : segProblem.getSegments() ) {
+			final DisappearanceHypothesis disappHyp = new DisappearanceHypothesis( 0, segVar );
+			segVar.getOutAssignments().add( disappHyp );
+		}
+	}
+
+	/**
+	 * All transition hypotheses that connect a new frame to its predecessor.
+	 * Construction only computes hypotheses and costs and does not touch any
+	 * <code>SegmentNode</code>, so instances for different frame pairs can be
+	 * built concurrently. <code>wire()</code> then adds them to the in- and
+	 * out-assignments of the involved segment nodes.
+	 */
+	private class FramePairHypotheses {
+
+		private final List< DisappearanceHypothesis > disappearances;
+		private final List< AppearanceHypothesis > appearances;
+		private final List< MovementHypothesis > moves;
+		private final List< DivisionHypothesis > divisions;
+
+		/**
+		 * @param segProblemL
+		 *            the previous frame, or <code>null</code> if
+		 *            <code>segProblemR</code> is the first frame
+		 * @param segProblemR
+		 *            the frame to be added
+		 */
+		FramePairHypotheses( final Tr2dSegmentationProblem segProblemL, final Tr2dSegmentationProblem segProblemR ) {
+			if ( segProblemL == null ) {
+				disappearances = new ArrayList<>();
+				appearances = createAppearances( segProblemR, true );
+				moves = new ArrayList<>();
+				divisions = new ArrayList<>();
+			} else {
+				disappearances = createDisappearances( segProblemL );
+				appearances = createAppearances( segProblemR, false );
+				moves = createMoves( segProblemL, segProblemR );
+				divisions = createDivisions( segProblemL, segProblemR );
+			}
+		}
+
+		/**
+		 * Copies the hypotheses between <code>previousL</code> and
+		 * <code>previousR</code> onto the segment nodes of
+		 * <code>segProblemL</code> and <code>segProblemR</code>, which must
+		 * contain the same segments.
+		 *
+		 * @param previousL
+		 *            the previous frame in the old problem graph, or
+		 *            <code>null</code> if <code>previousR</code> is the first
+		 *            frame
+		 * @param previousR
+		 *            the frame in the old problem graph
+		 * @param segProblemL
+		 *            the previous frame, or <code>null</code> if
+		 *            <code>segProblemR</code> is the first frame
+		 * @param segProblemR
+		 *            the frame to be added
+		 */
+		FramePairHypotheses(
+				final Tr2dSegmentationProblem previousL,
+				final Tr2dSegmentationProblem previousR,
+				final Tr2dSegmentationProblem segProblemL,
+				final Tr2dSegmentationProblem segProblemR ) {
+			disappearances = new ArrayList<>();
+			appearances = new ArrayList<>();
+			moves = new ArrayList<>();
+			divisions = new ArrayList<>();
+
+			if ( previousL != null ) {
+				for ( final SegmentNode previousVarL : previousL.getSegments() ) {
+					final SegmentNode segVarL = segProblemL.getSegmentVar( previousVarL.getSegment() );
+					for ( final DisappearanceHypothesis disappHyp : previousVarL.getOutAssignments().getDisappearances() ) {
+						disappearances.add( new DisappearanceHypothesis( disappHyp.getCost(), segVarL ) );
+					}
+					for ( final MovementHypothesis moveHyp : previousVarL.getOutAssignments().getMoves() ) {
+						moves.add( new MovementHypothesis(
+								moveHyp.getCost(),
+								segVarL,
+								segProblemR.getSegmentVar( moveHyp.getDest().getSegment() ) ) );
+					}
+					for ( final DivisionHypothesis divHyp : previousVarL.getOutAssignments().getDivisions() ) {
+						divisions.add( new DivisionHypothesis(
+								divHyp.getCost(),
+								segVarL,
+								segProblemR.getSegmentVar( divHyp.getDest1().getSegment() ),
+								segProblemR.getSegmentVar( divHyp.getDest2().getSegment() ) ) );
+					}
+				}
+			}
+			for ( final SegmentNode previousVarR : previousR.getSegments() ) {
+				final SegmentNode segVarR = segProblemR.getSegmentVar( previousVarR.getSegment() );
+				for ( final AppearanceHypothesis appHyp : previousVarR.getInAssignments().getAppearances() ) {
+					appearances.add( new AppearanceHypothesis( appHyp.getCost(), segVarR ) );
+				}
+			}
+		}
+
+		void wire() {
+			for ( final DisappearanceHypothesis disappHyp : disappearances ) {
+				disappHyp.getSrc().getOutAssignments().add( disappHyp );
+			}
+			for ( final AppearanceHypothesis appHyp : appearances ) {
+				appHyp.getDest().getInAssignments().add( appHyp );
+			}
+			for ( final MovementHypothesis moveHyp : moves ) {
+				moveHyp.getSrc().getOutAssignments().add( moveHyp );
+				moveHyp.getDest().getInAssignments().add( moveHyp );
+			}
+			for ( final DivisionHypothesis divHyp : divisions ) {
+				divHyp.getSrc().getOutAssignments().add( divHyp );
+				divHyp.getDest1().getInAssignments().add( divHyp );
+				divHyp.getDest2().getInAssignments().add( divHyp );
+			}
+		}
+	}
+
+	private List< AppearanceHypothesis > createAppearances( final Tr2dSegmentationProblem segProblem, final boolean isFirstFrame ) {
+		final List< AppearanceHypothesis > ret = new ArrayList<>();
 		for ( final SegmentNode segVar : segProblem.getSegments() ) {
 			AppearanceHypothesis appHyp = null;
 			if ( isFirstFrame ) {
@@ -112,57 +351,62 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 			} else {
 				appHyp = new AppearanceHypothesis( appearanceCosts.getCost( segProblem.getLabelingSegment( segVar ) ), segVar );
 			}
-			segVar.getInAssignments().add( appHyp );
+			ret.add( appHyp );
 		}
+		return ret;
 	}
 
-	private void addDisappearanceToLatestFrame() {
-		final Tr2dSegmentationProblem segProblem = timepoints.get( timepoints.size() - 1 );
+	private List< DisappearanceHypothesis > createDisappearances( final Tr2dSegmentationProblem segProblem ) {
+		final List< DisappearanceHypothesis > ret = new ArrayList<>();
 		for ( final SegmentNode segVar : segProblem.getSegments() ) {
 			final DisappearanceHypothesis disappHyp =
 					new DisappearanceHypothesis( disappearanceCosts
 							.getCost( segProblem.getLabelingSegment( segVar ) ), segVar );
-			segVar.getOutAssignments().add( disappHyp );
+			ret.add( disappHyp );
 		}
+		return ret;
 	}
 
 	/**
-	 * Last frame needs to get disappearances in order for continuity
-	 * constraints to work out.
-	 * This is usually the last method to be called when creating the model.
+	 * Per segment only the best <code>maxMovementsToAddPerHypothesis</code>
+	 * moves are kept, in a bounded max-heap. If the movement cost factory can
+	 * bound its cost by the (flow corrected) distance, candidates are visited
+	 * nearest first and the search stops as soon as that bound exceeds the
+	 * K-th best cost found so far.
 	 */
-	public void addDummyDisappearance() {
-		final Tr2dSegmentationProblem segProblem = timepoints.get( timepoints.size() - 1 );
-		for ( final SegmentNode segVar : segProblem.getSegments() ) {
-			final DisappearanceHypothesis disappHyp = new DisappearanceHypothesis( 0, segVar );
-			segVar.getOutAssignments().add( disappHyp );
-		}
-	}
+	private List< MovementHypothesis > createMoves(
+			final Tr2dSegmentationProblem segProblemL,
+			final Tr2dSegmentationProblem segProblemR ) {
+		final List< MovementHypothesis > ret = new ArrayList<>();
 
-	private void addMovesToLatestFramePair() {
-		final Tr2dSegmentationProblem segProblemL = timepoints.get( timepoints.size() - 2 );
-		final Tr2dSegmentationProblem segProblemR = timepoints.get( timepoints.size() - 1 );
+		final RadiusNeighborSearch< SegmentNode > search = getRadiusNeighborSearch( segProblemR );
+		if ( search == null ) return ret;
 
-		final RadiusNeighborSearchOnKDTree< SegmentNode > search = createRadiusNeighborSearch( segProblemR );
+		final FlowSampler flowSampler = ( flowModel != null ) ? flowModel.getFlowSampler() : new FlowSampler( null, false );
+		final double[] flow = new double[ 2 ];
+		final RealPoint flow_pos = new RealPoint( 2 );
+
+		final DistanceCostLowerBound lowerBound =
+				( movementCosts instanceof DistanceCostLowerBound ) ? ( DistanceCostLowerBound ) movementCosts : null;
+		final TopKHeap< MovementHypothesis > bestMoves = new TopKHeap<>( trackingModel.getMaxMovementsToAddPerHypothesis() );
 
 		for ( final SegmentNode segVarL : segProblemL.getSegments() ) {
 
 			// retrieve flow vector at desired location
 			final int t = segProblemL.getTime();
-			final int x = ( int ) segVarL.getSegment().getCenterOfMass().getFloatPosition( 0 );
-			final int y = ( int ) segVarL.getSegment().getCenterOfMass().getFloatPosition( 1 );
-			final ValuePair< Double, Double > flow_vec = flowModel.getFlowVector( t, x, y );
-
 			final RealLocalizable pos = segVarL.getSegment().getCenterOfMass();
-			final RealPoint flow_pos = new RealPoint(
-					pos.getDoublePosition( 0 ) + flow_vec.getA(),
-					pos.getDoublePosition( 1 ) + flow_vec.getB() );
+			flowSampler.sample( t, pos, flow );
+			final ValuePair< Double, Double > flow_vec = new ValuePair<>( flow[ 0 ], flow[ 1 ] );
 
-			final PriorityQueue< MovementHypothesis > prioQueue = new PriorityQueue<>( 100, Util.getCostComparatorForMovementHypothesis() );
+			flow_pos.setPosition( pos.getDoublePosition( 0 ) + flow[ 0 ], 0 );
+			flow_pos.setPosition( pos.getDoublePosition( 1 ) + flow[ 1 ], 1 );
 
-			search.search( flow_pos, trackingModel.getMaxMovementSearchRadius(), false );
+			search.search( flow_pos, trackingModel.getMaxMovementSearchRadius(), lowerBound != null );
 			final int numNeighbors = search.numNeighbors();
 			for ( int i = 0; i < numNeighbors; ++i ) {
+				if ( lowerBound != null && !bestMoves.accepts( lowerBound.getCostLowerBound( search.getSquareDistance( i ) ) ) ) {
+					break; // all remaining neighbors are even further away
+				}
 				final SegmentNode segVarR = search.getSampler( i ).get();
 
 				final double cost_flow = movementCosts.getCost(
@@ -171,43 +415,36 @@ public class Tr2dTrackingProblem implements TrackingProblem {
     								segVarL.getSegment(),
     								segVarR.getSegment() ),
 							flow_vec ) );
-				prioQueue.add( new MovementHypothesis( cost_flow, segVarL, segVarR ) );
+				if ( bestMoves.accepts( cost_flow ) ) {
+					bestMoves.offer( cost_flow, new MovementHypothesis( cost_flow, segVarL, segVarR ) );
+				}
 			}
 
-			final int assmtsToAdd = Math.min( trackingModel.getMaxMovementsToAddPerHypothesis(), prioQueue.size() );
-			for ( int i = 0; i < assmtsToAdd; i++ ) {
-				final MovementHypothesis moveHyp = prioQueue.poll();
-				moveHyp.getSrc().getOutAssignments().add( moveHyp );
-				moveHyp.getDest().getInAssignments().add( moveHyp );
-			}
+			bestMoves.drainTo( ret );
 		}
+		return ret;
 	}
 
-	private RadiusNeighborSearchOnKDTree< SegmentNode > createRadiusNeighborSearch( final Tr2dSegmentationProblem segProblem ) {
-		List< SegmentNode > segmentList;
-		if ( segProblem.getSegments() instanceof List )
-			segmentList = ( List< SegmentNode > ) segProblem.getSegments();
-		else
-			segmentList = new ArrayList<>( segProblem.getSegments() );
-		final ArrayList< RealLocalizable > positions = new ArrayList<>();
-		for ( final SegmentNode n : segmentList )
-			positions.add( n.getSegment().getCenterOfMass() );
-		final KDTree< SegmentNode > kdtree = new KDTree<>( segmentList, positions );
-		final RadiusNeighborSearchOnKDTree< SegmentNode > search = new RadiusNeighborSearchOnKDTree<>( kdtree );
-		return search;
-	}
+	/**
+	 * Per segment only the best <code>maxDivisionsToAddPerHypothesis</code>
+	 * divisions are kept, in a bounded max-heap. If the division cost factory
+	 * provides a cheap lower bound, the full cost of a child pair is only
+	 * computed if the bound says the pair could still enter the heap.
+	 */
+	private List< DivisionHypothesis > createDivisions(
+			final Tr2dSegmentationProblem segProblemL,
+			final Tr2dSegmentationProblem segProblemR ) {
+		final List< DivisionHypothesis > ret = new ArrayList<>();
 
-	private void addDivisionsToLatestFramePair() {
-		final Tr2dSegmentationProblem segProblemL = timepoints.get( timepoints.size() - 2 );
-		final Tr2dSegmentationProblem segProblemR = timepoints.get( timepoints.size() - 1 );
+		final RadiusNeighborSearch< SegmentNode > search = getRadiusNeighborSearch( segProblemR );
+		if ( search == null ) return ret;
 
-		final RadiusNeighborSearchOnKDTree< SegmentNode > search = createRadiusNeighborSearch( segProblemR );
+		final CostLowerBound< Pair< LabelingSegment, Pair< LabelingSegment, LabelingSegment > > > lowerBound = getLowerBound( divisionCosts );
+		final TopKHeap< DivisionHypothesis > bestDivisions = new TopKHeap<>( trackingModel.getMaxDivisionsToAddPerHypothesis() );
 
 		for ( final SegmentNode segVarL : segProblemL.getSegments() ) {
 			final RealLocalizable pos = segVarL.getSegment().getCenterOfMass();
 
-			final PriorityQueue< DivisionHypothesis > prioQueue = new PriorityQueue<>( 100, Util.getCostComparatorForDivisionHypothesis() );
-
 			search.search( pos, trackingModel.getMaxDivisionSearchRadius(), true );
 			final int numNeighbors = search.numNeighbors();
 			for ( int i = 0; i < numNeighbors; ++i ) {
@@ -215,34 +452,69 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 					final SegmentNode segVarR1 = search.getSampler( i ).get();
 					final SegmentNode segVarR2 = search.getSampler( j ).get();
 
-					if ( segVarR1.getSegment().conflictsWith( segVarR2.getSegment() ) ) {
-						continue; // do not add divisions towards conflicting hypotheses
-					}
-
-					final double cost = divisionCosts.getCost(
+					final Pair< LabelingSegment, Pair< LabelingSegment, LabelingSegment > > segments =
 							new ValuePair< LabelingSegment, Pair< LabelingSegment, LabelingSegment > >(
 									segVarL.getSegment(),
 									new ValuePair< LabelingSegment, LabelingSegment> (
 											segVarR1.getSegment(),
-											segVarR2.getSegment() ) ) );
-					prioQueue.add( new DivisionHypothesis( cost, segVarL, segVarR1, segVarR2 ) );
+											segVarR2.getSegment() ) );
+
+					if ( lowerBound != null && !bestDivisions.accepts( lowerBound.getCostLowerBound( segments ) ) ) {
+						continue; // cannot be among the best divisions
+					}
+					if ( segVarR1.getSegment().conflictsWith( segVarR2.getSegment() ) ) {
+						continue; // do not add divisions towards conflicting hypotheses
+					}
+
+					final double cost = divisionCosts.getCost( segments );
+					if ( bestDivisions.accepts( cost ) ) {
+						bestDivisions.offer( cost, new DivisionHypothesis( cost, segVarL, segVarR1, segVarR2 ) );
+					}
 				}
 			}
 
-			final int assmtsToAdd = Math.min( trackingModel.getMaxDivisionsToAddPerHypothesis(), prioQueue.size() );
-			for ( int i = 0; i < assmtsToAdd; i++ ) {
-				final DivisionHypothesis divHyp = prioQueue.poll();
-				divHyp.getSrc().getOutAssignments().add( divHyp );
-				divHyp.getDest1().getInAssignments().add( divHyp );
-				divHyp.getDest2().getInAssignments().add( divHyp );
-			}
+			bestDivisions.drainTo( ret );
 		}
+		return ret;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static < T > CostLowerBound< T > getLowerBound( final CostFactory< T > costFactory ) {
+		return ( costFactory instanceof CostLowerBound ) ? ( CostLowerBound< T > ) costFactory : null;
+	}
+
+	/**
+	 * Returns the radius search over the segments of the given frame, either
+	 * on the KD-tree or on the uniform grid, as chosen in the tracking model.
+	 * The grid cell size is the larger of the move and division search radii,
+	 * so that both kinds of queries visit at most 3x3 grid cells.
+	 */
+	private RadiusNeighborSearch< SegmentNode > getRadiusNeighborSearch( final Tr2dSegmentationProblem segProblem ) {
+		if ( trackingModel.isGridNeighborSearchActive() ) {
+			final double cellSize = Math.max( trackingModel.getMaxMovementSearchRadius(), trackingModel.getMaxDivisionSearchRadius() );
+			return segProblem.getSpatialIndex().getGridNeighborSearch( cellSize );
+		}
+		return segProblem.getSpatialIndex().getRadiusNeighborSearch();
 	}
 
 	public Tr2dTrackingProblemSerializer getSerializer() {
 		return serializer;
 	}
 
+	/**
+	 * Returns the dense numbering of all segment and assignment nodes.
+	 * The index is built on first request, i.e. this method must not be
+	 * called before the problem graph is complete.
+	 *
+	 * @return the <code>IndicatorNodeIndex</code> of this problem graph
+	 */
+	public synchronized IndicatorNodeIndex getNodeIndex() {
+		if ( nodeIndex == null ) {
+			nodeIndex = new IndicatorNodeIndex( this );
+		}
+		return nodeIndex;
+	}
+
 	static final class NodeId
 	{
 		private final int id;
@@ -273,6 +545,13 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 
 	public static class Tr2dTrackingProblemSerializer {
 
+		private static final int PGRAPH_MAGIC = 0x54324450; // "T2DP"
+		private static final int PGRAPH_VERSION = 1;
+
+		private static final int PGRAPH_APPEARANCE = 0;
+		private static final int PGRAPH_DISAPPEARANCE = 1;
+		private static final int PGRAPH_MOVE = 2;
+		private static final int PGRAPH_DIVISION = 3;
 
 		private final Bimap< SegmentNode, NodeId > bimapSeg2Id;
 		private final Bimap< AssignmentNode, NodeId > bimapAss2Id;
@@ -482,7 +761,22 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 			}
 		}
 
+		/**
+		 * Writes the given solution to <code>file</code>. Without a solution
+		 * (e.g. after a failed solve) a solution file left by an earlier
+		 * solve is deleted instead, such that it cannot be taken for the
+		 * current one.
+		 *
+		 * @param pgAssignment
+		 *            the solution, or <code>null</code>
+		 */
 		public void saveSolution( final Tr2dTrackingProblem ttp, final Assignment< IndicatorNode > pgAssignment, final File file ) {
+			if ( pgAssignment == null ) {
+				if ( file.exists() && !file.delete() ) {
+					Tr2dLog.log.warn( "Stale solution file could not be deleted: " + file );
+				}
+				return;
+			}
 			try {
 				final BufferedWriter solutionWriter = new BufferedWriter( new FileWriter( file ) );
 
@@ -644,6 +938,426 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 			return bimapAss2Id;
 		}
 
+		/**
+		 * Writes the given tracking problem in the versioned binary .pgraph
+		 * format.
+		 * Segments, assignments, and conflict sets are stored column-wise as
+		 * plain int and double arrays (big endian):
+		 *
+		 * <pre>
+		 * int MAGIC, int VERSION
+		 * int F, int[F] segments per frame
+		 * int S, int[S] labeling segment ids, double[S] segment costs
+		 * int A, int[A] types, int[A] src/app-dest, int[A] dest/dest1, int[A] dest2, double[A] costs
+		 * int C, int[C+1] conflict set offsets, int M, int[M] conflict set members
+		 * </pre>
+		 *
+		 * Assignments and conflict sets reference segments by their index in
+		 * the segment columns, -1 marks an unused column.
+		 *
+		 * @param ttp
+		 *            the tracking problem to be stored
+		 * @param file
+		 *            the file to write to
+		 * @throws IOException
+		 */
+		public void saveBinaryPgraph( final Tr2dTrackingProblem ttp, final File file ) throws IOException {
+			final List< Tr2dSegmentationProblem > timePoints = ttp.getTimepoints();
+
+			// SEGMENTS
+			int numSegments = 0;
+			for ( final Tr2dSegmentationProblem t : timePoints ) {
+				numSegments += t.getSegments().size();
+			}
+			final int[] segmentsPerFrame = new int[ timePoints.size() ];
+			final int[] segmentIds = new int[ numSegments ];
+			final double[] segmentCosts = new double[ numSegments ];
+			final TObjectIntMap< SegmentNode > segmentIndex = new TObjectIntHashMap<>( 2 * numSegments, 0.5f, -1 );
+			int i = 0;
+			for ( int frameId = 0; frameId < timePoints.size(); frameId++ ) {
+				for ( final SegmentNode segment : timePoints.get( frameId ).getSegments() ) {
+					segmentIndex.put( segment, i );
+					segmentIds[ i ] = segment.getSegment().getId();
+					segmentCosts[ i ] = segment.getCost();
+					segmentsPerFrame[ frameId ]++;
+					i++;
+				}
+			}
+
+			// ASSIGNMENTS
+			final TIntArrayList types = new TIntArrayList();
+			final TIntArrayList sources = new TIntArrayList();
+			final TIntArrayList dests = new TIntArrayList();
+			final TIntArrayList dests2 = new TIntArrayList();
+			final TDoubleArrayList costs = new TDoubleArrayList();
+			for ( final Tr2dSegmentationProblem t : timePoints ) {
+				for ( final SegmentNode segment : t.getSegments() ) {
+					for ( final AppearanceHypothesis app : segment.getInAssignments().getAppearances() ) {
+						types.add( PGRAPH_APPEARANCE );
+						sources.add( segmentIndex.get( app.getDest() ) );
+						dests.add( -1 );
+						dests2.add( -1 );
+						costs.add( app.getCost() );
+					}
+					for ( final DisappearanceHypothesis disapp : segment.getOutAssignments().getDisappearances() ) {
+						types.add( PGRAPH_DISAPPEARANCE );
+						sources.add( segmentIndex.get( disapp.getSrc() ) );
+						dests.add( -1 );
+						dests2.add( -1 );
+						costs.add( disapp.getCost() );
+					}
+					for ( final MovementHypothesis move : segment.getOutAssignments().getMoves() ) {
+						types.add( PGRAPH_MOVE );
+						sources.add( segmentIndex.get( move.getSrc() ) );
+						dests.add( segmentIndex.get( move.getDest() ) );
+						dests2.add( -1 );
+						costs.add( move.getCost() );
+					}
+					for ( final DivisionHypothesis div : segment.getOutAssignments().getDivisions() ) {
+						types.add( PGRAPH_DIVISION );
+						sources.add( segmentIndex.get( div.getSrc() ) );
+						dests.add( segmentIndex.get( div.getDest1() ) );
+						dests2.add( segmentIndex.get( div.getDest2() ) );
+						costs.add( div.getCost() );
+					}
+				}
+			}
+
+			// CONFLICT SETS
+			final TIntArrayList conflictSetOffsets = new TIntArrayList();
+			final TIntArrayList conflictSetMembers = new TIntArrayList();
+			conflictSetOffsets.add( 0 );
+			for ( final Tr2dSegmentationProblem t : timePoints ) {
+				for ( final ConflictSet cs : t.getConflictSets() ) {
+					for ( final SegmentNode segnode : cs ) {
+						conflictSetMembers.add( segmentIndex.get( segnode ) );
+					}
+					conflictSetOffsets.add( conflictSetMembers.size() );
+				}
+			}
+
+			final int numAssignments = types.size();
+			final long numBytes =
+					4L * ( 3 + segmentsPerFrame.length )
+					+ 4L + 12L * numSegments
+					+ 4L + 24L * numAssignments
+					+ 4L + 4L * conflictSetOffsets.size()
+					+ 4L + 4L * conflictSetMembers.size();
+			if ( numBytes > Integer.MAX_VALUE ) { throw new IOException( "Problem graph too large for binary .pgraph format." ); }
+
+			final ByteBuffer buffer = ByteBuffer.allocate( ( int ) numBytes );
+			buffer.putInt( PGRAPH_MAGIC );
+			buffer.putInt( PGRAPH_VERSION );
+			buffer.putInt( segmentsPerFrame.length );
+			putInts( buffer, segmentsPerFrame );
+			buffer.putInt( numSegments );
+			putInts( buffer, segmentIds );
+			putDoubles( buffer, segmentCosts );
+			buffer.putInt( numAssignments );
+			putInts( buffer, types.toArray() );
+			putInts( buffer, sources.toArray() );
+			putInts( buffer, dests.toArray() );
+			putInts( buffer, dests2.toArray() );
+			putDoubles( buffer, costs.toArray() );
+			buffer.putInt( conflictSetOffsets.size() - 1 );
+			putInts( buffer, conflictSetOffsets.toArray() );
+			buffer.putInt( conflictSetMembers.size() );
+			putInts( buffer, conflictSetMembers.toArray() );
+			buffer.flip();
+
+			try ( final FileChannel channel = FileChannel.open(
+					file.toPath(),
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE ) ) {
+				while ( buffer.hasRemaining() ) {
+					channel.write( buffer );
+				}
+			}
+		}
+
+		private static void putInts( final ByteBuffer buffer, final int[] values ) {
+			buffer.asIntBuffer().put( values );
+			buffer.position( buffer.position() + 4 * values.length );
+		}
+
+		private static void putDoubles( final ByteBuffer buffer, final double[] values ) {
+			buffer.asDoubleBuffer().put( values );
+			buffer.position( buffer.position() + 8 * values.length );
+		}
+
+		/**
+		 * @throws BufferUnderflowException
+		 *             if <code>n</code> is negative or exceeds the remaining
+		 *             buffer (i.e. the file is corrupted).
+		 */
+		private static int[] getInts( final ByteBuffer buffer, final int n ) {
+			if ( n < 0 || n > buffer.remaining() / 4 ) throw new BufferUnderflowException();
+			final int[] values = new int[ n ];
+			buffer.asIntBuffer().get( values );
+			buffer.position( buffer.position() + 4 * n );
+			return values;
+		}
+
+		/**
+		 * @throws BufferUnderflowException
+		 *             if <code>n</code> is negative or exceeds the remaining
+		 *             buffer (i.e. the file is corrupted).
+		 */
+		private static double[] getDoubles( final ByteBuffer buffer, final int n ) {
+			if ( n < 0 || n > buffer.remaining() / 8 ) throw new BufferUnderflowException();
+			final double[] values = new double[ n ];
+			buffer.asDoubleBuffer().get( values );
+			buffer.position( buffer.position() + 8 * n );
+			return values;
+		}
+
+		/**
+		 * Restores a tracking problem stored by <code>saveBinaryPgraph</code>.
+		 * The file is memory mapped. Segment nodes are created for the
+		 * <code>LabelingSegment</code>s of the (already loaded) labeling
+		 * frames, all costs are taken from the file. Neither component trees
+		 * nor cost factories are evaluated.
+		 *
+		 * @param ttp
+		 *            an empty tracking problem to be filled
+		 * @param file
+		 *            the binary .pgraph file
+		 * @return true, if the PGraph could be loaded. False if the file is
+		 *         corrupted, of an unknown version, or does not match the
+		 *         loaded labeling frames.
+		 * @throws IOException
+		 */
+		public static boolean loadBinaryPGraph( final Tr2dTrackingProblem ttp, final File file ) throws IOException {
+			final TicToc tictoc = new TicToc();
+			tictoc.tic( "Loading binary PGraph..." );
+
+			final LabelingTimeLapse labelingFrames = ttp.trackingModel.getLabelingFrames();
+
+			final MappedByteBuffer buffer;
+			try ( final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+				buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+			}
+
+			final List< Tr2dSegmentationProblem > segmentationProblems = new ArrayList<>();
+			try {
+				if ( buffer.getInt() != PGRAPH_MAGIC ) {
+					Tr2dLog.log.warn( "Given file is no binary PGraph: " + file.getAbsolutePath() );
+					return false;
+				}
+				final int version = buffer.getInt();
+				if ( version != PGRAPH_VERSION ) {
+					Tr2dLog.log.warn( String.format( "Binary PGraph version %d is not supported.", version ) );
+					return false;
+				}
+				final int numFrames = buffer.getInt();
+				if ( numFrames != labelingFrames.getNumFrames() ) {
+					Tr2dLog.log.warn( "Stored PGraph does not match the loaded labeling frames." );
+					return false;
+				}
+				final int[] segmentsPerFrame = getInts( buffer, numFrames );
+
+				// SEGMENTS
+				final int numSegments = buffer.getInt();
+				final int[] segmentIds = getInts( buffer, numSegments );
+				final double[] segmentCosts = getDoubles( buffer, numSegments );
+				long sumSegmentsPerFrame = 0;
+				for ( final int n : segmentsPerFrame ) {
+					if ( n < 0 ) throw new BufferUnderflowException();
+					sumSegmentsPerFrame += n;
+				}
+				if ( sumSegmentsPerFrame != numSegments ) throw new BufferUnderflowException();
+
+				final SegmentNode[] segmentNodes = new SegmentNode[ numSegments ];
+				final int[] segmentFrames = new int[ numSegments ];
+				int offset = 0;
+				for ( int frameId = 0; frameId < numFrames; frameId++ ) {
+					Arrays.fill( segmentFrames, offset, offset + segmentsPerFrame[ frameId ], frameId );
+					final Map< Integer, LabelingSegment > segmentsById = new HashMap<>();
+					for ( final LabelingSegment segment : labelingFrames.getLabelingSegmentsForFrame( frameId ) ) {
+						segmentsById.put( segment.getId(), segment );
+					}
+
+					final List< LabelingSegment > segments = new ArrayList<>( segmentsPerFrame[ frameId ] );
+					for ( int i = offset; i < offset + segmentsPerFrame[ frameId ]; i++ ) {
+						final LabelingSegment segment = segmentsById.get( segmentIds[ i ] );
+						if ( segment == null ) {
+							Tr2dLog.log.warn( "Stored PGraph does not match the loaded labeling frames." );
+							return false;
+						}
+						segments.add( segment );
+					}
+
+					final Tr2dSegmentationProblem segmentationProblem = new Tr2dSegmentationProblem(
+							frameId,
+							segments,
+							Arrays.copyOfRange( segmentCosts, offset, offset + segmentsPerFrame[ frameId ] ),
+							labelingFrames.getConflictGraph( frameId ) );
+					for ( final SegmentNode segmentNode : segmentationProblem.getSegments() ) {
+						segmentNodes[ offset++ ] = segmentNode;
+					}
+					segmentationProblems.add( segmentationProblem );
+				}
+
+				// ASSIGNMENTS
+				final int numAssignments = buffer.getInt();
+				final int[] types = getInts( buffer, numAssignments );
+				final int[] sources = getInts( buffer, numAssignments );
+				final int[] dests = getInts( buffer, numAssignments );
+				final int[] dests2 = getInts( buffer, numAssignments );
+				final double[] costs = getDoubles( buffer, numAssignments );
+				final int[] buildOrder = getBuildOrder( types, sources, segmentFrames, numFrames );
+				if ( buildOrder == null ) {
+					Tr2dLog.log.warn( "Stored PGraph contains unknown assignment types." );
+					return false;
+				}
+				for ( final int i : buildOrder ) {
+					switch ( types[ i ] ) {
+					case PGRAPH_APPEARANCE:
+						final AppearanceHypothesis app = new AppearanceHypothesis( costs[ i ], segmentNodes[ sources[ i ] ] );
+						app.getDest().getInAssignments().add( app );
+						break;
+					case PGRAPH_DISAPPEARANCE:
+						final DisappearanceHypothesis disapp = new DisappearanceHypothesis( costs[ i ], segmentNodes[ sources[ i ] ] );
+						disapp.getSrc().getOutAssignments().add( disapp );
+						break;
+					case PGRAPH_MOVE:
+						final MovementHypothesis move = new MovementHypothesis( costs[ i ], segmentNodes[ sources[ i ] ], segmentNodes[ dests[ i ] ] );
+						move.getSrc().getOutAssignments().add( move );
+						move.getDest().getInAssignments().add( move );
+						break;
+					case PGRAPH_DIVISION:
+						final DivisionHypothesis div = new DivisionHypothesis( costs[ i ], segmentNodes[ sources[ i ] ], segmentNodes[ dests[ i ] ], segmentNodes[ dests2[ i ] ] );
+						div.getSrc().getOutAssignments().add( div );
+						div.getDest1().getInAssignments().add( div );
+						div.getDest2().getInAssignments().add( div );
+						break;
+					default:
+						Tr2dLog.log.warn( String.format( "Stored PGraph contains unknown assignment type %d.", types[ i ] ) );
+						return false;
+					}
+				}
+
+				// CONFLICT SETS are implied by the labeling frames, check the stored ones match them
+				final int numConflictSets = buffer.getInt();
+				if ( numConflictSets < 0 ) throw new BufferUnderflowException();
+				final int[] conflictSetOffsets = getInts( buffer, numConflictSets + 1 );
+				final int[] conflictSetMembers = getInts( buffer, buffer.getInt() );
+				if ( !conflictSetsMatch( segmentationProblems, segmentNodes, conflictSetOffsets, conflictSetMembers ) ) {
+					Tr2dLog.log.warn( "Stored PGraph does not match the conflict sets of the loaded labeling frames." );
+					return false;
+				}
+			} catch ( final BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e ) {
+				Tr2dLog.log.error( "Stored PGraph is corrupted: " + file.getAbsolutePath() );
+				return false;
+			}
+
+			ttp.timepoints.addAll( segmentationProblems );
+			buildBimapSeg2Id( ttp, ttp.getSerializer().bimapSeg2Id );
+			buildBimapAss2Id( ttp, ttp.getSerializer().bimapAss2Id );
+			tictoc.toc( "done!" );
+
+			Tr2dLog.log.info( "Tracking graph was loaded sucessfully!" );
+			return true;
+		}
+
+		/**
+		 * @return true, if the stored conflict sets (given as CSR arrays of
+		 *         indices into <code>segmentNodes</code>) equal the ones of
+		 *         the given segmentation problems, regardless of order.
+		 */
+		private static boolean conflictSetsMatch(
+				final List< Tr2dSegmentationProblem > segmentationProblems,
+				final SegmentNode[] segmentNodes,
+				final int[] offsets,
+				final int[] members ) {
+			final TObjectIntMap< SegmentNode > segmentIndex = new TObjectIntHashMap<>( segmentNodes.length );
+			for ( int i = 0; i < segmentNodes.length; i++ ) {
+				segmentIndex.put( segmentNodes[ i ], i );
+			}
+			final List< List< Integer > > expected = new ArrayList<>();
+			for ( final Tr2dSegmentationProblem t : segmentationProblems ) {
+				for ( final ConflictSet cs : t.getConflictSets() ) {
+					final List< Integer > set = new ArrayList<>();
+					for ( final SegmentNode segnode : cs ) {
+						set.add( segmentIndex.get( segnode ) );
+					}
+					Collections.sort( set );
+					expected.add( set );
+				}
+			}
+
+			final List< List< Integer > > stored = new ArrayList<>();
+			if ( offsets[ 0 ] != 0 || offsets[ offsets.length - 1 ] != members.length ) return false;
+			for ( int k = 0; k + 1 < offsets.length; k++ ) {
+				if ( offsets[ k ] > offsets[ k + 1 ] ) return false;
+				final List< Integer > set = new ArrayList<>();
+				for ( int j = offsets[ k ]; j < offsets[ k + 1 ]; j++ ) {
+					set.add( members[ j ] );
+				}
+				Collections.sort( set );
+				stored.add( set );
+			}
+
+			final Comparator< List< Integer > > lexicographic = ( a, b ) -> {
+				for ( int i = 0; i < Math.min( a.size(), b.size() ); i++ ) {
+					final int c = Integer.compare( a.get( i ), b.get( i ) );
+					if ( c != 0 ) return c;
+				}
+				return Integer.compare( a.size(), b.size() );
+			};
+			expected.sort( lexicographic );
+			stored.sort( lexicographic );
+			return expected.equals( stored );
+		}
+
+		/**
+		 * Sorts the stored assignments (stably) into the order they are added
+		 * to the segment nodes while building a tracking problem (see
+		 * <code>FramePairHypotheses.wire</code> and
+		 * <code>addDummyDisappearance</code>): frame pair by frame pair,
+		 * disappearances before appearances before moves before divisions.
+		 * Wiring them in this order restores the in- and out-assignments, and
+		 * with them the <code>IndicatorNodeIndex</code>, of the stored problem.
+		 *
+		 * @return the assignment indices in build order, or <code>null</code>
+		 *         if there is an unknown assignment type.
+		 */
+		private static int[] getBuildOrder( final int[] types, final int[] sources, final int[] segmentFrames, final int numFrames ) {
+			final int numKeys = 4 * ( numFrames + 1 );
+			final int[] keys = new int[ types.length ];
+			final int[] starts = new int[ numKeys + 1 ];
+			for ( int i = 0; i < types.length; i++ ) {
+				// appearances are stored with their destination, all others with their source
+				final int frameId = segmentFrames[ sources[ i ] ];
+				switch ( types[ i ] ) {
+				case PGRAPH_APPEARANCE:
+					keys[ i ] = 4 * frameId + 1;
+					break;
+				case PGRAPH_DISAPPEARANCE:
+					keys[ i ] = 4 * ( frameId + 1 );
+					break;
+				case PGRAPH_MOVE:
+					keys[ i ] = 4 * ( frameId + 1 ) + 2;
+					break;
+				case PGRAPH_DIVISION:
+					keys[ i ] = 4 * ( frameId + 1 ) + 3;
+					break;
+				default:
+					return null;
+				}
+				starts[ keys[ i ] + 1 ]++;
+			}
+			for ( int k = 0; k < numKeys; k++ ) {
+				starts[ k + 1 ] += starts[ k ];
+			}
+			final int[] order = new int[ types.length ];
+			for ( int i = 0; i < types.length; i++ ) {
+				order[ starts[ keys[ i ] ]++ ] = i;
+			}
+			return order;
+		}
+
 		/**
 		 * @return true, if PGraph could be loaded.
 		 * @throws IOException
@@ -654,6 +1368,7 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 			final LabelingTimeLapse labelingFrames = ttp.trackingModel.getLabelingFrames();
 
 //			fireNextProgressPhaseEvent( "Building tracking problem (PG)...", labelingFrames.getNumFrames() );
+			final List< Tr2dSegmentationProblem > segmentationProblems = new ArrayList<>();
 			for ( int frameId = 0; frameId < labelingFrames.getNumFrames(); frameId++ ) {
 				Tr2dLog.log.info(
 						String.format( "Loading frame %d of %d...", frameId + 1, labelingFrames.getNumFrames() ) );
@@ -668,17 +1383,18 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 						labelingFrames.getConflictGraph( frameId );
 				final Tr2dSegmentationProblem segmentationProblem =
 						new Tr2dSegmentationProblem( frameId, segments, ttp.trackingModel.getSegmentCosts(), conflictGraph );
-				tictoc.toc( "done!" );
-
-				// =============================
-				// add it to Tr2dTrackingProblem
-				// =============================
-				tictoc.tic( "Connect it to Tr2dTrackingProblem..." );
-				ttp.trackingModel.getTr2dTraProblem().addSegmentationProblem( segmentationProblem );
+				segmentationProblems.add( segmentationProblem );
 				tictoc.toc( "done!" );
 
 //				fireProgressEvent();
 			}
+
+			// ==================================
+			// add them to Tr2dTrackingProblem
+			// ==================================
+			tictoc.tic( "Connect all frames to Tr2dTrackingProblem..." );
+			ttp.trackingModel.getTr2dTraProblem().addSegmentationProblems( segmentationProblems, ForkJoinPool.commonPool() );
+			tictoc.toc( "done!" );
 			ttp.trackingModel.getTr2dTraProblem().addDummyDisappearance();
 
 			Tr2dLog.log.info( "Tracking graph was loaded/build sucessfully!" );
@@ -747,9 +1463,7 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 		}
 	}
 
-	public static class Tr2dTrackingProblemResult implements Assignment< IndicatorNode > {
-
-		private final Map< IndicatorNode, Boolean > assignment;
+	public static class Tr2dTrackingProblemResult extends BitSetAssignment {
 
 		private final BufferedReader brSolution;
 
@@ -758,31 +1472,15 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 		public Tr2dTrackingProblemResult(
 				final Tr2dTrackingProblem tr2dTraProblem,
 				final File solutionFile ) throws IOException {
-
-			this.assignment = new HashMap<>();
+			super( tr2dTraProblem.getNodeIndex() );
 
 			this.tr2dTraProblem = tr2dTraProblem;
 			final FileReader frSolution = new FileReader( solutionFile );
 			brSolution = new BufferedReader( frSolution );
 
-			zeroInitializeAssignment();
 			importSolution();
 		}
 
-		private void zeroInitializeAssignment() {
-			assignment.clear();
-
-			final Collection< SegmentNode > segNodes = tr2dTraProblem.getSerializer().getBimapSeg2Id().valuesAs();
-			for ( final SegmentNode segmentNode : segNodes ) {
-				assignment.put( segmentNode, Boolean.FALSE );
-			}
-
-			final Collection< AssignmentNode > assNodes = tr2dTraProblem.getSerializer().getBimapAss2Id().valuesAs();
-			for ( final AssignmentNode assignmentNode : assNodes ) {
-				assignment.put( assignmentNode, Boolean.FALSE );
-			}
-		}
-
 		private void importSolution() throws IOException {
 			int trueSegs = 0;
 			int trueAssmts = 0;
@@ -808,8 +1506,7 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 							Tr2dLog.solverlog.warn( String.format( "Segmentation hypothesis with ID %d not found in Seg2Id bimap!", id ) );
 							break;
 						}
-						final Boolean previous = assignment.put( segNode, Boolean.TRUE );
-						if ( previous == null )
+						if ( !set( segNode, true ) )
 							Tr2dLog.solverlog.warn(
 									String.format( "Seg that was not previously in assignment: %d", id ) );
 						trueSegs++;
@@ -824,8 +1521,7 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 							Tr2dLog.solverlog.warn( String.format( "Assignment hypothesis with ID %d not found in Ass2Id bimap!", id ) );
 							break;
 						}
-						final Boolean previous2 = assignment.put( assNode, Boolean.TRUE );
-						if ( previous2 == null )
+						if ( !set( assNode, true ) )
 							Tr2dLog.solverlog.warn(
 									String.format( "Assmnt that was not previously in assignment: %d", id ) );
 						trueAssmts++;
@@ -847,15 +1543,5 @@ public class Tr2dTrackingProblem implements TrackingProblem {
 
 			Tr2dLog.solverlog.info( String.format( "Imported true assignments (seg,ass): %d, %d", trueSegs, trueAssmts ) );
 		}
-
-		@Override
-		public boolean isAssigned( final IndicatorNode node ) {
-			return assignment.containsKey( node );
-		}
-
-		@Override
-		public int getAssignment( final IndicatorNode node ) {
-			return assignment.get( node ) ? 1 : 0;
-		}
 	}
 }
@@ -5,6 +5,7 @@ package com.indago.tr2d.pg.levedit;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Function;
 
 import com.indago.pg.segments.ConflictSet;
 import com.indago.pg.segments.SegmentNode;
@@ -48,6 +49,49 @@ public class EditState {
 		this.avoidedSegmentNodes.addAll( state.avoidedSegmentNodes );
 	}
 
+	/**
+	 * Copies the given state onto other segment nodes and conflict sets, e.g.
+	 * onto the ones of a rebuilt problem graph.
+	 *
+	 * @param state
+	 *            the state to be copied
+	 * @param nodeMap
+	 *            maps each segment node of <code>state</code> to its
+	 *            counterpart, or to <code>null</code> if there is none (edits
+	 *            on such nodes are dropped).
+	 * @param conflictSetMap
+	 *            maps each conflict set of <code>state</code> to its
+	 *            counterpart, or to <code>null</code> if there is none (edits
+	 *            on such conflict sets are dropped).
+	 */
+	public EditState(
+			final EditState state,
+			final Function< SegmentNode, SegmentNode > nodeMap,
+			final Function< ConflictSet, ConflictSet > conflictSetMap ) {
+		copy( state.forcedSegmentNodes, this.forcedSegmentNodes, nodeMap );
+		copy( state.forcedSegmentNodeAppearances, this.forcedSegmentNodeAppearances, nodeMap );
+		copy( state.forcedSegmentNodeDisappearances, this.forcedSegmentNodeDisappearances, nodeMap );
+
+		copy( state.forcedSegmentNodeMovesTo, this.forcedSegmentNodeMovesTo, nodeMap );
+		copy( state.forcedSegmentNodeDivisionsTo, this.forcedSegmentNodeDivisionsTo, nodeMap );
+		copy( state.forcedSegmentNodeMovesFrom, this.forcedSegmentNodeMovesFrom, nodeMap );
+		copy( state.forcedSegmentNodeDivisionsFrom, this.forcedSegmentNodeDivisionsFrom, nodeMap );
+
+		copy( state.forcedConflictSetDivisionsTo, this.forcedConflictSetDivisionsTo, conflictSetMap );
+		copy( state.forcedConflictSetDivisionsFrom, this.forcedConflictSetDivisionsFrom, conflictSetMap );
+		copy( state.forcedConflictSetMovesTo, this.forcedConflictSetMovesTo, conflictSetMap );
+		copy( state.forcedConflictSetMovesFrom, this.forcedConflictSetMovesFrom, conflictSetMap );
+
+		copy( state.avoidedSegmentNodes, this.avoidedSegmentNodes, nodeMap );
+	}
+
+	private static < T > void copy( final Set< T > from, final Set< T > to, final Function< T, T > map ) {
+		for ( final T t : from ) {
+			final T mapped = map.apply( t );
+			if ( mapped != null ) to.add( mapped );
+		}
+	}
+
 	public Set< SegmentNode > getForcedSegmentNodes() {
 		return forcedSegmentNodes;
 	}
@@ -96,6 +140,24 @@ public class EditState {
 		return forcedConflictSetDivisionsFrom;
 	}
 
+	/**
+	 * @return true, iff no edits are stored at all.
+	 */
+	public boolean isEmpty() {
+		return forcedSegmentNodes.isEmpty() &&
+				forcedSegmentNodeAppearances.isEmpty() &&
+				forcedSegmentNodeDisappearances.isEmpty() &&
+				forcedSegmentNodeMovesTo.isEmpty() &&
+				forcedSegmentNodeDivisionsTo.isEmpty() &&
+				forcedSegmentNodeMovesFrom.isEmpty() &&
+				forcedSegmentNodeDivisionsFrom.isEmpty() &&
+				forcedConflictSetDivisionsTo.isEmpty() &&
+				forcedConflictSetDivisionsFrom.isEmpty() &&
+				forcedConflictSetMovesTo.isEmpty() &&
+				forcedConflictSetMovesFrom.isEmpty() &&
+				avoidedSegmentNodes.isEmpty();
+	}
+
 	/**
 	 * @return A string showing how many edits are stored per type.
 	 */
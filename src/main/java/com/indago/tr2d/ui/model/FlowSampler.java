@@ -0,0 +1,174 @@
+/**
+ *
+ */
+package com.indago.tr2d.ui.model;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Samples flow vectors (dx, dy) from a flow image as computed by
+ * <code>Tr2dFlowModel</code> (dimensions x, y, component, t; component 0 being
+ * the magnitude and component 1 the angle of the flow vector).
+ * Each thread keeps its own <code>RandomAccess</code> and results are written
+ * into caller supplied arrays, so sampling does not allocate any objects.
+ *
+ * @author jug
+ */
+public class FlowSampler {
+
+	private final RandomAccessibleInterval< FloatType > flow;
+	private final boolean subpixel;
+	private final ThreadLocal< RandomAccess< FloatType > > randomAccess;
+
+	private final long maxX;
+	private final long maxY;
+
+	/**
+	 * @param flow
+	 *            the flow image (can be <code>null</code>, in which case all
+	 *            sampled vectors are <code>(0,0)</code>)
+	 * @param subpixel
+	 *            if <code>true</code>, samples at real-valued positions are
+	 *            bilinearly interpolated between the four neighboring
+	 *            pixels, otherwise the position is truncated to the pixel
+	 *            grid.
+	 */
+	public FlowSampler( final RandomAccessibleInterval< FloatType > flow, final boolean subpixel ) {
+		this.flow = flow;
+		this.subpixel = subpixel;
+		if ( flow != null ) {
+			randomAccess = ThreadLocal.withInitial( flow::randomAccess );
+			maxX = flow.max( 0 );
+			maxY = flow.max( 1 );
+		} else {
+			randomAccess = null;
+			maxX = -1;
+			maxY = -1;
+		}
+	}
+
+	public boolean hasFlow() {
+		return flow != null;
+	}
+
+	public boolean isSubpixel() {
+		return subpixel;
+	}
+
+	/**
+	 * Writes the flow vector at pixel <code>(x,y)</code> of frame
+	 * <code>t</code> into <code>out</code>.
+	 *
+	 * @param t
+	 *            time point
+	 * @param x
+	 * @param y
+	 * @param out
+	 *            array of length &ge; 2, receives dx at index 0 and dy at
+	 *            index 1.
+	 */
+	public void sample( final int t, final long x, final long y, final double[] out ) {
+		if ( flow == null ) {
+			out[ 0 ] = 0;
+			out[ 1 ] = 0;
+			return;
+		}
+		final RandomAccess< FloatType > ra = randomAccess.get();
+		ra.setPosition( t, 3 );
+		samplePixel( ra, x, y, out );
+	}
+
+	/**
+	 * Writes the flow vector at the real-valued position <code>pos</code> of
+	 * frame <code>t</code> into <code>out</code>.
+	 * If this sampler was created with subpixel sampling enabled, the vector is
+	 * bilinearly interpolated (in cartesian coordinates) between the four
+	 * surrounding pixels. Otherwise the position is truncated to the pixel
+	 * grid, i.e. the result equals
+	 * <code>sample( t, ( int ) x, ( int ) y, out )</code>.
+	 *
+	 * @param t
+	 *            time point
+	 * @param pos
+	 *            the (at least 2D) position to sample at
+	 * @param out
+	 *            array of length &ge; 2, receives dx at index 0 and dy at
+	 *            index 1.
+	 */
+	public void sample( final int t, final RealLocalizable pos, final double[] out ) {
+		sample( t, pos.getDoublePosition( 0 ), pos.getDoublePosition( 1 ), out );
+	}
+
+	/**
+	 * @see #sample(int, RealLocalizable, double[])
+	 */
+	public void sample( final int t, final double x, final double y, final double[] out ) {
+		if ( !subpixel ) {
+			sample( t, ( long ) x, ( long ) y, out );
+			return;
+		}
+		if ( flow == null ) {
+			out[ 0 ] = 0;
+			out[ 1 ] = 0;
+			return;
+		}
+
+		final long x0 = clamp( ( long ) Math.floor( x ), maxX );
+		final long y0 = clamp( ( long ) Math.floor( y ), maxY );
+		final long x1 = clamp( x0 + 1, maxX );
+		final long y1 = clamp( y0 + 1, maxY );
+		final double wx = Math.max( 0, Math.min( 1, x - x0 ) );
+		final double wy = Math.max( 0, Math.min( 1, y - y0 ) );
+
+		final RandomAccess< FloatType > ra = randomAccess.get();
+		ra.setPosition( t, 3 );
+
+		double dx = 0;
+		double dy = 0;
+		samplePixel( ra, x0, y0, out );
+		dx += ( 1 - wx ) * ( 1 - wy ) * out[ 0 ];
+		dy += ( 1 - wx ) * ( 1 - wy ) * out[ 1 ];
+		samplePixel( ra, x1, y0, out );
+		dx += wx * ( 1 - wy ) * out[ 0 ];
+		dy += wx * ( 1 - wy ) * out[ 1 ];
+		samplePixel( ra, x0, y1, out );
+		dx += ( 1 - wx ) * wy * out[ 0 ];
+		dy += ( 1 - wx ) * wy * out[ 1 ];
+		samplePixel( ra, x1, y1, out );
+		dx += wx * wy * out[ 0 ];
+		dy += wx * wy * out[ 1 ];
+
+		out[ 0 ] = dx;
+		out[ 1 ] = dy;
+	}
+
+	private static long clamp( final long v, final long max ) {
+		return Math.max( 0, Math.min( max, v ) );
+	}
+
+	/**
+	 * Reads magnitude and angle at the given pixel and converts them into
+	 * cartesian (dx, dy). The time point must already be set on
+	 * <code>ra</code>.
+	 */
+	private static void samplePixel( final RandomAccess< FloatType > ra, final long x, final long y, final double[] out ) {
+		ra.setPosition( x, 0 );
+		ra.setPosition( y, 1 );
+		ra.setPosition( 0, 2 );
+		final double r = ra.get().get();
+		ra.setPosition( 1, 2 );
+		final double theta = ra.get().get();
+
+		// GET dx, dy FROM POLAR (attention to NaN)
+		if ( r == 0 || Double.isNaN( theta ) ) {
+			out[ 0 ] = 0;
+			out[ 1 ] = 0;
+		} else {
+			out[ 0 ] = r * Math.sin( theta );
+			out[ 1 ] = r * Math.cos( theta );
+		}
+	}
+}
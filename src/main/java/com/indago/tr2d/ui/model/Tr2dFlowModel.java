@@ -29,7 +29,6 @@ import ij.IJ;
 import ij.ImagePlus;
 import io.scif.img.ImgIOException;
 import net.imagej.ops.OpService;
-import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
@@ -73,6 +72,9 @@ public class Tr2dFlowModel implements BdvWithOverlaysOwner {
 	private int blockRadius = 15;
 	private int maxDistance = 15;
 
+	private boolean subpixelFlowSampling = false;
+	private FlowSampler flowSampler;
+
 	public Tr2dFlowModel( final Tr2dModel model ) {
 		this.model = model;
 		projectFolder = model.getProjectFolder().getFolder( Tr2dProjectFolder.FLOW_FOLDER );
@@ -117,34 +119,38 @@ public class Tr2dFlowModel implements BdvWithOverlaysOwner {
 	}
 
 	public ValuePair< Double, Double > getFlowVector( final int t, final int x, final int y ) {
-		final double[] polar = new double[ 2 ];
-
-		if ( imgs.size() == 0 ) {
-			return new ValuePair<>( 0.0, 0.0 );
-		} else {
-			final RandomAccess< FloatType > ra = imgs.get( 0 ).randomAccess();
-
-			final int[] pos_for_x_direction = new int[] { x, y, 0, t };
-			ra.setPosition( pos_for_x_direction );
-			polar[ 0 ] = ra.get().get();
-
-			final int[] pos_for_y_direction = new int[] { x, y, 1, t };
-			ra.setPosition( pos_for_y_direction );
-			polar[ 1 ] = ra.get().get();
-
-			// GET dx, dy FROM POLAR (attention to NaN)
-			double dx;
-			double dy;
-			if ( polar[ 0 ] == 0 || Double.isNaN( polar[ 1 ] ) ) {
-				dx = 0;
-				dy = 0;
-			} else {
-				dx = polar[ 0 ] * Math.sin( polar[ 1 ] );
-				dy = polar[ 0 ] * Math.cos( polar[ 1 ] );
-			}
+		final double[] flow = new double[ 2 ];
+		getFlowSampler().sample( t, x, y, flow );
+		return new ValuePair<>( flow[ 0 ], flow[ 1 ] );
+	}
 
-			return new ValuePair<>( dx, dy );
+	/**
+	 * Returns a thread safe, allocation free sampler for the currently loaded
+	 * flow. The sampler is cached and replaced whenever the flow or the
+	 * subpixel sampling setting changes.
+	 *
+	 * @return the current <code>FlowSampler</code> (never <code>null</code>).
+	 */
+	public synchronized FlowSampler getFlowSampler() {
+		if ( flowSampler == null ) {
+			flowSampler = new FlowSampler( getFlowImage(), subpixelFlowSampling );
 		}
+		return flowSampler;
+	}
+
+	public boolean isSubpixelFlowSampling() {
+		return subpixelFlowSampling;
+	}
+
+	/**
+	 * @param subpixelFlowSampling
+	 *            if <code>true</code>, flow vectors at segment centers are
+	 *            bilinearly interpolated instead of being read at the
+	 *            truncated pixel position.
+	 */
+	public synchronized void setSubpixelFlowSampling( final boolean subpixelFlowSampling ) {
+		this.subpixelFlowSampling = subpixelFlowSampling;
+		flowSampler = null;
 	}
 
 	/**
@@ -245,6 +251,7 @@ public class Tr2dFlowModel implements BdvWithOverlaysOwner {
 //			ImageSaver.saveAsTiff( fileFlow.getAbsolutePath(), flow );
 			imgs.clear();
 			imgs.add( flow );
+			invalidateFlowSampler();
 		} catch ( final ImgIOException e ) {
 			e.printStackTrace();
 		}
@@ -331,8 +338,13 @@ public class Tr2dFlowModel implements BdvWithOverlaysOwner {
 	 */
 	public void removeFlowFiles() {
 		imgs.clear();
+		invalidateFlowSampler();
 		fileScaledInput.getFile().delete();
 		fileScaledFlow.getFile().delete();
 		fileFlow.getFile().delete();
 	}
+
+	private synchronized void invalidateFlowSampler() {
+		flowSampler = null;
+	}
 }
@@ -0,0 +1,574 @@
+/**
+ *
+ */
+package com.indago.tr2d.ui.model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.indago.ilp.DefaultLoggingGurobiCallback;
+import com.indago.data.segmentation.LabelingSegment;
+import com.indago.io.IntTypeImgLoader;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AssignmentNode;
+import com.indago.pg.assignments.DisappearanceHypothesis;
+import com.indago.pg.assignments.DivisionHypothesis;
+import com.indago.pg.assignments.MovementHypothesis;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.data.LabelingTimeLapse;
+import com.indago.tr2d.ilp.SolveGurobiWindow;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.tr2d.ui.listener.SolutionChangedListener;
+import com.indago.util.TicToc;
+
+import gurobi.GRBException;
+import ij.IJ;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.display.imagej.ImageJFunctions;
+import net.imglib2.roi.Regions;
+import net.imglib2.type.numeric.integer.IntType;
+
+/**
+ * Tracks frames while they are being acquired.
+ * New segmentation frames (2D sum images, one file per frame, taken in
+ * lexicographic order of their file names) are picked up from a watched
+ * folder, or handed in directly via <code>appendFrame</code>. Each new frame
+ * is turned into segment hypotheses, appended to a growing
+ * <code>Tr2dTrackingProblem</code> via <code>addSegmentationProblem</code>,
+ * and only the trailing <code>windowSize</code> frames are re-optimized (more,
+ * if more frames arrived since the last update, the window never starts after
+ * the last frame solved before). The selection of the first frame of that
+ * window is kept fixed, everything before it is final.
+ * After each update the lineage (<code>res_track.txt</code>) and the masks of
+ * all frames whose solution changed (<code>mask###.tif</code>) are written in
+ * the format of <code>TraSolutionExporter</code>, and all registered
+ * <code>SolutionChangedListener</code>s are notified.
+ * <p>
+ * The lineage of final frames is settled once. Once more than
+ * <code>windowSize</code> final frames have accumulated, they are dropped from
+ * the tracking problem and their labelings are discarded, so memory does not
+ * grow with the length of the acquisition.
+ * <p>
+ * Flow is not used, since it is not known for frames still to come.
+ *
+ * @author jug
+ */
+public class Tr2dLiveTracker {
+
+	private static class TrackRecord {
+
+		private final int id;
+		private final int tStart;
+		private final int parentId;
+
+		public TrackRecord( final int id, final int tStart, final int parentId ) {
+			this.id = id;
+			this.tStart = tStart;
+			this.parentId = parentId;
+		}
+
+		public String getLineToWrite( final int tEnd ) {
+			return String.format( "%d %d %d %d", id, tStart, tEnd, parentId );
+		}
+	}
+
+	/**
+	 * Track ids and lineage records, built up frame by frame.
+	 */
+	private class Lineage {
+
+		private Map< LabelingSegment, Integer > ids = new HashMap<>();
+		private final Map< Integer, TrackRecord > openTracks = new LinkedHashMap<>();
+		private final List< String > closedTracks = new ArrayList<>();
+		private int nextTrackId = 1;
+
+		Lineage() {}
+
+		/**
+		 * Continues the given lineage (its closed tracks are not copied).
+		 */
+		Lineage( final Lineage lineage ) {
+			ids = new HashMap<>( lineage.ids );
+			openTracks.putAll( lineage.openTracks );
+			nextTrackId = lineage.nextTrackId;
+		}
+
+		/**
+		 * Adds the active segments of frame <code>t</code>, optionally drawing
+		 * them into <code>mask</code>.
+		 */
+		void addFrame( final int t, final ArrayImg< IntType, IntArray > mask ) {
+			final Map< LabelingSegment, Integer > nextIds = new HashMap<>();
+			for ( final SegmentNode segVar : liveProblem.getTimepoints().get( t - frameOffset ).getSegments() ) {
+				if ( !activeNodes.contains( segVar ) ) continue;
+				Integer id = ids.get( segVar.getSegment() );
+				if ( id == null ) {
+					id = openTrack( t, 0 );
+				}
+				final int trackId = id;
+
+				if ( mask != null ) {
+					try {
+						Regions.sample( segVar.getSegment().getRegion(), mask ).forEach( p -> p.set( trackId ) );
+					} catch ( final ArrayIndexOutOfBoundsException aiaob ) {
+						Tr2dLog.log.debug( "sol vis bounds exception" );
+					}
+				}
+
+				for ( final MovementHypothesis move : segVar.getOutAssignments().getMoves() ) {
+					if ( activeNodes.contains( move ) ) {
+						nextIds.put( move.getDest().getSegment(), trackId );
+					}
+				}
+				for ( final DivisionHypothesis div : segVar.getOutAssignments().getDivisions() ) {
+					if ( activeNodes.contains( div ) ) {
+						closeTrack( trackId, t );
+						for ( final SegmentNode child : Arrays.asList( div.getDest1(), div.getDest2() ) ) {
+							nextIds.put( child.getSegment(), openTrack( t + 1, trackId ) );
+						}
+					}
+				}
+				for ( final DisappearanceHypothesis disappear : segVar.getOutAssignments().getDisappearances() ) {
+					if ( activeNodes.contains( disappear ) ) {
+						closeTrack( trackId, t );
+					}
+				}
+			}
+			ids = nextIds;
+		}
+
+		private int openTrack( final int tStart, final int parentId ) {
+			final int id = nextTrackId++;
+			openTracks.put( id, new TrackRecord( id, tStart, parentId ) );
+			return id;
+		}
+
+		private void closeTrack( final int id, final int tEnd ) {
+			final TrackRecord track = openTracks.remove( id );
+			if ( track != null ) {
+				closedTracks.add( track.getLineToWrite( tEnd ) );
+			}
+		}
+	}
+
+	private final Tr2dTrackingModel trackingModel;
+	private final LabelingTimeLapse labelingFrames;
+	private Tr2dTrackingProblem liveProblem;
+	private final int windowSize;
+	private final File exportFolder;
+
+	private Set< IndicatorNode > activeNodes = new HashSet<>();
+	private final List< SolutionChangedListener > solChangedListeners = new ArrayList<>();
+
+	private File watchedFolder = null;
+	private Pattern fileNamePattern = Pattern.compile( ".*\\.tiff?" );
+	private long pollIntervalMillis = 1000;
+	private int numFilesConsumed = 0;
+	private final Map< String, Long > lastSeenFileSizes = new HashMap<>();
+
+	private Thread pollThread = null;
+	private volatile boolean running = false;
+	private boolean solvedOnce = false;
+
+	// id of the frame at time point 0 of liveProblem (earlier frames were dropped)
+	private int frameOffset = 0;
+	private int lastSolvedFrame = -1;
+	// lineage of all frames before settledFrame, which are final
+	private final Lineage settled = new Lineage();
+	private int settledFrame = 0;
+	private int numFramesPublished = 0;
+
+	/**
+	 * @param trackingModel
+	 *            provides the hypotheses (its <code>LabelingTimeLapse</code>
+	 *            gets extended by all appended frames), costs, and all other
+	 *            tracking parameters
+	 * @param windowSize
+	 *            number of trailing frames re-optimized after each new frame
+	 *            (&ge; 2)
+	 * @param exportFolder
+	 *            the folder updated lineages and masks are written to
+	 */
+	public Tr2dLiveTracker( final Tr2dTrackingModel trackingModel, final int windowSize, final File exportFolder ) {
+		if ( windowSize < 2 ) { throw new IllegalArgumentException( "Window size must be at least 2." ); }
+		this.trackingModel = trackingModel;
+		this.labelingFrames = trackingModel.getLabelingFrames();
+		this.windowSize = windowSize;
+		this.exportFolder = exportFolder;
+		this.liveProblem = createTrackingProblem();
+
+		// frames that exist already are the start of the live time-lapse
+		for ( int frameId = 0; frameId < labelingFrames.getNumFrames(); frameId++ ) {
+			liveProblem.addSegmentationProblem( createSegmentationProblem( frameId ) );
+		}
+		numFilesConsumed = labelingFrames.getNumFrames();
+	}
+
+	/**
+	 * The watched folder is expected to contain all frames of the
+	 * acquisition, the first files (as many as frames existed when this
+	 * tracker was created) are therefore skipped.
+	 *
+	 * @param folder
+	 *            the folder new segmentation frames appear in
+	 * @param fileNamePattern
+	 *            regular expression all frame file names match (default:
+	 *            <code>.*\.tiff?</code>)
+	 * @param pollIntervalMillis
+	 *            how often the folder is checked for new frames
+	 */
+	public void setWatchedFolder( final File folder, final String fileNamePattern, final long pollIntervalMillis ) {
+		this.watchedFolder = folder;
+		this.fileNamePattern = Pattern.compile( fileNamePattern );
+		this.pollIntervalMillis = pollIntervalMillis;
+	}
+
+	public void addSolutionChangedListener( final SolutionChangedListener scl ) {
+		solChangedListeners.add( scl );
+	}
+
+	/**
+	 * Starts watching the folder set via <code>setWatchedFolder</code> in a
+	 * thread of its own.
+	 */
+	public synchronized void start() {
+		if ( running ) return;
+		if ( watchedFolder == null ) { throw new IllegalStateException( "No folder to watch was set." ); }
+		running = true;
+		pollThread = new Thread( () -> {
+			while ( running ) {
+				try {
+					poll();
+					Thread.sleep( pollIntervalMillis );
+				} catch ( final InterruptedException e ) {
+					break;
+				} catch ( final IOException e ) {
+					Tr2dLog.log.error( "Live tracking could not read or write frames: " + e.getMessage() );
+				}
+			}
+		}, "tr2d live tracking" );
+		pollThread.setDaemon( true );
+		pollThread.start();
+	}
+
+	/**
+	 * Stops watching and waits for a running update to finish.
+	 */
+	public void stop() {
+		final Thread t;
+		synchronized ( this ) {
+			running = false;
+			t = pollThread;
+			pollThread = null;
+		}
+		if ( t != null ) {
+			t.interrupt();
+			try {
+				t.join();
+			} catch ( final InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Blocks until watching was stopped.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void join() throws InterruptedException {
+		final Thread t;
+		synchronized ( this ) {
+			t = pollThread;
+		}
+		if ( t != null ) t.join();
+	}
+
+	/**
+	 * Appends all new, completely written frames found in the watched folder
+	 * and updates the tracking if there were any. A file counts as completely
+	 * written once its size did not change between two polls.
+	 *
+	 * @return the number of appended frames.
+	 * @throws IOException
+	 *             if frames cannot be read or results cannot be written.
+	 */
+	public synchronized int poll() throws IOException {
+		final File[] files = watchedFolder.listFiles( f -> f.isFile() && fileNamePattern.matcher( f.getName() ).matches() );
+		if ( files == null ) return 0;
+		Arrays.sort( files );
+
+		int numAppended = 0;
+		for ( int i = numFilesConsumed; i < files.length; i++ ) {
+			final long size = files[ i ].length();
+			final Long lastSeenSize = lastSeenFileSizes.put( files[ i ].getName(), size );
+			if ( lastSeenSize == null || lastSeenSize != size ) break; // still being written
+			appendFrame( IntTypeImgLoader.loadTiffEnsureType( files[ i ] ) );
+			lastSeenFileSizes.remove( files[ i ].getName() );
+			numFilesConsumed++;
+			numAppended++;
+		}
+		if ( numAppended > 0 ) {
+			update();
+		}
+		return numAppended;
+	}
+
+	/**
+	 * Appends one frame without re-optimizing (call <code>update</code>
+	 * afterwards).
+	 *
+	 * @param sumImageFrame
+	 *            the 2D sum image of the new frame
+	 */
+	public synchronized void appendFrame( final RandomAccessibleInterval< IntType > sumImageFrame ) {
+		final int frameId = labelingFrames.appendFrame( Collections.singletonList( sumImageFrame ) );
+		liveProblem.addSegmentationProblem( createSegmentationProblem( frameId ) );
+		Tr2dLog.log.info( String.format( "Live frame %d appended.", frameId ) );
+	}
+
+	private Tr2dTrackingProblem createTrackingProblem() {
+		return new Tr2dTrackingProblem(
+				trackingModel,
+				null,
+				trackingModel.getAppearanceCosts(),
+				trackingModel.getMoveCosts(),
+				trackingModel.getDivisionCosts(),
+				trackingModel.getDisappearanceCosts() );
+	}
+
+	private Tr2dSegmentationProblem createSegmentationProblem( final int frameId ) {
+		return new Tr2dSegmentationProblem(
+				frameId,
+				labelingFrames.getLabelingSegmentsForFrame( frameId ),
+				trackingModel.getSegmentCosts(),
+				labelingFrames.getConflictGraph( frameId ) );
+	}
+
+	/**
+	 * Re-optimizes the trailing window and publishes the updated lineage.
+	 *
+	 * @return <code>true</code> if the window could be solved.
+	 * @throws IOException
+	 *             if results cannot be written.
+	 */
+	public synchronized boolean update() throws IOException {
+		final List< Tr2dSegmentationProblem > timepoints = liveProblem.getTimepoints();
+		if ( timepoints.isEmpty() ) return false;
+		final int lastFrame = frameOffset + timepoints.size() - 1;
+		// frames that existed before going live are solved once as a whole,
+		// frames appended since the last update are all part of the window
+		final int firstFrame = solvedOnce ? Math.min( Math.max( 0, lastFrame + 1 - windowSize ), lastSolvedFrame ) : 0;
+		final int windowStart = firstFrame - frameOffset;
+
+		final TicToc tictoc = new TicToc();
+		tictoc.tic( String.format( "Re-optimizing live frames %d to %d...", firstFrame, lastFrame ) );
+		final Set< SegmentNode > fixedActive = new HashSet<>();
+		for ( final SegmentNode segment : timepoints.get( windowStart ).getSegments() ) {
+			if ( activeNodes.contains( segment ) ) fixedActive.add( segment );
+		}
+		final Set< IndicatorNode > windowSolution;
+		try {
+			windowSolution = new SolveGurobiWindow( liveProblem, windowStart )
+					.solve( fixedActive, activeNodes, new DefaultLoggingGurobiCallback( Tr2dLog.solverlog ) );
+		} catch ( final GRBException e ) {
+			Tr2dLog.solverlog.error( "Gurobi failed to solve the live window.", e );
+			return false;
+		} catch ( final IllegalStateException ise ) {
+			Tr2dLog.log.error( ise.getMessage() );
+			return false;
+		}
+
+		// replace the previous solution of the window
+		for ( int t = windowStart; t < timepoints.size(); t++ ) {
+			for ( final SegmentNode segment : timepoints.get( t ).getSegments() ) {
+				activeNodes.remove( segment );
+				if ( t > windowStart || windowStart == 0 ) {
+					for ( final AssignmentNode assignment : segment.getInAssignments().getAllAssignments() ) {
+						activeNodes.remove( assignment );
+					}
+				}
+				for ( final AssignmentNode assignment : segment.getOutAssignments().getAllAssignments() ) {
+					activeNodes.remove( assignment );
+				}
+			}
+		}
+		activeNodes.addAll( windowSolution );
+		solvedOnce = true;
+		lastSolvedFrame = lastFrame;
+		tictoc.toc( "done!" );
+
+		publish( firstFrame );
+		dropFinalFrames( firstFrame );
+		return true;
+	}
+
+	/**
+	 * Settles the lineage of all frames before <code>firstFrame</code>, writes
+	 * the lineage of all frames and the masks of all frames whose solution
+	 * changed. Track ids are assigned frame by frame, so ids of tracks starting
+	 * before <code>firstFrame</code> (and therefore the masks written before)
+	 * never change.
+	 */
+	private void publish( final int firstFrame ) throws IOException {
+		final int lastFrame = frameOffset + liveProblem.getTimepoints().size() - 1;
+		final long width = trackingModel.getTr2dModel().getRawData().dimension( 0 );
+		final long height = trackingModel.getTr2dModel().getRawData().dimension( 1 );
+
+		while ( settledFrame < firstFrame ) {
+			settled.addFrame( settledFrame++, null );
+		}
+
+		final Lineage lineage = new Lineage( settled );
+		for ( int t = firstFrame; t <= lastFrame; t++ ) {
+			// selection and track ids of the fixed first frame did not change
+			final boolean changed = t > firstFrame || t >= numFramesPublished;
+			final ArrayImg< IntType, IntArray > mask = changed ? ArrayImgs.ints( width, height ) : null;
+			lineage.addFrame( t, mask );
+			if ( mask != null ) {
+				IJ.save(
+						ImageJFunctions.wrap( mask, "tracking solution" ).duplicate(),
+						new File( exportFolder, String.format( "mask%03d.tif", t ) ).getAbsolutePath() );
+			}
+		}
+		numFramesPublished = lastFrame + 1;
+
+		// write to a temporary file first, readers never see a partial lineage
+		final File fTracks = new File( exportFolder, "res_track.txt" );
+		final File fTmp = new File( exportFolder, "res_track.txt.tmp" );
+		try ( final BufferedWriter writer = new BufferedWriter( new FileWriter( fTmp ) ) ) {
+			for ( final String line : settled.closedTracks ) {
+				writer.write( line );
+				writer.newLine();
+			}
+			for ( final String line : lineage.closedTracks ) {
+				writer.write( line );
+				writer.newLine();
+			}
+			for ( final TrackRecord track : lineage.openTracks.values() ) {
+				writer.write( track.getLineToWrite( lastFrame ) );
+				writer.newLine();
+			}
+		}
+		Files.move( fTmp.toPath(), fTracks.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		Tr2dLog.log.info( String.format( "Live lineage published (%d frames, %d tracks).", lastFrame + 1, lineage.nextTrackId - 1 ) );
+
+		if ( !solChangedListeners.isEmpty() ) {
+			final BitSetAssignment assignment = new BitSetAssignment( liveProblem.getNodeIndex() );
+			for ( final IndicatorNode node : activeNodes ) {
+				assignment.set( node, true );
+			}
+			for ( final SolutionChangedListener scl : solChangedListeners ) {
+				scl.solutionChanged( assignment );
+			}
+		}
+	}
+
+	/**
+	 * Once more than <code>windowSize</code> final frames are held, rebuilds
+	 * the tracking problem from frame <code>firstFrame - 1</code> on (the
+	 * window must not start at its first time point) and carries the current
+	 * solution over. Labelings of dropped frames are discarded.
+	 */
+	private void dropFinalFrames( final int firstFrame ) {
+		final int keepFrom = firstFrame - 1;
+		if ( keepFrom - frameOffset < windowSize ) return;
+
+		final List< Tr2dSegmentationProblem > timepoints = liveProblem.getTimepoints();
+		final int numFrames = frameOffset + timepoints.size();
+		final Tr2dTrackingProblem trimmed = createTrackingProblem();
+		for ( int frameId = keepFrom; frameId < numFrames; frameId++ ) {
+			trimmed.addSegmentationProblem( createSegmentationProblem( frameId ) );
+		}
+
+		// only the solution from the window on is needed later on
+		final Set< IndicatorNode > trimmedActive = new HashSet<>();
+		for ( int frameId = firstFrame; frameId < numFrames; frameId++ ) {
+			final Tr2dSegmentationProblem trimmedFrame = trimmed.getTimepoints().get( frameId - keepFrom );
+			for ( final SegmentNode segVar : timepoints.get( frameId - frameOffset ).getSegments() ) {
+				if ( !activeNodes.contains( segVar ) ) continue;
+				final SegmentNode trimmedSegVar = trimmedFrame.getSegmentVar( segVar.getSegment() );
+				trimmedActive.add( trimmedSegVar );
+				for ( final AssignmentNode assignment : segVar.getOutAssignments().getAllAssignments() ) {
+					if ( !activeNodes.contains( assignment ) ) continue;
+					final AssignmentNode trimmedAssignment = findOutAssignment( trimmedSegVar, assignment );
+					if ( trimmedAssignment == null ) {
+						Tr2dLog.log.warn( String.format( "Live solution of frame %d could not be carried over completely.", frameId ) );
+					} else {
+						trimmedActive.add( trimmedAssignment );
+					}
+				}
+			}
+		}
+
+		for ( int frameId = frameOffset; frameId < keepFrom; frameId++ ) {
+			labelingFrames.discardFrame( frameId );
+		}
+		liveProblem = trimmed;
+		activeNodes = trimmedActive;
+		frameOffset = keepFrom;
+		Tr2dLog.log.info( String.format( "Dropped final live frames, frames %d to %d are kept.", keepFrom, numFrames - 1 ) );
+	}
+
+	/**
+	 * @return the out-assignment of <code>segVar</code> that connects to the
+	 *         same segments as <code>like</code> (an out-assignment of another
+	 *         node of the same segment), or <code>null</code> if there is none.
+	 */
+	private static AssignmentNode findOutAssignment( final SegmentNode segVar, final AssignmentNode like ) {
+		if ( like instanceof DisappearanceHypothesis ) {
+			for ( final DisappearanceHypothesis disappear : segVar.getOutAssignments().getDisappearances() ) {
+				return disappear;
+			}
+		} else if ( like instanceof MovementHypothesis ) {
+			final LabelingSegment dest = ( ( MovementHypothesis ) like ).getDest().getSegment();
+			for ( final MovementHypothesis move : segVar.getOutAssignments().getMoves() ) {
+				if ( move.getDest().getSegment() == dest ) return move;
+			}
+		} else if ( like instanceof DivisionHypothesis ) {
+			final LabelingSegment dest1 = ( ( DivisionHypothesis ) like ).getDest1().getSegment();
+			final LabelingSegment dest2 = ( ( DivisionHypothesis ) like ).getDest2().getSegment();
+			for ( final DivisionHypothesis div : segVar.getOutAssignments().getDivisions() ) {
+				if ( div.getDest1().getSegment() == dest1 && div.getDest2().getSegment() == dest2 ) return div;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the tracking problem of the frames still held, i.e. of all
+	 *         frames from <code>getFirstFrame()</code> on.
+	 */
+	public Tr2dTrackingProblem getTrackingProblem() {
+		return liveProblem;
+	}
+
+	/**
+	 * @return the id of the frame at the first time point of
+	 *         <code>getTrackingProblem()</code> (earlier frames are final and
+	 *         were dropped).
+	 */
+	public int getFirstFrame() {
+		return frameOffset;
+	}
+}
@@ -14,6 +14,7 @@ import com.indago.tr2d.costs.HernanDisappearanceCostFactory;
 import com.indago.tr2d.costs.HernanDivisionCostFactory;
 import com.indago.tr2d.costs.HernanMovementCostFactory;
 import com.indago.tr2d.costs.HernanSegmentCostFactory;
+import com.indago.tr2d.costs.SegmentFeatureStore;
 import com.indago.tr2d.ui.view.Tr2dMainPanel;
 import com.indago.util.ImglibUtil;
 
@@ -40,6 +41,11 @@ public class Tr2dModel implements AutoCloseable {
 	private final Tr2dFlowModel flowModel;
 	private final Tr2dTrackingModel trackingModel;
 
+	/**
+	 * Per-segment features shared by all cost factories.
+	 */
+	private final SegmentFeatureStore segmentFeatures;
+
 	/**
 	 * The one way to get to the UI if you only have a model.
 	 */
@@ -56,8 +62,9 @@ public class Tr2dModel implements AutoCloseable {
 		segModel = new Tr2dSegmentationCollectionModel( this );
 		segEditModel = new Tr2dSegmentationEditorModel( this );
 		flowModel = new Tr2dFlowModel( this );
+		segmentFeatures = new SegmentFeatureStore( imgRaw );
 		trackingModel =
-				new Tr2dTrackingModel( this, new HernanSegmentCostFactory( imgRaw ), new HernanAppearanceCostFactory( imgRaw ), new HernanMovementCostFactory( imgRaw ), new HernanDivisionCostFactory( imgRaw ), new HernanDisappearanceCostFactory( imgRaw ) );
+				new Tr2dTrackingModel( this, new HernanSegmentCostFactory( imgRaw, segmentFeatures ), new HernanAppearanceCostFactory( imgRaw, segmentFeatures ), new HernanMovementCostFactory( imgRaw, segmentFeatures ), new HernanDivisionCostFactory( imgRaw, segmentFeatures ), new HernanDisappearanceCostFactory( imgRaw, segmentFeatures ) );
 	}
 
 	/**
@@ -125,6 +132,13 @@ public class Tr2dModel implements AutoCloseable {
 		return trackingModel;
 	}
 
+	/**
+	 * @return the store of per-segment features the cost factories read from
+	 */
+	public SegmentFeatureStore getSegmentFeatureStore() {
+		return segmentFeatures;
+	}
+
 	public void setDefaultInputTriggerConfig( final InputTriggerConfig conf ) {
 		this.inputTriggerConfig = conf;
 	}
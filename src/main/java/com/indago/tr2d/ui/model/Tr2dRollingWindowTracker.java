@@ -0,0 +1,343 @@
+/**
+ *
+ */
+package com.indago.tr2d.ui.model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.indago.data.segmentation.LabelingSegment;
+import com.indago.fg.Assignment;
+import com.indago.ilp.DefaultLoggingGurobiCallback;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AppearanceHypothesis;
+import com.indago.pg.assignments.DisappearanceHypothesis;
+import com.indago.pg.assignments.DivisionHypothesis;
+import com.indago.pg.assignments.MovementHypothesis;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.Tr2dLog;
+import com.indago.tr2d.data.LabelingTimeLapse;
+import com.indago.tr2d.ilp.SolveGurobiIncrementally;
+import com.indago.tr2d.ilp.TrackingSolver;
+import com.indago.tr2d.ilp.TrackingSolvers;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.util.TicToc;
+
+import gurobi.GRBException;
+import ij.IJ;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.display.imagej.ImageJFunctions;
+import net.imglib2.roi.Regions;
+import net.imglib2.type.numeric.integer.IntType;
+
+/**
+ * Tracks arbitrarily long time-lapses with bounded memory.
+ * Instead of one problem graph over all frames, only a window of
+ * <code>windowSize</code> frames is built and solved at a time. The first
+ * <code>commitSize</code> frames of each window are then final: their
+ * solution is written to disk in the format of <code>TraSolutionExporter</code>
+ * (one <code>mask###.tif</code> per frame plus <code>res_track.txt</code>
+ * lineage records) and their labelings are evicted from the
+ * <code>LabelingTimeLapse</code>. The next window starts right after the last
+ * committed frame. Its first frame is fixed to the segments the previous
+ * window selected there (all other segments are avoided), so tracks continue
+ * seamlessly across windows.
+ * <p>
+ * Windows are solved with the solver selected in the tracking model (see
+ * <code>Tr2dTrackingModel.setSolverName</code>).
+ * <p>
+ * Labelings can only be evicted if they are backed by a labeling frame store
+ * (which is the case after processing or loading hypotheses from a project
+ * folder).
+ *
+ * @author jug
+ */
+public class Tr2dRollingWindowTracker {
+
+	private static class TrackRecord {
+
+		private final int id;
+		private final int tStart;
+		private final int parentId;
+
+		public TrackRecord( final int id, final int tStart, final int parentId ) {
+			this.id = id;
+			this.tStart = tStart;
+			this.parentId = parentId;
+		}
+
+		public String getLineToWrite( final int tEnd ) {
+			return String.format( "%d %d %d %d", id, tStart, tEnd, parentId );
+		}
+	}
+
+	private final Tr2dTrackingModel trackingModel;
+	private final int windowSize;
+	private final int commitSize;
+
+	private final Map< Integer, TrackRecord > openTracks = new LinkedHashMap<>();
+	private int nextTrackId = 1;
+	private BufferedWriter trackWriter;
+
+	/**
+	 * @param trackingModel
+	 *            provides hypotheses, costs, and all other tracking parameters
+	 * @param windowSize
+	 *            number of frames kept in memory and solved together (&ge; 2)
+	 * @param commitSize
+	 *            number of frames finalized per window (between 1 and
+	 *            <code>windowSize - 1</code>), the remaining frames serve as
+	 *            look-ahead.
+	 */
+	public Tr2dRollingWindowTracker( final Tr2dTrackingModel trackingModel, final int windowSize, final int commitSize ) {
+		if ( windowSize < 2 ) { throw new IllegalArgumentException( "Window size must be at least 2." ); }
+		if ( commitSize < 1 || commitSize >= windowSize ) { throw new IllegalArgumentException( "Commit size must be in [1, window size - 1]." ); }
+		this.trackingModel = trackingModel;
+		this.windowSize = windowSize;
+		this.commitSize = commitSize;
+	}
+
+	/**
+	 * Tracks all frames window by window.
+	 *
+	 * @param exportFolder
+	 *            the folder the masks and lineage records are written to, or
+	 *            <code>null</code> to track without writing any results.
+	 * @return <code>true</code> if all windows could be solved and written,
+	 *         <code>false</code> otherwise.
+	 * @throws IOException
+	 *             if the results cannot be written.
+	 */
+	public boolean run( final File exportFolder ) throws IOException {
+		final LabelingTimeLapse labelingFrames = trackingModel.getLabelingFrames();
+		final int numFrames = labelingFrames.getNumFrames();
+		if ( numFrames == 0 ) return false;
+
+		openTracks.clear();
+		nextTrackId = 1;
+		if ( exportFolder != null ) {
+			trackWriter = new BufferedWriter( new FileWriter( new File( exportFolder, "res_track.txt" ) ) );
+		}
+		try {
+			final int numWindows = 1 + Math.max( 0, ( numFrames - windowSize + commitSize - 1 ) / commitSize );
+			trackingModel.fireNextProgressPhaseEvent( "Tracking in rolling windows...", numWindows );
+
+			Map< LabelingSegment, Integer > boundaryIds = new HashMap<>();
+			int start = 0;
+			while ( start < numFrames ) {
+				final int end = Math.min( start + windowSize, numFrames );
+				final int commitEnd = ( end == numFrames ) ? end : start + commitSize;
+
+				final TicToc tictoc = new TicToc();
+				tictoc.tic( String.format( "Tracking window [%d,%d)...", start, end ) );
+				final Tr2dTrackingProblem window = buildWindow( labelingFrames, start, end );
+				if ( start > 0 ) {
+					fixBoundary( window.getTimepoints().get( 0 ), boundaryIds );
+				}
+				final Assignment< IndicatorNode > solution = solve( window );
+				if ( solution == null ) {
+					Tr2dLog.log.error( String.format( "Window [%d,%d) could not be solved!", start, end ) );
+					return false;
+				}
+				boundaryIds = commit( window, solution, start, commitEnd, boundaryIds, exportFolder );
+				tictoc.toc( "done!" );
+
+				for ( int frameId = start; frameId < commitEnd; frameId++ ) {
+					if ( !labelingFrames.evictFrame( frameId ) && frameId == 0 ) {
+						Tr2dLog.log.warn( "Labeling frames are not backed by a frame store and cannot be evicted." );
+					}
+				}
+
+				trackingModel.fireProgressEvent();
+				start = commitEnd;
+			}
+
+			for ( final TrackRecord track : new ArrayList<>( openTracks.values() ) ) {
+				closeTrack( track.id, numFrames - 1 );
+			}
+		} finally {
+			if ( trackWriter != null ) {
+				trackWriter.close();
+				trackWriter = null;
+			}
+		}
+		return true;
+	}
+
+	private Tr2dTrackingProblem buildWindow( final LabelingTimeLapse labelingFrames, final int start, final int end ) {
+		final List< Tr2dSegmentationProblem > segmentationProblems = new ArrayList<>();
+		for ( int frameId = start; frameId < end; frameId++ ) {
+			segmentationProblems.add(
+					new Tr2dSegmentationProblem(
+							frameId,
+							labelingFrames.getLabelingSegmentsForFrame( frameId ),
+							trackingModel.getSegmentCosts(),
+							labelingFrames.getConflictGraph( frameId ) ) );
+		}
+		final Tr2dTrackingProblem window = trackingModel.createTrackingProblem();
+		window.addSegmentationProblems( segmentationProblems, trackingModel.getWorkerPool() );
+		window.addDummyDisappearance();
+		window.getNodeIndex();
+		return window;
+	}
+
+	/**
+	 * Forces exactly the segments selected by the previous window to be
+	 * active in the first frame of the current one.
+	 */
+	private static void fixBoundary( final Tr2dSegmentationProblem segProblem, final Map< LabelingSegment, Integer > boundaryIds ) {
+		for ( final SegmentNode segVar : segProblem.getSegments() ) {
+			if ( !boundaryIds.containsKey( segVar.getSegment() ) ) {
+				segProblem.avoid( segVar );
+			}
+		}
+		for ( final SegmentNode segVar : segProblem.getSegments() ) {
+			if ( boundaryIds.containsKey( segVar.getSegment() ) ) {
+				segProblem.force( segVar );
+			}
+		}
+	}
+
+	private Assignment< IndicatorNode > solve( final Tr2dTrackingProblem window ) {
+		if ( !TrackingSolvers.GUROBI.equals( trackingModel.getSolverName() ) ) {
+			final TrackingSolver solver = TrackingSolvers.create(
+					trackingModel.getSolverName(),
+					trackingModel.getSolveTimeLimit(),
+					trackingModel.getSolveMipGap(),
+					trackingModel.getSolveNodeLimit() );
+			if ( solver == null ) {
+				Tr2dLog.log.error( "Unknown solver: " + trackingModel.getSolverName() );
+				return null;
+			}
+			try {
+				return solver.solve( window, trackingModel.getWorkerPool() );
+			} catch ( final IllegalStateException ise ) {
+				Tr2dLog.log.error( "Window is infeasible!" );
+				return null;
+			}
+		}
+
+		SolveGurobiIncrementally solver = null;
+		try {
+			solver = new SolveGurobiIncrementally( window );
+			return solver.solve( null, new DefaultLoggingGurobiCallback( Tr2dLog.solverlog ) );
+		} catch ( final GRBException e ) {
+			e.printStackTrace();
+		} catch ( final IllegalStateException ise ) {
+			Tr2dLog.log.error( "Window is infeasible!" );
+		} finally {
+			if ( solver != null ) solver.dispose();
+		}
+		return null;
+	}
+
+	/**
+	 * Writes masks and lineage records of frames <code>[start,commitEnd)</code>
+	 * and returns the track ids of the segments active in frame
+	 * <code>commitEnd</code>, the first frame of the next window.
+	 *
+	 * @param boundaryIds
+	 *            the track ids of the segments active in frame
+	 *            <code>start</code> (as returned for the previous window)
+	 */
+	private Map< LabelingSegment, Integer > commit(
+			final Tr2dTrackingProblem window,
+			final Assignment< IndicatorNode > solution,
+			final int start,
+			final int commitEnd,
+			final Map< LabelingSegment, Integer > boundaryIds,
+			final File exportFolder ) throws IOException {
+		final long width = trackingModel.getTr2dModel().getRawData().dimension( 0 );
+		final long height = trackingModel.getTr2dModel().getRawData().dimension( 1 );
+
+		final Map< SegmentNode, Integer > ids = new HashMap<>();
+		final List< Tr2dSegmentationProblem > timepoints = window.getTimepoints();
+		for ( int t = start; t <= commitEnd && t - start < timepoints.size(); t++ ) {
+			final Tr2dSegmentationProblem segProblem = timepoints.get( t - start );
+			final boolean isBoundary = ( t == start && start > 0 );
+			for ( final SegmentNode segVar : segProblem.getSegments() ) {
+				if ( solution.getAssignment( segVar ) != 1 ) continue;
+				if ( isBoundary ) {
+					ids.put( segVar, boundaryIds.get( segVar.getSegment() ) );
+				} else {
+					for ( final AppearanceHypothesis app : segVar.getInAssignments().getAppearances() ) {
+						if ( solution.getAssignment( app ) == 1 ) {
+							ids.put( segVar, openTrack( t, 0 ) );
+						}
+					}
+				}
+			}
+			if ( t == commitEnd ) break;
+
+			final ArrayImg< IntType, IntArray > mask = ( exportFolder != null ) ? ArrayImgs.ints( width, height ) : null;
+			for ( final SegmentNode segVar : segProblem.getSegments() ) {
+				if ( solution.getAssignment( segVar ) != 1 || !ids.containsKey( segVar ) ) continue;
+				final int id = ids.get( segVar );
+				if ( mask != null ) {
+					try {
+						Regions.sample( segVar.getSegment().getRegion(), mask ).forEach( p -> p.set( id ) );
+					} catch ( final ArrayIndexOutOfBoundsException aiaob ) {
+						Tr2dLog.log.debug( "sol vis bounds exception" );
+					}
+				}
+
+				for ( final MovementHypothesis move : segVar.getOutAssignments().getMoves() ) {
+					if ( solution.getAssignment( move ) == 1 ) {
+						ids.put( move.getDest(), id );
+					}
+				}
+				for ( final DivisionHypothesis div : segVar.getOutAssignments().getDivisions() ) {
+					if ( solution.getAssignment( div ) == 1 ) {
+						closeTrack( id, t );
+						ids.put( div.getDest1(), openTrack( t + 1, id ) );
+						ids.put( div.getDest2(), openTrack( t + 1, id ) );
+					}
+				}
+				for ( final DisappearanceHypothesis disappear : segVar.getOutAssignments().getDisappearances() ) {
+					if ( solution.getAssignment( disappear ) == 1 ) {
+						closeTrack( id, t );
+					}
+				}
+			}
+			if ( mask != null ) {
+				IJ.save(
+						ImageJFunctions.wrap( mask, "tracking solution" ).duplicate(),
+						new File( exportFolder, String.format( "mask%03d.tif", t ) ).getAbsolutePath() );
+			}
+		}
+		if ( trackWriter != null ) trackWriter.flush();
+
+		final Map< LabelingSegment, Integer > nextBoundaryIds = new HashMap<>();
+		if ( commitEnd - start < timepoints.size() ) {
+			for ( final SegmentNode segVar : timepoints.get( commitEnd - start ).getSegments() ) {
+				final Integer id = ids.get( segVar );
+				if ( id != null ) nextBoundaryIds.put( segVar.getSegment(), id );
+			}
+		}
+		return nextBoundaryIds;
+	}
+
+	private int openTrack( final int tStart, final int parentId ) {
+		final int id = nextTrackId++;
+		openTracks.put( id, new TrackRecord( id, tStart, parentId ) );
+		return id;
+	}
+
+	private void closeTrack( final int id, final int tEnd ) throws IOException {
+		final TrackRecord track = openTracks.remove( id );
+		if ( track != null && trackWriter != null ) {
+			trackWriter.write( track.getLineToWrite( tEnd ) );
+			trackWriter.newLine();
+		}
+	}
+}
@@ -12,8 +12,17 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.JOptionPane;
 import javax.swing.event.ChangeListener;
@@ -38,14 +47,25 @@ import com.indago.pg.assignments.AssignmentNodes;
 import com.indago.pg.assignments.DisappearanceHypothesis;
 import com.indago.pg.assignments.DivisionHypothesis;
 import com.indago.pg.assignments.MovementHypothesis;
+import com.indago.pg.segments.ConflictSet;
 import com.indago.pg.segments.SegmentNode;
 import com.indago.tr2d.Tr2dContext;
 import com.indago.tr2d.Tr2dLog;
 import com.indago.tr2d.data.LabelingTimeLapse;
+import com.indago.tr2d.ilp.IncumbentCallback;
 import com.indago.tr2d.ilp.SolveExternal;
+import com.indago.tr2d.ilp.SolveGreedy;
+import com.indago.tr2d.ilp.SolveGurobiComponents;
+import com.indago.tr2d.ilp.SolveGurobiIncrementally;
+import com.indago.tr2d.ilp.SolveGurobiTemporalBlocks;
+import com.indago.tr2d.ilp.TrackingSolver;
+import com.indago.tr2d.ilp.TrackingSolvers;
 import com.indago.tr2d.io.projectfolder.Tr2dProjectFolder;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.IndicatorNodeIndex;
 import com.indago.tr2d.pg.Tr2dSegmentationProblem;
 import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.tr2d.pg.levedit.EditState;
 import com.indago.tr2d.ui.listener.ModelInfeasibleListener;
 import com.indago.tr2d.ui.listener.SolutionChangedListener;
 import com.indago.tr2d.ui.util.SolutionVisualizer;
@@ -59,9 +79,9 @@ import com.univocity.parsers.csv.CsvParserSettings;
 import bdv.util.BdvHandlePanel;
 import bdv.util.BdvOverlay;
 import bdv.util.BdvSource;
+import gurobi.GRBCallback;
 import gurobi.GRBException;
 import ij.IJ;
-import ij.ImagePlus;
 import indago.ui.progress.DialogProgress;
 import indago.ui.progress.ProgressListener;
 import net.imglib2.RandomAccessibleInterval;
@@ -90,9 +110,12 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 	private ProjectFolder externalSolverFolder = null;
 
 	private final String FILENAME_PGRAPH = "tracking.pgraph";
+	private final String FILENAME_PGRAPH_BINARY = "tracking.bin.pgraph";
 	private final String FILENAME_PGRAPH_SOLUTION = "tracking.sol";
 	private final String FILENAME_TRACKING = "tracking.tif";
 
+	private static final long INCUMBENT_PUBLISH_INTERVAL = 2000;
+
 	private final Tr2dModel tr2dModel;
 	private final Tr2dSegmentationEditorModel tr2dSegEditModel;
 
@@ -102,6 +125,10 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 	private int maxDivisionsToAddPerHypothesis = 8;
 	private int maxPixelComponentSize = 32; // gets set to more sensible value in constructor
 	private int minPixelComponentSize = 16;
+	private boolean useGridNeighborSearch = false;
+	private String solverName = TrackingSolvers.GUROBI;
+
+	private ForkJoinPool workerPool = ForkJoinPool.commonPool();
 
 	private final List< CostFactory< ? > > costFactories = new ArrayList<>();
 	private final CostFactory< LabelingSegment > segmentCosts;
@@ -111,12 +138,15 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 	private final CostFactory< LabelingSegment > disappearanceCosts;
 
 	private Tr2dTrackingProblem tr2dTraProblem;
+	private PgBuildParameters tr2dTraProblemParameters;
+	private boolean storedTrackingProblemPending = false;
 	private final LabelingTimeLapse labelingFrames;
 	private RandomAccessibleInterval< IntType > imgSolution = null;
 
 	private MappedFactorGraph mfg;
 	private Assignment< Variable > fgSolution;
 	private Assignment< IndicatorNode > pgSolution;
+	private boolean latestSolveSuccessful = false;
 
 	private BdvHandlePanel bdvHandlePanel;
 	private final List< RandomAccessibleInterval< IntType > > imgs;
@@ -131,6 +161,19 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 
 	private boolean doSolveInternal = true;
 	private SolveGurobi gurobiFGsolver;
+	private SolveGurobiIncrementally incrementalSolver;
+	private boolean leveragedEditsPending = false;
+	private int temporalBlockSize = 0;
+	private int temporalBlockOverlap = 0;
+	private boolean solveComponentsIndependently = false;
+	private boolean showPreview = true;
+	private Assignment< IndicatorNode > previewSolution;
+	private boolean anytimeSolving = false;
+	private double solveTimeLimit = 0;
+	private double solveMipGap = 0;
+	private long solveNodeLimit = 0;
+	private volatile IncumbentCallback runningCallback;
+	private final AtomicReference< Pair< Assignment< IndicatorNode >, Double > > latestIncumbent = new AtomicReference<>();
 	private SolveExternal externalPGsolver;
 	private final List< ChangeListener > stateChangedListeners;
 
@@ -145,8 +188,7 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 			final CostFactory< Pair< LabelingSegment, Pair< LabelingSegment, LabelingSegment > > > divisionCosts,
 			final CostFactory< LabelingSegment > disappearanceCosts ) {
 		this.tr2dModel = model;
-		final ImagePlus temp = ImageJFunctions.wrap( this.tr2dModel.getRawData(), "raw.tif" );
-		this.maxPixelComponentSize = temp.getWidth() * temp.getHeight() - 1;
+		this.maxPixelComponentSize = ( int ) ( this.tr2dModel.getRawData().dimension( 0 ) * this.tr2dModel.getRawData().dimension( 1 ) ) - 1;
 
 		stateChangedListeners = new ArrayList<>();
 
@@ -194,8 +236,11 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 
 	/**
 	 * (Re-)fetches all hypotheses and marks this tracking model as 'reset'.
+	 *
+	 * @return true if segmentation hypotheses could be fetched, false e.g. if
+	 *         no segmentation was found.
 	 */
-	public void fetch() {
+	public boolean fetch() {
 		for ( final ProgressListener progressListener : progressListeners ) {
 			progressListener.resetProgress( "Purging currently fetched segment hypotheses... (1/3)", 3 );
 		}
@@ -210,6 +255,7 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 
 		// purge segmentation data
 		dataFolder.getFile( FILENAME_TRACKING ).getFile().delete();
+		dataFolder.addFile( FILENAME_PGRAPH_BINARY ).getFile().delete();
 		try {
 			dataFolder.getFolder( FOLDER_LABELING_FRAMES ).deleteContent();
 		} catch ( final IOException e ) {
@@ -218,15 +264,22 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 			}
 		}
 
+		// cached segment features belong to the purged hypotheses
+		tr2dModel.getSegmentFeatureStore().clear();
+
 		// recollect segmentation data
-		processSegmentationInputs( true );
+		final boolean fetched = processSegmentationInputs( true );
 
-		// purge problem graph
-		tr2dTraProblem = null;
+		// purge problem graph (fetched segments are new, edits on old ones are lost)
+		if ( hasLeveragedEdits() ) {
+			Tr2dLog.log.warn( "Fetching new segment hypotheses dropped all leveraged edits." );
+		}
+		discardTrackingProblem();
 
 		for ( final ProgressListener progressListener : progressListeners ) {
 			progressListener.hasCompleted();
 		}
+		return fetched;
 	}
 
 	/**
@@ -239,6 +292,7 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 			buildTrackingProblem();
 			saveTrackingProblem();
 			mfg = null;
+			disposeIncrementalSolver();
 			return true;
 		} else {
 			return false;
@@ -255,6 +309,17 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 		saveFactorGraph();
 	}
 
+	/**
+	 * Announces that the leveraged edits (<code>EditState</code>s) of the
+	 * tracking problem have changed.
+	 * Instead of rebuilding the factor graph, the next internal solve will
+	 * apply only the changed edits to a Gurobi model kept alive between edits
+	 * and warm-start it with the current solution.
+	 */
+	public void prepareLeveragedEdits() {
+		leveragedEditsPending = true;
+	}
+
 	/**
 	 * Runs the optimization for the prepared tracking (if <code>prepare</code>
 	 * was never called, this function will call it).
@@ -270,35 +335,67 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 	/**
 	 * Runs the optimization for the prepared tracking (if <code>prepare</code>
 	 * was never called, this function will call it).
-	 * Does not take care of the BDV.
+	 * Does not take care of the BDV (apart from showing the greedy preview, see
+	 * <code>setShowPreview</code>, and incumbents, see
+	 * <code>setAnytimeSolving</code>).
 	 * For a threaded version use <code>runInThread</code>, which also takes care
 	 * of BDV.
 	 *
 	 * @param forceSolving
 	 *            true, force resolve in any case.
 	 * @param forceRebuildPG
-	 *            true, force problem graph rebuild (drops all leveraged editing
-	 *            constraints etc.)
+	 *            true, force problem graph rebuild. Only frames whose segments
+	 *            or hypotheses parameters changed are rebuilt, leveraged
+	 *            editing constraints of unchanged frames are kept (call
+	 *            <code>discardTrackingProblem</code> first to drop them all).
 	 */
 	public void run( final boolean forceSolving, final boolean forceRebuildPG ) {
+		restoreStoredTrackingProblem();
 		if ( doSolveInternal ) {
 			// INTERNAL (GUROBI) SOLVER
 			boolean doSolving = forceSolving;
+			boolean fgRebuilt = false;
 
 			if ( tr2dTraProblem == null || forceRebuildPG ) {
 				if ( preparePG() ) {
 					prepareFG();
 					doSolving = true;
+					fgRebuilt = true;
 				}
 			} else if ( mfg == null ) {
 				prepareFG();
 				doSolving = true;
+				fgRebuilt = true;
 			}
 
 			if ( doSolving ) {
-				fireNextProgressPhaseEvent( "Solving tracking with GUROBI...", 3 );
+				latestSolveSuccessful = false;
+				fireNextProgressPhaseEvent( "Solving tracking with " + solverName + " solver...", 3 );
 				fireProgressEvent();
-				solveFactorGraphInternally();
+				final boolean incremental = TrackingSolvers.GUROBI.equals( solverName ) && leveragedEditsPending && !fgRebuilt;
+				if ( showPreview && !incremental && !TrackingSolvers.GREEDY.equals( solverName ) ) {
+					solvePreview();
+				}
+				if ( !TrackingSolvers.GUROBI.equals( solverName ) ) {
+					solveWithTrackingSolver();
+				} else if ( incremental ) {
+					solveLeveragedEditsIncrementally();
+				} else if ( temporalBlockSize > 0 && tr2dTraProblem.getTimepoints().size() > temporalBlockSize ) {
+					solveInTemporalBlocks();
+				} else if ( solveComponentsIndependently ) {
+					solveComponentsInParallel();
+				} else if ( isAnytime() ) {
+					solveAnytime();
+				} else {
+					solveFactorGraphInternally();
+				}
+				if ( previewSolution != null && !latestSolveSuccessful ) {
+					// the preview is no solution of the selected solver
+					pgSolution = null;
+					Tr2dLog.solverlog.warn( "Solving failed, discarding the greedy preview solution." );
+				}
+				previewSolution = null;
+				leveragedEditsPending = false;
 				fireProgressEvent();
 				imgSolution = SolutionVisualizer.drawSolutionSegmentImages( this, pgSolution );
 				saveSolution();
@@ -309,6 +406,7 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 			// ELSE: EXTERNAL SOLVER
 			fireNextProgressPhaseEvent( "Solving tracking with external solver...", 3 );
 			fireProgressEvent();
+			latestSolveSuccessful = false;
 			if ( tr2dTraProblem == null || forceRebuildPG ) {
 				if ( preparePG() ) {
 					pgSolution = solveProblemGraphExternally();
@@ -316,6 +414,7 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 			} else {
 				pgSolution = solveProblemGraphExternally();
 			}
+			latestSolveSuccessful = ( pgSolution != null );
 			fireProgressEvent();
 			imgSolution = SolutionVisualizer.drawSolutionSegmentImages( this, pgSolution );
 			saveSolution();
@@ -354,16 +453,22 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 			bdvRemoveAll();
 
 			Tr2dTrackingModel.this.run( forceResolve, forceRebuildPG );
-
-			final int bdvTime = bdvHandlePanel.getViewerPanel().getState().getCurrentTimepoint();
-			populateBdv();
-			bdvHandlePanel.getViewerPanel().setTimepoint( bdvTime );
+			repopulateBdv();
 		};
 		final Thread t = new Thread( runnable );
 		t.start();
 		return t;
 	}
 
+	/**
+	 * Re-populates the BDV, staying at the current time point.
+	 */
+	private void repopulateBdv() {
+		final int bdvTime = bdvHandlePanel.getViewerPanel().getState().getCurrentTimepoint();
+		populateBdv();
+		bdvHandlePanel.getViewerPanel().setTimepoint( bdvTime );
+	}
+
 	public void populateBdv() {
 		bdvRemoveAll();
 		bdvRemoveAllOverlays();
@@ -379,6 +484,7 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 	private void saveTrackingProblem() {
 		try {
 			tr2dTraProblem.getSerializer().savePgraph( tr2dTraProblem, dataFolder.getFile( FILENAME_PGRAPH ).getFile() );
+			tr2dTraProblem.getSerializer().saveBinaryPgraph( tr2dTraProblem, dataFolder.addFile( FILENAME_PGRAPH_BINARY ).getFile() );
 		} catch ( final IOException e ) {
 			e.printStackTrace();
 		}
@@ -407,10 +513,12 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 			labelingFrames.setMinSegmentSize( getMinPixelComponentSize() );
 			labelingFrames.setMaxSegmentSize( getMaxPixelComponentSize() );
 
-			if ( !labelingFrames.processFrames( progressListeners ) ) {
+			if ( !labelingFrames.processFrames( progressListeners, workerPool ) ) {
 				final String msg = "Segmentation Hypotheses could not be accessed!\nYou must create a segmentation prior to starting the tracking!";
 				Tr2dLog.log.error( msg );
-				JOptionPane.showMessageDialog( Tr2dContext.guiFrame, msg, "No segmentation found...", JOptionPane.ERROR_MESSAGE );
+				if ( Tr2dContext.guiFrame != null ) {
+					JOptionPane.showMessageDialog( Tr2dContext.guiFrame, msg, "No segmentation found...", JOptionPane.ERROR_MESSAGE );
+				}
 				return false;
 			}
 			labelingFrames.saveTo( hypothesesFolder, progressListeners );
@@ -418,19 +526,30 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 		return true;
 	}
 
+	/**
+	 * Builds the tracking problem (PG).
+	 * If a previously built tracking problem exists, only what changed since
+	 * is recomputed: frames whose segments are unchanged keep their segment
+	 * costs and leveraged editing state, and the hypotheses between two
+	 * unchanged frames are copied over unless the flow or any parameter they
+	 * depend on (search radii, hypotheses counts, cost parameters) changed.
+	 */
 	public void buildTrackingProblem() {
+		restoreStoredTrackingProblem();
 		final TicToc tictoc = new TicToc();
 
-		this.tr2dTraProblem =
-				new Tr2dTrackingProblem(
-						this,
-						tr2dModel.getFlowModel(),
-						appearanceCosts,
-						moveCosts,
-						divisionCosts,
-						disappearanceCosts );
+		final Tr2dTrackingProblem previous = this.tr2dTraProblem;
+		final PgBuildParameters previousParameters = this.tr2dTraProblemParameters;
+		final PgBuildParameters parameters = new PgBuildParameters( this );
+		final boolean sameCosts = previousParameters != null && parameters.hasSameCostParameters( previousParameters );
+		final boolean sameHypotheses = previousParameters != null && parameters.hasSameHypothesesParameters( previousParameters );
 
-		fireNextProgressPhaseEvent( "Building tracking problem (PG)...", labelingFrames.getNumFrames() );
+		this.tr2dTraProblem = createTrackingProblem();
+		this.tr2dTraProblemParameters = parameters;
+
+		fireNextProgressPhaseEvent( "Building tracking problem (PG)...", labelingFrames.getNumFrames() + 1 );
+		final List< Tr2dSegmentationProblem > segmentationProblems = new ArrayList<>();
+		final boolean[] unchanged = new boolean[ labelingFrames.getNumFrames() ];
 		for ( int frameId = 0; frameId < labelingFrames.getNumFrames(); frameId++ ) {
 			Tr2dLog.log.info(
 					String.format( "Working on frame %d of %d...", frameId + 1, labelingFrames.getNumFrames() ) );
@@ -443,24 +562,101 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 					labelingFrames.getLabelingSegmentsForFrame( frameId );
 			final ConflictGraph< LabelingSegment > conflictGraph =
 					labelingFrames.getConflictGraph( frameId );
-			final Tr2dSegmentationProblem segmentationProblem =
-					new Tr2dSegmentationProblem( frameId, segments, getSegmentCosts(), conflictGraph );
-			tictoc.toc( "done!" );
-
-			// =============================
-			// add it to Tr2dTrackingProblem
-			// =============================
-			tictoc.tic( "Connect it to Tr2dTrackingProblem..." );
-			tr2dTraProblem.addSegmentationProblem( segmentationProblem );
+			final Tr2dSegmentationProblem previousProblem =
+					( previous != null && frameId < previous.getTimepoints().size() ) ? previous.getTimepoints().get( frameId ) : null;
+			unchanged[ frameId ] = previousProblem != null && hasSameSegments( previousProblem, segments );
+
+			final Tr2dSegmentationProblem segmentationProblem;
+			if ( unchanged[ frameId ] && sameCosts ) {
+				final double[] costs = new double[ segments.size() ];
+				int i = 0;
+				for ( final SegmentNode segVar : previousProblem.getSegments() ) {
+					costs[ i++ ] = segVar.getCost();
+				}
+				segmentationProblem = new Tr2dSegmentationProblem( frameId, segments, costs, conflictGraph );
+			} else {
+				segmentationProblem = new Tr2dSegmentationProblem( frameId, segments, getSegmentCosts(), conflictGraph );
+			}
+			if ( unchanged[ frameId ] ) {
+				segmentationProblem.setEditState( transferEditState( previousProblem, segmentationProblem ) );
+			} else if ( previousProblem != null && !previousProblem.getEditState().isEmpty() ) {
+				Tr2dLog.log.warn( String.format( "Segments of frame %d changed, its leveraged edits were dropped.", frameId ) );
+			}
+			segmentationProblems.add( segmentationProblem );
 			tictoc.toc( "done!" );
 
 			fireProgressEvent();
 		}
+
+		// ==================================================
+		// add all of them to Tr2dTrackingProblem (in parallel)
+		// ==================================================
+		tictoc.tic( "Connect all frames to Tr2dTrackingProblem..." );
+		final boolean[] reusable = new boolean[ unchanged.length ];
+		int numReused = 0;
+		for ( int frameId = 0; frameId < unchanged.length; frameId++ ) {
+			reusable[ frameId ] = sameHypotheses && unchanged[ frameId ] && ( frameId == 0 || unchanged[ frameId - 1 ] );
+			if ( reusable[ frameId ] ) numReused++;
+		}
+		if ( numReused > 0 ) {
+			tr2dTraProblem.addSegmentationProblems( segmentationProblems, workerPool, previous, reusable );
+		} else {
+			tr2dTraProblem.addSegmentationProblems( segmentationProblems, workerPool );
+		}
+		tictoc.toc( "done!" );
+		Tr2dLog.log.info( String.format( "Reused the hypotheses of %d and rebuilt those of %d frames.", numReused, unchanged.length - numReused ) );
+		fireProgressEvent();
+
 		tr2dTraProblem.addDummyDisappearance();
+		tr2dTraProblem.getNodeIndex();
 
 		Tr2dLog.log.info( "Tracking graph was built sucessfully!" );
 	}
 
+	/**
+	 * @return a new, empty tracking problem using the flow and the cost
+	 *         factories of this model.
+	 */
+	public Tr2dTrackingProblem createTrackingProblem() {
+		return new Tr2dTrackingProblem(
+				this,
+				tr2dModel.getFlowModel(),
+				appearanceCosts,
+				moveCosts,
+				divisionCosts,
+				disappearanceCosts );
+	}
+
+	/**
+	 * @return <code>true</code> if the given segmentation problem was built
+	 *         from exactly the given segments (same instances, same order).
+	 */
+	private static boolean hasSameSegments( final Tr2dSegmentationProblem segProblem, final List< LabelingSegment > segments ) {
+		if ( segProblem.getSegments().size() != segments.size() ) return false;
+		int i = 0;
+		for ( final SegmentNode segVar : segProblem.getSegments() ) {
+			if ( segVar.getSegment() != segments.get( i++ ) ) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the leveraged editing state of <code>from</code> onto the segment
+	 * nodes and conflict sets of <code>to</code>. Both must have been built
+	 * from the same segments and conflict graph.
+	 */
+	private static EditState transferEditState( final Tr2dSegmentationProblem from, final Tr2dSegmentationProblem to ) {
+		final Map< ConflictSet, ConflictSet > conflictSetMap = new HashMap<>();
+		final Iterator< ConflictSet > toConflictSets = to.getConflictSets().iterator();
+		for ( final ConflictSet conflictSet : from.getConflictSets() ) {
+			conflictSetMap.put( conflictSet, toConflictSets.next() );
+		}
+		return new EditState(
+				from.getEditState(),
+				segVar -> to.getSegmentVar( segVar.getSegment() ),
+				conflictSetMap::get );
+	}
+
 	public void buildFactorGraph() {
 		final TicToc tictoc = new TicToc();
 		tictoc.tic( "Constructing FactorGraph for created Tr2dTrackingProblem..." );
@@ -473,14 +669,18 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 		final AssignmentMapper< Variable, IndicatorNode > assMapper = mfg.getAssmntMapper();
 //		final Map< IndicatorNode, Variable > varMapper = mfg.getVarmap();
 
+		// SolveGurobi takes no MIP start, a preview is only shown meanwhile
 		fgSolution = null;
 		try {
 			SolveGurobi.GRB_PRESOLVE = 0;
 			gurobiFGsolver = new SolveGurobi();
 			fgSolution = gurobiFGsolver.solve( fg, new DefaultLoggingGurobiCallback( Tr2dLog.solverlog ) );
-			pgSolution = assMapper.map( fgSolution );
+			pgSolution = BitSetAssignment.copyOf( tr2dTraProblem.getNodeIndex(), assMapper.map( fgSolution ) );
+			latestSolveSuccessful = true;
 		} catch ( final GRBException e ) {
-			e.printStackTrace();
+			fgSolution = null;
+			pgSolution = null;
+			Tr2dLog.solverlog.error( "Gurobi failed to solve the tracking problem.", e );
 		} catch ( final IllegalStateException ise ) {
 			fgSolution = null;
 			pgSolution = null;
@@ -490,6 +690,279 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 		this.tr2dTraProblem.getSerializer().saveSolution( tr2dTraProblem, pgSolution, dataFolder.getFile( FILENAME_PGRAPH_SOLUTION ).getFile() );
 	}
 
+	/**
+	 * Solves the problem graph greedily (see <code>SolveGreedy</code>) and
+	 * shows the result right away, until the solver selected returns. The
+	 * preview is used as MIP start by anytime, temporal block and component
+	 * solves; if solving fails, it is discarded.
+	 */
+	private void solvePreview() {
+		final SolveGreedy greedy = new SolveGreedy();
+		previewSolution = greedy.solve( tr2dTraProblem, workerPool );
+		pgSolution = previewSolution;
+		if ( bdvHandlePanel != null ) {
+			imgSolution = SolutionVisualizer.drawSolutionSegmentImages( this, pgSolution );
+			fireSolutionChangedEvent();
+			repopulateBdv();
+		}
+	}
+
+	/**
+	 * Re-solves after leveraged edits without rebuilding the factor graph. The
+	 * incremental Gurobi model is created on first use and then kept alive
+	 * until the problem graph gets rebuilt.
+	 */
+	private void solveLeveragedEditsIncrementally() {
+		fgSolution = null;
+		try {
+			final Assignment< IndicatorNode > solution = solveWithIncrementalSolver( pgSolution );
+			if ( solution != null ) {
+				pgSolution = solution;
+				latestSolveSuccessful = true;
+			} else {
+				Tr2dLog.solverlog.warn( "No solution found yet when solving stopped, keeping the previous solution." );
+			}
+		} catch ( final GRBException e ) {
+			Tr2dLog.solverlog.error( "Gurobi failed to re-solve the leveraged edits, keeping the previous solution.", e );
+		} catch ( final IllegalStateException ise ) {
+			pgSolution = null;
+			Tr2dLog.log.error( "Model is now infeasible and needs to be retracked!" );
+			fireModelInfeasibleEvent();
+		}
+		this.tr2dTraProblem.getSerializer().saveSolution( tr2dTraProblem, pgSolution, dataFolder.getFile( FILENAME_PGRAPH_SOLUTION ).getFile() );
+	}
+
+	/**
+	 * Solves the full problem graph with the incremental Gurobi model (which
+	 * is then kept for re-solving after leveraged edits) instead of the factor
+	 * graph, since only this model gives access to the incumbents found while
+	 * solving. Every improving incumbent is published (see
+	 * <code>publishIncumbent</code>) until the solve budget is exhausted or
+	 * <code>stopSolving</code> is called.
+	 */
+	private void solveAnytime() {
+		fgSolution = null;
+		pgSolution = previewSolution;
+		try {
+			final Assignment< IndicatorNode > solution = solveWithIncrementalSolver( previewSolution );
+			if ( solution != null ) {
+				pgSolution = solution;
+				latestSolveSuccessful = true;
+			} else {
+				// budget exhausted or stopped by the user, a normal outcome
+				pgSolution = null;
+				Tr2dLog.solverlog.warn( "No solution found yet when solving stopped." );
+			}
+		} catch ( final GRBException e ) {
+			pgSolution = null;
+			Tr2dLog.solverlog.error( "Gurobi failed to solve the tracking problem.", e );
+		} catch ( final IllegalStateException ise ) {
+			pgSolution = null;
+			Tr2dLog.log.error( "Model is now infeasible and needs to be retracked!" );
+			fireModelInfeasibleEvent();
+		}
+		this.tr2dTraProblem.getSerializer().saveSolution( tr2dTraProblem, pgSolution, dataFolder.getFile( FILENAME_PGRAPH_SOLUTION ).getFile() );
+	}
+
+	/**
+	 * Solves with the incremental Gurobi model, which is created on first use
+	 * and then kept alive until the problem graph gets rebuilt. The solve
+	 * budget is applied, and in anytime mode incumbents are published while
+	 * solving.
+	 *
+	 * @return the solution, or <code>null</code> if solving stopped before any
+	 *         solution was found.
+	 */
+	private Assignment< IndicatorNode > solveWithIncrementalSolver( final Assignment< IndicatorNode > warmStart ) throws GRBException {
+		if ( incrementalSolver == null ) {
+			final TicToc tictoc = new TicToc();
+			tictoc.tic( "Constructing incremental Gurobi model..." );
+			incrementalSolver = new SolveGurobiIncrementally( tr2dTraProblem );
+			tictoc.toc( "done!" );
+		}
+		incrementalSolver.setBudget( solveTimeLimit, solveMipGap, solveNodeLimit );
+
+		final GRBCallback callback;
+		final ExecutorService publisher;
+		if ( isAnytime() ) {
+			publisher = Executors.newSingleThreadExecutor();
+			runningCallback = incrementalSolver.createIncumbentCallback(
+					( incumbent, energy ) -> offerIncumbent( publisher, incumbent, energy ),
+					INCUMBENT_PUBLISH_INTERVAL );
+			callback = runningCallback;
+		} else {
+			publisher = null;
+			callback = new DefaultLoggingGurobiCallback( Tr2dLog.solverlog );
+		}
+		try {
+			return incrementalSolver.solve( warmStart, callback );
+		} finally {
+			runningCallback = null;
+			if ( publisher != null ) {
+				// the returned solution supersedes incumbents not published yet
+				latestIncumbent.set( null );
+				publisher.shutdown();
+				try {
+					publisher.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+				} catch ( final InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called on the Gurobi callback thread, which must not be blocked by
+	 * drawing and saving: the incumbent (a copy owned by this model, see
+	 * <code>IncumbentCallback</code>) is handed to the given single thread
+	 * publisher, and only the latest one is kept until it gets there.
+	 */
+	private void offerIncumbent( final ExecutorService publisher, final Assignment< IndicatorNode > incumbent, final double energy ) {
+		if ( latestIncumbent.getAndSet( new ValuePair<>( incumbent, energy ) ) == null ) {
+			publisher.execute( () -> {
+				final Pair< Assignment< IndicatorNode >, Double > latest = latestIncumbent.getAndSet( null );
+				if ( latest != null ) publishIncumbent( latest.getA(), latest.getB() );
+			} );
+		}
+	}
+
+	/**
+	 * Makes an incumbent found while solving the current solution: it is
+	 * shown (if there is a BDV), announced to all
+	 * <code>SolutionChangedListener</code>s and saved to the project folder,
+	 * such that no progress is lost if solving gets stopped or killed. Runs
+	 * on the publisher thread of the running solve (see
+	 * <code>offerIncumbent</code>).
+	 */
+	private void publishIncumbent( final Assignment< IndicatorNode > incumbent, final double energy ) {
+		Tr2dLog.solverlog.info( String.format( "Publishing incumbent with energy %.2f.", energy ) );
+		pgSolution = incumbent;
+		imgSolution = SolutionVisualizer.drawSolutionSegmentImages( this, pgSolution );
+		this.tr2dTraProblem.getSerializer().saveSolution( tr2dTraProblem, pgSolution, dataFolder.getFile( FILENAME_PGRAPH_SOLUTION ).getFile() );
+		saveSolution();
+		fireSolutionChangedEvent();
+		if ( bdvHandlePanel != null ) {
+			repopulateBdv();
+		}
+	}
+
+	/**
+	 * Stops a running anytime solve at its current incumbent, which then
+	 * becomes the solution of this run. Does nothing if no such solve is
+	 * running.
+	 *
+	 * @return <code>true</code> if a running solve was asked to stop.
+	 */
+	public boolean stopSolving() {
+		final IncumbentCallback callback = runningCallback;
+		if ( callback == null ) return false;
+		callback.requestStop();
+		return true;
+	}
+
+	/**
+	 * Solves the problem graph with the selected (non Gurobi)
+	 * <code>TrackingSolver</code>.
+	 */
+	private void solveWithTrackingSolver() {
+		fgSolution = null;
+		final TrackingSolver solver = TrackingSolvers.create( solverName, solveTimeLimit, solveMipGap, solveNodeLimit );
+		if ( solver == null ) {
+			Tr2dLog.solverlog.error( "Unknown solver: " + solverName );
+			pgSolution = null;
+		} else {
+			try {
+				pgSolution = solver.solve( tr2dTraProblem, workerPool );
+				latestSolveSuccessful = ( pgSolution != null );
+			} catch ( final IllegalStateException ise ) {
+				pgSolution = null;
+				Tr2dLog.log.error( "Model is now infeasible and needs to be retracked!" );
+				fireModelInfeasibleEvent();
+			}
+		}
+		this.tr2dTraProblem.getSerializer().saveSolution( tr2dTraProblem, pgSolution, dataFolder.getFile( FILENAME_PGRAPH_SOLUTION ).getFile() );
+	}
+
+	/**
+	 * Solves the problem graph in overlapping temporal blocks on the worker
+	 * pool (see <code>SolveGurobiTemporalBlocks</code>).
+	 */
+	private void solveInTemporalBlocks() {
+		fgSolution = null;
+		try {
+			final SolveGurobiTemporalBlocks blockSolver =
+					new SolveGurobiTemporalBlocks( tr2dTraProblem, temporalBlockSize, temporalBlockOverlap );
+			blockSolver.setWarmStart( previewSolution );
+			pgSolution = blockSolver.solve( workerPool );
+			latestSolveSuccessful = ( pgSolution != null );
+			Tr2dLog.solverlog.info( String.format( "Stitched solution has energy %.2f.", blockSolver.getLatestEnergy() ) );
+		} catch ( final GRBException e ) {
+			pgSolution = null;
+			Tr2dLog.solverlog.error( "Gurobi failed to solve the tracking problem in temporal blocks.", e );
+		} catch ( final IllegalStateException ise ) {
+			pgSolution = null;
+			Tr2dLog.log.error( "Model is now infeasible and needs to be retracked!" );
+			fireModelInfeasibleEvent();
+		}
+		this.tr2dTraProblem.getSerializer().saveSolution( tr2dTraProblem, pgSolution, dataFolder.getFile( FILENAME_PGRAPH_SOLUTION ).getFile() );
+	}
+
+	/**
+	 * Solves the independent components of the problem graph concurrently on
+	 * the worker pool (see <code>SolveGurobiComponents</code>).
+	 */
+	private void solveComponentsInParallel() {
+		fgSolution = null;
+		try {
+			final SolveGurobiComponents componentSolver = new SolveGurobiComponents( tr2dTraProblem );
+			componentSolver.setWarmStart( previewSolution );
+			pgSolution = componentSolver.solve( workerPool );
+			latestSolveSuccessful = ( pgSolution != null );
+			Tr2dLog.solverlog.info( String.format( "Merged solution has energy %.2f.", componentSolver.getLatestEnergy() ) );
+		} catch ( final GRBException e ) {
+			pgSolution = null;
+			Tr2dLog.solverlog.error( "Gurobi failed to solve the tracking problem.", e );
+		} catch ( final IllegalStateException ise ) {
+			pgSolution = null;
+			Tr2dLog.log.error( "Model is now infeasible and needs to be retracked!" );
+			fireModelInfeasibleEvent();
+		}
+		this.tr2dTraProblem.getSerializer().saveSolution( tr2dTraProblem, pgSolution, dataFolder.getFile( FILENAME_PGRAPH_SOLUTION ).getFile() );
+	}
+
+	/**
+	 * @return true, iff any frame of the current tracking problem holds
+	 *         leveraged editing constraints. Those are lost by
+	 *         <code>fetch</code> and <code>discardTrackingProblem</code>.
+	 */
+	public boolean hasLeveragedEdits() {
+		// edits are not stored, so a not yet restored tracking problem has none
+		if ( tr2dTraProblem == null || storedTrackingProblemPending ) return false;
+		for ( final Tr2dSegmentationProblem segProblem : tr2dTraProblem.getTimepoints() ) {
+			if ( !segProblem.getEditState().isEmpty() ) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Drops the current tracking problem (including all leveraged editing
+	 * constraints), such that the next run builds it from scratch.
+	 */
+	public void discardTrackingProblem() {
+		storedTrackingProblemPending = false;
+		tr2dTraProblem = null;
+		tr2dTraProblemParameters = null;
+		mfg = null;
+		disposeIncrementalSolver();
+	}
+
+	private void disposeIncrementalSolver() {
+		if ( incrementalSolver != null ) {
+			incrementalSolver.dispose();
+			incrementalSolver = null;
+		}
+	}
+
 	private Assignment< IndicatorNode > solveProblemGraphExternally() {
 		try {
 			externalPGsolver = new SolveExternal( new File( this.getExternalSolverExchangeFolder() ) );
@@ -568,13 +1041,27 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 	}
 
 	public Tr2dTrackingProblem getTrackingProblem() {
+		restoreStoredTrackingProblem();
 		return this.tr2dTraProblem;
 	}
 
 	public Assignment< IndicatorNode > getSolution() {
+		restoreStoredTrackingProblem();
 		return this.pgSolution;
 	}
 
+	/**
+	 * @return <code>true</code> if the latest solve (see <code>run</code>)
+	 *         found a solution of the current tracking problem,
+	 *         <code>false</code> if the solver failed, the problem is
+	 *         infeasible, or the solve budget ran out before any solution was
+	 *         found. In the latter cases <code>getSolution</code> is either
+	 *         <code>null</code> or the solution found before.
+	 */
+	public boolean isLatestSolveSuccessful() {
+		return latestSolveSuccessful;
+	}
+
 	/**
 	 * @return the tr2dModel
 	 */
@@ -604,10 +1091,45 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 	}
 
 	/**
-	 * Recomputes all costs for the PG.
+	 * @return <code>true</code> if the current solution was found by solving
+	 *         the current factor graph (see <code>getMappedFactorGraph</code>,
+	 *         <code>getFgSolution</code> and <code>getInternalFGSolver</code>),
+	 *         <code>false</code> if any other solver or solving mode was used
+	 *         or the tracking problem changed since.
+	 */
+	public boolean isFgSolutionCurrent() {
+		return fgSolution != null && mfg != null && gurobiFGsolver != null && !leveragedEditsPending;
+	}
+
+	/**
+	 * @return the energy of the current solution (the summed costs of all
+	 *         active nodes of the tracking problem), or <code>Double.NaN</code>
+	 *         if there is none.
+	 */
+	public double getSolutionEnergy() {
+		restoreStoredTrackingProblem();
+		if ( tr2dTraProblem == null || pgSolution == null ) return Double.NaN;
+		final IndicatorNodeIndex index = tr2dTraProblem.getNodeIndex();
+		double energy = 0;
+		for ( int i = 0; i < index.size(); i++ ) {
+			final IndicatorNode node = index.get( i );
+			if ( pgSolution.isAssigned( node ) && pgSolution.getAssignment( node ) == 1 ) {
+				energy += node.getCost();
+			}
+		}
+		return energy;
+	}
+
+	/**
+	 * Recomputes all costs for the PG, saves it again and makes the next run
+	 * rebuild the factor graph and re-solve.
 	 * TODO: use this function also in the first place when building the PG (otherwise inconsistencies might occur!).
 	 */
 	public void updateCosts() {
+		restoreStoredTrackingProblem();
+		final FlowSampler flowSampler = tr2dModel.getFlowModel().getFlowSampler();
+		final double[] flow = new double[ 2 ];
+
 		// Update all assignment costs in PG...
 		for ( final Tr2dSegmentationProblem tp : tr2dTraProblem.getTimepoints() ) {
 			for ( final SegmentNode segNode : tp.getSegments() ) {
@@ -629,13 +1151,10 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 				}
 
 				// MOVEMENT COST UPDATE
+				// retrieve flow vector at desired location (same for all moves of this segment)
+				flowSampler.sample( tp.getTime(), segVar.getSegment().getCenterOfMass(), flow );
+				final ValuePair< Double, Double > flow_vec = new ValuePair<>( flow[ 0 ], flow[ 1 ] );
 				for ( final MovementHypothesis outMove : outass.getMoves() ) {
-					// retrieve flow vector at desired location
-					final int t = tp.getTime();
-					final int x = ( int ) segVar.getSegment().getCenterOfMass().getFloatPosition( 0 );
-					final int y = ( int ) segVar.getSegment().getCenterOfMass().getFloatPosition( 1 );
-					final ValuePair< Double, Double > flow_vec = tr2dModel.getFlowModel().getFlowVector( t, x, y );
-
 					final double cost_flow = moveCosts.getCost(
 							new ValuePair<>( new ValuePair< LabelingSegment, LabelingSegment >( labelingSegment, outMove
 									.getDest().getSegment() ), flow_vec ) );
@@ -653,6 +1172,11 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 				}
 			}
 		}
+
+		// stored problem graph and solver models still hold the old costs
+		saveTrackingProblem();
+		mfg = null;
+		disposeIncrementalSolver();
 	}
 
 	public void addSolutionChangedListener( final SolutionChangedListener scl ) {
@@ -758,6 +1282,43 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 		this.maxDivisionSearchRadius = maxDivisionToAddRadius;
 	}
 
+	/**
+	 * @return <code>true</code> if move and division hypotheses are searched
+	 *         on a uniform grid, <code>false</code> if on a KD-tree.
+	 */
+	public boolean isGridNeighborSearchActive() {
+		return useGridNeighborSearch;
+	}
+
+	/**
+	 * @param useGridNeighborSearch
+	 *            if <code>true</code>, move and division hypotheses are
+	 *            searched on a uniform grid (cell size given by the larger of
+	 *            both search radii) instead of on a KD-tree.
+	 */
+	public void setGridNeighborSearch( final boolean useGridNeighborSearch ) {
+		this.useGridNeighborSearch = useGridNeighborSearch;
+	}
+
+	/**
+	 * @return the name of the <code>TrackingSolver</code> used for internal
+	 *         solving (see <code>TrackingSolvers</code>).
+	 */
+	public String getSolverName() {
+		return solverName;
+	}
+
+	/**
+	 * @param solverName
+	 *            the name of the <code>TrackingSolver</code> to be used for
+	 *            internal solving (see <code>TrackingSolvers</code>). Only
+	 *            Gurobi supports temporal blocks, independent components and
+	 *            incremental re-solving after leveraged edits.
+	 */
+	public void setSolverName( final String solverName ) {
+		this.solverName = solverName;
+	}
+
 	/**
 	 * @return the maxMovementsToAddPerHypothesis
 	 */
@@ -788,6 +1349,186 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 		this.maxDivisionsToAddPerHypothesis = maxDivisionsToAddPerHypothesis;
 	}
 
+	/**
+	 * @return the number of frames per temporal block the tracking problem is
+	 *         solved in (0 if it is solved at once)
+	 */
+	public int getTemporalBlockSize() {
+		return temporalBlockSize;
+	}
+
+	/**
+	 * @return the number of frames shared by neighboring temporal blocks
+	 */
+	public int getTemporalBlockOverlap() {
+		return temporalBlockOverlap;
+	}
+
+	/**
+	 * Lets the internal solver split problems longer than
+	 * <code>blockSize</code> frames into overlapping blocks that are solved
+	 * concurrently and stitched afterwards. Leveraged edits are still solved
+	 * on the full problem.
+	 *
+	 * @param blockSize
+	 *            number of frames per block (&le; 0 solves the whole problem at
+	 *            once)
+	 * @param overlap
+	 *            number of frames shared by neighboring blocks (at least 2, at
+	 *            most half the block size)
+	 */
+	public void setTemporalBlocks( final int blockSize, final int overlap ) {
+		if ( blockSize > 0 && ( overlap < 2 || 2 * overlap > blockSize ) ) {
+			throw new IllegalArgumentException( "Overlap must be at least 2 and at most half the block size." );
+		}
+		this.temporalBlockSize = Math.max( 0, blockSize );
+		this.temporalBlockOverlap = overlap;
+	}
+
+	/**
+	 * @return <code>true</code> if the independent components of the problem
+	 *         graph are solved separately
+	 */
+	public boolean isSolveComponentsIndependently() {
+		return solveComponentsIndependently;
+	}
+
+	/**
+	 * Lets the internal solver split the problem graph into its connected
+	 * components and solve them concurrently (unless temporal blocks are
+	 * used). The decomposition statistics are logged with each solve.
+	 * Leveraged edits are still solved on the full problem.
+	 *
+	 * @param solveComponentsIndependently
+	 *            <code>true</code> to solve components separately
+	 */
+	public void setSolveComponentsIndependently( final boolean solveComponentsIndependently ) {
+		this.solveComponentsIndependently = solveComponentsIndependently;
+	}
+
+	/**
+	 * @return <code>true</code> if a greedy preview solution is computed (and
+	 *         shown) before solving
+	 */
+	public boolean isShowPreview() {
+		return showPreview;
+	}
+
+	/**
+	 * @param showPreview
+	 *            if <code>true</code>, each solve first computes a greedy
+	 *            solution within a fraction of a second and shows it while the
+	 *            selected solver runs. Anytime, temporal block and component
+	 *            solves start from it, the plain factor graph solve cannot.
+	 *            Not used by incremental re-solving after leveraged edits,
+	 *            which starts from the previous solution.
+	 */
+	public void setShowPreview( final boolean showPreview ) {
+		this.showPreview = showPreview;
+	}
+
+	/**
+	 * @return <code>true</code> if full Gurobi solves publish their
+	 *         incumbents (see <code>setAnytimeSolving</code>)
+	 */
+	public boolean isAnytimeSolving() {
+		return anytimeSolving;
+	}
+
+	/**
+	 * Lets full Gurobi solves (unless temporal blocks or components are used)
+	 * run on the Gurobi model otherwise used for leveraged edits, which
+	 * publishes every improving incumbent: it is shown, announced as solution
+	 * change and saved to the project folder. Solving can then be stopped at
+	 * any time (see <code>stopSolving</code>). Setting a solve budget implies
+	 * anytime solving.
+	 *
+	 * @param anytimeSolving
+	 *            <code>true</code> to publish incumbents
+	 */
+	public void setAnytimeSolving( final boolean anytimeSolving ) {
+		this.anytimeSolving = anytimeSolving;
+	}
+
+	private boolean isAnytime() {
+		return anytimeSolving || solveTimeLimit > 0 || solveMipGap > 0 || solveNodeLimit > 0;
+	}
+
+	/**
+	 * @return <code>true</code> if solves can be stopped at their incumbent
+	 *         (see <code>stopSolving</code>), i.e. Gurobi solves in anytime
+	 *         mode that are neither split into temporal blocks nor into
+	 *         components.
+	 */
+	public boolean canStopSolving() {
+		return TrackingSolvers.GUROBI.equals( solverName ) && isAnytime() && temporalBlockSize <= 0 && !solveComponentsIndependently;
+	}
+
+	/**
+	 * @return the wall time (in seconds) a Gurobi solve may take (0 if
+	 *         unlimited)
+	 */
+	public double getSolveTimeLimit() {
+		return solveTimeLimit;
+	}
+
+	/**
+	 * @return the relative MIP gap at which a Gurobi solve stops (0 for
+	 *         Gurobi's default)
+	 */
+	public double getSolveMipGap() {
+		return solveMipGap;
+	}
+
+	/**
+	 * @return the number of branch and bound nodes a Gurobi solve may explore
+	 *         (0 if unlimited)
+	 */
+	public long getSolveNodeLimit() {
+		return solveNodeLimit;
+	}
+
+	/**
+	 * Sets the budget of full Gurobi solves and of re-solves after leveraged
+	 * edits. Once a limit is reached, the best solution found so far is
+	 * taken. Any limit turns on anytime solving (see
+	 * <code>setAnytimeSolving</code>), since indago's <code>SolveGurobi</code>
+	 * takes no limits.
+	 * Other solvers get the budget via <code>TrackingSolver.setBudget</code>,
+	 * the node limit being their iteration limit (e.g. the subgradient
+	 * iterations of <code>SolveDualDecomposition</code>).
+	 *
+	 * @param timeLimit
+	 *            wall time in seconds (&le; 0 for none)
+	 * @param mipGap
+	 *            relative gap between incumbent and bound that is good enough
+	 *            (&le; 0 for Gurobi's default)
+	 * @param nodeLimit
+	 *            maximum number of branch and bound nodes (&le; 0 for none)
+	 */
+	public void setSolveBudget( final double timeLimit, final double mipGap, final long nodeLimit ) {
+		this.solveTimeLimit = Math.max( 0, timeLimit );
+		this.solveMipGap = Math.max( 0, mipGap );
+		this.solveNodeLimit = Math.max( 0, nodeLimit );
+	}
+
+	/**
+	 * @return the pool frame-parallel work (hypotheses generation, problem
+	 *         graph construction) is run on
+	 */
+	public ForkJoinPool getWorkerPool() {
+		return workerPool;
+	}
+
+	/**
+	 * @param workerPool
+	 *            the pool frame-parallel work (hypotheses generation, problem
+	 *            graph construction) should be run on
+	 */
+	public void setWorkerPool( final ForkJoinPool workerPool ) {
+		this.workerPool = workerPool;
+	}
+
 	/**
 	 * @return the maximum size (in pixels) a component can be in order
 	 *         to count as a valid segmentation hypothesis.
@@ -837,6 +1578,20 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 			writer.append( ", " );
 			writer.append( "" + this.maxDivisionsToAddPerHypothesis );
 			writer.append( ", " );
+			writer.append( "" + this.useGridNeighborSearch );
+			writer.append( ", " );
+			writer.append( this.solverName );
+			writer.append( ", " );
+			writer.append( "" + this.showPreview );
+			writer.append( ", " );
+			writer.append( "" + this.anytimeSolving );
+			writer.append( ", " );
+			writer.append( "" + this.solveTimeLimit );
+			writer.append( ", " );
+			writer.append( "" + this.solveMipGap );
+			writer.append( ", " );
+			writer.append( "" + this.solveNodeLimit );
+			writer.append( ", " );
 			writer.flush();
 			writer.close();
 		} catch ( final IOException e ) {
@@ -858,14 +1613,30 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 				this.maxMovementsToAddPerHypothesis = Integer.parseInt( strings[ 3 ] );
 				this.maxDivisionSearchRadius = Integer.parseInt( strings[ 4 ] );
 				this.maxDivisionsToAddPerHypothesis = Integer.parseInt( strings[ 5 ] );
+				// older projects do not store the neighbor search
+				this.useGridNeighborSearch = strings.length > 6 && strings[ 6 ] != null && Boolean.parseBoolean( strings[ 6 ].trim() );
+				// older projects do not store the solver
+				this.solverName = ( strings.length > 7 && strings[ 7 ] != null ) ? strings[ 7 ].trim() : TrackingSolvers.GUROBI;
+				// older projects do not store whether to show the preview
+				this.showPreview = strings.length <= 8 || strings[ 8 ] == null || Boolean.parseBoolean( strings[ 8 ].trim() );
+				// older projects do not store anytime solving and the solve budget
+				this.anytimeSolving = strings.length > 9 && strings[ 9 ] != null && Boolean.parseBoolean( strings[ 9 ].trim() );
+				setSolveBudget(
+						( strings.length > 10 && strings[ 10 ] != null ) ? Double.parseDouble( strings[ 10 ] ) : 0,
+						( strings.length > 11 && strings[ 11 ] != null ) ? Double.parseDouble( strings[ 11 ] ) : 0,
+						( strings.length > 12 && strings[ 12 ] != null ) ? Long.parseLong( strings[ 12 ].trim() ) : 0 );
 			} catch ( final NumberFormatException e ) {
-				final ImagePlus temp = ImageJFunctions.wrap( this.tr2dModel.getRawData(), "raw.tif" );
-				this.maxPixelComponentSize = temp.getWidth() * temp.getHeight() - 1;
+				this.maxPixelComponentSize = ( int ) ( this.tr2dModel.getRawData().dimension( 0 ) * this.tr2dModel.getRawData().dimension( 1 ) ) - 1;
 				this.minPixelComponentSize = 16;
 				this.maxMovementSearchRadius = 50;
 				this.maxMovementsToAddPerHypothesis = 4;
 				this.maxDivisionSearchRadius = 50;
 				this.maxDivisionsToAddPerHypothesis = 8;
+				this.useGridNeighborSearch = false;
+				this.solverName = TrackingSolvers.GUROBI;
+				this.showPreview = true;
+				this.anytimeSolving = false;
+				setSolveBudget( 0, 0, 0 );
 			}
 
 			final File fPgraph = dataFolder.addFile( FILENAME_PGRAPH ).getFile();
@@ -902,18 +1673,56 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 			ioe.printStackTrace();
 		}
 
+		// Stored PGraph and solution need the labelings of all frames, see restoreStoredTrackingProblem
+		storedTrackingProblemPending = true;
+	}
+
+	/**
+	 * Restores the tracking problem and solution stored in the project folder
+	 * (if any, and if not done yet). Since this needs the labelings of all
+	 * frames, it is not done on startup but on first access of the tracking
+	 * problem or its solution.
+	 */
+	private synchronized void restoreStoredTrackingProblem() {
+		if ( !storedTrackingProblemPending ) return;
+		storedTrackingProblemPending = false;
+
+		// Loading stored binary PGraph (exact PG, no costs recomputed) and solution if exist in project folder
+		final ProjectFile pgBinFile = dataFolder.addFile( FILENAME_PGRAPH_BINARY );
+		if ( pgBinFile.exists() && !labelingFrames.needProcessing() ) {
+			this.tr2dTraProblem = createTrackingProblem();
+			boolean success;
+			try {
+				success = Tr2dTrackingProblem.Tr2dTrackingProblemSerializer.loadBinaryPGraph( tr2dTraProblem, pgBinFile.getFile() );
+			} catch ( final IOException e ) {
+				success = false;
+				e.printStackTrace();
+			} catch ( final RuntimeException e ) {
+				// a corrupted file must not leave a half restored problem behind
+				success = false;
+				Tr2dLog.log.error( "Stored PGraph could not be restored.", e );
+			}
+
+			if ( success ) {
+				final ProjectFile solFile = dataFolder.getFile( FILENAME_PGRAPH_SOLUTION );
+				if ( solFile.exists() ) {
+					try {
+						pgSolution = new Tr2dTrackingProblem.Tr2dTrackingProblemResult( tr2dTraProblem, solFile.getFile() );
+					} catch ( final IOException e ) {
+						pgSolution = null;
+						e.printStackTrace();
+					}
+				}
+				return;
+			}
+			this.tr2dTraProblem = null;
+		}
+
 		// Loading stored PGraph and solution if exist in project folder
 		final ProjectFile pgFile = externalSolverFolder.getFile( FILENAME_PGRAPH );
 		final ProjectFile pgSolFile = externalSolverFolder.getFile( FILENAME_PGRAPH_SOLUTION );
 		if ( pgFile.exists() ) {
-			this.tr2dTraProblem =
-					new Tr2dTrackingProblem(
-							this,
-							tr2dModel.getFlowModel(),
-							appearanceCosts,
-							moveCosts,
-							divisionCosts,
-							disappearanceCosts );
+			this.tr2dTraProblem = createTrackingProblem();
 			boolean success;
 			try {
 				success = tr2dTraProblem.getSerializer().loadPGraph( tr2dTraProblem, pgFile.getFile() );
@@ -1034,11 +1843,60 @@ public class Tr2dTrackingModel implements BdvWithOverlaysOwner {
 	}
 
 	public Tr2dTrackingProblem getTr2dTraProblem() {
+		restoreStoredTrackingProblem();
 		return tr2dTraProblem;
 	}
 
 	public void setTr2dTraProblem( final Tr2dTrackingProblem tr2dTraProblem ) {
+		storedTrackingProblemPending = false;
 		this.tr2dTraProblem = tr2dTraProblem;
+		disposeIncrementalSolver();
 	}
 
+
+	/**
+	 * Everything the hypotheses of the tracking problem depend on besides the
+	 * segments themselves. Recorded on each build of the tracking problem, so
+	 * that the next build can tell what needs to be recomputed.
+	 */
+	private static class PgBuildParameters {
+
+		private final int maxMovementSearchRadius;
+		private final int maxDivisionSearchRadius;
+		private final int maxMovementsToAddPerHypothesis;
+		private final int maxDivisionsToAddPerHypothesis;
+		private final boolean useGridNeighborSearch;
+		private final FlowSampler flowSampler;
+		private final List< double[] > costParams = new ArrayList<>();
+
+		PgBuildParameters( final Tr2dTrackingModel model ) {
+			maxMovementSearchRadius = model.getMaxMovementSearchRadius();
+			maxDivisionSearchRadius = model.getMaxDivisionSearchRadius();
+			maxMovementsToAddPerHypothesis = model.getMaxMovementsToAddPerHypothesis();
+			maxDivisionsToAddPerHypothesis = model.getMaxDivisionsToAddPerHypothesis();
+			useGridNeighborSearch = model.isGridNeighborSearchActive();
+			flowSampler = model.getTr2dModel().getFlowModel().getFlowSampler();
+			for ( final CostFactory< ? > costFactory : model.getCostFactories() ) {
+				costParams.add( costFactory.getParameters().getAsArray().clone() );
+			}
+		}
+
+		boolean hasSameCostParameters( final PgBuildParameters other ) {
+			if ( costParams.size() != other.costParams.size() ) return false;
+			for ( int i = 0; i < costParams.size(); i++ ) {
+				if ( !Arrays.equals( costParams.get( i ), other.costParams.get( i ) ) ) return false;
+			}
+			return true;
+		}
+
+		boolean hasSameHypothesesParameters( final PgBuildParameters other ) {
+			return maxMovementSearchRadius == other.maxMovementSearchRadius
+					&& maxDivisionSearchRadius == other.maxDivisionSearchRadius
+					&& maxMovementsToAddPerHypothesis == other.maxMovementsToAddPerHypothesis
+					&& maxDivisionsToAddPerHypothesis == other.maxDivisionsToAddPerHypothesis
+					&& useGridNeighborSearch == other.useGridNeighborSearch
+					&& flowSampler == other.flowSampler
+					&& hasSameCostParameters( other );
+		}
+	}
 }
@@ -3,11 +3,20 @@
  */
 package com.indago.tr2d.ui.util;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.indago.data.Ellipse2D;
+import com.indago.data.PixelCloud2D;
+import com.indago.data.segmentation.LabelingSegment;
 import com.indago.fg.Assignment;
 import com.indago.fg.MappedFactorGraph;
 import com.indago.pg.IndicatorNode;
@@ -20,6 +29,8 @@ import com.indago.tr2d.pg.Tr2dSegmentationProblem;
 import com.indago.tr2d.ui.model.Tr2dTrackingModel;
 import com.indago.util.Bimap;
 
+import net.imglib2.Cursor;
+
 /**
  * @author jug
  */
@@ -242,6 +253,84 @@ public class SchnitzcellSolutionExporter {
 		return tracklet.getTrackletId();
 	}
 
+	/**
+	 * Writes the given solution as Schnitzcell compatible object and tracklet
+	 * tables (<code>tr2d_objects.csv</code> and <code>tr2d_tracks.csv</code>).
+	 *
+	 * @param trackingModel
+	 * @param solution
+	 * @param projectFolderBasePath
+	 *            folder to write the two files into
+	 * @throws IOException
+	 */
+	public static void exportSchnitzcellData(
+			final Tr2dTrackingModel trackingModel,
+			final Assignment< IndicatorNode > solution,
+			final File projectFolderBasePath ) throws IOException {
+		final File objects = new File( projectFolderBasePath, "tr2d_objects.csv" );
+		final File tracks = new File( projectFolderBasePath, "tr2d_tracks.csv" );
+
+		final SimpleDateFormat sdfDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");//dd/MM/yyyy
+		final Date now = new Date();
+		final String strNow = sdfDate.format( now );
+
+		final SchnitzcellSolutionExporter exp = new SchnitzcellSolutionExporter( trackingModel, solution );
+
+		final BufferedWriter objWriter = new BufferedWriter( new FileWriter( objects ) );
+		objWriter.write( "# Tr2d export from " + strNow + "\n" );
+		objWriter.write( "# t, id, area, com_x, com_y, angle, r1, r2\n" );
+		final Map< Integer, Bimap< Integer, SegmentNode > > mapTime2Segments = exp.getTime2SegmentsMap();
+		for ( int t = 0; t < mapTime2Segments.size(); t++ ) {
+			final Bimap< Integer, SegmentNode > bimap = mapTime2Segments.get( t );
+			for ( int objId = 0; objId < bimap.size(); objId++ ) {
+				final SegmentNode segNode = bimap.getB( objId );
+				final LabelingSegment segment = segNode.getSegment();
+
+				// get fitted ellipse
+				final PixelCloud2D< Integer > cloud = new PixelCloud2D<>();
+				final Cursor< Void > cursor = segment.getRegion().cursor();
+				while ( cursor.hasNext() ) {
+					cursor.fwd();
+					cloud.addPoint( cursor.getIntPosition( 0 ), cursor.getIntPosition( 1 ), 1 );
+				}
+				final Ellipse2D ellipse = cloud.getEllipticalApproximation();
+
+				objWriter.write(
+						String.format(
+								"%3d,%3d,%3d,%8.4f,%8.4f,%8.4f,%8.4f,%8.4f\n",
+								t,
+								objId,
+								segment.getArea(),
+								ellipse.getCenter().getX(),
+								ellipse.getCenter().getY(),
+								ellipse.getAngle(),
+								ellipse.getA(),
+								ellipse.getB() ) );
+			}
+		}
+		objWriter.close();
+
+		final BufferedWriter trackWriter = new BufferedWriter( new FileWriter( tracks ) );
+		trackWriter.write( "# Tr2d export from " + strNow + "\n" );
+		trackWriter.write( "# tracklet_id, parent_tracklet_id, child_tracklat_id1, child_tracklat_id2, (time, object_id)...\n" );
+		final List< Tracklet > tracklets = exp.getTracklets();
+		for ( final Tracklet tracklet : tracklets ) {
+			trackWriter.write( String.format(
+					"%3d,%3d,%3d,%3d",
+					tracklet.getTrackletId(),
+					tracklet.getParentId(),
+					tracklet.getChild1(),
+					tracklet.getChild2() ) );
+			final List< Integer > oids = tracklet.getObjectIds();
+			int time = tracklet.getStartTime();
+			for ( final int oid : oids ) {
+				trackWriter.write( String.format( " ,%3d,%3d", time++, oid ) );
+			}
+			trackWriter.write( "\n" );
+		}
+		trackWriter.close();
+	}
+
 	/**
 	 * @return the mapTime2Segments
 	 */
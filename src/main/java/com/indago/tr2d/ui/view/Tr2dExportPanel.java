@@ -25,9 +25,6 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
 
-import com.indago.data.Ellipse2D;
-import com.indago.data.PixelCloud2D;
-import com.indago.data.segmentation.LabelingSegment;
 import com.indago.fg.Assignment;
 import com.indago.fg.MappedFactorGraph;
 import com.indago.fg.Variable;
@@ -42,8 +39,7 @@ import com.indago.pg.segments.ConflictSet;
 import com.indago.pg.segments.SegmentNode;
 import com.indago.tr2d.pg.Tr2dSegmentationProblem;
 import com.indago.tr2d.ui.model.Tr2dModel;
-import com.indago.tr2d.ui.util.SolutionExporter;
-import com.indago.tr2d.ui.util.SolutionExporter.Tracklet;
+import com.indago.tr2d.ui.util.SchnitzcellSolutionExporter;
 import com.indago.tr2d.ui.util.TraSolutionExporter;
 import com.indago.ui.util.UniversalFileChooser;
 import com.indago.util.Bimap;
@@ -52,7 +48,6 @@ import gnu.trove.map.TObjectIntMap;
 import gurobi.GRB;
 import gurobi.GRBException;
 import gurobi.GRBVar;
-import net.imglib2.Cursor;
 import net.imglib2.util.ValuePair;
 import net.miginfocom.swing.MigLayout;
 
@@ -189,20 +184,21 @@ public class Tr2dExportPanel extends JPanel implements ActionListener {
 
 			final BufferedWriter problemWriter = new BufferedWriter( new FileWriter( exportFile ) );
 			problemWriter.write( "# Tr2d problem export from " + strNow + "\n" );
-			problemWriter.write( String.format( "# objective_value = %.12f\n", model.getTrackingModel().getInternalFGSolver().getLatestEnergy() ) );
-
-			final MappedFactorGraph mfg = model.getTrackingModel().getMappedFactorGraph();
-			final Bimap< IndicatorNode, Variable > varmap = mfg.getVarmap();
+			problemWriter.write( String.format( "# objective_value = %.12f\n", model.getTrackingModel().getSolutionEnergy() ) );
 
 			// Prepare the ability to modify the Gurobi variable names
 			// This is useful in order to debug exported FGs and the corresponding .lp file.
-			boolean modifyGurobiVarNames = true;
+			// Only possible if the current solution was found on the factor graph.
+			boolean modifyGurobiVarNames = false;
 			final Assignment< Variable > fgSolution = model.getTrackingModel().getFgSolution();
+			Bimap< IndicatorNode, Variable > varmap = null;
 			GurobiResult gurobiResults = null;
 			GRBVar[] grbVars = null;
 			TObjectIntMap< Variable > var2index = null;
-			if ( fgSolution instanceof GurobiResult ) {
+			if ( model.getTrackingModel().isFgSolutionCurrent() && fgSolution instanceof GurobiResult ) {
 				modifyGurobiVarNames = true;
+				final MappedFactorGraph mfg = model.getTrackingModel().getMappedFactorGraph();
+				varmap = mfg.getVarmap();
 				gurobiResults = ( GurobiResult ) fgSolution;
 				grbVars = gurobiResults.getModel().getVars();
 				var2index = gurobiResults.getVariableToIndex();
@@ -513,6 +509,14 @@ public class Tr2dExportPanel extends JPanel implements ActionListener {
 	private void trackingProblemILPExport( final File projectFolderBasePath ) {
 		final File exportFile = new File( projectFolderBasePath, "tr2d_problem.lp" );
 
+		if ( !model.getTrackingModel().isFgSolutionCurrent() ) {
+			JOptionPane.showMessageDialog(
+					this,
+					"The last Gurobi model is not the one the current solution was found with\n(e.g. after leveraged edits, or if another solver or solving mode was used).\nPlease restart the tracking with the Gurobi solver and default solving options first.",
+					"Gurobi Model Error",
+					JOptionPane.ERROR_MESSAGE );
+			return;
+		}
 		try {
 			model.getTrackingModel().getInternalFGSolver().saveLatestModel( exportFile.getAbsolutePath() );
 		} catch ( final NullPointerException e ) {
@@ -523,69 +527,8 @@ public class Tr2dExportPanel extends JPanel implements ActionListener {
 	}
 
 	public void schnitzcellExport( final File projectFolderBasePath ) {
-		final File objects = new File( projectFolderBasePath, "tr2d_objects.csv" );
-		final File tracks = new File( projectFolderBasePath, "tr2d_tracks.csv" );
-
 		try {
-			final SimpleDateFormat sdfDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");//dd/MM/yyyy
-		    final Date now = new Date();
-			final String strNow = sdfDate.format( now );
-
-			final SolutionExporter exp = new SolutionExporter( model.getTrackingModel(), model.getTrackingModel().getSolution() );
-
-			final BufferedWriter objWriter = new BufferedWriter( new FileWriter( objects ) );
-			objWriter.write( "# Tr2d export from " + strNow + "\n" );
-			objWriter.write( "# t, id, area, com_x, com_y, angle, r1, r2\n" );
-			final Map< Integer, Bimap< Integer, SegmentNode > > mapTime2Segments = exp.getTime2SegmentsMap();
-			for ( int t = 0; t < mapTime2Segments.size(); t++ ) {
-				final Bimap< Integer, SegmentNode > bimap = mapTime2Segments.get( t );
-				for ( int objId = 0; objId < bimap.size(); objId++ ) {
-					final SegmentNode segNode = bimap.getB( objId );
-					final LabelingSegment segment = segNode.getSegment();
-
-					// get fitted ellipse
-					final PixelCloud2D< Integer > cloud = new PixelCloud2D<>();
-					final Cursor< Void > cursor = segment.getRegion().cursor();
-					while ( cursor.hasNext() ) {
-						cursor.fwd();
-						cloud.addPoint( cursor.getIntPosition( 0 ), cursor.getIntPosition( 1 ), 1 );
-					}
-					final Ellipse2D ellipse = cloud.getEllipticalApproximation();
-
-					objWriter.write(
-							String.format(
-									"%3d,%3d,%3d,%8.4f,%8.4f,%8.4f,%8.4f,%8.4f\n",
-									t,
-									objId,
-									segment.getArea(),
-									ellipse.getCenter().getX(),
-									ellipse.getCenter().getY(),
-									ellipse.getAngle(),
-									ellipse.getA(),
-									ellipse.getB() ) );
-				}
-			}
-			objWriter.close();
-
-			final BufferedWriter trackWriter = new BufferedWriter( new FileWriter( tracks ) );
-			trackWriter.write( "# Tr2d export from " + strNow + "\n" );
-			trackWriter.write( "# tracklet_id, parent_tracklet_id, child_tracklat_id1, child_tracklat_id2, (time, object_id)...\n" );
-			final List< Tracklet > tracklets = exp.getTracklets();
-			for ( final Tracklet tracklet : tracklets ) {
-				trackWriter.write( String.format(
-						"%3d,%3d,%3d,%3d",
-						tracklet.getTrackletId(),
-						tracklet.getParentId(),
-						tracklet.getChild1(),
-						tracklet.getChild2() ) );
-				final List< Integer > oids = tracklet.getObjectIds();
-				int time = tracklet.getStartTime();
-				for ( final int oid : oids ) {
-					trackWriter.write( String.format( " ,%3d,%3d", time++, oid ) );
-				}
-				trackWriter.write( "\n" );
-			}
-			trackWriter.close();
+			SchnitzcellSolutionExporter.exportSchnitzcellData( model.getTrackingModel(), model.getTrackingModel().getSolution(), projectFolderBasePath );
 		} catch ( final IOException e ) {
 			JOptionPane
 					.showMessageDialog( this, "Cannot write in selected export folder... cancel export!", "File Error", JOptionPane.ERROR_MESSAGE );
@@ -893,7 +893,7 @@ public class Tr2dFrameEditPanel extends JPanel implements ActionListener, BdvWit
 
 		// Since this is the same for all LevEdits, I put it here
 		if ( reprepAndRun ) {
-			model.prepareFG();
+			model.prepareLeveragedEdits();
 			model.runInThread( true );
 		}
 	}
@@ -964,7 +964,7 @@ public class Tr2dFrameEditPanel extends JPanel implements ActionListener, BdvWit
 			if ( this.currentFrame != editTime ) {
 				setFrameToShow( editTime );
 			}
-			model.prepareFG();
+			model.prepareLeveragedEdits();
 			model.runInThread( true );
 		}
 	}
@@ -989,7 +989,7 @@ public class Tr2dFrameEditPanel extends JPanel implements ActionListener, BdvWit
 			if ( this.currentFrame != editTime ) {
 				setFrameToShow( editTime );
 			}
-			model.prepareFG();
+			model.prepareLeveragedEdits();
 			model.runInThread( true );
 		}
 	}
@@ -1460,7 +1460,7 @@ public class Tr2dFrameEditPanel extends JPanel implements ActionListener, BdvWit
 		switch ( response ) {
 		case 0:
 			callUndo();
-			model.prepareFG();
+			model.prepareLeveragedEdits();
 			model.runInThread( true );
 			break;
 		case 1:
@@ -1468,6 +1468,7 @@ public class Tr2dFrameEditPanel extends JPanel implements ActionListener, BdvWit
 				@Override
 				public void run() {
 					emptyUndoRedoStacks();
+					model.discardTrackingProblem();
 					model.runInThread( true, true );
 				}
 
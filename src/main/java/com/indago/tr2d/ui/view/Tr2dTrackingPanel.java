@@ -14,7 +14,9 @@ import java.awt.event.FocusListener;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
@@ -22,6 +24,7 @@ import javax.swing.JTextField;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
+import com.indago.tr2d.ilp.TrackingSolvers;
 import com.indago.tr2d.ui.model.Tr2dSolDiffModel;
 import com.indago.tr2d.ui.model.Tr2dTrackingModel;
 
@@ -43,6 +46,7 @@ public class Tr2dTrackingPanel extends JPanel implements ActionListener, FocusLi
 	private JButton bRun;
 	private JButton bRestart;
 	private JButton bFetch;
+	private JButton bStop;
 
 	private Tr2dFrameEditPanel frameEditPanel;
 
@@ -55,7 +59,14 @@ public class Tr2dTrackingPanel extends JPanel implements ActionListener, FocusLi
 	private JTextField txtMaxPixelComponentSize;
 	private JTextField txtMinPixelComponentSize;
 
+	private JComboBox< String > comboSolver;
+	private JCheckBox cbShowPreview;
+	private JCheckBox cbAnytimeSolving;
+	private JTextField txtSolveTimeLimit;
+	private JTextField txtSolveMipGap;
+	private JTextField txtSolveNodeLimit;
 	private JCheckBox cbSolveWithExternalSolver;
+	private JCheckBox cbGridNeighborSearch;
 	private JTextField txtExternalSolverExchangeFolder;
 
 
@@ -118,12 +129,41 @@ public class Tr2dTrackingPanel extends JPanel implements ActionListener, FocusLi
 		panelFetch.add( bFetch, "growx, wrap" );
 
 		final JPanel panelImportSolution = new JPanel( new MigLayout() );
+		comboSolver = new JComboBox<>( TrackingSolvers.getNames().toArray( new String[ 0 ] ) );
+		comboSolver.setSelectedItem( model.getSolverName() );
+		comboSolver.addActionListener( this );
+		cbShowPreview = new JCheckBox( "show greedy preview", model.isShowPreview() );
+		cbShowPreview.addActionListener( this );
+		cbAnytimeSolving = new JCheckBox( "publish incumbents", model.isAnytimeSolving() );
+		cbAnytimeSolving.addActionListener( this );
+		txtSolveTimeLimit = new JTextField( 5 );
+		txtSolveTimeLimit.addActionListener( this );
+		txtSolveTimeLimit.addFocusListener( this );
+		txtSolveMipGap = new JTextField( 5 );
+		txtSolveMipGap.addActionListener( this );
+		txtSolveMipGap.addFocusListener( this );
+		txtSolveNodeLimit = new JTextField( 5 );
+		txtSolveNodeLimit.addActionListener( this );
+		txtSolveNodeLimit.addFocusListener( this );
+		bStop = new JButton( "stop at incumbent" );
+		bStop.addActionListener( this );
 		cbSolveWithExternalSolver = new JCheckBox( "use external solver", model.isExternalSolverActive() );
 		cbSolveWithExternalSolver.addActionListener( this );
 		txtExternalSolverExchangeFolder = new JTextField( model.getExternalSolverExchangeFolder(), 15 );
 		txtExternalSolverExchangeFolder.setEditable( false );
 
 		panelImportSolution.setBorder( BorderFactory.createTitledBorder( "Solver options" ) );
+		panelImportSolution.add( new JLabel( "Solver:" ), "split 2" );
+		panelImportSolution.add( comboSolver, "growx,wrap" );
+		panelImportSolution.add( cbShowPreview, "growx,wrap" );
+		panelImportSolution.add( cbAnytimeSolving, "growx,wrap" );
+		panelImportSolution.add( new JLabel( "Time limit [s]:" ), "split 2" );
+		panelImportSolution.add( txtSolveTimeLimit, "growx,wrap" );
+		panelImportSolution.add( new JLabel( "MIP gap:" ), "split 2" );
+		panelImportSolution.add( txtSolveMipGap, "growx,wrap" );
+		panelImportSolution.add( new JLabel( "Node limit:" ), "split 2" );
+		panelImportSolution.add( txtSolveNodeLimit, "growx,wrap" );
+		panelImportSolution.add( bStop, "growx,wrap" );
 		panelImportSolution.add( cbSolveWithExternalSolver, "growx,wrap" );
 		panelImportSolution.add( new JLabel( "Exchange folder:" ), "growx,wrap" );
 		panelImportSolution.add( txtExternalSolverExchangeFolder, "growx, wrap" );
@@ -141,6 +181,8 @@ public class Tr2dTrackingPanel extends JPanel implements ActionListener, FocusLi
 		txtMaxDivisionsPerNode = new JTextField( 3 );
 		txtMaxDivisionsPerNode.addActionListener( this );
 		txtMaxDivisionsPerNode.addFocusListener( this );
+		cbGridNeighborSearch = new JCheckBox( "grid neighbor search", model.isGridNeighborSearchActive() );
+		cbGridNeighborSearch.addActionListener( this );
 
 		bRun = new JButton( "track" );
 		bRun.addActionListener( this );
@@ -156,6 +198,7 @@ public class Tr2dTrackingPanel extends JPanel implements ActionListener, FocusLi
 		panelGraphConstructionParams.add( txtMaxDivisionSearchRadius, "growx, wrap" );
 		panelGraphConstructionParams.add( new JLabel( "Max division assmts:" ), "growx" );
 		panelGraphConstructionParams.add( txtMaxDivisionsPerNode, "growx, wrap" );
+		panelGraphConstructionParams.add( cbGridNeighborSearch, "span 2, growx, wrap" );
 		panelGraphConstructionParams.add( bRun, "growx, wrap" );
 		panelGraphConstructionParams.add( bRestart, "growx, wrap" );
 
@@ -192,9 +235,13 @@ public class Tr2dTrackingPanel extends JPanel implements ActionListener, FocusLi
 		if ( e.getSource().equals( bRun ) ) {
 			model.runInThread( false );
 		} else if ( e.getSource().equals( bRestart ) ) {
+			if ( !confirmDroppingLeveragedEdits( "Restarting" ) ) return;
 			this.frameEditPanel.emptyUndoRedoStacks();
+			model.discardTrackingProblem();
 			model.runInThread( true, true );
 		} else if ( e.getSource().equals( bFetch ) ) {
+			if ( !confirmDroppingLeveragedEdits( "Fetching new segment hypotheses" ) ) return;
+			this.frameEditPanel.emptyUndoRedoStacks();
 			final Thread t = new Thread( new Runnable() {
 
 				@Override
@@ -204,11 +251,46 @@ public class Tr2dTrackingPanel extends JPanel implements ActionListener, FocusLi
 				}
 			} );
 			t.start();
+		} else if ( e.getSource().equals( comboSolver ) ) {
+			model.setSolverName( ( String ) comboSolver.getSelectedItem() );
+			model.saveStateToFile();
+			bStop.setEnabled( model.canStopSolving() );
+		} else if ( e.getSource().equals( cbShowPreview ) ) {
+			model.setShowPreview( cbShowPreview.isSelected() );
+			model.saveStateToFile();
+		} else if ( e.getSource().equals( cbAnytimeSolving ) ) {
+			model.setAnytimeSolving( cbAnytimeSolving.isSelected() );
+			model.saveStateToFile();
+			bStop.setEnabled( model.canStopSolving() );
+		} else if ( e.getSource().equals( bStop ) ) {
+			model.stopSolving();
 		} else if ( e.getSource().equals( cbSolveWithExternalSolver ) ) {
 			model.solveExternally( cbSolveWithExternalSolver.isSelected() );
+		} else if ( e.getSource().equals( cbGridNeighborSearch ) ) {
+			model.setGridNeighborSearch( cbGridNeighborSearch.isSelected() );
+			model.saveStateToFile();
 		}
 	}
 
+	/**
+	 * Asks the user before an action drops all leveraged edits.
+	 *
+	 * @param action
+	 *            describes the action, e.g. "Restarting".
+	 * @return true, iff there are no leveraged edits or the user agreed to
+	 *         drop them.
+	 */
+	private boolean confirmDroppingLeveragedEdits( final String action ) {
+		if ( !model.hasLeveragedEdits() ) return true;
+		final int response = JOptionPane.showConfirmDialog(
+				this,
+				action + " drops all leveraged edits (and their undo history).\nContinue anyway?",
+				"Leveraged edits will be lost...",
+				JOptionPane.OK_CANCEL_OPTION,
+				JOptionPane.WARNING_MESSAGE );
+		return response == JOptionPane.OK_OPTION;
+	}
+
 	/**
 	 * @see java.awt.event.FocusListener#focusGained(java.awt.event.FocusEvent)
 	 */
@@ -225,9 +307,26 @@ public class Tr2dTrackingPanel extends JPanel implements ActionListener, FocusLi
 			 e.getSource().equals( txtMaxPixelComponentSize ) || e.getSource().equals( txtMinPixelComponentSize ) ) {
 			parseAndSetParametersInModel();
 			model.saveStateToFile();
+		} else if ( e.getSource().equals( txtSolveTimeLimit ) || e.getSource().equals( txtSolveMipGap ) ||
+					e.getSource().equals( txtSolveNodeLimit ) ) {
+			parseAndSetSolveBudgetInModel();
 		}
 	}
 
+	private void parseAndSetSolveBudgetInModel() {
+		try {
+			model.setSolveBudget(
+					Double.parseDouble( txtSolveTimeLimit.getText() ),
+					Double.parseDouble( txtSolveMipGap.getText() ),
+					Long.parseLong( txtSolveNodeLimit.getText() ) );
+		} catch ( final NumberFormatException e ) {}
+		txtSolveTimeLimit.setText( "" + model.getSolveTimeLimit() );
+		txtSolveMipGap.setText( "" + model.getSolveMipGap() );
+		txtSolveNodeLimit.setText( "" + model.getSolveNodeLimit() );
+		model.saveStateToFile();
+		bStop.setEnabled( model.canStopSolving() );
+	}
+
 	/**
 	 *
 	 */
@@ -283,5 +382,13 @@ public class Tr2dTrackingPanel extends JPanel implements ActionListener, FocusLi
 		this.txtMaxDivisionsPerNode.setText( "" + model.getMaxDivisionsToAddPerHypothesis() );
 		this.txtMaxPixelComponentSize.setText( "" + model.getMaxPixelComponentSize() );
 		this.txtMinPixelComponentSize.setText( "" + model.getMinPixelComponentSize() );
+		this.cbGridNeighborSearch.setSelected( model.isGridNeighborSearchActive() );
+		this.comboSolver.setSelectedItem( model.getSolverName() );
+		this.cbShowPreview.setSelected( model.isShowPreview() );
+		this.cbAnytimeSolving.setSelected( model.isAnytimeSolving() );
+		this.txtSolveTimeLimit.setText( "" + model.getSolveTimeLimit() );
+		this.txtSolveMipGap.setText( "" + model.getSolveMipGap() );
+		this.txtSolveNodeLimit.setText( "" + model.getSolveNodeLimit() );
+		this.bStop.setEnabled( model.canStopSolving() );
 	}
 }
@@ -7,13 +7,13 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 
+import com.indago.tr2d.ui.model.FlowSampler;
 import com.indago.tr2d.ui.model.Tr2dFlowModel;
 
 import bdv.util.BdvOverlay;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.realtransform.AffineTransform2D;
 import net.imglib2.type.numeric.real.FloatType;
-import net.imglib2.util.ValuePair;
 
 /**
  * @author jug
@@ -45,6 +45,11 @@ public class Tr2dFlowOverlay extends BdvOverlay {
 		int spacing = 10; // at most all 10 pixels
 		spacing = Math.max( spacing, ( int ) Math.max( sizeX, sizeY ) / 25 ); // but if large image only 25 vecs along longer side
 
+		final FlowSampler flowSampler = flowModel.getFlowSampler();
+		final double[] flowVec = new double[ 2 ];
+		final AffineTransform2D trans = new AffineTransform2D();
+		getCurrentTransform2D( trans );
+
 		int startx = ( int ) ( sizeX % spacing ) / 2;
 		startx = ( startx == 0 ) ? spacing / 2 : startx;
 		int starty = ( int ) ( sizeY % spacing ) / 2;
@@ -52,25 +57,22 @@ public class Tr2dFlowOverlay extends BdvOverlay {
 
 		for ( int x = startx; x < sizeX; x += spacing ) {
 			for ( int y = starty; y < sizeY; y += spacing ) {
-				drawVector( g, t, x, y );
+				flowSampler.sample( t, x, y, flowVec );
+				drawVector( g, trans, x, y, flowVec );
 			}
 		}
 	}
 
-	private void drawVector( final Graphics2D g, final int t, int x, int y ) {
-		final ValuePair< Double, Double > flowVec = flowModel.getFlowVector( t, x, y );
+	private void drawVector( final Graphics2D g, final AffineTransform2D trans, int x, int y, final double[] flowVec ) {
 		if ( x == 0 && y == 0 ) return;
 
-		final AffineTransform2D trans = new AffineTransform2D();
-		getCurrentTransform2D( trans );
-
 		g.setColor( Color.YELLOW );
 
 		final Graphics2D g2 = g;
 		g2.setStroke( new BasicStroke( 1 ) );
 
-		int xto = ( int ) ( x + flowVec.getA() );
-		int yto = ( int ) ( y + flowVec.getB() );
+		int xto = ( int ) ( x + flowVec[ 0 ] );
+		int yto = ( int ) ( y + flowVec[ 1 ] );
 
 		final double[] from = new double[]{x,y};
 		final double[] to = new double[] { xto, yto };
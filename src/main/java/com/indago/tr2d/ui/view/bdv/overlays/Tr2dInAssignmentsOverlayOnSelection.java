@@ -100,8 +100,8 @@ public class Tr2dInAssignmentsOverlayOnSelection extends BdvOverlay {
 		final AffineTransform2D trans = new AffineTransform2D();
 		getCurrentTransform2D( trans );
 		final Tr2dSegmentationProblem tp0 = tr2dPG.getTimepoints().get( time );
-		for ( final SegmentNode segvar : tp0.getSegments() ) {
-			if ( this.selectedNodes.contains( segvar ) ) {
+		for ( final SegmentNode segvar : this.selectedNodes ) {
+			if ( tp0.getLabelingSegment( segvar ) != null ) { // only selected nodes of this frame
 				if ( showMovements ) {
 					int i = 0;
 					for ( final MovementHypothesis move : segvar.getInAssignments().getMoves() ) {
@@ -304,8 +304,8 @@ public class Tr2dInAssignmentsOverlayOnSelection extends BdvOverlay {
 		final AffineTransform2D trans = new AffineTransform2D();
 		getCurrentTransform2D( trans );
 		final Tr2dSegmentationProblem tp0 = tr2dPG.getTimepoints().get( time );
-		for ( final SegmentNode segvar : tp0.getSegments() ) {
-			if ( this.selectedNodes.contains( segvar ) ) {
+		for ( final SegmentNode segvar : this.selectedNodes ) {
+			if ( tp0.getLabelingSegment( segvar ) != null ) { // only selected nodes of this frame
 				final RealLocalizable com = segvar.getSegment().getCenterOfMass();
 				final double[] lpos = new double[ 2 ];
 				final double[] gpos = new double[ 2 ];
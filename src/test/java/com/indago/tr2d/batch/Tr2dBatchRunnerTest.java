@@ -0,0 +1,58 @@
+package com.indago.tr2d.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.ilp.TrackingSolvers;
+
+public class Tr2dBatchRunnerTest {
+
+	private Tr2dBenchmarkData data;
+	private ByteArrayOutputStream out;
+	private Tr2dBatchRunner runner;
+
+	@Before
+	public void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, 5, 6, 42 );
+		data.saveRawData();
+		out = new ByteArrayOutputStream();
+		runner = new Tr2dBatchRunner( data.getFolder(), new Tr2dBatchProgress( new PrintStream( out, true ) ) );
+		runner.setExportSchnitzcell( false );
+	}
+
+	@After
+	public void tearDown() {
+		data.dispose();
+	}
+
+	@Test
+	public void testExportsSolution() {
+		final File export = new File( data.getFolder(), "export" );
+		runner.setSolverName( TrackingSolvers.JAVA );
+		runner.setExportFolder( export );
+		assertEquals( out.toString(), Tr2dBatchRunner.EXIT_OK, runner.run() );
+		assertTrue( new File( export, "res_track.txt" ).isFile() );
+	}
+
+	/**
+	 * A solve without solution must be reported as such, not end in an
+	 * unexpected error while saving the (missing) solution.
+	 */
+	@Test
+	public void testFailedSolveExitsWithNoSolution() {
+		// not a known solver, so solving fails (parseArguments would reject it)
+		runner.setSolverName( "no such solver" );
+		assertEquals( out.toString(), Tr2dBatchRunner.EXIT_NO_SOLUTION, runner.run() );
+		assertTrue( !new File( data.getFolder(), "tracking/tracking.sol" ).exists() );
+	}
+}
@@ -0,0 +1,128 @@
+package com.indago.tr2d.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.indago.data.segmentation.LabelingSegment;
+import com.indago.pg.assignments.DivisionHypothesis;
+import com.indago.pg.assignments.MovementHypothesis;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+
+import net.imglib2.util.ValuePair;
+
+/**
+ * <code>getCost</code> of all <code>Hernan*CostFactory</code>s, evaluated for
+ * every segment, move, and division of a synthetic tracking problem.
+ * The <code>cached</code> parameter decides whether the shared segment
+ * feature store is kept warm or cleared before each pass.
+ *
+ * @author jug
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class CostFactoryBenchmark {
+
+	@Param( { "true", "false" } )
+	public boolean cached;
+
+	private Tr2dBenchmarkData data;
+	private Tr2dTrackingModel trackingModel;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 256, 256, 20, 30, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		trackingModel.buildTrackingProblem();
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		data.dispose();
+	}
+
+	private void prepareFeatures() {
+		if ( !cached ) data.getModel().getSegmentFeatureStore().clear();
+	}
+
+	@Benchmark
+	public void segmentCosts( final Blackhole bh ) {
+		prepareFeatures();
+		for ( final Tr2dSegmentationProblem tp : trackingModel.getTrackingProblem().getTimepoints() ) {
+			for ( final SegmentNode node : tp.getSegments() ) {
+				bh.consume( trackingModel.getSegmentCosts().getCost( node.getSegment() ) );
+			}
+		}
+	}
+
+	@Benchmark
+	public void appearanceCosts( final Blackhole bh ) {
+		prepareFeatures();
+		for ( final Tr2dSegmentationProblem tp : trackingModel.getTrackingProblem().getTimepoints() ) {
+			for ( final SegmentNode node : tp.getSegments() ) {
+				bh.consume( trackingModel.getAppearanceCosts().getCost( node.getSegment() ) );
+			}
+		}
+	}
+
+	@Benchmark
+	public void disappearanceCosts( final Blackhole bh ) {
+		prepareFeatures();
+		for ( final Tr2dSegmentationProblem tp : trackingModel.getTrackingProblem().getTimepoints() ) {
+			for ( final SegmentNode node : tp.getSegments() ) {
+				bh.consume( trackingModel.getDisappearanceCosts().getCost( node.getSegment() ) );
+			}
+		}
+	}
+
+	@Benchmark
+	public void movementCosts( final Blackhole bh ) {
+		prepareFeatures();
+		final ValuePair< Double, Double > noFlow = new ValuePair<>( 0.0, 0.0 );
+		for ( final Tr2dSegmentationProblem tp : trackingModel.getTrackingProblem().getTimepoints() ) {
+			for ( final SegmentNode node : tp.getSegments() ) {
+				for ( final MovementHypothesis move : node.getOutAssignments().getMoves() ) {
+					bh.consume( trackingModel.getMoveCosts().getCost(
+							new ValuePair<>(
+									new ValuePair< LabelingSegment, LabelingSegment >( node.getSegment(), move.getDest().getSegment() ),
+									noFlow ) ) );
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public void divisionCosts( final Blackhole bh ) {
+		prepareFeatures();
+		for ( final Tr2dSegmentationProblem tp : trackingModel.getTrackingProblem().getTimepoints() ) {
+			for ( final SegmentNode node : tp.getSegments() ) {
+				for ( final DivisionHypothesis div : node.getOutAssignments().getDivisions() ) {
+					bh.consume( trackingModel.getDivisionCosts().getCost(
+							new ValuePair<>(
+									node.getSegment(),
+									new ValuePair<>( div.getDest1().getSegment(), div.getDest2().getSegment() ) ) ) );
+				}
+			}
+		}
+	}
+}
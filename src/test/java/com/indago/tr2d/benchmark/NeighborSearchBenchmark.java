@@ -0,0 +1,116 @@
+package com.indago.tr2d.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+
+import net.imglib2.neighborsearch.RadiusNeighborSearch;
+
+/**
+ * Neighbor enumeration as done for the move and division hypotheses (radius
+ * queries around every segment of frame <code>t</code> into frame
+ * <code>t+1</code>), once on the KD-tree and once on the uniform grid.
+ * Costs are not evaluated, so only the search itself is measured.
+ *
+ * @author jug
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class NeighborSearchBenchmark {
+
+	@Param( { "20", "60" } )
+	public int numCells;
+
+	@Param( { "kdtree", "grid" } )
+	public String search;
+
+	private Tr2dBenchmarkData data;
+	private List< Tr2dSegmentationProblem > timepoints;
+	private double moveRadius;
+	private double divisionRadius;
+	private double cellSize;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 256, 256, 10, numCells, 42 );
+		final Tr2dTrackingModel trackingModel = data.getModel().getTrackingModel();
+		trackingModel.buildTrackingProblem();
+		timepoints = trackingModel.getTrackingProblem().getTimepoints();
+
+		moveRadius = trackingModel.getMaxMovementSearchRadius();
+		divisionRadius = trackingModel.getMaxDivisionSearchRadius();
+		cellSize = Math.max( moveRadius, divisionRadius );
+
+		// build the indices up front, only queries are measured
+		for ( final Tr2dSegmentationProblem tp : timepoints ) {
+			getSearch( tp );
+		}
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		data.dispose();
+	}
+
+	private RadiusNeighborSearch< SegmentNode > getSearch( final Tr2dSegmentationProblem tp ) {
+		if ( "grid".equals( search ) ) {
+			return tp.getSpatialIndex().getGridNeighborSearch( cellSize );
+		}
+		return tp.getSpatialIndex().getRadiusNeighborSearch();
+	}
+
+	@Benchmark
+	public void moveEnumeration( final Blackhole bh ) {
+		for ( int t = 0; t < timepoints.size() - 1; t++ ) {
+			final RadiusNeighborSearch< SegmentNode > s = getSearch( timepoints.get( t + 1 ) );
+			if ( s == null ) continue;
+			for ( final SegmentNode node : timepoints.get( t ).getSegments() ) {
+				s.search( node.getSegment().getCenterOfMass(), moveRadius, false );
+				for ( int i = 0; i < s.numNeighbors(); i++ ) {
+					bh.consume( s.getSampler( i ).get() );
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public void divisionEnumeration( final Blackhole bh ) {
+		for ( int t = 0; t < timepoints.size() - 1; t++ ) {
+			final RadiusNeighborSearch< SegmentNode > s = getSearch( timepoints.get( t + 1 ) );
+			if ( s == null ) continue;
+			for ( final SegmentNode node : timepoints.get( t ).getSegments() ) {
+				s.search( node.getSegment().getCenterOfMass(), divisionRadius, true );
+				final int n = s.numNeighbors();
+				for ( int i = 0; i < n; i++ ) {
+					for ( int j = i + 1; j < n; j++ ) {
+						bh.consume( s.getSampler( i ).get() );
+						bh.consume( s.getSampler( j ).get() );
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.indago.tr2d.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+
+/**
+ * Construction of the tracking problem graph (segment nodes, appearances,
+ * disappearances, moves, and divisions) from the labelings of all frames.
+ *
+ * @author jug
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class PgConstructionBenchmark {
+
+	@Param( { "20" } )
+	public int numFrames;
+
+	@Param( { "20", "60" } )
+	public int numCells;
+
+	private Tr2dBenchmarkData data;
+	private Tr2dTrackingModel trackingModel;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 256, 256, numFrames, numCells, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		// loads all labeling frames once, so that only the PG construction is measured
+		trackingModel.buildTrackingProblem();
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		data.dispose();
+	}
+
+	@Benchmark
+	public Tr2dTrackingProblem buildTrackingProblem() {
+		trackingModel.buildTrackingProblem();
+		return trackingModel.getTrackingProblem();
+	}
+}
@@ -0,0 +1,113 @@
+package com.indago.tr2d.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem.Tr2dTrackingProblemResult;
+import com.indago.tr2d.pg.Tr2dTrackingProblem.Tr2dTrackingProblemSerializer;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+
+/**
+ * Writing and reading the problem graph (.pgraph, binary .pgraph) and parsing
+ * of a stored solution (<code>Tr2dTrackingProblemResult</code>).
+ *
+ * @author jug
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class SerializationBenchmark {
+
+	private Tr2dBenchmarkData data;
+	private Tr2dTrackingModel trackingModel;
+	private Tr2dTrackingProblem ttp;
+
+	private File pgraph;
+	private File pgraphBinary;
+	private File solution;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 256, 256, 20, 30, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		trackingModel.buildTrackingProblem();
+		ttp = trackingModel.getTrackingProblem();
+
+		pgraph = new File( data.getFolder(), "benchmark.pgraph" );
+		pgraphBinary = new File( data.getFolder(), "benchmark.bin.pgraph" );
+		solution = new File( data.getFolder(), "benchmark.sol" );
+		ttp.getSerializer().savePgraph( ttp, pgraph );
+		ttp.getSerializer().saveBinaryPgraph( ttp, pgraphBinary );
+		ttp.getSerializer().saveSolution( ttp, Tr2dBenchmarkData.greedySolution( ttp ), solution );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		data.dispose();
+	}
+
+	private Tr2dTrackingProblem emptyProblem() {
+		return new Tr2dTrackingProblem(
+				trackingModel,
+				data.getModel().getFlowModel(),
+				trackingModel.getAppearanceCosts(),
+				trackingModel.getMoveCosts(),
+				trackingModel.getDivisionCosts(),
+				trackingModel.getDisappearanceCosts() );
+	}
+
+	@Benchmark
+	public File savePgraph() throws IOException {
+		ttp.getSerializer().savePgraph( ttp, pgraph );
+		return pgraph;
+	}
+
+	@Benchmark
+	public File saveBinaryPgraph() throws IOException {
+		ttp.getSerializer().saveBinaryPgraph( ttp, pgraphBinary );
+		return pgraphBinary;
+	}
+
+	@Benchmark
+	public Tr2dTrackingProblem loadPgraph() throws IOException {
+		final Tr2dTrackingProblem loaded = emptyProblem();
+		// NB: the text loader adds the frames to the problem currently set in the model
+		trackingModel.setTr2dTraProblem( loaded );
+		try {
+			Tr2dTrackingProblemSerializer.loadPGraph( loaded, pgraph );
+		} finally {
+			trackingModel.setTr2dTraProblem( ttp );
+		}
+		return loaded;
+	}
+
+	@Benchmark
+	public Tr2dTrackingProblem loadBinaryPgraph() throws IOException {
+		final Tr2dTrackingProblem loaded = emptyProblem();
+		Tr2dTrackingProblemSerializer.loadBinaryPGraph( loaded, pgraphBinary );
+		return loaded;
+	}
+
+	@Benchmark
+	public Tr2dTrackingProblemResult parseSolution() throws IOException {
+		return new Tr2dTrackingProblemResult( ttp, solution );
+	}
+}
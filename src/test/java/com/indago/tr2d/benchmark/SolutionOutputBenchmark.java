@@ -0,0 +1,83 @@
+package com.indago.tr2d.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+import com.indago.tr2d.ui.util.SchnitzcellSolutionExporter;
+import com.indago.tr2d.ui.util.SolutionVisualizer;
+import com.indago.tr2d.ui.util.TraSolutionExporter;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.integer.IntType;
+
+/**
+ * Rendering of the solution image and the TRA and Schnitzcell exports, for a
+ * greedy (solver free) solution of a synthetic tracking problem.
+ *
+ * @author jug
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+public class SolutionOutputBenchmark {
+
+	private Tr2dBenchmarkData data;
+	private Tr2dTrackingModel trackingModel;
+	private Assignment< IndicatorNode > solution;
+	private File exportFolder;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 256, 256, 20, 30, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		trackingModel.buildTrackingProblem();
+		// the visualizer and exporters only run if a factor graph exists
+		trackingModel.buildFactorGraph();
+		solution = Tr2dBenchmarkData.greedySolution( trackingModel.getTrackingProblem() );
+
+		exportFolder = new File( data.getFolder(), "export" );
+		exportFolder.mkdirs();
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		data.dispose();
+	}
+
+	@Benchmark
+	public RandomAccessibleInterval< IntType > drawSolutionSegmentImages() {
+		return SolutionVisualizer.drawSolutionSegmentImages( trackingModel, solution );
+	}
+
+	@Benchmark
+	public File exportTra() throws IOException {
+		TraSolutionExporter.exportTraData( trackingModel, solution, exportFolder );
+		return exportFolder;
+	}
+
+	@Benchmark
+	public File exportSchnitzcell() throws IOException {
+		SchnitzcellSolutionExporter.exportSchnitzcellData( trackingModel, solution, exportFolder );
+		return exportFolder;
+	}
+}
@@ -0,0 +1,310 @@
+package com.indago.tr2d.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.indago.data.segmentation.LabelingBuilder;
+import com.indago.data.segmentation.filteredcomponents.FilteredComponentTree;
+import com.indago.data.segmentation.filteredcomponents.FilteredComponentTree.MaxGrowthPerStep;
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AppearanceHypothesis;
+import com.indago.pg.assignments.DisappearanceHypothesis;
+import com.indago.pg.assignments.MovementHypothesis;
+import com.indago.pg.segments.ConflictSet;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.data.LabelingFrameStore;
+import com.indago.tr2d.io.projectfolder.Tr2dProjectFolder;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+import com.indago.tr2d.ui.model.Tr2dModel;
+
+import ij.IJ;
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.Cursor;
+import net.imglib2.FinalDimensions;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.display.imagej.ImageJFunctions;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+/**
+ * Synthetic 2D+t input for the benchmarks: round cells that drift and
+ * divide, rendered into a raw image and into a sum image whose component
+ * trees yield nested segment hypotheses (like a thresholded segmentation
+ * would).
+ * <p>
+ * The labelings of all frames are written into the labeling frame store of
+ * a temporary project folder, so a <code>Tr2dModel</code> opened on this
+ * folder can build its tracking problem exactly as it would in the
+ * application.
+ *
+ * @author jug
+ */
+public class Tr2dBenchmarkData {
+
+	private static final int LEVELS = 4;
+	private static final int MIN_SEGMENT_SIZE = 16;
+
+	private final File folder;
+	private final Tr2dModel model;
+
+	/**
+	 * @param width
+	 * @param height
+	 * @param numFrames
+	 * @param numCells
+	 *            number of cells in the first frame (cells divide over time)
+	 * @param seed
+	 *            random seed, same seed gives identical data
+	 */
+	public Tr2dBenchmarkData(
+			final int width,
+			final int height,
+			final int numFrames,
+			final int numCells,
+			final long seed ) throws IOException {
+		final Img< DoubleType > raw = ArrayImgs.doubles( width, height, numFrames );
+		final Img< IntType > sum = ArrayImgs.ints( width, height, numFrames );
+		render( raw, sum, numCells, seed );
+
+		folder = Files.createTempDirectory( "tr2d_benchmark" ).toFile();
+		final Tr2dProjectFolder projectFolder = new Tr2dProjectFolder( folder );
+		projectFolder.initialize();
+
+		final File labelingFolder = new File( projectFolder.getFolder( Tr2dProjectFolder.TRACKING_FOLDER ).getFolder(), "labeling_frames" );
+		labelingFolder.mkdirs();
+		LabelingFrameStore.save( buildLabelings( sum, width * height - 1 ), new File( labelingFolder, LabelingFrameStore.FILENAME ), null );
+
+		model = new Tr2dModel( projectFolder, new ImgPlus<>( raw, "raw", new AxisType[] { Axes.X, Axes.Y, Axes.TIME } ) );
+	}
+
+	private static void render( final Img< DoubleType > raw, final Img< IntType > sum, final int numCells, final long seed ) {
+		final Random random = new Random( seed );
+		final long width = raw.dimension( 0 );
+		final long height = raw.dimension( 1 );
+		final int numFrames = ( int ) raw.dimension( 2 );
+
+		// cell: x, y, vx, vy, radius
+		List< double[] > cells = new ArrayList<>();
+		for ( int i = 0; i < numCells; i++ ) {
+			cells.add( new double[] {
+					10 + random.nextDouble() * ( width - 20 ),
+					10 + random.nextDouble() * ( height - 20 ),
+					random.nextGaussian(),
+					random.nextGaussian(),
+					5 + random.nextDouble() * 4 } );
+		}
+
+		for ( int t = 0; t < numFrames; t++ ) {
+			final Cursor< DoubleType > cRaw = Views.flatIterable( Views.hyperSlice( raw, 2, t ) ).localizingCursor();
+			final Cursor< IntType > cSum = Views.flatIterable( Views.hyperSlice( sum, 2, t ) ).cursor();
+			while ( cRaw.hasNext() ) {
+				cRaw.fwd();
+				cSum.fwd();
+				double value = 0;
+				int level = 0;
+				for ( final double[] cell : cells ) {
+					final double dx = cRaw.getDoublePosition( 0 ) - cell[ 0 ];
+					final double dy = cRaw.getDoublePosition( 1 ) - cell[ 1 ];
+					final double d = Math.sqrt( dx * dx + dy * dy ) / cell[ 4 ];
+					if ( d < 1 ) {
+						value = Math.max( value, 1 - d * d );
+						level = Math.max( level, 1 + ( int ) ( ( 1 - d ) * LEVELS ) );
+					}
+				}
+				cRaw.get().set( 100 * value + 10 * random.nextDouble() );
+				cSum.get().set( level );
+			}
+
+			// move, grow, and divide
+			final List< double[] > next = new ArrayList<>();
+			for ( final double[] cell : cells ) {
+				cell[ 0 ] = Math.max( cell[ 4 ], Math.min( width - cell[ 4 ], cell[ 0 ] + cell[ 2 ] ) );
+				cell[ 1 ] = Math.max( cell[ 4 ], Math.min( height - cell[ 4 ], cell[ 1 ] + cell[ 3 ] ) );
+				cell[ 4 ] += 0.2;
+				if ( cell[ 4 ] > 10 ) {
+					final double angle = random.nextDouble() * Math.PI;
+					final double r = 0.7 * cell[ 4 ];
+					for ( final int sign : new int[] { -1, 1 } ) {
+						next.add( new double[] {
+								cell[ 0 ] + sign * 0.5 * r * Math.cos( angle ),
+								cell[ 1 ] + sign * 0.5 * r * Math.sin( angle ),
+								random.nextGaussian(),
+								random.nextGaussian(),
+								r } );
+					}
+				} else {
+					next.add( cell );
+				}
+			}
+			cells = next;
+		}
+	}
+
+	private static List< LabelingBuilder > buildLabelings( final Img< IntType > sum, final int maxSegmentSize ) {
+		final List< LabelingBuilder > ret = new ArrayList<>();
+		for ( int t = 0; t < sum.dimension( 2 ); t++ ) {
+			final LabelingBuilder labelingBuilder = new LabelingBuilder( new FinalDimensions( sum.dimension( 0 ), sum.dimension( 1 ) ) );
+			final FilteredComponentTree< IntType > tree =
+					FilteredComponentTree.buildComponentTree(
+							Views.hyperSlice( sum, 2, t ),
+							new IntType(),
+							MIN_SEGMENT_SIZE,
+							maxSegmentSize,
+							new MaxGrowthPerStep( maxSegmentSize ),
+							false );
+			labelingBuilder.buildLabelingForest( tree );
+			ret.add( labelingBuilder );
+		}
+		return ret;
+	}
+
+	public Tr2dModel getModel() {
+		return model;
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	/**
+	 * Writes the raw image to the project folder, such that it can also be
+	 * opened from disk (e.g. by <code>Tr2dBatchRunner</code>).
+	 */
+	public void saveRawData() {
+		IJ.save( ImageJFunctions.wrap( model.getRawData(), "raw" ).duplicate(), new File( folder, "raw.tif" ).getAbsolutePath() );
+	}
+
+	/**
+	 * Builds a feasible (but not optimal) solution without any solver:
+	 * per frame non-conflicting segments are picked greedily by cost, each
+	 * picked segment continues with its cheapest move to a picked segment in
+	 * the next frame, or appears/disappears otherwise.
+	 *
+	 * @param ttp
+	 *            a fully built tracking problem
+	 * @return the greedy solution
+	 */
+	public static BitSetAssignment greedySolution( final Tr2dTrackingProblem ttp ) {
+		final BitSetAssignment solution = new BitSetAssignment( ttp.getNodeIndex() );
+
+		final List< Set< SegmentNode > > picked = new ArrayList<>();
+		for ( final Tr2dSegmentationProblem tp : ttp.getTimepoints() ) {
+			final Map< SegmentNode, List< ConflictSet > > conflicts = new HashMap<>();
+			for ( final ConflictSet cs : tp.getConflictSets() ) {
+				for ( final SegmentNode node : cs ) {
+					conflicts.computeIfAbsent( node, k -> new ArrayList<>() ).add( cs );
+				}
+			}
+			final List< SegmentNode > segments = new ArrayList<>( tp.getSegments() );
+			segments.sort( Comparator.comparingDouble( SegmentNode::getCost ) );
+
+			final Set< SegmentNode > frame = new HashSet<>();
+			final Set< ConflictSet > used = new HashSet<>();
+			for ( final SegmentNode node : segments ) {
+				final Collection< ConflictSet > cs = conflicts.getOrDefault( node, new ArrayList<>() );
+				if ( cs.stream().noneMatch( used::contains ) ) {
+					used.addAll( cs );
+					frame.add( node );
+					solution.set( node, true );
+				}
+			}
+			picked.add( frame );
+		}
+
+		final Set< SegmentNode > hasPredecessor = new HashSet<>();
+		for ( int t = 0; t < picked.size(); t++ ) {
+			final Set< SegmentNode > next = ( t + 1 < picked.size() ) ? picked.get( t + 1 ) : new HashSet<>();
+			for ( final SegmentNode node : picked.get( t ) ) {
+				if ( !hasPredecessor.contains( node ) ) {
+					for ( final AppearanceHypothesis app : node.getInAssignments().getAppearances() ) {
+						solution.set( app, true );
+						break;
+					}
+				}
+
+				MovementHypothesis best = null;
+				for ( final MovementHypothesis move : node.getOutAssignments().getMoves() ) {
+					if ( next.contains( move.getDest() ) && !hasPredecessor.contains( move.getDest() ) && ( best == null || move.getCost() < best.getCost() ) ) {
+						best = move;
+					}
+				}
+				if ( best != null ) {
+					solution.set( best, true );
+					hasPredecessor.add( best.getDest() );
+				} else {
+					for ( final DisappearanceHypothesis disapp : node.getOutAssignments().getDisappearances() ) {
+						solution.set( disapp, true );
+						break;
+					}
+				}
+			}
+		}
+		return solution;
+	}
+
+	/**
+	 * @param ttp
+	 *            a fully built tracking problem
+	 * @param solution
+	 *            an assignment of all its nodes
+	 * @return <code>true</code> if every active segment has exactly one active
+	 *         in- and out-assignment, inactive segments have none, and at most
+	 *         one segment per conflict set is active.
+	 */
+	public static boolean isFeasible( final Tr2dTrackingProblem ttp, final Assignment< IndicatorNode > solution ) {
+		for ( final Tr2dSegmentationProblem tp : ttp.getTimepoints() ) {
+			for ( final SegmentNode node : tp.getSegments() ) {
+				final int expected = solution.getAssignment( node );
+				if ( countActive( node.getInAssignments().getAllAssignments(), solution ) != expected ) return false;
+				if ( countActive( node.getOutAssignments().getAllAssignments(), solution ) != expected ) return false;
+			}
+			for ( final ConflictSet cs : tp.getConflictSets() ) {
+				if ( countActive( cs, solution ) > 1 ) return false;
+			}
+		}
+		return true;
+	}
+
+	private static int countActive( final Iterable< ? extends IndicatorNode > nodes, final Assignment< IndicatorNode > solution ) {
+		int ret = 0;
+		for ( final IndicatorNode node : nodes ) {
+			ret += solution.getAssignment( node );
+		}
+		return ret;
+	}
+
+	/**
+	 * Closes the model and deletes the temporary project folder.
+	 */
+	public void dispose() {
+		model.close();
+		delete( folder );
+	}
+
+	private static void delete( final File file ) {
+		final File[] content = file.listFiles();
+		if ( content != null ) {
+			for ( final File f : content ) {
+				delete( f );
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,45 @@
+package com.indago.tr2d.costs;
+
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RegressionSumsTest {
+
+	private static final long[][] A = { { 3, 4 }, { 4, 5 }, { 5, 5 }, { 6, 7 }, { 7, 9 }, { 8, 8 } };
+	private static final long[][] B = { { 10, 2 }, { 11, 1 }, { 12, 3 }, { 13, 2 } };
+
+	@Test
+	public void testMatchesSimpleRegression() {
+		final RegressionSums sums = new RegressionSums();
+		final SimpleRegression regression = new SimpleRegression();
+		for ( final long[] p : A ) {
+			sums.add( p[ 0 ], p[ 1 ] );
+			regression.addData( p[ 0 ], p[ 1 ] );
+		}
+		assertEquals( regression.getN(), sums.getN() );
+		assertEquals( regression.getSlope(), sums.getSlope(), 1e-9 );
+		assertEquals( regression.getRSquare(), sums.getRSquare(), 1e-9 );
+	}
+
+	@Test
+	public void testMergeEqualsUnion() {
+		final RegressionSums a = new RegressionSums();
+		final RegressionSums b = new RegressionSums();
+		final SimpleRegression union = new SimpleRegression();
+		for ( final long[] p : A ) {
+			a.add( p[ 0 ], p[ 1 ] );
+			union.addData( p[ 0 ], p[ 1 ] );
+		}
+		for ( final long[] p : B ) {
+			b.add( p[ 0 ], p[ 1 ] );
+			union.addData( p[ 0 ], p[ 1 ] );
+		}
+		final RegressionSums merged = RegressionSums.merge( a, b );
+		assertEquals( union.getN(), merged.getN() );
+		assertEquals( union.getSlope(), merged.getSlope(), 1e-9 );
+		assertEquals( union.getRSquare(), merged.getRSquare(), 1e-9 );
+	}
+
+}
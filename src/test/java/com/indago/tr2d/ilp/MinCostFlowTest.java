@@ -0,0 +1,90 @@
+package com.indago.tr2d.ilp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MinCostFlowTest {
+
+	@Test
+	public void testTakesOnlyNegativePaths() {
+		// source 0, sink 3: 0->1->3 costs -1, 0->2->3 costs +1
+		final MinCostFlow flow = new MinCostFlow( 4 );
+		final int a = flow.addArc( 0, 1, 1 );
+		final int b = flow.addArc( 1, 3, -2 );
+		final int c = flow.addArc( 0, 2, 0 );
+		final int d = flow.addArc( 2, 3, 1 );
+		assertEquals( 1, flow.solve() );
+		assertTrue( flow.hasFlow( a ) );
+		assertTrue( flow.hasFlow( b ) );
+		assertFalse( flow.hasFlow( c ) );
+		assertFalse( flow.hasFlow( d ) );
+	}
+
+	@Test
+	public void testReroutesAlongResidualArcs() {
+		// the cheapest single path 0->1->2->3 blocks two paths of lower total cost
+		final MinCostFlow flow = new MinCostFlow( 4 );
+		flow.addArc( 0, 1, -5 );
+		flow.addArc( 1, 2, -5 );
+		flow.addArc( 2, 3, -5 );
+		flow.addArc( 0, 2, -4 );
+		flow.addArc( 1, 3, -4 );
+		assertEquals( 2, flow.solve() );
+		assertEquals( -18, costOf( flow, new double[] { -5, -5, -5, -4, -4 } ), 1e-9 );
+	}
+
+	@Test
+	public void testMatchesBruteForce() {
+		final Random random = new Random( 42 );
+		for ( int trial = 0; trial < 200; trial++ ) {
+			final int numNodes = 3 + random.nextInt( 4 );
+			final int numArcs = 1 + random.nextInt( 12 );
+			final int[] from = new int[ numArcs ];
+			final int[] to = new int[ numArcs ];
+			final double[] costs = new double[ numArcs ];
+			final MinCostFlow flow = new MinCostFlow( numNodes );
+			for ( int e = 0; e < numArcs; e++ ) {
+				from[ e ] = random.nextInt( numNodes - 1 );
+				to[ e ] = from[ e ] + 1 + random.nextInt( numNodes - 1 - from[ e ] );
+				costs[ e ] = random.nextInt( 11 ) - 6;
+				flow.addArc( from[ e ], to[ e ], costs[ e ] );
+			}
+			flow.solve();
+			assertEquals( bruteForce( numNodes, from, to, costs ), costOf( flow, costs ), 1e-9 );
+		}
+	}
+
+	private static double costOf( final MinCostFlow flow, final double[] costs ) {
+		double ret = 0;
+		for ( int e = 0; e < costs.length; e++ ) {
+			if ( flow.hasFlow( e ) ) ret += costs[ e ];
+		}
+		return ret;
+	}
+
+	private static double bruteForce( final int numNodes, final int[] from, final int[] to, final double[] costs ) {
+		double best = 0;
+		for ( int subset = 0; subset < ( 1 << costs.length ); subset++ ) {
+			final int[] balance = new int[ numNodes ];
+			double cost = 0;
+			for ( int e = 0; e < costs.length; e++ ) {
+				if ( ( subset & ( 1 << e ) ) != 0 ) {
+					balance[ from[ e ] ]--;
+					balance[ to[ e ] ]++;
+					cost += costs[ e ];
+				}
+			}
+			boolean feasible = true;
+			for ( int v = 1; v < numNodes - 1; v++ ) {
+				feasible &= balance[ v ] == 0;
+			}
+			if ( feasible && cost < best ) best = cost;
+		}
+		return best;
+	}
+}
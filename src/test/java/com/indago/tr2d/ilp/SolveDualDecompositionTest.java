@@ -0,0 +1,65 @@
+package com.indago.tr2d.ilp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.CompactTrackingProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+
+public class SolveDualDecompositionTest {
+
+	private static final double EPSILON = 1e-6;
+
+	private static Tr2dBenchmarkData data;
+	private static Tr2dTrackingProblem ttp;
+	private static CompactTrackingProblem problem;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, 5, 6, 42 );
+		data.getModel().getTrackingModel().buildTrackingProblem();
+		ttp = data.getModel().getTrackingModel().getTrackingProblem();
+		problem = new CompactTrackingProblem( ttp );
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		data.dispose();
+	}
+
+	/**
+	 * The lower bound must not exceed any feasible energy, in particular
+	 * neither the own solution nor the one of <code>SolveMinCostFlow</code>.
+	 */
+	@Test
+	public void testBoundsMinCostFlow() {
+		final SolveDualDecomposition solver = new SolveDualDecomposition();
+		final BitSetAssignment solution = solver.solve( problem, ttp.getNodeIndex(), ForkJoinPool.commonPool() );
+		assertTrue( Tr2dBenchmarkData.isFeasible( ttp, solution ) );
+		assertEquals( problem.getCost( solution ), solver.getLatestEnergy(), EPSILON );
+
+		final SolveMinCostFlow flow = new SolveMinCostFlow();
+		final BitSetAssignment flowSolution = flow.solve( problem, new TrackingEdits( problem ), null, ttp.getNodeIndex() );
+		assertTrue( Tr2dBenchmarkData.isFeasible( ttp, flowSolution ) );
+
+		assertTrue( solver.getLatestLowerBound() <= solver.getLatestEnergy() + EPSILON );
+		assertTrue( solver.getLatestLowerBound() <= flow.getLatestEnergy() + EPSILON );
+		assertTrue( solver.getLatestGap() >= 0 );
+	}
+
+	@Test
+	public void testBudgetFromFactory() {
+		final TrackingSolver solver = TrackingSolvers.create( TrackingSolvers.DUAL, 0, 0.5, 1 );
+		assertTrue( Tr2dBenchmarkData.isFeasible( ttp, solver.solve( ttp, ForkJoinPool.commonPool() ) ) );
+		assertTrue( solver.getLatestEnergy() >= ( ( SolveDualDecomposition ) solver ).getLatestLowerBound() - EPSILON );
+	}
+}
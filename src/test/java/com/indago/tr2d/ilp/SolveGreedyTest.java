@@ -0,0 +1,69 @@
+package com.indago.tr2d.ilp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.pg.CompactTrackingProblem;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+
+public class SolveGreedyTest {
+
+	private static final int NUM_FRAMES = 5;
+
+	@Test
+	public void testSolutionIsFeasible() throws IOException {
+		final Tr2dBenchmarkData data = new Tr2dBenchmarkData( 96, 96, NUM_FRAMES, 6, 42 );
+		try {
+			final Tr2dTrackingProblem ttp = build( data );
+			final SolveGreedy solver = new SolveGreedy();
+			final Assignment< IndicatorNode > solution = solver.solve( ttp, ForkJoinPool.commonPool() );
+			assertTrue( Tr2dBenchmarkData.isFeasible( ttp, solution ) );
+			assertEquals( new CompactTrackingProblem( ttp ).getCost( solution ), solver.getLatestEnergy(), 1e-9 );
+			assertTrue( solver.getLatestEnergy() <= 0 );
+		} finally {
+			data.dispose();
+		}
+	}
+
+	@Test
+	public void testAvoidedSegmentIsNotTaken() throws IOException {
+		final Tr2dBenchmarkData data = new Tr2dBenchmarkData( 96, 96, NUM_FRAMES, 6, 42 );
+		try {
+			final Tr2dTrackingProblem ttp = build( data );
+			final Assignment< IndicatorNode > unedited = new SolveGreedy().solve( ttp, ForkJoinPool.commonPool() );
+
+			final Tr2dSegmentationProblem frame = ttp.getTimepoints().get( NUM_FRAMES / 2 );
+			SegmentNode avoided = null;
+			for ( final SegmentNode segment : frame.getSegments() ) {
+				if ( unedited.getAssignment( segment ) == 1 ) {
+					avoided = segment;
+					break;
+				}
+			}
+			assertNotNull( avoided );
+			frame.avoid( avoided );
+
+			final Assignment< IndicatorNode > solution = new SolveGreedy().solve( ttp, ForkJoinPool.commonPool() );
+			assertTrue( Tr2dBenchmarkData.isFeasible( ttp, solution ) );
+			assertEquals( 0, solution.getAssignment( avoided ) );
+		} finally {
+			data.dispose();
+		}
+	}
+
+	private static Tr2dTrackingProblem build( final Tr2dBenchmarkData data ) {
+		data.getModel().getTrackingModel().buildTrackingProblem();
+		return data.getModel().getTrackingModel().getTrackingProblem();
+	}
+}
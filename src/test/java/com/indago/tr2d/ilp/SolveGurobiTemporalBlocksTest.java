@@ -0,0 +1,178 @@
+package com.indago.tr2d.ilp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.pg.BitSetAssignment;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+
+import gurobi.GRBEnv;
+
+public class SolveGurobiTemporalBlocksTest {
+
+	private static final int NUM_FRAMES = 10;
+
+	private static Tr2dBenchmarkData data;
+	private static Tr2dTrackingProblem ttp;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, NUM_FRAMES, 6, 42 );
+		data.getModel().getTrackingModel().buildTrackingProblem();
+		ttp = data.getModel().getTrackingModel().getTrackingProblem();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		data.dispose();
+	}
+
+	@Test
+	public void testBlockLayout() {
+		final List< int[] > layout = SolveGurobiTemporalBlocks.getBlocks( NUM_FRAMES, 4, 2 );
+		assertEquals( 4, layout.size() );
+		assertArrayEquals( new int[] { 0, 3 }, layout.get( 0 ) );
+		assertArrayEquals( new int[] { 2, 5 }, layout.get( 1 ) );
+		assertArrayEquals( new int[] { 4, 7 }, layout.get( 2 ) );
+		assertArrayEquals( new int[] { 6, 9 }, layout.get( 3 ) );
+
+		final List< int[] > single = SolveGurobiTemporalBlocks.getBlocks( 3, 4, 2 );
+		assertEquals( 1, single.size() );
+		assertArrayEquals( new int[] { 0, 2 }, single.get( 0 ) );
+	}
+
+	/**
+	 * Blocks alternate between the greedy solution and the empty one, seams
+	 * switch between the two. The stitched solution must be feasible across
+	 * all block boundaries and select in each frame what the block owning it
+	 * selected.
+	 */
+	@Test
+	public void testStitchingIsFeasibleAtBlockBoundaries() {
+		final Set< IndicatorNode > greedy = active( Tr2dBenchmarkData.greedySolution( ttp ) );
+		final Set< IndicatorNode > empty = new HashSet<>();
+		final List< int[] > layout = SolveGurobiTemporalBlocks.getBlocks( NUM_FRAMES, 4, 2 );
+
+		final List< Set< IndicatorNode > > blocks = new ArrayList<>();
+		for ( int k = 0; k < layout.size(); k++ ) {
+			blocks.add( ( k % 2 == 0 ) ? greedy : empty );
+		}
+		final List< Set< IndicatorNode > > seams = new ArrayList<>();
+		for ( int k = 0; k < layout.size() - 1; k++ ) {
+			seams.add( seam( layout.get( k + 1 )[ 0 ], layout.get( k )[ 1 ], k % 2 == 0, greedy ) );
+		}
+
+		final BitSetAssignment stitched = SolveGurobiTemporalBlocks.stitch( ttp, layout, blocks, seams );
+		assertTrue( Tr2dBenchmarkData.isFeasible( ttp, stitched ) );
+
+		// frames 0-2 from block 0, 3-4 from block 1, 5-6 from block 2, 7-9 from block 3
+		final boolean[] greedyFrames = { true, true, true, false, false, true, true, false, false, false };
+		int numActive = 0;
+		for ( int t = 0; t < NUM_FRAMES; t++ ) {
+			for ( final SegmentNode segment : ttp.getTimepoints().get( t ).getSegments() ) {
+				final boolean expected = greedyFrames[ t ] && greedy.contains( segment );
+				assertEquals( expected ? 1 : 0, stitched.getAssignment( segment ) );
+				if ( expected ) numActive++;
+			}
+		}
+		assertTrue( numActive > 0 );
+	}
+
+	@Test
+	public void testStitchingKeepsConsistentBlocks() {
+		final BitSetAssignment greedy = Tr2dBenchmarkData.greedySolution( ttp );
+		final Set< IndicatorNode > active = active( greedy );
+		final List< int[] > layout = SolveGurobiTemporalBlocks.getBlocks( NUM_FRAMES, 5, 2 );
+
+		final List< Set< IndicatorNode > > blocks = new ArrayList<>();
+		final List< Set< IndicatorNode > > seams = new ArrayList<>();
+		for ( int k = 0; k < layout.size(); k++ ) {
+			blocks.add( active );
+			if ( k > 0 ) seams.add( restrict( active, layout.get( k )[ 0 ], layout.get( k - 1 )[ 1 ] ) );
+		}
+
+		assertEquals( active, active( SolveGurobiTemporalBlocks.stitch( ttp, layout, blocks, seams ) ) );
+	}
+
+	@Test
+	public void testSolveIsFeasible() throws Exception {
+		Assume.assumeTrue( isGurobiAvailable() );
+		final SolveGurobiTemporalBlocks solver = new SolveGurobiTemporalBlocks( ttp, 4, 2 );
+		final Assignment< IndicatorNode > solution = solver.solve( ForkJoinPool.commonPool() );
+		assertTrue( Tr2dBenchmarkData.isFeasible( ttp, solution ) );
+	}
+
+	/**
+	 * @return the seam from frame <code>first</code> to <code>last</code>
+	 *         between a block solved like <code>greedy</code> and an empty one
+	 *         (or vice versa): all segments of the greedy side's boundary frame
+	 *         disappear (or appear), all other frames are empty.
+	 */
+	private static Set< IndicatorNode > seam( final int first, final int last, final boolean greedyLeft, final Set< IndicatorNode > greedy ) {
+		final Set< IndicatorNode > ret = new HashSet<>();
+		final Tr2dSegmentationProblem boundary = ttp.getTimepoints().get( greedyLeft ? first : last );
+		for ( final SegmentNode segment : boundary.getSegments() ) {
+			if ( !greedy.contains( segment ) ) continue;
+			ret.add( segment );
+			if ( greedyLeft ) {
+				ret.add( segment.getOutAssignments().getDisappearances().iterator().next() );
+			} else {
+				ret.add( segment.getInAssignments().getAppearances().iterator().next() );
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the nodes of the given solution a window from frame
+	 *         <code>first</code> to <code>last</code> would select.
+	 */
+	private static Set< IndicatorNode > restrict( final Set< IndicatorNode > solution, final int first, final int last ) {
+		final Set< IndicatorNode > ret = new HashSet<>();
+		for ( int t = first; t <= last; t++ ) {
+			for ( final SegmentNode segment : ttp.getTimepoints().get( t ).getSegments() ) {
+				if ( solution.contains( segment ) ) ret.add( segment );
+				if ( t == last ) continue;
+				for ( final IndicatorNode node : segment.getOutAssignments().getAllAssignments() ) {
+					if ( solution.contains( node ) ) ret.add( node );
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static Set< IndicatorNode > active( final BitSetAssignment assignment ) {
+		final Set< IndicatorNode > ret = new HashSet<>();
+		for ( int i = 0; i < ttp.getNodeIndex().size(); i++ ) {
+			if ( assignment.get( i ) ) ret.add( ttp.getNodeIndex().get( i ) );
+		}
+		return ret;
+	}
+
+	private static boolean isGurobiAvailable() {
+		try {
+			new GRBEnv().dispose();
+			return true;
+		} catch ( final Throwable t ) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.indago.tr2d.ilp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.indago.fg.Assignment;
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AssignmentNode;
+import com.indago.pg.assignments.MovementHypothesis;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.pg.CompactTrackingProblem;
+import com.indago.tr2d.pg.Tr2dSegmentationProblem;
+import com.indago.tr2d.pg.Tr2dTrackingProblem;
+
+/**
+ * Solves small synthetic tracking problems without Gurobi.
+ */
+public class SolveMinCostFlowTest {
+
+	private static final int NUM_FRAMES = 5;
+
+	@Test
+	public void testSolutionIsFeasibleAndBeatsGreedy() throws IOException {
+		final Tr2dBenchmarkData data = new Tr2dBenchmarkData( 96, 96, NUM_FRAMES, 6, 42 );
+		try {
+			final Tr2dTrackingProblem ttp = build( data );
+			final SolveMinCostFlow solver = new SolveMinCostFlow();
+			final Assignment< IndicatorNode > solution = solver.solve( ttp, ForkJoinPool.commonPool() );
+			assertTrue( Tr2dBenchmarkData.isFeasible( ttp, solution ) );
+
+			final CompactTrackingProblem problem = new CompactTrackingProblem( ttp );
+			assertEquals( problem.getCost( solution ), solver.getLatestEnergy(), 1e-9 );
+			assertTrue( solver.getLatestEnergy() <= problem.getCost( Tr2dBenchmarkData.greedySolution( ttp ) ) + 1e-9 );
+		} finally {
+			data.dispose();
+		}
+	}
+
+	/**
+	 * A segment forced to move into the future has no allowed disappearance;
+	 * repairing conflicts around it must not switch it off.
+	 */
+	@Test
+	public void testForcedMoveFromStaysActive() throws IOException {
+		final Tr2dBenchmarkData data = new Tr2dBenchmarkData( 96, 96, NUM_FRAMES, 6, 42 );
+		try {
+			final Tr2dTrackingProblem ttp = build( data );
+			final Assignment< IndicatorNode > unforced = new SolveMinCostFlow().solve( ttp, ForkJoinPool.commonPool() );
+
+			final Tr2dSegmentationProblem frame = ttp.getTimepoints().get( NUM_FRAMES / 2 );
+			SegmentNode forced = null;
+			for ( final SegmentNode segment : frame.getSegments() ) {
+				if ( unforced.getAssignment( segment ) == 0 && segment.getOutAssignments().getMoves().iterator().hasNext() ) {
+					forced = segment;
+					break;
+				}
+			}
+			assertNotNull( forced );
+			frame.forceMoveFrom( forced );
+
+			final Assignment< IndicatorNode > solution = new SolveMinCostFlow().solve( ttp, ForkJoinPool.commonPool() );
+			assertTrue( Tr2dBenchmarkData.isFeasible( ttp, solution ) );
+			assertEquals( 1, solution.getAssignment( forced ) );
+			boolean moves = false;
+			for ( final AssignmentNode out : forced.getOutAssignments().getAllAssignments() ) {
+				if ( solution.getAssignment( out ) == 1 ) moves = out instanceof MovementHypothesis;
+			}
+			assertTrue( moves );
+		} finally {
+			data.dispose();
+		}
+	}
+
+	private static Tr2dTrackingProblem build( final Tr2dBenchmarkData data ) {
+		data.getModel().getTrackingModel().buildTrackingProblem();
+		return data.getModel().getTrackingModel().getTrackingProblem();
+	}
+}
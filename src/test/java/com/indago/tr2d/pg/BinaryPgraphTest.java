@@ -0,0 +1,108 @@
+package com.indago.tr2d.pg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.pg.Tr2dTrackingProblem.Tr2dTrackingProblemSerializer;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+
+/**
+ * Corrupted binary .pgraph files must be rejected, not half loaded.
+ */
+public class BinaryPgraphTest {
+
+	private static Tr2dBenchmarkData data;
+	private static Tr2dTrackingModel trackingModel;
+	private static Tr2dTrackingProblem ttp;
+	private static byte[] bytes;
+	private static File file;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, 4, 6, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		trackingModel.buildTrackingProblem();
+		ttp = trackingModel.getTrackingProblem();
+		file = new File( data.getFolder(), "test.pgraph.bin" );
+		ttp.getSerializer().saveBinaryPgraph( ttp, file );
+		bytes = Files.readAllBytes( file.toPath() );
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		data.dispose();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final Tr2dTrackingProblem loaded = load( bytes );
+		assertTrue( loaded != null );
+		assertEquals( ttp.getNodeIndex().size(), loaded.getNodeIndex().size() );
+	}
+
+	@Test
+	public void testNegativeCount() throws IOException {
+		final int numFrames = ByteBuffer.wrap( bytes ).getInt( 8 );
+		final byte[] corrupted = bytes.clone();
+		// number of segments
+		ByteBuffer.wrap( corrupted ).putInt( 12 + 4 * numFrames, -1 );
+		assertFalse( loads( corrupted ) );
+	}
+
+	@Test
+	public void testNegativeSegmentsPerFrame() throws IOException {
+		final byte[] corrupted = bytes.clone();
+		ByteBuffer.wrap( corrupted ).putInt( 12, -1 );
+		assertFalse( loads( corrupted ) );
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		assertFalse( loads( Arrays.copyOf( bytes, bytes.length - 4 ) ) );
+		assertFalse( loads( Arrays.copyOf( bytes, bytes.length / 2 ) ) );
+	}
+
+	@Test
+	public void testConflictSetMismatch() throws IOException {
+		final ByteBuffer buffer = ByteBuffer.wrap( bytes.clone() );
+		final int numSegments = ttp.getNodeIndex().getNumSegments();
+		// last member of the last conflict set
+		final int member = buffer.getInt( bytes.length - 4 );
+		buffer.putInt( bytes.length - 4, ( member + 1 ) % numSegments );
+		assertFalse( loads( buffer.array() ) );
+	}
+
+	private static boolean loads( final byte[] content ) throws IOException {
+		return load( content ) != null;
+	}
+
+	/**
+	 * @return the loaded problem, or <code>null</code> if loading failed (in
+	 *         which case the problem must have stayed empty).
+	 */
+	private static Tr2dTrackingProblem load( final byte[] content ) throws IOException {
+		Files.write( file.toPath(), content );
+		final Tr2dTrackingProblem loaded = new Tr2dTrackingProblem(
+				trackingModel,
+				data.getModel().getFlowModel(),
+				trackingModel.getAppearanceCosts(),
+				trackingModel.getMoveCosts(),
+				trackingModel.getDivisionCosts(),
+				trackingModel.getDisappearanceCosts() );
+		if ( Tr2dTrackingProblemSerializer.loadBinaryPGraph( loaded, file ) ) return loaded;
+		assertTrue( loaded.getTimepoints().isEmpty() );
+		return null;
+	}
+}
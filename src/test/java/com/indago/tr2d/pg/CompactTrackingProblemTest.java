@@ -0,0 +1,167 @@
+package com.indago.tr2d.pg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.indago.pg.IndicatorNode;
+import com.indago.pg.assignments.AppearanceHypothesis;
+import com.indago.pg.assignments.AssignmentNode;
+import com.indago.pg.assignments.DisappearanceHypothesis;
+import com.indago.pg.assignments.DivisionHypothesis;
+import com.indago.pg.assignments.MovementHypothesis;
+import com.indago.pg.segments.ConflictSet;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+
+public class CompactTrackingProblemTest {
+
+	private static Tr2dBenchmarkData data;
+	private static Tr2dTrackingProblem ttp;
+	private static IndicatorNodeIndex index;
+	private static CompactTrackingProblem problem;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, 4, 8, 42 );
+		data.getModel().getTrackingModel().buildTrackingProblem();
+		ttp = data.getModel().getTrackingModel().getTrackingProblem();
+		index = ttp.getNodeIndex();
+		problem = new CompactTrackingProblem( ttp );
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		data.dispose();
+	}
+
+	@Test
+	public void testIdsAndCostsMatchIndex() {
+		assertEquals( index.size(), problem.getNumNodes() );
+		assertEquals( index.getNumSegments(), problem.getNumSegments() );
+		for ( int i = 0; i < index.size(); i++ ) {
+			assertEquals( index.get( i ).getCost(), problem.getCost( i ), 0 );
+			assertEquals( index.get( i ) instanceof SegmentNode, problem.isSegment( i ) );
+		}
+	}
+
+	@Test
+	public void testSegments() {
+		for ( int f = 0; f < problem.getNumFrames(); f++ ) {
+			final Tr2dSegmentationProblem tp = ttp.getTimepoints().get( f );
+			assertEquals( tp.getTime(), problem.getFrameTime( f ) );
+			int s = problem.getFrameStart( f );
+			for ( final SegmentNode node : tp.getSegments() ) {
+				assertEquals( s, index.indexOf( node ) );
+				assertSame( node.getSegment(), problem.getSegment( s ) );
+				assertEquals( f, problem.getFrame( s ) );
+				assertEquals( ids( node.getInAssignments().getAllAssignments() ), inAssignments( s ) );
+				assertEquals( ids( node.getOutAssignments().getAllAssignments() ), outAssignments( s ) );
+				s++;
+			}
+			assertEquals( problem.getFrameStart( f + 1 ), s );
+		}
+	}
+
+	@Test
+	public void testAssignments() {
+		int numMoves = 0;
+		for ( int i = problem.getNumSegments(); i < problem.getNumNodes(); i++ ) {
+			final IndicatorNode node = index.get( i );
+			if ( node instanceof AppearanceHypothesis ) {
+				assertEquals( CompactTrackingProblem.APPEARANCE, problem.getType( i ) );
+				assertEquals( -1, problem.getSrc( i ) );
+				assertEquals( index.indexOf( ( ( AppearanceHypothesis ) node ).getDest() ), problem.getDest( i ) );
+			} else if ( node instanceof DisappearanceHypothesis ) {
+				assertEquals( CompactTrackingProblem.DISAPPEARANCE, problem.getType( i ) );
+				assertEquals( index.indexOf( ( ( DisappearanceHypothesis ) node ).getSrc() ), problem.getSrc( i ) );
+				assertEquals( -1, problem.getDest( i ) );
+			} else if ( node instanceof MovementHypothesis ) {
+				final MovementHypothesis move = ( MovementHypothesis ) node;
+				assertEquals( CompactTrackingProblem.MOVE, problem.getType( i ) );
+				assertEquals( index.indexOf( move.getSrc() ), problem.getSrc( i ) );
+				assertEquals( index.indexOf( move.getDest() ), problem.getDest( i ) );
+				numMoves++;
+			} else {
+				final DivisionHypothesis div = ( DivisionHypothesis ) node;
+				assertEquals( CompactTrackingProblem.DIVISION, problem.getType( i ) );
+				assertEquals( index.indexOf( div.getSrc() ), problem.getSrc( i ) );
+				assertEquals( index.indexOf( div.getDest1() ), problem.getDest( i ) );
+				assertEquals( index.indexOf( div.getDest2() ), problem.getDest2( i ) );
+			}
+		}
+		assertTrue( numMoves > 0 );
+	}
+
+	@Test
+	public void testConflictSets() {
+		int k = 0;
+		for ( int f = 0; f < problem.getNumFrames(); f++ ) {
+			assertEquals( k, problem.getConflictSetStart( f ) );
+			for ( final ConflictSet cs : ttp.getTimepoints().get( f ).getConflictSets() ) {
+				final Set< Integer > members = new HashSet<>();
+				for ( int j = 0; j < problem.getConflictSetSize( k ); j++ ) {
+					final int s = problem.getConflictSetMember( k, j );
+					members.add( s );
+					assertTrue( isConflictSetOf( s, k ) );
+				}
+				final Set< Integer > expected = new HashSet<>();
+				for ( final SegmentNode node : cs ) {
+					expected.add( index.indexOf( node ) );
+				}
+				assertEquals( expected, members );
+				k++;
+			}
+		}
+		assertEquals( k, problem.getNumConflictSets() );
+	}
+
+	@Test
+	public void testSolutionCost() {
+		final BitSetAssignment solution = Tr2dBenchmarkData.greedySolution( ttp );
+		double expected = 0;
+		for ( int i = 0; i < index.size(); i++ ) {
+			if ( solution.get( i ) ) expected += index.get( i ).getCost();
+		}
+		assertEquals( expected, problem.getCost( solution ), 1e-9 );
+	}
+
+	private static boolean isConflictSetOf( final int segment, final int conflictSet ) {
+		for ( int j = 0; j < problem.getNumConflictSetsOf( segment ); j++ ) {
+			if ( problem.getConflictSetOf( segment, j ) == conflictSet ) return true;
+		}
+		return false;
+	}
+
+	private static Set< Integer > ids( final Iterable< ? extends AssignmentNode > assignments ) {
+		final Set< Integer > ret = new HashSet<>();
+		for ( final AssignmentNode assignment : assignments ) {
+			ret.add( index.indexOf( assignment ) );
+		}
+		return ret;
+	}
+
+	private static Set< Integer > inAssignments( final int segment ) {
+		final Set< Integer > ret = new HashSet<>();
+		for ( int k = 0; k < problem.getNumInAssignments( segment ); k++ ) {
+			ret.add( problem.getInAssignment( segment, k ) );
+		}
+		return ret;
+	}
+
+	private static Set< Integer > outAssignments( final int segment ) {
+		final Set< Integer > ret = new HashSet<>();
+		for ( int k = 0; k < problem.getNumOutAssignments( segment ); k++ ) {
+			ret.add( problem.getOutAssignment( segment, k ) );
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,138 @@
+package com.indago.tr2d.pg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.data.LabelingTimeLapse;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+
+/**
+ * Taking the hypotheses of unchanged frames over from a previously built
+ * problem must give the same problem graph (hypotheses and costs) as
+ * rebuilding it from scratch.
+ */
+public class HypothesisReuseTest {
+
+	private static final int NUM_FRAMES = 6;
+
+	private static Tr2dBenchmarkData data;
+	private static Tr2dTrackingModel trackingModel;
+	private static ForkJoinPool pool;
+	private static Tr2dTrackingProblem previous;
+	private static byte[] expectedBinary;
+	private static byte[] expectedText;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, NUM_FRAMES, 8, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		trackingModel.processSegmentationInputs( false );
+		pool = new ForkJoinPool( 4 );
+
+		// the previous problem, including the dummy disappearances of its last frame
+		previous = trackingModel.createTrackingProblem();
+		previous.addSegmentationProblems( createFrames(), pool );
+		previous.addDummyDisappearance();
+
+		final Tr2dTrackingProblem scratch = trackingModel.createTrackingProblem();
+		scratch.addSegmentationProblems( createFrames(), pool );
+		scratch.addDummyDisappearance();
+		expectedBinary = saveBinary( scratch );
+		expectedText = saveText( scratch );
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		pool.shutdown();
+		data.dispose();
+	}
+
+	@Test
+	public void testAllReused() throws IOException {
+		assertSameAsRebuild( new boolean[] { true, true, true, true, true, true } );
+	}
+
+	/**
+	 * The reused last frame had dummy disappearances in the previous problem,
+	 * they must not end up next to the new ones.
+	 */
+	@Test
+	public void testLastFramesReused() throws IOException {
+		assertSameAsRebuild( new boolean[] { false, false, false, true, true, true } );
+	}
+
+	/**
+	 * The rebuilt last frame connects to a reused one.
+	 */
+	@Test
+	public void testLastFrameRebuilt() throws IOException {
+		assertSameAsRebuild( new boolean[] { true, true, true, true, true, false } );
+	}
+
+	@Test
+	public void testAlternating() throws IOException {
+		assertSameAsRebuild( new boolean[] { true, false, true, false, true, true } );
+	}
+
+	/**
+	 * Rebuilding through the model reuses all hypotheses when nothing
+	 * changed in between.
+	 */
+	@Test
+	public void testModelRebuild() throws IOException {
+		trackingModel.buildTrackingProblem();
+		final Tr2dTrackingProblem first = trackingModel.getTrackingProblem();
+		trackingModel.buildTrackingProblem();
+		final Tr2dTrackingProblem second = trackingModel.getTrackingProblem();
+		assertNotSame( first, second );
+		assertArrayEquals( expectedBinary, saveBinary( second ) );
+		assertArrayEquals( expectedText, saveText( second ) );
+	}
+
+	private static void assertSameAsRebuild( final boolean[] reusable ) throws IOException {
+		assertEquals( NUM_FRAMES, reusable.length );
+		final Tr2dTrackingProblem reused = trackingModel.createTrackingProblem();
+		reused.addSegmentationProblems( createFrames(), pool, previous, reusable );
+		reused.addDummyDisappearance();
+		assertArrayEquals( expectedBinary, saveBinary( reused ) );
+		assertArrayEquals( expectedText, saveText( reused ) );
+	}
+
+	private static byte[] saveBinary( final Tr2dTrackingProblem ttp ) throws IOException {
+		final File file = new File( data.getFolder(), "test.pgraph.bin" );
+		ttp.getSerializer().saveBinaryPgraph( ttp, file );
+		return Files.readAllBytes( file.toPath() );
+	}
+
+	private static byte[] saveText( final Tr2dTrackingProblem ttp ) throws IOException {
+		final File file = new File( data.getFolder(), "test.pgraph" );
+		ttp.getSerializer().savePgraph( ttp, file );
+		return Files.readAllBytes( file.toPath() );
+	}
+
+	private static List< Tr2dSegmentationProblem > createFrames() {
+		final LabelingTimeLapse labelingFrames = trackingModel.getLabelingFrames();
+		final List< Tr2dSegmentationProblem > frames = new ArrayList<>();
+		for ( int frameId = 0; frameId < labelingFrames.getNumFrames(); frameId++ ) {
+			frames.add( new Tr2dSegmentationProblem(
+					frameId,
+					labelingFrames.getLabelingSegmentsForFrame( frameId ),
+					trackingModel.getSegmentCosts(),
+					labelingFrames.getConflictGraph( frameId ) ) );
+		}
+		return frames;
+	}
+}
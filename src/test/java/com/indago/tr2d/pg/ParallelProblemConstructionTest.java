@@ -0,0 +1,127 @@
+package com.indago.tr2d.pg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.data.LabelingTimeLapse;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+
+/**
+ * Adding all frames at once (hypotheses computed in parallel) must build the
+ * same problem graph as adding them one by one.
+ */
+public class ParallelProblemConstructionTest {
+
+	private static final int NUM_FRAMES = 6;
+
+	private static Tr2dBenchmarkData data;
+	private static Tr2dTrackingModel trackingModel;
+	private static ForkJoinPool pool;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, NUM_FRAMES, 8, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		trackingModel.processSegmentationInputs( false );
+		pool = new ForkJoinPool( 4 );
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		pool.shutdown();
+		data.dispose();
+	}
+
+	@Test
+	public void testSameAsSequential() throws IOException {
+		final Tr2dTrackingProblem sequential = createProblem();
+		for ( final Tr2dSegmentationProblem frame : createFrames() ) {
+			sequential.addSegmentationProblem( frame );
+		}
+		sequential.addDummyDisappearance();
+
+		final Tr2dTrackingProblem parallel = createProblem();
+		parallel.addSegmentationProblems( createFrames(), pool );
+		parallel.addDummyDisappearance();
+
+		assertSameGraph( sequential, parallel );
+	}
+
+	/**
+	 * Adding frames to a problem whose node index was already built must not
+	 * leave the outdated index behind.
+	 */
+	@Test
+	public void testAppendToProblemInUse() throws IOException {
+		final Tr2dTrackingProblem sequential = createProblem();
+		for ( final Tr2dSegmentationProblem frame : createFrames() ) {
+			sequential.addSegmentationProblem( frame );
+		}
+		sequential.addDummyDisappearance();
+
+		final List< Tr2dSegmentationProblem > frames = createFrames();
+		final Tr2dTrackingProblem parallel = createProblem();
+		parallel.addSegmentationProblems( frames.subList( 0, NUM_FRAMES / 2 ), pool );
+		final int numSegmentsBefore = parallel.getNodeIndex().getNumSegments();
+		parallel.addSegmentationProblems( frames.subList( NUM_FRAMES / 2, NUM_FRAMES ), pool );
+		parallel.addDummyDisappearance();
+
+		assertEquals( sequential.getNodeIndex().getNumSegments(), parallel.getNodeIndex().getNumSegments() );
+		assertTrue( numSegmentsBefore < parallel.getNodeIndex().getNumSegments() );
+		assertSameGraph( sequential, parallel );
+	}
+
+	private static void assertSameGraph( final Tr2dTrackingProblem expected, final Tr2dTrackingProblem actual ) throws IOException {
+		assertEquals( expected.getNodeIndex().size(), actual.getNodeIndex().size() );
+		assertArrayEquals( saveBinary( expected ), saveBinary( actual ) );
+		assertArrayEquals( saveText( expected ), saveText( actual ) );
+	}
+
+	private static byte[] saveBinary( final Tr2dTrackingProblem ttp ) throws IOException {
+		final File file = new File( data.getFolder(), "test.pgraph.bin" );
+		ttp.getSerializer().saveBinaryPgraph( ttp, file );
+		return Files.readAllBytes( file.toPath() );
+	}
+
+	private static byte[] saveText( final Tr2dTrackingProblem ttp ) throws IOException {
+		final File file = new File( data.getFolder(), "test.pgraph" );
+		ttp.getSerializer().savePgraph( ttp, file );
+		return Files.readAllBytes( file.toPath() );
+	}
+
+	private static List< Tr2dSegmentationProblem > createFrames() {
+		final LabelingTimeLapse labelingFrames = trackingModel.getLabelingFrames();
+		final List< Tr2dSegmentationProblem > frames = new ArrayList<>();
+		for ( int frameId = 0; frameId < labelingFrames.getNumFrames(); frameId++ ) {
+			frames.add( new Tr2dSegmentationProblem(
+					frameId,
+					labelingFrames.getLabelingSegmentsForFrame( frameId ),
+					trackingModel.getSegmentCosts(),
+					labelingFrames.getConflictGraph( frameId ) ) );
+		}
+		return frames;
+	}
+
+	private static Tr2dTrackingProblem createProblem() {
+		return new Tr2dTrackingProblem(
+				trackingModel,
+				trackingModel.getTr2dModel().getFlowModel(),
+				trackingModel.getAppearanceCosts(),
+				trackingModel.getMoveCosts(),
+				trackingModel.getDivisionCosts(),
+				trackingModel.getDisappearanceCosts() );
+	}
+}
@@ -0,0 +1,144 @@
+package com.indago.tr2d.pg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.indago.costs.CostFactory;
+import com.indago.costs.CostParams;
+import com.indago.data.segmentation.LabelingSegment;
+import com.indago.pg.assignments.MovementHypothesis;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.costs.DistanceCostLowerBound;
+import com.indago.tr2d.data.LabelingTimeLapse;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+
+import net.imglib2.util.Pair;
+
+/**
+ * Move enumeration that stops at the cost lower bound (see
+ * <code>DistanceCostLowerBound</code>) must keep exactly the moves a full
+ * enumeration of all candidates keeps.
+ */
+public class PrunedMoveEnumerationTest {
+
+	private static Tr2dBenchmarkData data;
+	private static Tr2dTrackingModel trackingModel;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, 4, 8, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		trackingModel.setMaxMovementsToAddPerHypothesis( 3 );
+		trackingModel.processSegmentationInputs( false );
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		data.dispose();
+	}
+
+	@Test
+	public void testKdTreeSearch() {
+		trackingModel.setGridNeighborSearch( false );
+		assertSameMoves();
+	}
+
+	@Test
+	public void testGridSearch() {
+		trackingModel.setGridNeighborSearch( true );
+		assertSameMoves();
+	}
+
+	private static void assertSameMoves() {
+		assertTrue( trackingModel.getMoveCosts() instanceof DistanceCostLowerBound );
+		final Tr2dTrackingProblem pruned = build( trackingModel.getMoveCosts() );
+		final Tr2dTrackingProblem full = build( new WithoutLowerBound<>( trackingModel.getMoveCosts() ) );
+
+		int numMoves = 0;
+		for ( int t = 0; t < pruned.getTimepoints().size(); t++ ) {
+			final Tr2dSegmentationProblem frame = pruned.getTimepoints().get( t );
+			final Tr2dSegmentationProblem fullFrame = full.getTimepoints().get( t );
+			for ( final SegmentNode segVar : frame.getSegments() ) {
+				final SegmentNode fullSegVar = fullFrame.getSegmentVar( segVar.getSegment() );
+				final Map< LabelingSegment, Double > moves = getMoves( segVar );
+				assertEquals( getMoves( fullSegVar ), moves );
+				numMoves += moves.size();
+			}
+		}
+		assertTrue( numMoves > 0 );
+	}
+
+	private static Map< LabelingSegment, Double > getMoves( final SegmentNode segVar ) {
+		final Map< LabelingSegment, Double > ret = new HashMap<>();
+		for ( final MovementHypothesis move : segVar.getOutAssignments().getMoves() ) {
+			ret.put( move.getDest().getSegment(), move.getCost() );
+		}
+		return ret;
+	}
+
+	private static Tr2dTrackingProblem build( final CostFactory< Pair< Pair< LabelingSegment, LabelingSegment >, Pair< Double, Double > > > moveCosts ) {
+		final LabelingTimeLapse labelingFrames = trackingModel.getLabelingFrames();
+		final List< Tr2dSegmentationProblem > frames = new ArrayList<>();
+		for ( int frameId = 0; frameId < labelingFrames.getNumFrames(); frameId++ ) {
+			frames.add( new Tr2dSegmentationProblem(
+					frameId,
+					labelingFrames.getLabelingSegmentsForFrame( frameId ),
+					trackingModel.getSegmentCosts(),
+					labelingFrames.getConflictGraph( frameId ) ) );
+		}
+		final Tr2dTrackingProblem ttp = new Tr2dTrackingProblem(
+				trackingModel,
+				trackingModel.getTr2dModel().getFlowModel(),
+				trackingModel.getAppearanceCosts(),
+				moveCosts,
+				trackingModel.getDivisionCosts(),
+				trackingModel.getDisappearanceCosts() );
+		ttp.addSegmentationProblems( frames, ForkJoinPool.commonPool() );
+		return ttp;
+	}
+
+	/**
+	 * Hides the lower bound of a cost factory, such that all candidates are
+	 * enumerated.
+	 */
+	private static class WithoutLowerBound< T > implements CostFactory< T > {
+
+		private final CostFactory< T > costs;
+
+		WithoutLowerBound( final CostFactory< T > costs ) {
+			this.costs = costs;
+		}
+
+		@Override
+		public String getName() {
+			return costs.getName();
+		}
+
+		@Override
+		public double getCost( final T value ) {
+			return costs.getCost( value );
+		}
+
+		@Override
+		public CostParams getParameters() {
+			return costs.getParameters();
+		}
+
+		@Override
+		public void setParameters( final CostParams p ) {
+			costs.setParameters( p );
+		}
+	}
+}
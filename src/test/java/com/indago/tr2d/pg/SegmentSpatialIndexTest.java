@@ -0,0 +1,126 @@
+package com.indago.tr2d.pg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.RadiusNeighborSearch;
+
+public class SegmentSpatialIndexTest {
+
+	private static final double RADIUS = 20;
+
+	private static Tr2dBenchmarkData data;
+	private static List< Tr2dSegmentationProblem > frames;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, 3, 8, 42 );
+		data.getModel().getTrackingModel().buildTrackingProblem();
+		frames = data.getModel().getTrackingModel().getTrackingProblem().getTimepoints();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		data.dispose();
+	}
+
+	@Test
+	public void testRadiusSearchFindsAllWithinRadius() {
+		for ( final Tr2dSegmentationProblem frame : frames ) {
+			final SegmentSpatialIndex index = frame.getSpatialIndex();
+			assertEquals( frame.getSegments().size(), index.size() );
+			for ( final RealPoint pos : queries( 25 ) ) {
+				final RadiusNeighborSearch< SegmentNode > search = index.getRadiusNeighborSearch();
+				search.search( pos, RADIUS, true );
+				assertEquals( bruteForce( index, pos ), found( search ) );
+				for ( int i = 1; i < search.numNeighbors(); i++ ) {
+					assertTrue( search.getDistance( i - 1 ) <= search.getDistance( i ) );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGridSearchEqualsRadiusSearch() {
+		for ( final Tr2dSegmentationProblem frame : frames ) {
+			final SegmentSpatialIndex index = frame.getSpatialIndex();
+			for ( final RealPoint pos : queries( 25 ) ) {
+				final RadiusNeighborSearch< SegmentNode > grid = index.getGridNeighborSearch( RADIUS );
+				grid.search( pos, RADIUS, false );
+				assertEquals( bruteForce( index, pos ), found( grid ) );
+
+				// smaller radii than the cell size are fine as well
+				grid.search( pos, RADIUS / 2, true );
+				final RadiusNeighborSearch< SegmentNode > kdtree = index.getRadiusNeighborSearch();
+				kdtree.search( pos, RADIUS / 2, true );
+				assertEquals( found( kdtree ), found( grid ) );
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyFrame() {
+		final SegmentSpatialIndex index = new SegmentSpatialIndex( new ArrayList<>() );
+		assertEquals( 0, index.size() );
+		assertTrue( index.getSegments().isEmpty() );
+		assertNull( index.getRadiusNeighborSearch() );
+		assertNull( index.getGridNeighborSearch( RADIUS ) );
+	}
+
+	@Test
+	public void testSegmentsAreIndexed() {
+		final SegmentSpatialIndex index = frames.get( 0 ).getSpatialIndex();
+		assertFalse( index.getSegments().isEmpty() );
+		for ( final SegmentNode node : index.getSegments() ) {
+			final RadiusNeighborSearch< SegmentNode > search = index.getRadiusNeighborSearch();
+			search.search( node.getSegment().getCenterOfMass(), 0, false );
+			assertTrue( found( search ).contains( node ) );
+		}
+	}
+
+	private static List< RealPoint > queries( final int n ) {
+		final Random random = new Random( 7 );
+		final List< RealPoint > ret = new ArrayList<>();
+		for ( int i = 0; i < n; i++ ) {
+			ret.add( new RealPoint( random.nextDouble() * 96, random.nextDouble() * 96 ) );
+		}
+		return ret;
+	}
+
+	private static Set< SegmentNode > bruteForce( final SegmentSpatialIndex index, final RealLocalizable pos ) {
+		final Set< SegmentNode > ret = new HashSet<>();
+		for ( final SegmentNode node : index.getSegments() ) {
+			final RealLocalizable com = node.getSegment().getCenterOfMass();
+			final double dx = com.getDoublePosition( 0 ) - pos.getDoublePosition( 0 );
+			final double dy = com.getDoublePosition( 1 ) - pos.getDoublePosition( 1 );
+			if ( dx * dx + dy * dy <= RADIUS * RADIUS ) ret.add( node );
+		}
+		return ret;
+	}
+
+	private static Set< SegmentNode > found( final RadiusNeighborSearch< SegmentNode > search ) {
+		final Set< SegmentNode > ret = new HashSet<>();
+		for ( int i = 0; i < search.numNeighbors(); i++ ) {
+			ret.add( search.getSampler( i ).get() );
+		}
+		return ret;
+	}
+}
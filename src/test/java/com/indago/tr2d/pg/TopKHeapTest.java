@@ -0,0 +1,61 @@
+package com.indago.tr2d.pg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TopKHeapTest {
+
+	@Test
+	public void testKeepsCheapestSorted() {
+		final Random random = new Random( 42 );
+		final double[] costs = new double[ 200 ];
+		final TopKHeap< Double > heap = new TopKHeap<>( 8 );
+		for ( int i = 0; i < costs.length; i++ ) {
+			costs[ i ] = random.nextDouble();
+			heap.offer( costs[ i ], costs[ i ] );
+		}
+		final List< Double > result = new ArrayList<>();
+		heap.drainTo( result );
+
+		Arrays.sort( costs );
+		assertEquals( 8, result.size() );
+		for ( int i = 0; i < 8; i++ ) {
+			assertEquals( costs[ i ], result.get( i ), 0 );
+		}
+		assertEquals( 0, heap.size() );
+	}
+
+	@Test
+	public void testTiesKeepFirstOffered() {
+		final TopKHeap< String > heap = new TopKHeap<>( 2 );
+		heap.offer( 1, "a" );
+		heap.offer( 1, "b" );
+		assertFalse( heap.offer( 1, "c" ) );
+		assertTrue( heap.offer( 0, "d" ) );
+		final List< String > result = new ArrayList<>();
+		heap.drainTo( result );
+		assertEquals( Arrays.asList( "d", "a" ), result );
+	}
+
+	@Test
+	public void testThreshold() {
+		final TopKHeap< String > heap = new TopKHeap<>( 2 );
+		assertTrue( heap.accepts( 100 ) );
+		heap.offer( 3, "a" );
+		heap.offer( 5, "b" );
+		assertEquals( 5, heap.getThreshold(), 0 );
+		assertFalse( heap.accepts( 5 ) );
+		assertTrue( heap.accepts( 4 ) );
+
+		final TopKHeap< String > empty = new TopKHeap<>( 0 );
+		assertFalse( empty.accepts( Double.NEGATIVE_INFINITY ) );
+	}
+}
@@ -0,0 +1,173 @@
+package com.indago.tr2d.pg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.indago.data.segmentation.ConflictGraph;
+import com.indago.data.segmentation.LabelingSegment;
+import com.indago.pg.segments.ConflictSet;
+import com.indago.pg.segments.SegmentNode;
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.data.LabelingTimeLapse;
+import com.indago.tr2d.ui.model.Tr2dTrackingModel;
+
+/**
+ * The segment to clique index of <code>Tr2dSegmentationProblem</code> must
+ * give the same conflict sets a scan over all cliques of the conflict graph
+ * gives, for segments in several (overlapping) cliques as well as for
+ * segments in none.
+ */
+public class Tr2dSegmentationProblemTest {
+
+	private static final int FRAME = 1;
+
+	private static Tr2dBenchmarkData data;
+	private static Tr2dTrackingModel trackingModel;
+
+	private ConflictGraph< LabelingSegment > conflictGraph;
+	private Tr2dSegmentationProblem frame;
+	private SegmentNode isolated;
+
+	@BeforeClass
+	public static void setupData() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, 3, 8, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		trackingModel.processSegmentationInputs( false );
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		data.dispose();
+	}
+
+	@Before
+	public void setup() {
+		final LabelingTimeLapse labelingFrames = trackingModel.getLabelingFrames();
+		conflictGraph = labelingFrames.getConflictGraph( FRAME );
+		// a segment of another frame is part of no clique of this conflict graph
+		final List< LabelingSegment > segments = new ArrayList<>( labelingFrames.getLabelingSegmentsForFrame( FRAME ) );
+		final LabelingSegment other = labelingFrames.getLabelingSegmentsForFrame( FRAME + 1 ).get( 0 );
+		segments.add( other );
+		frame = new Tr2dSegmentationProblem( FRAME, segments, new double[ segments.size() ], conflictGraph );
+		isolated = frame.getSegmentVar( other );
+	}
+
+	@Test
+	public void testCliqueIndexMatchesScan() {
+		final List< Collection< LabelingSegment > > cliques = new ArrayList<>();
+		for ( final Collection< LabelingSegment > clique : conflictGraph.getConflictGraphCliques() ) {
+			cliques.add( clique );
+		}
+		final List< ConflictSet > conflictSets = new ArrayList<>( frame.getConflictSets() );
+		assertEquals( cliques.size(), conflictSets.size() );
+
+		int numOverlapping = 0;
+		for ( final SegmentNode node : frame.getSegments() ) {
+			final List< Integer > expected = new ArrayList<>();
+			for ( int i = 0; i < cliques.size(); i++ ) {
+				if ( cliques.get( i ).contains( node.getSegment() ) ) expected.add( i );
+			}
+			final int[] ids = frame.getCliqueIds( node );
+			assertArrayEquals( expected.stream().mapToInt( Integer::intValue ).toArray(), ids );
+			for ( final int id : ids ) {
+				assertEquals( toNodes( cliques.get( id ) ), members( conflictSets.get( id ) ) );
+			}
+
+			final Set< SegmentNode > first = expected.isEmpty() ? new HashSet<>() : toNodes( cliques.get( expected.get( 0 ) ) );
+			assertEquals( first, members( frame.getConflictSetFor( node ) ) );
+			if ( ids.length > 1 ) numOverlapping++;
+		}
+		assertTrue( numOverlapping > 0 );
+
+		assertEquals( 0, frame.getCliqueIds( isolated ).length );
+		assertTrue( members( frame.getConflictSetFor( isolated ) ).isEmpty() );
+	}
+
+	/**
+	 * Conflict sets are used as keys of forced conflict set edits, so every
+	 * lookup must return the same instances.
+	 */
+	@Test
+	public void testConflictSetsAreCached() {
+		final List< ConflictSet > conflictSets = new ArrayList<>( frame.getConflictSets() );
+		final List< ConflictSet > again = new ArrayList<>( frame.getConflictSets() );
+		for ( int i = 0; i < conflictSets.size(); i++ ) {
+			assertSame( conflictSets.get( i ), again.get( i ) );
+		}
+		for ( final SegmentNode node : frame.getSegments() ) {
+			final int[] ids = frame.getCliqueIds( node );
+			if ( ids.length > 0 ) assertSame( conflictSets.get( ids[ 0 ] ), frame.getConflictSetFor( node ) );
+		}
+	}
+
+	/**
+	 * Forcing a segment must clear the forces of the members of all cliques
+	 * it is part of, and nothing else.
+	 */
+	@Test
+	public void testForceClearsAllCliques() {
+		SegmentNode segment = null;
+		for ( final SegmentNode node : frame.getSegments() ) {
+			if ( frame.getCliqueIds( node ).length > 1 ) {
+				segment = node;
+				break;
+			}
+		}
+		assertNotNull( segment );
+
+		final Set< SegmentNode > conflicting = new HashSet<>();
+		for ( final int id : frame.getCliqueIds( segment ) ) {
+			for ( final SegmentNode node : new ArrayList<>( frame.getConflictSets() ).get( id ) ) {
+				if ( node != segment ) conflicting.add( node );
+			}
+		}
+		assertFalse( conflicting.isEmpty() );
+		frame.getForcedNodes().addAll( conflicting );
+		frame.getForcedSegmentNodeMovesTo().addAll( conflicting );
+		frame.forceMoveTo( isolated );
+
+		frame.force( segment );
+		final Set< SegmentNode > expected = new HashSet<>();
+		expected.add( segment );
+		expected.add( isolated );
+		assertEquals( expected, frame.getForcedNodes() );
+		assertEquals( Collections.singleton( isolated ), frame.getForcedSegmentNodeMovesTo() );
+
+		// the isolated segment conflicts with nothing
+		frame.force( isolated );
+		assertEquals( expected, frame.getForcedNodes() );
+	}
+
+	private Set< SegmentNode > toNodes( final Collection< LabelingSegment > clique ) {
+		final Set< SegmentNode > ret = new HashSet<>();
+		for ( final LabelingSegment segment : clique ) {
+			ret.add( frame.getSegmentVar( segment ) );
+		}
+		return ret;
+	}
+
+	private static Set< SegmentNode > members( final ConflictSet conflictSet ) {
+		final Set< SegmentNode > ret = new HashSet<>();
+		for ( final SegmentNode node : conflictSet ) {
+			ret.add( node );
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,65 @@
+package com.indago.tr2d.ui.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.ilp.TrackingSolvers;
+
+public class Tr2dRollingWindowTrackerTest {
+
+	private static final int NUM_FRAMES = 7;
+
+	private Tr2dBenchmarkData data;
+	private Tr2dTrackingModel trackingModel;
+
+	@Before
+	public void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, NUM_FRAMES, 6, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		trackingModel.setSolverName( TrackingSolvers.JAVA );
+		assertTrue( trackingModel.processSegmentationInputs( false ) );
+	}
+
+	@After
+	public void tearDown() {
+		data.dispose();
+	}
+
+	@Test
+	public void testWritesTraResults() throws IOException {
+		final File folder = new File( data.getFolder(), "export" );
+		assertTrue( folder.mkdir() );
+		assertTrue( new Tr2dRollingWindowTracker( trackingModel, 4, 2 ).run( folder ) );
+
+		for ( int t = 0; t < NUM_FRAMES; t++ ) {
+			assertTrue( new File( folder, String.format( "mask%03d.tif", t ) ).isFile() );
+		}
+		final List< String > lines = Files.readAllLines( new File( folder, "res_track.txt" ).toPath() );
+		assertFalse( lines.isEmpty() );
+		for ( final String line : lines ) {
+			final String[] record = line.split( " " );
+			assertEquals( 4, record.length );
+			final int tStart = Integer.parseInt( record[ 1 ] );
+			final int tEnd = Integer.parseInt( record[ 2 ] );
+			assertTrue( 0 <= tStart && tStart <= tEnd && tEnd < NUM_FRAMES );
+		}
+	}
+
+	@Test
+	public void testTracksWithoutExport() throws IOException {
+		final String[] before = data.getFolder().list();
+		assertTrue( new Tr2dRollingWindowTracker( trackingModel, 4, 2 ).run( null ) );
+		assertEquals( before.length, data.getFolder().list().length );
+	}
+}
@@ -0,0 +1,92 @@
+package com.indago.tr2d.ui.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.indago.tr2d.benchmark.Tr2dBenchmarkData;
+import com.indago.tr2d.ilp.TrackingSolvers;
+
+import gurobi.GRBEnv;
+
+public class Tr2dTrackingModelTest {
+
+	private Tr2dBenchmarkData data;
+	private Tr2dTrackingModel trackingModel;
+	private File solutionFile;
+
+	@Before
+	public void setup() throws IOException {
+		data = new Tr2dBenchmarkData( 96, 96, 5, 6, 42 );
+		trackingModel = data.getModel().getTrackingModel();
+		// without a preview there is no MIP start, i.e. no solution up front
+		trackingModel.setShowPreview( false );
+		solutionFile = new File( data.getFolder(), "tracking/tracking.sol" );
+	}
+
+	@After
+	public void tearDown() {
+		data.dispose();
+	}
+
+	/**
+	 * A solve that fails must leave no solution (and no solution file)
+	 * behind, instead of throwing while saving it.
+	 */
+	@Test
+	public void testFailedSolveLeavesNoSolution() {
+		trackingModel.setSolverName( "no such solver" );
+		trackingModel.run( true, false );
+		assertFalse( trackingModel.isLatestSolveSuccessful() );
+		assertNull( trackingModel.getSolution() );
+		assertFalse( solutionFile.exists() );
+	}
+
+	/**
+	 * Stopping an anytime solve before its first incumbent is a normal
+	 * outcome: there is no solution yet.
+	 */
+	@Test
+	public void testAnytimeSolveStoppedEarly() throws InterruptedException {
+		Assume.assumeTrue( isGurobiAvailable() );
+		trackingModel.setSolverName( TrackingSolvers.GUROBI );
+		trackingModel.setAnytimeSolving( true );
+		trackingModel.setSolveBudget( 1e-6, 0, 0 );
+
+		final Thread stopper = new Thread( () -> {
+			while ( !trackingModel.stopSolving() && !Thread.currentThread().isInterrupted() ) {
+				Thread.yield();
+			}
+		} );
+		stopper.start();
+		try {
+			trackingModel.run( true, false );
+		} finally {
+			stopper.interrupt();
+			stopper.join();
+		}
+
+		// tiny problems may still be solved before the solver gets stopped
+		assertEquals( trackingModel.isLatestSolveSuccessful(), trackingModel.getSolution() != null );
+		assertEquals( trackingModel.isLatestSolveSuccessful(), solutionFile.exists() );
+		assertTrue( trackingModel.getTrackingProblem() != null );
+	}
+
+	private static boolean isGurobiAvailable() {
+		try {
+			new GRBEnv().dispose();
+			return true;
+		} catch ( final Throwable t ) {
+			return false;
+		}
+	}
+}